@@ -1,14 +1,31 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation;
 
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.CacheExpiryPolicy;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.CacheMaintenanceScheduler;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.CacheSnapshotter;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.DatabaseCacheWarmer;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.MemoryPressureMonitor;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.NegativeResultCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.OffHeapValuationStore;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerFileWatcher;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCompactCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCostAwareCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerLFUCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerNoEvictionCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerTieredCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerTinyLFUCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.BlockingExecutors;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpClientFactory;
 import com.szilberhornz.valueinvdata.services.stockvaluation.controller.StockValuationServiceHttpHandler;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpServerEngine;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.JdkHttpServerEngine;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.NioHttpServer;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPApiHttpClient;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPCallBudget;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPEndpointCapabilities;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPResponseHandler;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.FMPAuthorizer;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.JVMBasedFMPAuthorizer;
@@ -16,8 +33,10 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.repository.Valuatio
 import com.szilberhornz.valueinvdata.services.stockvaluation.repository.api.ValuationDBRepository;
 import com.szilberhornz.valueinvdata.services.stockvaluation.repository.inmem.InMemoryDBDataSourceFactory;
 import com.szilberhornz.valueinvdata.services.stockvaluation.repository.mssql.MSSQLDataSourceFactory;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.HotTickerRefresher;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.VRSagaDataBroker;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.VRSagaOrchestrator;
+import com.szilberhornz.valueinvdata.services.stockvaluation.controller.TickerSuggestionRestController;
 import com.szilberhornz.valueinvdata.services.stockvaluation.controller.ValuationReportRestController;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.circuitbreaker.VRSagaCircuitBreaker;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.circuitbreaker.VRSagaDefaultCircuitBreaker;
@@ -30,6 +49,11 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * This class is a simple inversion of control container, responsible for managing the class instances
@@ -40,41 +64,160 @@ public final class AppContainer {
 
     private static final Logger LOG = LoggerFactory.getLogger(AppContainer.class);
 
+    //comes first, the LFU cache counts the accesses by the ids of its tickers
+    final TickerCache tickerCache = AppContext.TICKER_FILE == null ? new TickerCache("tickers.txt") : new TickerCache(Path.of(AppContext.TICKER_FILE));
     final ValuationServerCache cache = this.initializeCache();
+    final CacheSnapshotter cacheSnapshotter = AppContext.CACHE_SNAPSHOT_FILE == null ? null
+            : new CacheSnapshotter(Path.of(AppContext.CACHE_SNAPSHOT_FILE), this.cache);
+    //runs the blocking steps of the saga, the database writes and the FMP api calls
+    final Executor blockingExecutor = AppContext.USE_VIRTUAL_THREADS ? BlockingExecutors.newVirtualThreadPerTaskExecutor("saga-")
+            : BlockingExecutors.defaultAsyncPool();
     final DataSource dataSource = this.initializeDataSource();
-    final ValuationDBRepository valuationDBRepository = new ValuationDBRepositoryImpl(this.dataSource);
+    final ValuationDBRepository valuationDBRepository = new ValuationDBRepositoryImpl(this.dataSource, this.blockingExecutor);
+    //starts right away, so it runs in parallel with the rest of the initialization
+    final CompletableFuture<Integer> databaseWarmUp = this.startDatabaseWarmUp();
 
     final HttpClientFactory httpClientFactory = new HttpClientFactory();
     final FMPAuthorizer fmpAuthorizer = new JVMBasedFMPAuthorizer();
     final FMPApiHttpClient fmpApiHttpClient = new FMPApiHttpClient(this.fmpAuthorizer, this.httpClientFactory);
-    final FMPResponseHandler fmpResponseHandler = new FMPResponseHandler(this.fmpApiHttpClient);
-    final VRSagaDataBroker vrSagaDataBroker = new VRSagaDataBroker(this.valuationDBRepository, this.cache, this.fmpResponseHandler);
-    final TickerCache tickerCache = new TickerCache("tickers.txt");
+    final NegativeResultCache negativeResultCache = new NegativeResultCache(Duration.ofHours(AppContext.NEGATIVE_CACHE_TTL_HOURS),
+            AppContext.NEGATIVE_CACHE_SIZE);
+    final CacheMaintenanceScheduler cacheMaintenanceScheduler = new CacheMaintenanceScheduler(this.cache, this.negativeResultCache);
+    final MemoryPressureMonitor memoryPressureMonitor = AppContext.CACHE_HEAP_WATERMARK <= 0 ? null
+            : MemoryPressureMonitor.forOldGeneration(this.cache, AppContext.CACHE_HEAP_WATERMARK);
+    final FMPEndpointCapabilities fmpEndpointCapabilities = new FMPEndpointCapabilities(Duration.ofMinutes(AppContext.FMP_ENDPOINT_BACKOFF_MINUTES),
+            Duration.ofMinutes(AppContext.FMP_ENDPOINT_MAX_BACKOFF_MINUTES));
+    final FMPResponseHandler fmpResponseHandler = new FMPResponseHandler(this.fmpApiHttpClient, this.negativeResultCache, this.fmpEndpointCapabilities);
+    final CacheExpiryPolicy cacheExpiryPolicy = new CacheExpiryPolicy(Duration.ofHours(AppContext.DCF_TTL_HOURS),
+            Duration.ofHours(AppContext.PRICE_TARGET_TTL_HOURS), Duration.ofHours(AppContext.PRICE_TARGET_TTL_HOURS),
+            Duration.ofHours(AppContext.CACHE_GRACE_PERIOD_HOURS));
+    final VRSagaDataBroker vrSagaDataBroker = new VRSagaDataBroker(this.valuationDBRepository, this.cache, this.fmpResponseHandler,
+            this.cacheExpiryPolicy, this.negativeResultCache, this.blockingExecutor);
+    final TickerFileWatcher tickerFileWatcher = this.initializeTickerFileWatcher();
     final VRSagaCircuitBreaker vrSagaCircuitBreaker = new VRSagaDefaultCircuitBreaker();
     final ValuationResponseBodyFormatter formatter = this.getFormatter();
 
-    final VRSagaOrchestrator vrSagaOrchestrator = new VRSagaOrchestrator(this.tickerCache, this.formatter, this.vrSagaCircuitBreaker, this.vrSagaDataBroker);
+    final HotTickerRefresher hotTickerRefresher = new HotTickerRefresher(this.vrSagaDataBroker,
+            new FMPCallBudget(AppContext.FMP_DAILY_CALL_QUOTA, AppContext.REFRESH_AHEAD_QUOTA_SHARE),
+            AppContext.REFRESH_AHEAD_TOP_K, this.vrSagaCircuitBreaker.getTimeoutForApiCallInMillis());
+
+    final VRSagaOrchestrator vrSagaOrchestrator = new VRSagaOrchestrator(this.tickerCache, this.formatter, this.vrSagaCircuitBreaker, this.vrSagaDataBroker,
+            this.blockingExecutor);
 
     final ValuationReportRestController valuationReportRestController = new ValuationReportRestController(this.vrSagaOrchestrator);
 
-    final StockValuationServiceHttpHandler httpHandler = new StockValuationServiceHttpHandler(this.valuationReportRestController);
+    final TickerSuggestionRestController tickerSuggestionRestController = new TickerSuggestionRestController(this.tickerCache,
+            AppContext.TICKER_SUGGESTION_LIMIT);
+
+    final StockValuationServiceHttpHandler httpHandler = new StockValuationServiceHttpHandler(this.valuationReportRestController,
+            this.tickerSuggestionRestController);
+
+    /**
+     * Fills the cache before the server starts accepting requests, so the first minutes after a bounce don't hammer the
+     * database and the FMP api
+     */
+    void warmUpCache() {
+        if (this.cacheSnapshotter != null && this.cacheSnapshotter.snapshotExists()) {
+            this.cacheSnapshotter.loadSnapshot();
+        }
+        this.databaseWarmUp.join();
+    }
+
+    void startBackgroundJobs() {
+        if (this.memoryPressureMonitor != null) {
+            this.memoryPressureMonitor.start();
+            this.cacheMaintenanceScheduler.addMaintenanceTask(this.memoryPressureMonitor::checkForRelief);
+        }
+        this.cacheMaintenanceScheduler.start(Duration.ofSeconds(AppContext.CACHE_MAINTENANCE_INTERVAL_SECONDS));
+        if (this.cacheSnapshotter != null) {
+            this.cacheSnapshotter.start(Duration.ofMinutes(AppContext.CACHE_SNAPSHOT_INTERVAL_MINUTES));
+            Runtime.getRuntime().addShutdownHook(new Thread(this.cacheSnapshotter::close, "cache-snapshot-on-shutdown"));
+        }
+        if (AppContext.USE_REFRESH_AHEAD) {
+            this.hotTickerRefresher.start(Duration.ofMinutes(AppContext.REFRESH_AHEAD_INTERVAL_MINUTES));
+        }
+        //nobody can request the delisted tickers anymore, their entries would only take up room
+        this.tickerCache.addReloadListener(diff -> diff.removed().forEach(this.cache::invalidate));
+        if (this.tickerFileWatcher != null) {
+            this.tickerFileWatcher.start();
+        }
+    }
 
-    HttpHandler getHttpHandler(){
-        return this.httpHandler;
+    /**
+     * The com.sun HttpServer, or the nio engine if USE_NIO_SERVER is set, with NIO_EVENT_LOOPS event loops
+     */
+    HttpServerEngine createHttpServer(final int port) throws IOException {
+        if (AppContext.USE_NIO_SERVER) {
+            return new NioHttpServer(new InetSocketAddress(port), AppContext.NIO_SOCKET_BACKLOG, AppContext.NIO_EVENT_LOOPS,
+                    this.httpHandler, this.createRequestExecutor(), Duration.ofSeconds(AppContext.NIO_IDLE_TIMEOUT_SECONDS));
+        }
+        return new JdkHttpServerEngine(HttpServer.create(new InetSocketAddress(port), AppContext.DEFAULT_SOCKET_BACKLOG),
+                this.httpHandler, this.createRequestExecutor());
     }
 
-    HttpServer createHttpServer (final int port) throws IOException {
-        return HttpServer.create(new InetSocketAddress(port), AppContext.DEFAULT_SOCKET_BACKLOG);
+    /**
+     * A request waits for the whole saga on its thread, up to the overall timeout of the circuit breaker, so with a fixed
+     * pool a handful of slow cache misses are enough to keep every other request in the queue
+     */
+    Executor createRequestExecutor() {
+        return AppContext.USE_VIRTUAL_THREADS ? BlockingExecutors.newVirtualThreadPerTaskExecutor("http-request-")
+                : Executors.newFixedThreadPool(AppContext.WORKER_THREADS);
     }
 
     private ValuationServerCache initializeCache() {
-        if (AppContext.IS_DEMO_MODE && !AppContext.USE_LFU_CACHE) {
+        final ValuationServerCache onHeapCache = this.initializeOnHeapCache();
+        if (AppContext.USE_OFF_HEAP_TIER) {
+            LOG.info("Adding an off-heap second tier with a capacity of {} to the cache!", AppContext.OFF_HEAP_TIER_SIZE);
+            return new ValuationServerTieredCache(onHeapCache, new OffHeapValuationStore(AppContext.OFF_HEAP_TIER_SIZE));
+        }
+        return onHeapCache;
+    }
+
+    private ValuationServerCache initializeOnHeapCache() {
+        if (AppContext.USE_TINY_LFU_CACHE) {
+            LOG.info("Starting a W-TinyLFU cache with a capacity of {}!", AppContext.LFU_CACHE_SIZE);
+            return new ValuationServerTinyLFUCache(AppContext.LFU_CACHE_SIZE);
+        } else if (AppContext.USE_COMPACT_CACHE) {
+            LOG.info("Starting a compact cache with a capacity of {}!", AppContext.LFU_CACHE_SIZE);
+            return new ValuationServerCompactCache(AppContext.LFU_CACHE_SIZE);
+        } else if (AppContext.USE_COST_AWARE_CACHE) {
+            LOG.info("Starting a cost-aware cache with a capacity of {}!", AppContext.LFU_CACHE_SIZE);
+            return new ValuationServerCostAwareCache(AppContext.LFU_CACHE_SIZE);
+        } else if (AppContext.IS_DEMO_MODE && !AppContext.USE_LFU_CACHE) {
             LOG.info("Starting a cache with no eviction policy!");
             return new ValuationServerNoEvictionCache();
+        } else if (AppContext.LFU_CACHE_MAX_BYTES > 0) {
+            LOG.info("Starting an LFU cache with a heap budget of {} bytes!", AppContext.LFU_CACHE_MAX_BYTES);
+            return new ValuationServerLFUCache(AppContext.LFU_REBALANCE_THRESHOLD, Integer.MAX_VALUE, AppContext.LFU_CACHE_MAX_BYTES,
+                    this.tickerCache);
         } else {
             LOG.info("Starting an LFU cache!");
-            return new ValuationServerLFUCache(AppContext.LFU_REBALANCE_THRESHOLD, AppContext.LFU_CACHE_SIZE);
+            return new ValuationServerLFUCache(AppContext.LFU_REBALANCE_THRESHOLD, AppContext.LFU_CACHE_SIZE, Long.MAX_VALUE, this.tickerCache);
+        }
+    }
+
+    private TickerFileWatcher initializeTickerFileWatcher() {
+        if (AppContext.TICKER_FILE == null) {
+            return null;
+        }
+        try {
+            return new TickerFileWatcher(this.tickerCache, Path.of(AppContext.TICKER_FILE),
+                    Duration.ofSeconds(AppContext.TICKER_FILE_QUIET_PERIOD_SECONDS));
+        } catch (final IOException exception) {
+            LOG.error("Can't watch the ticker file {}, the tickers won't be reloaded when it changes!", AppContext.TICKER_FILE, exception);
+            return null;
+        }
+    }
+
+    private CompletableFuture<Integer> startDatabaseWarmUp() {
+        if (!AppContext.USE_DB_WARM_UP || (this.cacheSnapshotter != null && this.cacheSnapshotter.snapshotExists())) {
+            return CompletableFuture.completedFuture(0);
         }
+        return new DatabaseCacheWarmer(this.valuationDBRepository, this.cache, AppContext.DB_WARM_UP_SIZE).warmUpAsync(this.blockingExecutor)
+                .exceptionally(throwable -> {
+                    LOG.error("The database warm-up of the cache failed, starting with an empty cache!", throwable);
+                    return 0;
+                });
     }
 
     private ValuationResponseBodyFormatter getFormatter(){
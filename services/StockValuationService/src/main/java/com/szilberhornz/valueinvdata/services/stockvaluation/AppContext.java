@@ -16,6 +16,21 @@ public final class AppContext {
     private static final int DEFAULT_WORKER_THREAD_COUNT = 10;
     private static final String WORKER_THREADS_STRING = System.getProperty("WORKER_THREAD_COUNT");
     static final int WORKER_THREADS =  WORKER_THREADS_STRING == null ? DEFAULT_WORKER_THREAD_COUNT : Integer.parseInt(WORKER_THREADS_STRING);
+    //a new virtual thread for every request and for every blocking step of the saga, instead of the WORKER_THREAD_COUNT
+    //platform threads and the common ForkJoinPool, so the slow FMP api calls and database queries don't hold up the others
+    static final boolean USE_VIRTUAL_THREADS = Boolean.parseBoolean(System.getProperty("USE_VIRTUAL_THREADS"));
+    //the java.nio server engine instead of the com.sun HttpServer, for tens of thousands of concurrent keep-alive connections.
+    //Its connections are closed after NIO_IDLE_TIMEOUT_SECONDS without a request, and it has a deeper accept backlog
+    static final boolean USE_NIO_SERVER = Boolean.parseBoolean(System.getProperty("USE_NIO_SERVER"));
+    private static final String NIO_SOCKET_BACKLOG_STRING = System.getProperty("NIO_SOCKET_BACKLOG");
+    static final int NIO_SOCKET_BACKLOG = NIO_SOCKET_BACKLOG_STRING == null ? 1024 : Integer.parseInt(NIO_SOCKET_BACKLOG_STRING);
+    //the number of event loops of the nio engine, each one accepts and serves its share of the connections. With more than
+    //one, each loop listens on the port with its own socket (SO_REUSEPORT) and the kernel spreads the connections between
+    //them, up to one per core is worth it on a large machine
+    private static final String NIO_EVENT_LOOPS_STRING = System.getProperty("NIO_EVENT_LOOPS");
+    static final int NIO_EVENT_LOOPS = NIO_EVENT_LOOPS_STRING == null ? 1 : Integer.parseInt(NIO_EVENT_LOOPS_STRING);
+    private static final String NIO_IDLE_TIMEOUT_SECONDS_STRING = System.getProperty("NIO_IDLE_TIMEOUT_SECONDS");
+    static final long NIO_IDLE_TIMEOUT_SECONDS = NIO_IDLE_TIMEOUT_SECONDS_STRING == null ? 60 : Long.parseLong(NIO_IDLE_TIMEOUT_SECONDS_STRING);
     private static final int DEFAULT_PORT = 8080;
     private static final String PORT_STRING = System.getProperty("PORT_NUMBER");
     static final int PORT_NUMBER = PORT_STRING == null ? DEFAULT_PORT : Integer.parseInt(PORT_STRING);
@@ -26,8 +41,87 @@ public final class AppContext {
     private static final String LFU_CACHE_STRING = System.getProperty("LFU_CACHE_SIZE");
     private static final String LFU_REBALANCE_STRING = System.getProperty("LFU_REBALANCE_THRESHOLD");
     static final boolean USE_LFU_CACHE = Boolean.parseBoolean(System.getProperty("USE_LFU_CACHE"));
+    //the W-TinyLFU cache uses the LFU_CACHE_SIZE as its capacity, and takes precedence over the other caches if enabled
+    static final boolean USE_TINY_LFU_CACHE = Boolean.parseBoolean(System.getProperty("USE_TINY_LFU_CACHE"));
+    //the cost-aware cache keeps the entries that were expensive to fill from the FMP api, it uses the LFU_CACHE_SIZE too
+    static final boolean USE_COST_AWARE_CACHE = Boolean.parseBoolean(System.getProperty("USE_COST_AWARE_CACHE"));
+    //the compact cache stores the cached fields in primitive arrays instead of objects, it uses the LFU_CACHE_SIZE too
+    static final boolean USE_COMPACT_CACHE = Boolean.parseBoolean(System.getProperty("USE_COMPACT_CACHE"));
     static final int LFU_CACHE_SIZE = LFU_CACHE_STRING == null ? DEFAULT_LFU_CACHE_SIZE : Integer.parseInt(LFU_CACHE_STRING);
     static final int LFU_REBALANCE_THRESHOLD = LFU_REBALANCE_STRING == null ? DEFAULT_LFU_REBALANCE_THRESHOLD : Integer.parseInt(LFU_REBALANCE_STRING);
+    //if set, the LFU cache is bounded by this estimated heap budget in bytes instead of the LFU_CACHE_SIZE entry count
+    private static final String LFU_CACHE_MAX_BYTES_STRING = System.getProperty("LFU_CACHE_MAX_BYTES");
+    static final long LFU_CACHE_MAX_BYTES = LFU_CACHE_MAX_BYTES_STRING == null ? -1 : Long.parseLong(LFU_CACHE_MAX_BYTES_STRING);
+
+    //the entries evicted from the on-heap cache are demoted to an off-heap second tier of this many entries (128 bytes each)
+    static final boolean USE_OFF_HEAP_TIER = Boolean.parseBoolean(System.getProperty("USE_OFF_HEAP_TIER"));
+    private static final String OFF_HEAP_TIER_SIZE_STRING = System.getProperty("OFF_HEAP_TIER_SIZE");
+    static final int OFF_HEAP_TIER_SIZE = OFF_HEAP_TIER_SIZE_STRING == null ? 70_000 : Integer.parseInt(OFF_HEAP_TIER_SIZE_STRING);
+
+    //if set, the cache is saved to this file periodically and on shutdown, and loaded back at startup
+    static final String CACHE_SNAPSHOT_FILE = System.getProperty("CACHE_SNAPSHOT_FILE");
+    private static final String CACHE_SNAPSHOT_INTERVAL_MINUTES_STRING = System.getProperty("CACHE_SNAPSHOT_INTERVAL_MINUTES");
+    static final long CACHE_SNAPSHOT_INTERVAL_MINUTES = CACHE_SNAPSHOT_INTERVAL_MINUTES_STRING == null ? 5 : Long.parseLong(CACHE_SNAPSHOT_INTERVAL_MINUTES_STRING);
+
+    //without a snapshot the cache is prefilled from the database at startup, with the DB_WARM_UP_SIZE most recently updated
+    //records (LFU_CACHE_SIZE by default, 0 or less means every record), off by default
+    static final boolean USE_DB_WARM_UP = Boolean.parseBoolean(System.getProperty("USE_DB_WARM_UP"));
+    private static final String DB_WARM_UP_SIZE_STRING = System.getProperty("DB_WARM_UP_SIZE");
+    static final int DB_WARM_UP_SIZE = DB_WARM_UP_SIZE_STRING == null ? LFU_CACHE_SIZE : Integer.parseInt(DB_WARM_UP_SIZE_STRING);
+
+    //cache expiry: the DCF moves with the stock price so it is refreshed daily, the analyst price targets can live longer.
+    //stale data is still served (and refreshed in the background) during the grace period after its TTL
+    private static final String DCF_TTL_HOURS_STRING = System.getProperty("DCF_TTL_HOURS");
+    private static final String PRICE_TARGET_TTL_HOURS_STRING = System.getProperty("PRICE_TARGET_TTL_HOURS");
+    private static final String CACHE_GRACE_PERIOD_HOURS_STRING = System.getProperty("CACHE_GRACE_PERIOD_HOURS");
+    static final long DCF_TTL_HOURS = DCF_TTL_HOURS_STRING == null ? 24 : Long.parseLong(DCF_TTL_HOURS_STRING);
+    static final long PRICE_TARGET_TTL_HOURS = PRICE_TARGET_TTL_HOURS_STRING == null ? 7 * 24 : Long.parseLong(PRICE_TARGET_TTL_HOURS_STRING);
+    static final long CACHE_GRACE_PERIOD_HOURS = CACHE_GRACE_PERIOD_HOURS_STRING == null ? 24 : Long.parseLong(CACHE_GRACE_PERIOD_HOURS_STRING);
+
+    //the cache maintenance (draining the access buffers, eviction, dropping the expired absences) runs this often, and
+    //right away whenever the cache crosses one of its bounds
+    private static final String CACHE_MAINTENANCE_INTERVAL_SECONDS_STRING = System.getProperty("CACHE_MAINTENANCE_INTERVAL_SECONDS");
+    static final long CACHE_MAINTENANCE_INTERVAL_SECONDS = CACHE_MAINTENANCE_INTERVAL_SECONDS_STRING == null ? 30 : Long.parseLong(CACHE_MAINTENANCE_INTERVAL_SECONDS_STRING);
+
+    //the cache shrinks when the old generation of the heap is above this share of its maximum size after a garbage
+    //collection, and grows back once it is well below it again (0 disables it)
+    private static final String CACHE_HEAP_WATERMARK_STRING = System.getProperty("CACHE_HEAP_WATERMARK");
+    static final double CACHE_HEAP_WATERMARK = CACHE_HEAP_WATERMARK_STRING == null ? 0.85 : Double.parseDouble(CACHE_HEAP_WATERMARK_STRING);
+
+    //if set, the tickers are validated against this file (same format as tickers.txt) instead of the packed tickers.txt, and
+    //they are reloaded once the file didn't change for TICKER_FILE_QUIET_PERIOD_SECONDS, the delisted tickers leave the cache
+    static final String TICKER_FILE = System.getProperty("TICKER_FILE");
+    private static final String TICKER_FILE_QUIET_PERIOD_SECONDS_STRING = System.getProperty("TICKER_FILE_QUIET_PERIOD_SECONDS");
+    static final long TICKER_FILE_QUIET_PERIOD_SECONDS = TICKER_FILE_QUIET_PERIOD_SECONDS_STRING == null ? 2 : Long.parseLong(TICKER_FILE_QUIET_PERIOD_SECONDS_STRING);
+
+    //the maximum number of tickers the /tickers/suggest?prefix=PREFIX autocomplete returns
+    private static final String TICKER_SUGGESTION_LIMIT_STRING = System.getProperty("TICKER_SUGGESTION_LIMIT");
+    static final int TICKER_SUGGESTION_LIMIT = TICKER_SUGGESTION_LIMIT_STRING == null ? 10 : Integer.parseInt(TICKER_SUGGESTION_LIMIT_STRING);
+
+    //the ticker and DTO type pairs neither the database nor the FMP api has data for are remembered for this long, for at
+    //most NEGATIVE_CACHE_SIZE tickers, so requests for them don't go upstream again (a size of 0 disables it)
+    private static final String NEGATIVE_CACHE_TTL_HOURS_STRING = System.getProperty("NEGATIVE_CACHE_TTL_HOURS");
+    private static final String NEGATIVE_CACHE_SIZE_STRING = System.getProperty("NEGATIVE_CACHE_SIZE");
+    static final long NEGATIVE_CACHE_TTL_HOURS = NEGATIVE_CACHE_TTL_HOURS_STRING == null ? 24 : Long.parseLong(NEGATIVE_CACHE_TTL_HOURS_STRING);
+    static final int NEGATIVE_CACHE_SIZE = NEGATIVE_CACHE_SIZE_STRING == null ? 10_000 : Integer.parseInt(NEGATIVE_CACHE_SIZE_STRING);
+
+    //refresh-ahead of the most requested tickers, off by default, it can use REFRESH_AHEAD_QUOTA_SHARE of the daily FMP api quota
+    static final boolean USE_REFRESH_AHEAD = Boolean.parseBoolean(System.getProperty("USE_REFRESH_AHEAD"));
+    private static final String REFRESH_AHEAD_TOP_K_STRING = System.getProperty("REFRESH_AHEAD_TOP_K");
+    private static final String REFRESH_AHEAD_INTERVAL_MINUTES_STRING = System.getProperty("REFRESH_AHEAD_INTERVAL_MINUTES");
+    private static final String FMP_DAILY_CALL_QUOTA_STRING = System.getProperty("FMP_DAILY_CALL_QUOTA");
+    private static final String REFRESH_AHEAD_QUOTA_SHARE_STRING = System.getProperty("REFRESH_AHEAD_QUOTA_SHARE");
+    static final int REFRESH_AHEAD_TOP_K = REFRESH_AHEAD_TOP_K_STRING == null ? 20 : Integer.parseInt(REFRESH_AHEAD_TOP_K_STRING);
+    static final long REFRESH_AHEAD_INTERVAL_MINUTES = REFRESH_AHEAD_INTERVAL_MINUTES_STRING == null ? 10 : Long.parseLong(REFRESH_AHEAD_INTERVAL_MINUTES_STRING);
+    //250 calls a day is the limit of the free tier
+    static final int FMP_DAILY_CALL_QUOTA = FMP_DAILY_CALL_QUOTA_STRING == null ? 250 : Integer.parseInt(FMP_DAILY_CALL_QUOTA_STRING);
+    static final double REFRESH_AHEAD_QUOTA_SHARE = REFRESH_AHEAD_QUOTA_SHARE_STRING == null ? 0.2 : Double.parseDouble(REFRESH_AHEAD_QUOTA_SHARE_STRING);
+
+    //an FMP api endpoint that fails with http 401, 403 or 429 is not called for this long, doubled on every failed probe
+    private static final String FMP_ENDPOINT_BACKOFF_MINUTES_STRING = System.getProperty("FMP_ENDPOINT_BACKOFF_MINUTES");
+    private static final String FMP_ENDPOINT_MAX_BACKOFF_MINUTES_STRING = System.getProperty("FMP_ENDPOINT_MAX_BACKOFF_MINUTES");
+    static final long FMP_ENDPOINT_BACKOFF_MINUTES = FMP_ENDPOINT_BACKOFF_MINUTES_STRING == null ? 15 : Long.parseLong(FMP_ENDPOINT_BACKOFF_MINUTES_STRING);
+    static final long FMP_ENDPOINT_MAX_BACKOFF_MINUTES = FMP_ENDPOINT_MAX_BACKOFF_MINUTES_STRING == null ? 6 * 60 : Long.parseLong(FMP_ENDPOINT_MAX_BACKOFF_MINUTES_STRING);
 
     public static final Set<Integer> RETRYABLE_HTTP_STATUS_CODES = Set.of(408, 502, 503, 504);
 
@@ -1,16 +1,14 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation;
 
-import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpServer;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpServerEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
- * The server class. Listening for http requests and using a thread pool for possible concurrent execution
+ * The server class. Listening for http requests and using a thread pool, or a virtual thread per request, for possible
+ * concurrent execution
  */
 public class StockValuationService {
 
@@ -24,13 +22,16 @@ public class StockValuationService {
         final int workerThreads = AppContext.WORKER_THREADS;
         //create the java objects for the app
         final AppContainer container = new AppContainer();
-        final HttpServer httpServer = container.createHttpServer(listeningPort);
-        final HttpHandler requestHandler = container.getHttpHandler();
+        container.warmUpCache();
+        final HttpServerEngine httpServer = container.createHttpServer(listeningPort);
         //let's go
-        httpServer.createContext("/", requestHandler);
-        final Executor executor = Executors.newFixedThreadPool(workerThreads);
-        httpServer.setExecutor(executor);
         httpServer.start();
-        LOGGER.info("{} http server started on port: {} with {} worker threads!", serviceName, listeningPort, workerThreads);
+        container.startBackgroundJobs();
+        final String engine = AppContext.USE_NIO_SERVER ? "nio (" + AppContext.NIO_EVENT_LOOPS + " event loops)" : "http";
+        if (AppContext.USE_VIRTUAL_THREADS) {
+            LOGGER.info("{} {} server started on port: {} with a virtual thread per request!", serviceName, engine, listeningPort);
+        } else {
+            LOGGER.info("{} {} server started on port: {} with {} worker threads!", serviceName, engine, listeningPort, workerThreads);
+        }
     }
 }
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.szilberhornz.valueinvdata.services.stockvaluation.controller;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.TickerSuggestionResponse;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpRequestRouter;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpResponseMessage;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.ValuationReport;
 import org.slf4j.Logger;
@@ -9,42 +12,75 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 
 /**
- * Class responsible for handling and distributing the incoming http requests.
+ * Class responsible for handling and distributing the incoming http requests, of either server engine.
  */
-public class StockValuationServiceHttpHandler implements HttpHandler {
+public class StockValuationServiceHttpHandler implements HttpHandler, HttpRequestRouter {
 
     private static final Logger LOG = LoggerFactory.getLogger(StockValuationServiceHttpHandler.class);
 
-    private static final String INVALID_REQUEST = "Invalid request, only /valuation-report?ticker=TICKER format GET requests are supported!";
+    private static final String INVALID_REQUEST = "Invalid request, only /valuation-report?ticker=TICKER and " +
+            "/tickers/suggest?prefix=PREFIX format GET requests are supported!";
+    private static final HttpResponseMessage INVALID_REQUEST_RESPONSE = new HttpResponseMessage(HttpStatusCode.NOT_FOUND.getStatusCode(),
+            INVALID_REQUEST.getBytes(StandardCharsets.UTF_8));
+
+    private static final String TICKER_PARAMETER = "ticker=";
+    private static final String PREFIX_PARAMETER = "prefix=";
 
     final ValuationReportRestController valuationReportRestController;
+    final TickerSuggestionRestController tickerSuggestionRestController;
 
-    public StockValuationServiceHttpHandler(final ValuationReportRestController valuationReportRestController) {
+    public StockValuationServiceHttpHandler(final ValuationReportRestController valuationReportRestController,
+                                            final TickerSuggestionRestController tickerSuggestionRestController) {
         this.valuationReportRestController = valuationReportRestController;
+        this.tickerSuggestionRestController = tickerSuggestionRestController;
     }
 
     @Override
     public void handle(final HttpExchange exchange) throws IOException {
-        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")
-                || !exchange.getRequestURI().getPath().equalsIgnoreCase("/valuation-report")
-                || !exchange.getRequestURI().getQuery().startsWith("ticker=")){
-            this.sendResponse(exchange, HttpStatusCode.NOT_FOUND.getStatusCode(), INVALID_REQUEST);
-        } else {
-            final String ticker = exchange.getRequestURI().getQuery().split("=")[1];
-            final ValuationReport valuationReport = this.valuationReportRestController.getValuationReport(ticker);
-            final String message = valuationReport.getMessageBody() == null ? valuationReport.getErrorMessage() : valuationReport.getMessageBody();
-            this.sendResponse(exchange, valuationReport.getStatusCode(), message);
+        final HttpResponseMessage response = this.route(exchange.getRequestMethod(), exchange.getRequestURI());
+        exchange.sendResponseHeaders(response.statusCode(), response.body().length);
+        final OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(response.body());
+        outputStream.close();
+    }
+
+    /**
+     * The routing of both server engines, the com.sun HttpServer calls it through {@link #handle(HttpExchange)}
+     */
+    @Override
+    public HttpResponseMessage route(final String method, final URI requestURI) {
+        final HttpResponseMessage response = this.dispatch(method, requestURI);
+        //the body is rendered and encoded once, the debug log decodes it again only if it is enabled
+        LOG.info("Sending response with status code {} and a message body of {} bytes", response.statusCode(), response.body().length);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("The message body is {}", new String(response.body(), StandardCharsets.UTF_8));
         }
+        return response;
     }
 
-    private void sendResponse(final HttpExchange exchange, final int statusCode, final String message) throws IOException {
-        LOG.info("Sending response with status code {} and message body {}", statusCode, message);
-        exchange.sendResponseHeaders(statusCode, message.getBytes(StandardCharsets.UTF_8).length);
-        final OutputStream outputStream = exchange.getResponseBody();
-        outputStream.write(message.getBytes(StandardCharsets.UTF_8));
-        outputStream.close();
+    private HttpResponseMessage dispatch(final String method, final URI requestURI) {
+        if (!method.equalsIgnoreCase("GET")) {
+            return INVALID_REQUEST_RESPONSE;
+        }
+        final String path = requestURI.getPath();
+        final String query = requestURI.getQuery();
+        if (query == null) {
+            return INVALID_REQUEST_RESPONSE;
+        } else if (path.equalsIgnoreCase("/valuation-report") && query.startsWith(TICKER_PARAMETER)) {
+            final String ticker = query.split("=")[1];
+            final ValuationReport valuationReport = this.valuationReportRestController.getValuationReport(ticker);
+            return new HttpResponseMessage(valuationReport.getStatusCode(), valuationReport.getMessageBodyBytes());
+        } else if (path.equalsIgnoreCase("/tickers/suggest") && query.startsWith(PREFIX_PARAMETER)) {
+            //an empty prefix is routed too, the controller answers it with a bad request
+            final String prefix = query.substring(PREFIX_PARAMETER.length());
+            final TickerSuggestionResponse suggestions = this.tickerSuggestionRestController.getSuggestions(prefix);
+            return new HttpResponseMessage(suggestions.getStatusCode(), suggestions.getMessageBody().getBytes(StandardCharsets.UTF_8));
+        } else {
+            return INVALID_REQUEST_RESPONSE;
+        }
     }
 }
@@ -0,0 +1,42 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.controller;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.TickerSuggestionResponse;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerCache;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The autocomplete of the tickers for the UI, called on every keystroke. The suggestions come straight from the trie of
+ * the TickerCache, neither the database nor the FMP api is involved.
+ */
+public class TickerSuggestionRestController {
+
+    //no ticker is longer, anything beyond it can't match
+    private static final int MAX_PREFIX_LENGTH = 32;
+
+    private final TickerCache tickerCache;
+    private final int maxSuggestionCount;
+
+    public TickerSuggestionRestController(final TickerCache tickerCache, final int maxSuggestionCount) {
+        this.tickerCache = tickerCache;
+        this.maxSuggestionCount = maxSuggestionCount;
+    }
+
+    //mapping: GET: /tickers/suggest?prefix=PREFIX
+    public TickerSuggestionResponse getSuggestions(final String prefix) {
+        if (prefix.isBlank() || prefix.length() > MAX_PREFIX_LENGTH) {
+            final String errorMessage = "The prefix must be 1 to " + MAX_PREFIX_LENGTH + " characters long!";
+            return new TickerSuggestionResponse(HttpStatusCode.BAD_REQUEST.getStatusCode(),
+                    new JSONObject().put("error", errorMessage).toString(), errorMessage);
+        }
+        final List<String> suggestions = this.tickerCache.suggest(prefix, this.maxSuggestionCount);
+        final JSONObject body = new JSONObject()
+                .put("prefix", prefix.toUpperCase(Locale.ROOT))
+                .put("suggestions", new JSONArray(suggestions));
+        return new TickerSuggestionResponse(HttpStatusCode.OK.getStatusCode(), body.toString(), null);
+    }
+}
@@ -0,0 +1,35 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.model;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The response of the /tickers/suggest?prefix=PREFIX requests, the body is already rendered
+ */
+public final class TickerSuggestionResponse implements StockValuationServiceResponse {
+
+    private final int statusCode;
+    private final String messageBody;
+    private final String errorMessage;
+
+    public TickerSuggestionResponse(final int statusCode, final String messageBody, @Nullable final String errorMessage) {
+        this.statusCode = statusCode;
+        this.messageBody = messageBody;
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    @Override
+    public String getMessageBody() {
+        return this.messageBody;
+    }
+
+    @Override
+    @Nullable
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+}
@@ -0,0 +1,11 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.model;
+
+/**
+ * The three kinds of data a valuation report is made of, one for every FMP api endpoint we use
+ */
+public enum ValuationDtoType {
+
+    DISCOUNTED_CASH_FLOW,
+    PRICE_TARGET_CONSENSUS,
+    PRICE_TARGET_SUMMARY
+}
@@ -6,6 +6,7 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceT
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import static com.szilberhornz.valueinvdata.services.stockvaluation.repository.TSQLSyntax.*;
@@ -44,12 +45,46 @@ public final class QueryMapper {
         return preparedStatement;
     }
 
+    public static PreparedStatement prepareDiscountedCashFlowDelete(final Connection connection, final String ticker) throws SQLException {
+        final PreparedStatement preparedStatement = connection.prepareStatement(DELETE_FROM_DCF);
+        preparedStatement.setString(1, ticker);
+        return preparedStatement;
+    }
+
+    public static PreparedStatement preparePriceTargetSummaryDelete(final Connection connection, final String ticker) throws SQLException {
+        final PreparedStatement preparedStatement = connection.prepareStatement(DELETE_FROM_PTS);
+        preparedStatement.setString(1, ticker);
+        return preparedStatement;
+    }
+
+    public static PreparedStatement preparePriceTargetConsensusDelete(final Connection connection, final String ticker) throws SQLException {
+        final PreparedStatement preparedStatement = connection.prepareStatement(DELETE_FROM_PTC);
+        preparedStatement.setString(1, ticker);
+        return preparedStatement;
+    }
+
     public static PreparedStatement prepareQueryForAllRecordsOnTicker(final Connection connection, final String ticker) throws SQLException {
         final PreparedStatement preparedStatement = connection.prepareStatement(QUERY_ALL_DATA_FOR_TICKER);
         preparedStatement.setString(1, ticker);
         return preparedStatement;
     }
 
+    /**
+     * A forward only, read only query for every record, or for the maxCount most recent ones if maxCount is positive.
+     * The fetch size tells the driver to stream the rows in batches instead of loading the whole table into memory
+     */
+    public static PreparedStatement prepareStreamingQueryForRecords(final Connection connection, final int maxCount, final int fetchSize) throws SQLException {
+        final PreparedStatement preparedStatement;
+        if (maxCount > 0) {
+            preparedStatement = connection.prepareStatement(QUERY_MOST_RECENT_RECORDS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setInt(1, maxCount);
+        } else {
+            preparedStatement = connection.prepareStatement(QUERY_ALL_RECORDS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
+        preparedStatement.setFetchSize(fetchSize);
+        return preparedStatement;
+    }
+
     public static PreparedStatement prepareQueryForDiscountedCashFlowData(final Connection connection, final String ticker) throws SQLException {
         final PreparedStatement preparedStatement = connection.prepareStatement(SELECT_FROM_DCF);
         preparedStatement.setString(1, ticker);
@@ -8,6 +8,10 @@ public final class TSQLSyntax {
     static final String INSERT_INTO_PTC = "INSERT INTO PriceTargetConsensusDb VALUES (?, ?, ?, ?, ?)";
     static final String INSERT_INTO_PTS = "INSERT INTO PriceTargetSummaryDb VALUES (?, ?, ?, ?, ?)";
 
+    static final String DELETE_FROM_DCF = "DELETE FROM DiscountedCashFlowDb WHERE DiscountedCashFlowDb.ticker= ?";
+    static final String DELETE_FROM_PTC = "DELETE FROM PriceTargetConsensusDb WHERE PriceTargetConsensusDb.ticker= ?";
+    static final String DELETE_FROM_PTS = "DELETE FROM PriceTargetSummaryDb WHERE PriceTargetSummaryDb.ticker= ?";
+
     static final String SELECT_FROM_DCF = "SELECT * FROM DiscountedCashFlowDb WHERE DiscountedCashFlowDb.ticker= ?";
     static final String SELECT_FROM_PTC = "SELECT * FROM PriceTargetConsensusDb WHERE PriceTargetConsensusDb.ticker= ?";
     static final String SELECT_FROM_PTS = "SELECT * FROM PriceTargetSummaryDb WHERE PriceTargetSummaryDb.ticker= ?";
@@ -17,6 +21,16 @@ public final class TSQLSyntax {
             "LEFT OUTER JOIN PriceTargetConsensusDb ON PriceTargetConsensusDb.Ticker = DiscountedCashFlowDb.Ticker " +
             "WHERE DiscountedCashFlowDb.ticker= ?";
 
+    static final String QUERY_ALL_RECORDS = "SELECT * FROM DiscountedCashFlowDb " +
+            "LEFT OUTER JOIN PriceTargetSummaryDb ON PriceTargetSummaryDb.Ticker = DiscountedCashFlowDb.Ticker " +
+            "LEFT OUTER JOIN PriceTargetConsensusDb ON PriceTargetConsensusDb.Ticker = DiscountedCashFlowDb.Ticker";
+
+    //data is only fetched or refreshed when somebody asks for it, so the latest DCF dates belong to the recently requested tickers
+    static final String QUERY_MOST_RECENT_RECORDS = "SELECT TOP (?) * FROM DiscountedCashFlowDb " +
+            "LEFT OUTER JOIN PriceTargetSummaryDb ON PriceTargetSummaryDb.Ticker = DiscountedCashFlowDb.Ticker " +
+            "LEFT OUTER JOIN PriceTargetConsensusDb ON PriceTargetConsensusDb.Ticker = DiscountedCashFlowDb.Ticker " +
+            "ORDER BY DiscountedCashFlowDb.Date DESC";
+
     private TSQLSyntax(){
         //no need to instantiate
     }
@@ -1,6 +1,7 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.repository;
 
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.BlockingExecutors;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.RecordMapper;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
@@ -15,6 +16,8 @@ import java.time.Duration;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -32,12 +35,22 @@ public final class ValuationDBRepositoryImpl implements ValuationDBRepository {
 
     private static final Logger LOG = LoggerFactory.getLogger(ValuationDBRepositoryImpl.class);
 
+    //rows fetched in one round trip when streaming records, the default of the MSSQL driver is 128
+    private static final int STREAMING_FETCH_SIZE = 1000;
+
     private final DataSource dataSource;
+    //runs the async writes, see BlockingExecutors
+    private final Executor executor;
 
     private final FailureHandler failureHandler = new FailureHandler();
 
     public ValuationDBRepositoryImpl(final DataSource dataSource) {
+        this(dataSource, BlockingExecutors.defaultAsyncPool());
+    }
+
+    public ValuationDBRepositoryImpl(final DataSource dataSource, final Executor executor) {
         this.dataSource = dataSource;
+        this.executor = executor;
     }
 
     @Override
@@ -52,6 +65,29 @@ public final class ValuationDBRepositoryImpl implements ValuationDBRepository {
         }
     }
 
+    @Override
+    public int streamRecords(final int maxCount, final Consumer<RecordHolder> consumer) {
+        LOG.info("Starting to stream {} records from the database...", maxCount > 0 ? "the " + maxCount + " most recent" : "all the");
+        final long start = System.nanoTime();
+        int count = 0;
+        try (final Connection conn = this.dataSource.getConnection();
+             final PreparedStatement preparedStatement = QueryMapper.prepareStreamingQueryForRecords(conn, maxCount, STREAMING_FETCH_SIZE);
+             final ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                final RecordHolder recordHolder = RecordMapper.newRecordFromCurrentRow(resultSet);
+                if (recordHolder != null) {
+                    consumer.accept(recordHolder);
+                    count++;
+                }
+            }
+        } catch (final SQLException sqlException) {
+            LOG.error("SQL execution to stream records failed after {} records due to the following reason:", count, sqlException);
+        }
+        final long durationInMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        LOG.info("Streaming {} records from the database took {} milliseconds", count, durationInMillis);
+        return count;
+    }
+
     @Override
     public DiscountedCashFlowDTO queryDiscountedCashFlowData(final String ticker) {
         try (final Connection conn = this.dataSource.getConnection();
@@ -90,7 +126,7 @@ public final class ValuationDBRepositoryImpl implements ValuationDBRepository {
 
     @Override
     public void insertFullRecord(final RecordHolder recordHolder) {
-        //we can run these asynchronously using the ForkJoinPool as the backing Hikari pool has 5 db connections waiting to be used
+        //we can run these asynchronously as the backing Hikari pool has 5 db connections waiting to be used
         LOG.info("Starting parallel execution of database writes...");
         final long start = System.nanoTime();
         final CompletableFuture<Void> c1 = this.retryExceptionallyAsync(() -> {
@@ -136,9 +172,18 @@ public final class ValuationDBRepositoryImpl implements ValuationDBRepository {
         });
     }
 
+    @Override
+    public void replaceRecord(final RecordHolder recordHolder) {
+        //async non-blocking, one retry
+        this.retryExceptionallyAsync(() -> {
+            this.replaceRows(recordHolder);
+            return null;
+        });
+    }
+
     private <T> CompletableFuture<T> retryExceptionallyAsync(final Supplier<T> supplier) {
         //first run the job
-        CompletableFuture<T> cf = CompletableFuture.supplyAsync(supplier);
+        CompletableFuture<T> cf = CompletableFuture.supplyAsync(supplier, this.executor);
         //rerun again in case of an AsyncRetryableException
         cf = cf.exceptionallyAsync(t -> {
             if (t.getCause() instanceof AsyncRetryableException) {
@@ -146,7 +191,7 @@ public final class ValuationDBRepositoryImpl implements ValuationDBRepository {
                 supplier.get();
             }
             return null;
-        });
+        }, this.executor);
         return cf;
     }
 
@@ -220,6 +265,43 @@ public final class ValuationDBRepositoryImpl implements ValuationDBRepository {
         }
     }
 
+    //delete and insert in one transaction, so readers never see the ticker without data
+    private void replaceRows(final RecordHolder recordHolder) {
+        final String ticker = recordHolder.getTicker();
+        try (final Connection conn = this.dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (recordHolder.getDiscountedCashFlowDto() != null) {
+                    this.replaceRow(QueryMapper.prepareDiscountedCashFlowDelete(conn, ticker),
+                            QueryMapper.prepareDiscountedCashFlowInsert(conn, recordHolder.getDiscountedCashFlowDto()), ticker, "discounted cashflow");
+                }
+                if (recordHolder.getPriceTargetSummaryDto() != null) {
+                    this.replaceRow(QueryMapper.preparePriceTargetSummaryDelete(conn, ticker),
+                            QueryMapper.preparePriceTargetSummaryInsert(conn, recordHolder.getPriceTargetSummaryDto()), ticker, "price target summary");
+                }
+                if (recordHolder.getPriceTargetConsensusDto() != null) {
+                    this.replaceRow(QueryMapper.preparePriceTargetConsensusDelete(conn, ticker),
+                            QueryMapper.preparePriceTargetConsensusInsert(conn, recordHolder.getPriceTargetConsensusDto()), ticker, "price target consensus");
+                }
+                conn.commit();
+            } catch (final SQLException sqlException) {
+                conn.rollback();
+                throw sqlException;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (final SQLException sqlException) {
+            this.failureHandler.handleFailure(sqlException, "valuation tables for ticker " + ticker);
+        }
+    }
+
+    private void replaceRow(final PreparedStatement delete, final PreparedStatement insert, final String ticker, final String logMsg) throws SQLException {
+        try (delete; insert) {
+            delete.executeUpdate();
+            this.insertRow(insert, ticker, logMsg);
+        }
+    }
+
     private void insertRow(final PreparedStatement preparedStatement, final String ticker, final String logMsg) throws SQLException {
         LOG.info("Writing {} data on ticker {} to the database...", logMsg, ticker);
         final long start = System.nanoTime();
@@ -5,6 +5,8 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.Discou
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
 
+import java.util.function.Consumer;
+
 /**
  * The required behavior that all the underlying DB implementations need to provide
  */
@@ -12,6 +14,13 @@ public interface ValuationDBRepository {
 
     RecordHolder queryRecords(String ticker);
 
+    /**
+     * Streams the records to the consumer in a single query, instead of one round trip per ticker. Used to warm up the cache
+     * @param maxCount only the maxCount most recently updated records are streamed if positive, every record otherwise
+     * @return the number of records handed to the consumer
+     */
+    int streamRecords(int maxCount, Consumer<RecordHolder> consumer);
+
     DiscountedCashFlowDTO queryDiscountedCashFlowData(String ticker);
 
     PriceTargetSummaryDTO queryPriceTargetSummaryData(String ticker);
@@ -25,4 +34,9 @@ public interface ValuationDBRepository {
     void insertPriceTargetSummaryData(PriceTargetSummaryDTO priceTargetSummaryDTO);
 
     void insertPriceTargetConsensusData(PriceTargetConsensusDTO priceTargetConsensusDTO);
+
+    /**
+     * Overwrites the rows of the ticker with the DTOs present in the record, in a single transaction. Used to persist refreshed data
+     */
+    void replaceRecord(RecordHolder recordHolder);
 }
@@ -0,0 +1,44 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * The read buffers of the connections. A socket reads straight into a direct buffer, a heap buffer would be copied to a
+ * temporary direct one first, but a direct buffer is slow to allocate and to free, so they are reused. A connection only
+ * holds on to a buffer while it has the unparsed part of a request in it, so the idle keep-alive connections don't cost
+ * a buffer each. Only the event loop of the server uses it, so it is not thread-safe.
+ */
+final class DirectBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final ArrayDeque<ByteBuffer> pooledBuffers = new ArrayDeque<>();
+
+    DirectBufferPool(final int bufferSize, final int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * @return a cleared buffer, the most recently released one, as it is the most likely to be in the cpu cache
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer pooled = this.pooledBuffers.pollLast();
+        return pooled != null ? pooled : ByteBuffer.allocateDirect(this.bufferSize);
+    }
+
+    /**
+     * Above the maximum the buffer is left to the garbage collector
+     */
+    void release(final ByteBuffer buffer) {
+        if (this.pooledBuffers.size() < this.maxPooledBuffers) {
+            buffer.clear();
+            this.pooledBuffers.addLast(buffer);
+        }
+    }
+
+    int getPooledBufferCount() {
+        return this.pooledBuffers.size();
+    }
+}
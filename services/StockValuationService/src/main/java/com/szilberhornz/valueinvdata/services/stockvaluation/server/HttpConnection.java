@@ -0,0 +1,65 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * The state of a client connection of the {@link NioHttpServer}. Everything but the responses themselves is only touched
+ * by the event loop.
+ */
+final class HttpConnection {
+
+    final SocketChannel channel;
+    final SelectionKey key;
+    //the requests read but not answered yet, in the order they came in, the responses are written in the same order
+    final ArrayDeque<PendingResponse> pipeline = new ArrayDeque<>();
+    //borrowed from the pool while it has the unparsed bytes of a request
+    @Nullable
+    ByteBuffer readBuffer;
+    //no more requests are read, the connection is closed once the pipeline is written
+    boolean closeAfterPipeline;
+    //the socket didn't take the whole response, the rest is written when it becomes writable
+    boolean writeBlocked;
+    boolean closed;
+    long lastActivityNanos;
+
+    HttpConnection(final SocketChannel channel, final SelectionKey key, final long nowNanos) {
+        this.channel = channel;
+        this.key = key;
+        this.lastActivityNanos = nowNanos;
+    }
+
+    /**
+     * The slot of a response in the pipeline, completed by the thread that routed the request
+     */
+    static final class PendingResponse {
+
+        //the status line and the headers, then the body, null until the response is ready
+        private volatile ByteBuffer[] buffers;
+
+        static PendingResponse completed(final ByteBuffer[] buffers) {
+            final PendingResponse pendingResponse = new PendingResponse();
+            pendingResponse.buffers = buffers;
+            return pendingResponse;
+        }
+
+        void complete(final ByteBuffer[] buffers) {
+            this.buffers = buffers;
+        }
+
+        @Nullable
+        ByteBuffer[] getBuffers() {
+            return this.buffers;
+        }
+
+        boolean isWritten() {
+            final ByteBuffer[] responseBuffers = this.buffers;
+            return responseBuffers != null && !responseBuffers[responseBuffers.length - 1].hasRemaining()
+                    && !responseBuffers[0].hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+/**
+ * The parts of a request the routing needs, see {@link HttpRequestParser}
+ * @param keepAlive whether the connection stays open after the response, the default of HTTP/1.1 unless the client asked
+ *                  for the opposite with a Connection header
+ */
+record HttpRequestHead(String method, String target, boolean keepAlive) {
+}
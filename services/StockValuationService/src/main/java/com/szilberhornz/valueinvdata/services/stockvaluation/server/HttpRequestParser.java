@@ -0,0 +1,242 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the HTTP/1.1 requests straight from the bytes read from the socket, without copying them into a stream or a
+ * String first. Only the method and the target of a request become Strings, the headers are compared byte by byte and
+ * only the Connection and the Content-Length are kept. A GET request rarely has a body, but if it has one, it is skipped,
+ * so the next pipelined request starts at the right byte.
+ * <p>
+ * The head of a request must fit in {@link #MAX_HEAD_SIZE} bytes, and its body in what is left of the buffer. The chunked
+ * transfer coding is not supported, nobody sends a chunked body with a GET.
+ */
+final class HttpRequestParser {
+
+    //the size of the read buffers too, so a request that doesn't fit is rejected instead of waiting for more bytes forever
+    static final int MAX_HEAD_SIZE = 8192;
+
+    private static final String GET = "GET";
+    private static final byte[] HTTP_1_1 = "HTTP/1.1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HTTP_1_0 = "HTTP/1.0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION = "connection".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE = "close".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEEP_ALIVE = "keep-alive".getBytes(StandardCharsets.US_ASCII);
+
+    private HttpRequestParser() {
+        //static helper class, no need to instantiate
+    }
+
+    /**
+     * @param buffer in read mode, only read with absolute gets. Its position is moved past the request once the whole of
+     *               it is in the buffer, and left where it was otherwise
+     * @return the head of the first request in the buffer, or null if the buffer doesn't have all of it yet
+     * @throws MalformedHttpRequestException if the request is malformed, too large or chunked
+     */
+    @Nullable
+    static HttpRequestHead parse(final ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int limit = buffer.limit();
+        final int headEnd = findHeadEnd(buffer, start, limit);
+        if (headEnd < 0) {
+            if (limit - start >= MAX_HEAD_SIZE) {
+                throw new MalformedHttpRequestException(HttpStatusCode.REQUEST_HEADER_FIELDS_TOO_LARGE.getStatusCode(),
+                        "The head of the request is larger than " + MAX_HEAD_SIZE + " bytes!");
+            }
+            return null;
+        }
+        final int requestLineEnd = lineEnd(buffer, start, headEnd);
+        final int methodEnd = indexOf(buffer, (byte) ' ', start, requestLineEnd);
+        final int targetEnd = methodEnd < 0 ? -1 : indexOf(buffer, (byte) ' ', methodEnd + 1, requestLineEnd);
+        if (methodEnd <= start || targetEnd <= methodEnd + 1) {
+            throw malformed("The request line is malformed!");
+        }
+        final String method = parseMethod(buffer, start, methodEnd);
+        final String target = parseTarget(buffer, methodEnd + 1, targetEnd);
+        boolean keepAlive;
+        if (equalsIgnoreCase(buffer, targetEnd + 1, requestLineEnd, HTTP_1_1)) {
+            keepAlive = true;
+        } else if (equalsIgnoreCase(buffer, targetEnd + 1, requestLineEnd, HTTP_1_0)) {
+            keepAlive = false;
+        } else {
+            throw malformed("Only HTTP/1.1 and HTTP/1.0 requests are supported!");
+        }
+        long contentLength = 0;
+        //the head ends with an empty line, headEnd - 2 is where it starts
+        int lineStart = requestLineEnd + 2;
+        while (lineStart < headEnd - 2) {
+            final int lineEnd = lineEnd(buffer, lineStart, headEnd);
+            final int colon = indexOf(buffer, (byte) ':', lineStart, lineEnd);
+            if (colon <= lineStart) {
+                throw malformed("A header line is malformed!");
+            }
+            final int valueStart = skipWhitespace(buffer, colon + 1, lineEnd);
+            final int valueEnd = trimWhitespace(buffer, valueStart, lineEnd);
+            if (equalsIgnoreCase(buffer, lineStart, colon, CONNECTION)) {
+                if (hasToken(buffer, valueStart, valueEnd, CLOSE)) {
+                    keepAlive = false;
+                } else if (hasToken(buffer, valueStart, valueEnd, KEEP_ALIVE)) {
+                    keepAlive = true;
+                }
+            } else if (equalsIgnoreCase(buffer, lineStart, colon, CONTENT_LENGTH)) {
+                contentLength = parseContentLength(buffer, valueStart, valueEnd);
+            } else if (equalsIgnoreCase(buffer, lineStart, colon, TRANSFER_ENCODING)) {
+                throw new MalformedHttpRequestException(HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(),
+                        "Transfer codings are not supported!");
+            }
+            lineStart = lineEnd + 2;
+        }
+        if (headEnd - start + contentLength > buffer.capacity()) {
+            throw new MalformedHttpRequestException(HttpStatusCode.CONTENT_TOO_LARGE.getStatusCode(),
+                    "The request is larger than " + buffer.capacity() + " bytes!");
+        }
+        if (limit - headEnd < contentLength) {
+            return null;
+        }
+        buffer.position(headEnd + (int) contentLength);
+        return new HttpRequestHead(method, target, keepAlive);
+    }
+
+    //the index right after the empty line that ends the head, or -1 if it is not in the buffer yet
+    private static int findHeadEnd(final ByteBuffer buffer, final int start, final int limit) {
+        for (int i = start; i + 3 < limit; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i + 4;
+            }
+        }
+        return -1;
+    }
+
+    //the index of the CR of the CRLF that ends the line, a lone CR or LF inside a line makes the request malformed
+    private static int lineEnd(final ByteBuffer buffer, final int start, final int headEnd) {
+        for (int i = start; i < headEnd; i++) {
+            final byte b = buffer.get(i);
+            if (b == '\r' || b == '\n') {
+                if (b == '\n' || buffer.get(i + 1) != '\n') {
+                    throw malformed("A line of the request is not terminated by a CRLF!");
+                }
+                return i;
+            }
+        }
+        throw malformed("A line of the request is not terminated by a CRLF!");
+    }
+
+    private static String parseMethod(final ByteBuffer buffer, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b < 'A' || b > 'Z') {
+                throw malformed("The request method is malformed!");
+            }
+        }
+        //nearly every request is a GET, they all share the constant
+        if (end - start == 3 && buffer.get(start) == 'G' && buffer.get(start + 1) == 'E' && buffer.get(start + 2) == 'T') {
+            return GET;
+        }
+        return ascii(buffer, start, end);
+    }
+
+    private static String parseTarget(final ByteBuffer buffer, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            //no control characters, no whitespace and nothing outside US-ASCII, those must be percent-encoded
+            if (b <= ' ' || b == 127) {
+                throw malformed("The request target is malformed!");
+            }
+        }
+        return ascii(buffer, start, end);
+    }
+
+    private static long parseContentLength(final ByteBuffer buffer, final int start, final int end) {
+        if (start == end || end - start > 18) {
+            throw malformed("The Content-Length header is malformed!");
+        }
+        long contentLength = 0;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw malformed("The Content-Length header is malformed!");
+            }
+            contentLength = 10 * contentLength + (b - '0');
+        }
+        return contentLength;
+    }
+
+    //whether the comma-separated header value has the token, case-insensitive
+    private static boolean hasToken(final ByteBuffer buffer, final int start, final int end, final byte[] token) {
+        int tokenStart = start;
+        while (tokenStart < end) {
+            int tokenEnd = indexOf(buffer, (byte) ',', tokenStart, end);
+            if (tokenEnd < 0) {
+                tokenEnd = end;
+            }
+            final int trimmedStart = skipWhitespace(buffer, tokenStart, tokenEnd);
+            if (equalsIgnoreCase(buffer, trimmedStart, trimWhitespace(buffer, trimmedStart, tokenEnd), token)) {
+                return true;
+            }
+            tokenStart = tokenEnd + 1;
+        }
+        return false;
+    }
+
+    private static int indexOf(final ByteBuffer buffer, final byte b, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(final ByteBuffer buffer, final int start, final int end) {
+        int i = start;
+        while (i < end && isWhitespace(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimWhitespace(final ByteBuffer buffer, final int start, final int end) {
+        int i = end;
+        while (i > start && isWhitespace(buffer.get(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    //the expected bytes are lower-cased
+    private static boolean equalsIgnoreCase(final ByteBuffer buffer, final int start, final int end, final byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (toLowerCase(buffer.get(start + i)) != toLowerCase(expected[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(final byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static String ascii(final ByteBuffer buffer, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static MalformedHttpRequestException malformed(final String message) {
+        return new MalformedHttpRequestException(HttpStatusCode.BAD_REQUEST.getStatusCode(), message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import java.net.URI;
+
+/**
+ * Turns a request into its response, independent of the server engine that read the request and writes the response,
+ * see {@link NioHttpServer}. It may block, the engines call it on their request executor.
+ */
+@FunctionalInterface
+public interface HttpRequestRouter {
+
+    /**
+     * @param method the method of the request, as sent
+     * @param requestURI the request target, the path and the query of it are decoded by the URI
+     */
+    HttpResponseMessage route(String method, URI requestURI);
+}
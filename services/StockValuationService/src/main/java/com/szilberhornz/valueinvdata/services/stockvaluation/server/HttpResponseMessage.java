@@ -0,0 +1,7 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+/**
+ * The status code and the encoded body of a response. The body may be shared with the cache, it is never modified.
+ */
+public record HttpResponseMessage(int statusCode, byte[] body) {
+}
@@ -0,0 +1,22 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * A server engine serving the requests of the clients, either the com.sun HttpServer, see {@link JdkHttpServerEngine}, or
+ * the {@link NioHttpServer}
+ */
+public interface HttpServerEngine extends Closeable {
+
+    void start() throws IOException;
+
+    /**
+     * @return the address the server listens on, with the actual port
+     */
+    InetSocketAddress getAddress();
+
+    @Override
+    void close();
+}
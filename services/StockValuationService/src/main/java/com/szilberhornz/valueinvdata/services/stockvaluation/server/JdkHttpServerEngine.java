@@ -0,0 +1,42 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+
+/**
+ * The com.sun HttpServer, with a single handler for every path
+ */
+public final class JdkHttpServerEngine implements HttpServerEngine {
+
+    private final HttpServer httpServer;
+
+    /**
+     * @param httpServer bound, but not started yet
+     */
+    public JdkHttpServerEngine(final HttpServer httpServer, final HttpHandler requestHandler, final Executor requestExecutor) {
+        this.httpServer = httpServer;
+        this.httpServer.createContext("/", requestHandler);
+        this.httpServer.setExecutor(requestExecutor);
+    }
+
+    @Override
+    public void start() {
+        this.httpServer.start();
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return this.httpServer.getAddress();
+    }
+
+    /**
+     * Stops right away, the exchanges in progress are dropped
+     */
+    @Override
+    public void close() {
+        this.httpServer.stop(0);
+    }
+}
@@ -0,0 +1,19 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+/**
+ * The request can't be parsed, or it uses a feature of HTTP/1.1 the server doesn't support. It is answered with the
+ * status code and the connection is closed, as there is no telling where the next request would start.
+ */
+public class MalformedHttpRequestException extends RuntimeException {
+
+    private final int statusCode;
+
+    public MalformedHttpRequestException(final int statusCode, final String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+}
@@ -0,0 +1,483 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpConnection.PendingResponse;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An HTTP/1.1 server engine on java.nio selectors, the alternative of the com.sun HttpServer for a lot of concurrent
+ * connections. An event loop thread accepts the connections and reads the requests without blocking, straight into
+ * pooled direct buffers, see {@link DirectBufferPool}, and parses them there, see {@link HttpRequestParser}. The requests
+ * are routed by the same {@link HttpRequestRouter} on the request executor, as the routing may block on the saga, and the
+ * responses are written back by the event loop with a gathering write of the headers and the cached body, without copying
+ * them into a stream first.
+ * <p>
+ * The connections are kept alive, and the requests of a connection may be pipelined: up to
+ * {@link #MAX_PIPELINED_REQUESTS} of them are routed at the same time, and their responses are written in the order of the
+ * requests, more of them in a single write when they are ready. Beyond that the connection isn't read until the first
+ * responses are written. A connection with nothing to do is closed after the idle timeout.
+ * <p>
+ * A single event loop accepting and serving every connection becomes the bottleneck on a large machine, so there can be
+ * more of them. Each one listens on the same port with its own socket, with SO_REUSEPORT, and the kernel spreads the new
+ * connections between the sockets, so the loops share nothing but the router and the request executor. A connection is
+ * served by the loop that accepted it for its whole life. Java can't pin a thread to a core, the loops are simply as many
+ * threads, and the operating system schedules them, taskset or numactl can restrict the process to a set of cores.
+ */
+public final class NioHttpServer implements HttpServerEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioHttpServer.class);
+
+    static final int MAX_PIPELINED_REQUESTS = 16;
+    //a buffer per connection in the middle of a request, the rest of them are allocated on demand and not kept
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    //the most connections accepted on a single wake-up, so a flood of them doesn't hold up the reads and writes
+    private static final int MAX_ACCEPTS_PER_WAKE_UP = 256;
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = 1000;
+    private static final byte[] INVALID_REQUEST_TARGET = "Invalid request target!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INTERNAL_SERVER_ERROR = "The server encountered an unexpected internal error!".getBytes(StandardCharsets.UTF_8);
+
+    private final InetSocketAddress address;
+    private final int backlog;
+    private final int eventLoopCount;
+    private final HttpRequestRouter router;
+    private final Executor requestExecutor;
+    private final long idleTimeoutNanos;
+    private final List<EventLoop> eventLoops = new ArrayList<>();
+    private InetSocketAddress boundAddress;
+    private volatile boolean running;
+
+    /**
+     * A single event loop, see {@link #NioHttpServer(InetSocketAddress, int, int, HttpRequestRouter, Executor, Duration)}
+     */
+    public NioHttpServer(final InetSocketAddress address, final int backlog, final HttpRequestRouter router,
+                         final Executor requestExecutor, final Duration idleTimeout) {
+        this(address, backlog, 1, router, requestExecutor, idleTimeout);
+    }
+
+    /**
+     * @param address the port 0 binds to a free port, see {@link #getAddress()}
+     * @param backlog the accept backlog of every listening socket
+     * @param eventLoopCount the number of event loops, each listening on the address with its own socket if there are
+     *                       more of them, see {@link #isMultiListenerSupported()}
+     * @param requestExecutor runs the router, its threads block while the saga is running
+     */
+    public NioHttpServer(final InetSocketAddress address, final int backlog, final int eventLoopCount, final HttpRequestRouter router,
+                         final Executor requestExecutor, final Duration idleTimeout) {
+        if (eventLoopCount < 1) {
+            throw new IllegalArgumentException("The server needs at least one event loop!");
+        }
+        this.address = address;
+        this.backlog = backlog;
+        this.eventLoopCount = eventLoopCount;
+        this.router = router;
+        this.requestExecutor = requestExecutor;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * @return whether more server sockets can listen on the same port, with SO_REUSEPORT. Linux and the BSDs support it,
+     * Windows doesn't
+     */
+    public static boolean isMultiListenerSupported() {
+        try (final ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (final IOException exception) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (this.running) {
+            throw new IllegalStateException("The server is already started!");
+        }
+        int loopCount = this.eventLoopCount;
+        if (loopCount > 1 && !isMultiListenerSupported()) {
+            LOG.warn("SO_REUSEPORT is not supported on this platform, starting a single event loop instead of {}!", loopCount);
+            loopCount = 1;
+        }
+        try {
+            for (int i = 0; i < loopCount; i++) {
+                //the first socket picks the port if it is 0, the others bind to the same one
+                final InetSocketAddress loopAddress = i == 0 ? this.address
+                        : new InetSocketAddress(this.address.getAddress(), this.boundAddress.getPort());
+                final EventLoop eventLoop = new EventLoop(loopAddress, loopCount > 1);
+                this.eventLoops.add(eventLoop);
+                if (i == 0) {
+                    this.boundAddress = (InetSocketAddress) eventLoop.serverChannel.getLocalAddress();
+                }
+            }
+        } catch (final IOException exception) {
+            this.eventLoops.forEach(EventLoop::closeEverything);
+            this.eventLoops.clear();
+            throw exception;
+        }
+        this.running = true;
+        for (int i = 0; i < this.eventLoops.size(); i++) {
+            final EventLoop eventLoop = this.eventLoops.get(i);
+            eventLoop.thread = Thread.ofPlatform().name("nio-http-event-loop-" + i).start(eventLoop);
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return this.boundAddress;
+    }
+
+    /**
+     * @return the number of event loops running, fewer than asked for if SO_REUSEPORT is not supported
+     */
+    public int getEventLoopCount() {
+        return this.eventLoops.size();
+    }
+
+    /**
+     * Stops accepting and closes every connection, the responses still being routed are dropped
+     */
+    @Override
+    public synchronized void close() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        for (final EventLoop eventLoop : this.eventLoops) {
+            eventLoop.selector.wakeup();
+        }
+        try {
+            for (final EventLoop eventLoop : this.eventLoops) {
+                eventLoop.thread.join();
+            }
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        this.eventLoops.clear();
+    }
+
+    private ByteBuffer[] respond(final HttpRequestHead head) {
+        HttpResponseMessage response;
+        try {
+            response = this.router.route(head.method(), new URI(head.target()));
+        } catch (final URISyntaxException exception) {
+            response = new HttpResponseMessage(HttpStatusCode.BAD_REQUEST.getStatusCode(), INVALID_REQUEST_TARGET);
+        } catch (final RuntimeException exception) {
+            LOG.error("Failed to route the request {} {}!", head.method(), head.target(), exception);
+            response = new HttpResponseMessage(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), INTERNAL_SERVER_ERROR);
+        }
+        return encode(response.statusCode(), response.body(), head.keepAlive());
+    }
+
+    /**
+     * An event loop with its own listening socket, selector and buffers. It accepts its share of the connections, the kernel
+     * spreads them between the sockets listening on the port, and it serves them until they are closed.
+     */
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final ServerSocketChannel serverChannel;
+        private final DirectBufferPool bufferPool = new DirectBufferPool(HttpRequestParser.MAX_HEAD_SIZE, MAX_POOLED_BUFFERS);
+        //the connections with a response routed since the last wake-up, the same connection may be in it more than once
+        private final Queue<HttpConnection> routedConnections = new ConcurrentLinkedQueue<>();
+        //a single wake-up for any number of routed responses, a wake-up is a system call
+        private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+        //the buffers of a gathering write
+        private final ByteBuffer[] gatheredBuffers = new ByteBuffer[2 * MAX_PIPELINED_REQUESTS];
+        private Thread thread;
+
+        private EventLoop(final InetSocketAddress address, final boolean reusePort) throws IOException {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            try {
+                this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                if (reusePort) {
+                    this.serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                this.serverChannel.bind(address, NioHttpServer.this.backlog);
+                this.serverChannel.configureBlocking(false);
+                this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+            } catch (final IOException | RuntimeException exception) {
+                closeQuietly(this.serverChannel);
+                closeQuietly(this.selector);
+                throw exception;
+            }
+        }
+
+        @Override
+        public void run() {
+            long nextIdleCheck = System.nanoTime() + IDLE_CHECK_INTERVAL_MILLIS * 1_000_000;
+            while (NioHttpServer.this.running) {
+                try {
+                    this.selector.select(this::handleReadyKey, IDLE_CHECK_INTERVAL_MILLIS);
+                    this.wakeUpPending.set(false);
+                    HttpConnection routed;
+                    while ((routed = this.routedConnections.poll()) != null) {
+                        if (!routed.closed) {
+                            this.flush(routed);
+                        }
+                    }
+                    final long now = System.nanoTime();
+                    if (now - nextIdleCheck >= 0) {
+                        this.closeIdleConnections(now);
+                        nextIdleCheck = now + IDLE_CHECK_INTERVAL_MILLIS * 1_000_000;
+                    }
+                } catch (final IOException | RuntimeException exception) {
+                    //a single failing connection is closed where it fails, this is the selector itself
+                    LOG.error("The event loop of the http server failed, it carries on!", exception);
+                }
+            }
+            this.closeEverything();
+        }
+
+        private void handleReadyKey(final SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                this.accept();
+                return;
+            }
+            final HttpConnection connection = (HttpConnection) key.attachment();
+            if (key.isWritable()) {
+                this.flush(connection);
+            }
+            if (!connection.closed && key.isReadable()) {
+                this.read(connection);
+            }
+        }
+
+        private void accept() {
+            for (int i = 0; i < MAX_ACCEPTS_PER_WAKE_UP; i++) {
+                SocketChannel channel = null;
+                try {
+                    channel = this.serverChannel.accept();
+                    if (channel == null) {
+                        return;
+                    }
+                    channel.configureBlocking(false);
+                    //the responses are written whole, there is nothing to wait for
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    final SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+                    key.attach(new HttpConnection(channel, key, System.nanoTime()));
+                } catch (final IOException exception) {
+                    LOG.warn("Failed to accept a connection!", exception);
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        private void read(final HttpConnection connection) {
+            if (connection.readBuffer == null) {
+                connection.readBuffer = this.bufferPool.acquire();
+            }
+            final int read;
+            try {
+                read = connection.channel.read(connection.readBuffer);
+            } catch (final IOException exception) {
+                this.close(connection);
+                return;
+            }
+            if (read > 0) {
+                connection.lastActivityNanos = System.nanoTime();
+                this.parseRequests(connection);
+            } else if (read < 0) {
+                //the client is done sending, the requests it sent are still answered
+                connection.closeAfterPipeline = true;
+                this.releaseReadBuffer(connection);
+            } else if (connection.readBuffer.position() == 0) {
+                this.releaseReadBuffer(connection);
+            }
+            this.flush(connection);
+        }
+
+        private void parseRequests(final HttpConnection connection) {
+            final ByteBuffer buffer = connection.readBuffer;
+            if (buffer == null) {
+                return;
+            }
+            buffer.flip();
+            try {
+                while (!connection.closeAfterPipeline && connection.pipeline.size() < MAX_PIPELINED_REQUESTS) {
+                    final HttpRequestHead head = HttpRequestParser.parse(buffer);
+                    if (head == null) {
+                        break;
+                    }
+                    this.route(connection, head);
+                    connection.closeAfterPipeline = !head.keepAlive();
+                }
+            } catch (final MalformedHttpRequestException exception) {
+                //there is no telling where the next request would start, so this is the last one
+                LOG.info("Rejecting a malformed request with status code {}: {}", exception.getStatusCode(), exception.getMessage());
+                connection.pipeline.add(PendingResponse.completed(encode(exception.getStatusCode(),
+                        exception.getMessage().getBytes(StandardCharsets.UTF_8), false)));
+                connection.closeAfterPipeline = true;
+            }
+            buffer.compact();
+            if (buffer.position() == 0 || connection.closeAfterPipeline) {
+                this.releaseReadBuffer(connection);
+            }
+        }
+
+        private void route(final HttpConnection connection, final HttpRequestHead head) {
+            final PendingResponse pendingResponse = new PendingResponse();
+            connection.pipeline.add(pendingResponse);
+            try {
+                NioHttpServer.this.requestExecutor.execute(() -> {
+                    pendingResponse.complete(NioHttpServer.this.respond(head));
+                    this.routedConnections.add(connection);
+                    if (this.wakeUpPending.compareAndSet(false, true)) {
+                        this.selector.wakeup();
+                    }
+                });
+            } catch (final RejectedExecutionException exception) {
+                LOG.error("The request executor rejected a request, the server is most likely shutting down!", exception);
+                pendingResponse.complete(encode(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), INTERNAL_SERVER_ERROR, false));
+                connection.closeAfterPipeline = true;
+            }
+        }
+
+        //writes the ready responses at the head of the pipeline, then reads the requests held back while the pipeline was full
+        private void flush(final HttpConnection connection) {
+            boolean wroteResponses = true;
+            while (wroteResponses && !connection.closed) {
+                wroteResponses = this.writeReadyResponses(connection);
+                if (wroteResponses && connection.readBuffer != null && !connection.closeAfterPipeline) {
+                    this.parseRequests(connection);
+                }
+            }
+            if (connection.closed) {
+                return;
+            }
+            if (connection.closeAfterPipeline && connection.pipeline.isEmpty()) {
+                this.close(connection);
+                return;
+            }
+            int interestOps = 0;
+            if (!connection.closeAfterPipeline && connection.pipeline.size() < MAX_PIPELINED_REQUESTS) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            if (connection.writeBlocked) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+            if (connection.key.interestOps() != interestOps) {
+                connection.key.interestOps(interestOps);
+            }
+        }
+
+        /**
+         * @return whether any of the responses was written whole
+         */
+        private boolean writeReadyResponses(final HttpConnection connection) {
+            int bufferCount = 0;
+            for (final PendingResponse pendingResponse : connection.pipeline) {
+                final ByteBuffer[] buffers = pendingResponse.getBuffers();
+                if (buffers == null) {
+                    break;
+                }
+                this.gatheredBuffers[bufferCount++] = buffers[0];
+                this.gatheredBuffers[bufferCount++] = buffers[1];
+            }
+            if (bufferCount == 0) {
+                connection.writeBlocked = false;
+                return false;
+            }
+            try {
+                if (connection.channel.write(this.gatheredBuffers, 0, bufferCount) > 0) {
+                    connection.lastActivityNanos = System.nanoTime();
+                }
+            } catch (final IOException exception) {
+                this.close(connection);
+                return false;
+            } finally {
+                Arrays.fill(this.gatheredBuffers, 0, bufferCount, null);
+            }
+            boolean wroteResponses = false;
+            while (!connection.pipeline.isEmpty() && connection.pipeline.peekFirst().isWritten()) {
+                connection.pipeline.pollFirst();
+                wroteResponses = true;
+            }
+            final PendingResponse first = connection.pipeline.peekFirst();
+            connection.writeBlocked = first != null && first.getBuffers() != null;
+            return wroteResponses;
+        }
+
+        private void closeIdleConnections(final long now) {
+            for (final SelectionKey key : this.selector.keys()) {
+                if (key.attachment() instanceof final HttpConnection connection && now - connection.lastActivityNanos > NioHttpServer.this.idleTimeoutNanos) {
+                    //a connection waiting on the saga is not idle, the saga has its own timeout
+                    final PendingResponse first = connection.pipeline.peekFirst();
+                    if (first == null || first.getBuffers() != null) {
+                        this.close(connection);
+                    }
+                }
+            }
+        }
+
+        private void releaseReadBuffer(final HttpConnection connection) {
+            if (connection.readBuffer != null) {
+                this.bufferPool.release(connection.readBuffer);
+                connection.readBuffer = null;
+            }
+        }
+
+        private void close(final HttpConnection connection) {
+            connection.closed = true;
+            connection.pipeline.clear();
+            connection.key.cancel();
+            closeQuietly(connection.channel);
+            this.releaseReadBuffer(connection);
+        }
+
+        void closeEverything() {
+            for (final SelectionKey key : this.selector.keys()) {
+                if (key.attachment() instanceof final HttpConnection connection) {
+                    this.close(connection);
+                }
+            }
+            closeQuietly(this.serverChannel);
+            closeQuietly(this.selector);
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (final IOException exception) {
+            LOG.debug("Failed to close {}", closeable, exception);
+        }
+    }
+
+    /**
+     * @return the status line and the headers, then the body, to be written with a single gathering write
+     */
+    static ByteBuffer[] encode(final int statusCode, final byte[] body, final boolean keepAlive) {
+        final String head = "HTTP/1.1 " + statusCode + " " + HttpStatusCode.reasonPhraseOf(statusCode) + "\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + (keepAlive ? "Connection: keep-alive\r\n\r\n" : "Connection: close\r\n\r\n");
+        return new ByteBuffer[]{ByteBuffer.wrap(head.getBytes(StandardCharsets.US_ASCII)), ByteBuffer.wrap(body)};
+    }
+}
@@ -0,0 +1,39 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executors of the blocking work: the steps of the valuation report saga, the database queries and writes, and the
+ * FMP api calls, all of which spend most of their time waiting on a socket.
+ */
+public final class BlockingExecutors {
+
+    private static final Executor DEFAULT_ASYNC_POOL = new CompletableFuture<Void>().defaultExecutor();
+
+    private BlockingExecutors() {
+        //static helper class, no need to instantiate
+    }
+
+    /**
+     * @return the executor CompletableFuture uses when it is not given one: the common ForkJoinPool, or a new platform
+     * thread per task if the machine has a single core. Its few threads are blocked by the waiting, so it only suits a
+     * low number of concurrent requests
+     */
+    public static Executor defaultAsyncPool() {
+        return DEFAULT_ASYNC_POOL;
+    }
+
+    /**
+     * A new virtual thread for every task. A blocked virtual thread releases its carrier thread, so thousands of requests
+     * can wait on the database and the FMP api at the same time, bounded only by the connection pool and the rate limits.
+     * Blocking inside a synchronized block still pins the carrier thread on Java 21, so the blocking calls must not be
+     * made while holding a monitor.
+     * @param namePrefix the threads are named with it and a counter, so they can be told apart in a thread dump
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(final String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+}
@@ -2,22 +2,44 @@ package com.szilberhornz.valueinvdata.services.stockvaluation.utility;
 
 public enum HttpStatusCode {
 
-    OK(200),
+    OK(200, "OK"),
 
-    UNAUTHORIZED(401),
-    FORBIDDEN(403),
-    NOT_FOUND(404),
-    TOO_MANY_REQUESTS(429),
+    BAD_REQUEST(400, "Bad Request"),
+    UNAUTHORIZED(401, "Unauthorized"),
+    FORBIDDEN(403, "Forbidden"),
+    NOT_FOUND(404, "Not Found"),
+    CONTENT_TOO_LARGE(413, "Content Too Large"),
+    TOO_MANY_REQUESTS(429, "Too Many Requests"),
+    REQUEST_HEADER_FIELDS_TOO_LARGE(431, "Request Header Fields Too Large"),
 
-    INTERNAL_SERVER_ERROR(500);
+    INTERNAL_SERVER_ERROR(500, "Internal Server Error"),
+    NOT_IMPLEMENTED(501, "Not Implemented");
 
     final int statusCodeNumber;
+    final String reasonPhrase;
 
-    HttpStatusCode(final int statusCodeNumber) {
+    HttpStatusCode(final int statusCodeNumber, final String reasonPhrase) {
         this.statusCodeNumber = statusCodeNumber;
+        this.reasonPhrase = reasonPhrase;
     }
 
     public int getStatusCode(){
         return this.statusCodeNumber;
     }
+
+    public String getReasonPhrase() {
+        return this.reasonPhrase;
+    }
+
+    /**
+     * @return the reason phrase of the status line, empty for the status codes the app never sends, it is optional anyway
+     */
+    public static String reasonPhraseOf(final int statusCode) {
+        for (final HttpStatusCode httpStatusCode : values()) {
+            if (httpStatusCode.statusCodeNumber == statusCode) {
+                return httpStatusCode.reasonPhrase;
+            }
+        }
+        return "";
+    }
 }
@@ -1,5 +1,6 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.utility;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.FillSource;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
@@ -75,6 +76,19 @@ public final class RecordMapper {
         return tempList.isEmpty() ? null : constructRecord(tempList);
     }
 
+    /**
+     * Maps the row the ResultSet currently points at, without moving the cursor. Used when streaming many records
+     */
+    @Nullable
+    public static RecordHolder newRecordFromCurrentRow(final ResultSet resultSet) throws SQLException {
+        final int expectedSize = 14;
+        final List<Object> tempList = new ArrayList<>(expectedSize);
+        for (int i = 1; i <= expectedSize; i++) {
+            tempList.add(resultSet.getObject(i));
+        }
+        return constructRecord(tempList);
+    }
+
     @Nullable
     public static DiscountedCashFlowDTO newDcfDto(final ResultSet resultSet) throws SQLException {
         final int expectedSize = 4;
@@ -126,7 +140,8 @@ public final class RecordMapper {
             return null;
         } else {
             final String ticker = getTicker(dcfDto, ptsDto, ptcDto);
-            return RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto);
+            //the data is as old as the row, not as the query
+            return RecordHolder.newPersistedRecordHolder(ticker, dcfDto, ptcDto, ptsDto, FillSource.DATABASE, 1);
         }
     }
 
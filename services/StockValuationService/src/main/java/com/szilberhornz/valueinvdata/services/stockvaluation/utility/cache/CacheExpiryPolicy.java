@@ -0,0 +1,76 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides how fresh the DTOs of a cached {@link RecordHolder} are. Every DTO type has its own time to live, as the
+ * discounted cashflow moves with the stock price every day, while the analyst price targets change a lot less often.
+ * <p>
+ * A DTO older than its TTL is stale. Stale data is still good enough to be served while it is inside the grace period
+ * after its TTL, so the caller doesn't have to wait for the FMP api, as long as it refreshes the data in the background.
+ * A DTO older than its TTL plus the grace period is expired, and should not be served without trying to refresh it first.
+ */
+public final class CacheExpiryPolicy {
+
+    public enum Freshness { FRESH, STALE, EXPIRED }
+
+    //keeps the original behavior of the cache, nothing ever gets stale
+    public static final CacheExpiryPolicy NEVER_EXPIRES = new CacheExpiryPolicy(Duration.ofMillis(Long.MAX_VALUE),
+            Duration.ofMillis(Long.MAX_VALUE), Duration.ofMillis(Long.MAX_VALUE), Duration.ZERO);
+
+    private final Map<ValuationDtoType, Long> timeToLiveInMillis = new EnumMap<>(ValuationDtoType.class);
+    private final long gracePeriodInMillis;
+
+    public CacheExpiryPolicy(final Duration dcfTimeToLive, final Duration ptcTimeToLive, final Duration ptsTimeToLive, final Duration gracePeriod) {
+        this.timeToLiveInMillis.put(ValuationDtoType.DISCOUNTED_CASH_FLOW, dcfTimeToLive.toMillis());
+        this.timeToLiveInMillis.put(ValuationDtoType.PRICE_TARGET_CONSENSUS, ptcTimeToLive.toMillis());
+        this.timeToLiveInMillis.put(ValuationDtoType.PRICE_TARGET_SUMMARY, ptsTimeToLive.toMillis());
+        this.gracePeriodInMillis = gracePeriod.toMillis();
+    }
+
+    /**
+     * @return the freshness of the least fresh DTO of the record. DTOs that are not present are ignored
+     */
+    public Freshness freshnessOf(final RecordHolder recordHolder, final long nowInMillis) {
+        Freshness result = Freshness.FRESH;
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            final Freshness freshness = this.freshnessOf(recordHolder, dtoType, nowInMillis);
+            if (freshness.compareTo(result) > 0) {
+                result = freshness;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the types of the DTOs in the record that are stale or expired
+     */
+    public Set<ValuationDtoType> staleDtoTypes(final RecordHolder recordHolder, final long nowInMillis) {
+        final Set<ValuationDtoType> result = EnumSet.noneOf(ValuationDtoType.class);
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            if (this.freshnessOf(recordHolder, dtoType, nowInMillis) != Freshness.FRESH) {
+                result.add(dtoType);
+            }
+        }
+        return result;
+    }
+
+    private Freshness freshnessOf(final RecordHolder recordHolder, final ValuationDtoType dtoType, final long nowInMillis) {
+        if (!recordHolder.hasDto(dtoType)) {
+            return Freshness.FRESH;
+        }
+        final long age = nowInMillis - recordHolder.getLoadedAtMillis(dtoType);
+        final long timeToLive = this.timeToLiveInMillis.get(dtoType);
+        if (age <= timeToLive) {
+            return Freshness.FRESH;
+        }
+        //careful with the overflow, the TTL can be "forever"
+        return age - timeToLive <= this.gracePeriodInMillis ? Freshness.STALE : Freshness.EXPIRED;
+    }
+}
@@ -0,0 +1,152 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the maintenance of the caches on a single dedicated daemon thread, so neither the request threads nor the common
+ * ForkJoinPool pay for it. A maintenance run drains the buffered accesses and applies the eviction policy of the
+ * ValuationServerCache (see {@link ValuationServerCache#cleanUp()}), then drops the expired absences from the
+ * NegativeResultCache.
+ * <p>
+ * The maintenance runs on a fixed cadence, and also right away when the cache crosses one of its pressure thresholds,
+ * like the rebalance threshold or the heap budget of the LFU cache. Requests that come in while a run is already pending
+ * are coalesced into that run. The cached valuations themselves are not expired here: the {@link CacheExpiryPolicy}
+ * refreshes them on request, and dropping them would only send the next request to the database for the same old data.
+ * <p>
+ * Every run is measured, the last one is available as a {@link MaintenanceRun}, next to the totals since the start.
+ */
+public class CacheMaintenanceScheduler implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheMaintenanceScheduler.class);
+
+    private final ValuationServerCache cache;
+    private final NegativeResultCache negativeResultCache;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Runnable> maintenanceTasks = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean runPending = new AtomicBoolean(false);
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong totalEvictedCount = new AtomicLong();
+    private volatile MaintenanceRun lastRun = null;
+
+    public CacheMaintenanceScheduler(final ValuationServerCache cache, final NegativeResultCache negativeResultCache) {
+        this.cache = cache;
+        this.negativeResultCache = negativeResultCache;
+    }
+
+    /**
+     * Starts the periodic maintenance, and takes over the maintenance the cache requests when it is under pressure
+     */
+    public void start(final Duration interval) {
+        final long intervalInMillis = interval.toMillis();
+        this.cache.setMaintenanceRequester(this::requestMaintenance);
+        this.scheduler.scheduleWithFixedDelay(this::runMaintenanceSafely, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+        LOG.info("Cache maintenance runs every {}", interval);
+    }
+
+    /**
+     * Adds a task to run at the start of every maintenance run, before the eviction, like adjusting the bounds of the cache
+     */
+    public void addMaintenanceTask(final Runnable maintenanceTask) {
+        this.maintenanceTasks.add(maintenanceTask);
+    }
+
+    /**
+     * Schedules a maintenance run right away, unless one is already pending. Never blocks, it is called on the request threads
+     */
+    public void requestMaintenance() {
+        if (this.runPending.compareAndSet(false, true)) {
+            try {
+                this.scheduler.execute(this::runMaintenanceSafely);
+            } catch (final RejectedExecutionException exception) {
+                //shutting down, there is nothing left to maintain
+                this.runPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the maintenance on the calling thread
+     * @return the measurements of the run
+     */
+    public MaintenanceRun runMaintenance() {
+        //cleared first, so a request coming in during the run gets a run of its own
+        this.runPending.set(false);
+        this.maintenanceTasks.forEach(Runnable::run);
+        final int sizeBefore = this.cache.size();
+        final long evictionCountBefore = this.cache.getEvictionCount();
+        final long start = System.nanoTime();
+        this.cache.cleanUp();
+        final int expiredAbsenceCount = this.negativeResultCache.purgeExpired();
+        final long durationInMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        final MaintenanceRun run = new MaintenanceRun(durationInMillis, this.cache.getEvictionCount() - evictionCountBefore,
+                sizeBefore, this.cache.size(), expiredAbsenceCount);
+        this.lastRun = run;
+        this.runCount.incrementAndGet();
+        this.totalEvictedCount.addAndGet(run.evictedCount());
+        LOG.debug("Cache maintenance took {} milliseconds, evicted {} entries, the size went from {} to {}, {} expired absences dropped",
+                durationInMillis, run.evictedCount(), sizeBefore, run.sizeAfter(), expiredAbsenceCount);
+        return run;
+    }
+
+    /**
+     * @return the measurements of the last maintenance run, or null if there was none yet
+     */
+    @Nullable
+    public MaintenanceRun getLastRun() {
+        return this.lastRun;
+    }
+
+    public long getRunCount() {
+        return this.runCount.get();
+    }
+
+    /**
+     * @return the number of entries evicted during the maintenance runs. Evictions done by the writer threads themselves,
+     * like in the W-TinyLFU cache, are only counted if a maintenance run was in progress
+     */
+    public long getTotalEvictedCount() {
+        return this.totalEvictedCount.get();
+    }
+
+    private void runMaintenanceSafely() {
+        try {
+            this.runMaintenance();
+        } catch (final RuntimeException exception) {
+            //never let one failed run kill the scheduled job
+            LOG.error("The cache maintenance failed!", exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * The measurements of one maintenance run
+     * @param durationInMillis how long the run took
+     * @param evictedCount the number of entries evicted from the cache during the run
+     * @param sizeBefore the number of cached entries before the run
+     * @param sizeAfter the number of cached entries after the run
+     * @param expiredAbsenceCount the number of tickers dropped from the NegativeResultCache
+     */
+    public record MaintenanceRun(long durationInMillis, long evictedCount, int sizeBefore, int sizeAfter, int expiredAbsenceCount) {
+    }
+}
@@ -0,0 +1,207 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the content of the cache, together with the access frequencies of the entries, to a memory-mapped file
+ * periodically, and loads it back at startup, so a bounce doesn't start with an empty cache that hammers the database
+ * and the FMP api for the first minutes.
+ * <p>
+ * The file is a 32 byte header followed by fixed size records, every record is an entry in the layout of the
+ * {@link RecordHolderCodec} and its access frequency:
+ * <pre>
+ * offset  size  field
+ *      0     4  magic number
+ *      4     4  format version
+ *      8     4  record size
+ *     12     4  record count
+ *     16     8  creation time in epoch millis
+ *     24     8  CRC32 of the records
+ * </pre>
+ * A snapshot with a different version or record size, or a broken checksum is ignored, the cache simply starts empty.
+ * The snapshot is written to a temporary file first and moved over the old one, so a crash mid-write never leaves a half
+ * written snapshot behind. Loading is a single pass over the mapped file without any parsing, so tens of thousands of entries
+ * load in milliseconds.
+ */
+public class CacheSnapshotter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheSnapshotter.class);
+
+    static final int MAGIC = 0x56494453;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = RecordHolderCodec.ENTRY_SIZE + Integer.BYTES;
+
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int RECORD_COUNT_OFFSET = 12;
+    private static final int CREATED_AT_OFFSET = 16;
+    private static final int CHECKSUM_OFFSET = 24;
+    //how long the last snapshot on shutdown waits for a scheduled one that is being written
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final Path snapshotFile;
+    private final ValuationServerCache cache;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-snapshotter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CacheSnapshotter(final Path snapshotFile, final ValuationServerCache cache) {
+        this.snapshotFile = snapshotFile;
+        this.cache = cache;
+    }
+
+    /**
+     * Starts writing a snapshot periodically, on a daemon thread
+     */
+    public void start(final Duration interval) {
+        final long intervalInMillis = interval.toMillis();
+        this.scheduler.scheduleWithFixedDelay(this::writeSnapshotSafely, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+        LOG.info("Cache snapshots are written to {} every {}", this.snapshotFile, interval);
+    }
+
+    public boolean snapshotExists() {
+        return Files.isRegularFile(this.snapshotFile);
+    }
+
+    /**
+     * Writes the current content of the cache to the snapshot file. Only one snapshot is written at a time, as every writer
+     * truncates and maps the same temporary file
+     * @return the number of entries written
+     */
+    public synchronized int writeSnapshot() throws IOException {
+        final long start = System.nanoTime();
+        final List<RecordHolder> entries = new ArrayList<>();
+        this.cache.forEachEntry(recordHolder -> {
+            if (RecordHolderCodec.canEncode(recordHolder)) {
+                entries.add(recordHolder);
+            }
+        });
+        final Path temporaryFile = this.snapshotFile.resolveSibling(this.snapshotFile.getFileName() + ".tmp");
+        try (final FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) entries.size() * RECORD_SIZE);
+            int offset = HEADER_SIZE;
+            for (final RecordHolder recordHolder : entries) {
+                RecordHolderCodec.encode(recordHolder, buffer, offset);
+                buffer.putInt(offset + RecordHolderCodec.ENTRY_SIZE, this.cache.getAccessFrequency(recordHolder.getTicker()));
+                offset += RECORD_SIZE;
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+            buffer.putInt(RECORD_COUNT_OFFSET, entries.size());
+            buffer.putLong(CREATED_AT_OFFSET, System.currentTimeMillis());
+            buffer.putLong(CHECKSUM_OFFSET, checksumOf(buffer, entries.size()));
+            buffer.force();
+        }
+        Files.move(temporaryFile, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Wrote {} cache entries to the snapshot in {} milliseconds", entries.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return entries.size();
+    }
+
+    /**
+     * Loads the snapshot into the cache, if there is a valid one. Never throws, a missing or broken snapshot only means
+     * that the cache starts empty
+     * @return the number of entries loaded
+     */
+    public int loadSnapshot() {
+        if (!this.snapshotExists()) {
+            LOG.info("There is no cache snapshot at {}, the cache starts empty", this.snapshotFile);
+            return 0;
+        }
+        final long start = System.nanoTime();
+        try (final FileChannel channel = FileChannel.open(this.snapshotFile, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!isValid(buffer)) {
+                return 0;
+            }
+            final int recordCount = buffer.getInt(RECORD_COUNT_OFFSET);
+            int offset = HEADER_SIZE;
+            for (int i = 0; i < recordCount; i++) {
+                final RecordHolder recordHolder = RecordHolderCodec.decode(buffer, offset);
+                this.cache.restore(recordHolder);
+                this.cache.restoreAccessFrequency(recordHolder.getTicker(), buffer.getInt(offset + RecordHolderCodec.ENTRY_SIZE));
+                offset += RECORD_SIZE;
+            }
+            LOG.info("Loaded {} cache entries from the snapshot in {} milliseconds", recordCount, Duration.ofNanos(System.nanoTime() - start).toMillis());
+            return recordCount;
+        } catch (final IOException | RuntimeException exception) {
+            LOG.error("Couldn't load the cache snapshot from {}, the cache starts empty!", this.snapshotFile, exception);
+            return 0;
+        }
+    }
+
+    private void writeSnapshotSafely() {
+        try {
+            this.writeSnapshot();
+        } catch (final IOException | RuntimeException exception) {
+            //never let one failed write kill the scheduled job
+            LOG.error("Couldn't write the cache snapshot to {}!", this.snapshotFile, exception);
+        }
+    }
+
+    private boolean isValid(final ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            LOG.warn("{} is not a cache snapshot, ignoring it", this.snapshotFile);
+            return false;
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            LOG.warn("The cache snapshot at {} has version {} with {} byte records, but version {} with {} byte records is expected, ignoring it",
+                    this.snapshotFile, buffer.getInt(VERSION_OFFSET), buffer.getInt(RECORD_SIZE_OFFSET), VERSION, RECORD_SIZE);
+            return false;
+        }
+        final int recordCount = buffer.getInt(RECORD_COUNT_OFFSET);
+        if (recordCount < 0 || buffer.capacity() != HEADER_SIZE + (long) recordCount * RECORD_SIZE
+                || buffer.getLong(CHECKSUM_OFFSET) != checksumOf(buffer, recordCount)) {
+            LOG.warn("The cache snapshot at {} is corrupted, ignoring it", this.snapshotFile);
+            return false;
+        }
+        return true;
+    }
+
+    private static long checksumOf(final ByteBuffer buffer, final int recordCount) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(buffer.slice(HEADER_SIZE, recordCount * RECORD_SIZE));
+        return crc32.getValue();
+    }
+
+    /**
+     * Stops the periodic snapshots and writes a last one after the scheduled one being written, if any, is done, so a
+     * graceful shutdown loses nothing
+     */
+    @Override
+    public void close() {
+        //not shutdownNow(), interrupting a running write would close its file channel in the middle of the write
+        this.scheduler.shutdown();
+        try {
+            if (!this.scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("The scheduled cache snapshot is still being written after {} seconds, the last one waits for it", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (final InterruptedException interruptedException) {
+            LOG.warn("Interrupted while waiting for the scheduled cache snapshot to finish", interruptedException);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        this.writeSnapshotSafely();
+    }
+}
@@ -0,0 +1,55 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.repository.api.ValuationDBRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Prefills the cache from the valuation tables in bulk, for the case when there is no {@link CacheSnapshotter snapshot}
+ * to start from. The records come in a single streaming query, so warming up thousands of tickers costs one round trip
+ * per fetch batch instead of one {@link ValuationDBRepository#queryRecords(String)} call per ticker.
+ * <p>
+ * The warmed up entries are restored as they are, so they never overwrite an entry that a user request
+ * already put into the cache in the meantime.
+ */
+public class DatabaseCacheWarmer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseCacheWarmer.class);
+
+    private final ValuationDBRepository valuationDBRepository;
+    private final ValuationServerCache cache;
+    private final int maxCount;
+
+    /**
+     * @param maxCount the number of most recently updated records to load, 0 or less loads every record
+     */
+    public DatabaseCacheWarmer(final ValuationDBRepository valuationDBRepository, final ValuationServerCache cache, final int maxCount) {
+        this.valuationDBRepository = valuationDBRepository;
+        this.cache = cache;
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * Runs the warm-up on the given executor, so it overlaps with whatever the caller does next. The streaming query blocks
+     * for as long as the warm-up takes, so it should be an executor meant for blocking work, not the common ForkJoinPool
+     * @return the number of entries loaded
+     */
+    public CompletableFuture<Integer> warmUpAsync(final Executor executor) {
+        return CompletableFuture.supplyAsync(this::warmUp, executor);
+    }
+
+    /**
+     * @return the number of entries loaded
+     */
+    public int warmUp() {
+        final long start = System.nanoTime();
+        final int loaded = this.valuationDBRepository.streamRecords(this.maxCount, this.cache::restore);
+        final long durationInMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        LOG.info("Warmed up the cache with {} entries from the database in {} milliseconds", loaded, durationInMillis);
+        return loaded;
+    }
+}
@@ -0,0 +1,25 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+/**
+ * Tells where the data of a {@link RecordHolder} came from, and how expensive it is to get it again from there.
+ * A database call is cheap, it is a single query or join on our own server, while every FMP api call takes seconds
+ * and eats into the daily quota of the api key, so it is worth a lot more to keep it in the cache.
+ */
+public enum FillSource {
+
+    DATABASE(1),
+    FMP_API(10);
+
+    private final int costPerCall;
+
+    FillSource(final int costPerCall) {
+        this.costPerCall = costPerCall;
+    }
+
+    /**
+     * The relative cost of one call to this source, a database query is the unit
+     */
+    public int getCostPerCall() {
+        return this.costPerCall;
+    }
+}
@@ -0,0 +1,124 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+/**
+ * A count-min sketch with 4-bit counters, used by the {@link ValuationServerTinyLFUCache} to estimate how often
+ * a ticker was requested. This is the frequency histogram part of the TinyLFU admission policy: instead of keeping an exact
+ * counter for every ticker ever seen (which is what the frequency array of the {@link ValuationServerLFUCache} does), it keeps
+ * a fixed size table of small counters, so its memory footprint doesn't depend on the number of distinct tickers.
+ * <p>
+ * Every counter is 4 bits, sixteen of them packed into a long, and every ticker is mapped onto {@link #DEPTH} counters.
+ * The estimated frequency is the minimum of those counters, so hash collisions can only overestimate, never underestimate.
+ * To make sure that tickers that were popular a long time ago don't stay in the cache forever, all the counters are
+ * halved once the number of recorded increments reaches the sample size. This is the aging (or reset) operation of TinyLFU.
+ * <p>
+ * The class is not thread safe on purpose: the cache only touches it while holding its eviction lock, which is much cheaper
+ * than making every counter update atomic. Source of the design: <a href="https://arxiv.org/abs/1512.00727">TinyLFU</a>
+ */
+final class FrequencySketch {
+
+    static final int MAX_FREQUENCY = 15;
+
+    private static final int DEPTH = 4;
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long ONE_MASK = 0x1111_1111_1111_1111L;
+    //odd 64-bit seeds, one for each row of the sketch
+    private static final long[] SEEDS = {
+            0xc3a5_c85c_97cb_3127L, 0xb492_b66f_be98_f273L, 0x9ae1_6a3b_2f90_404fL, 0xcbf2_9ce4_8422_2325L};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param maximumSize the expected maximum number of entries in the cache. The sketch is sized to have at least
+     *                    one long (so 16 counters) for every entry, and the aging period is ten times this number
+     */
+    FrequencySketch(final int maximumSize) {
+        final int tableSize = ceilingPowerOfTwo(Math.max(maximumSize, 1));
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(maximumSize, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the estimated number of times the ticker was recorded, capped at {@link #MAX_FREQUENCY}
+     */
+    int frequency(final String ticker) {
+        final int hash = spread(ticker.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < DEPTH; i++) {
+            final int index = this.indexOf(hash, i);
+            final int offset = this.offsetOf(hash, i);
+            final int count = (int) ((this.table[index] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the counters of the ticker, if they are not saturated yet, and halves every counter when the
+     * sample size is reached
+     */
+    void increment(final String ticker) {
+        final int hash = spread(ticker.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            added |= this.incrementAt(this.indexOf(hash, i), this.offsetOf(hash, i));
+        }
+        if (added && ++this.size >= this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    //visible for testing
+    int getSampleSize() {
+        return this.sampleSize;
+    }
+
+    private boolean incrementAt(final int index, final int offset) {
+        final long mask = 0xfL << offset;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    //halve every counter in one pass: shift the whole long and clear the bits that leaked over from the neighbour counter
+    private void reset() {
+        int oddCounters = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            oddCounters += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        //the halving truncates, so the size is corrected with the number of odd counters we lost a half on
+        this.size = (this.size - (oddCounters >>> 2)) >>> 1;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return ((int) h) & this.tableMask;
+    }
+
+    //every row uses a different 4-bit slot of the long, the hash picks which group of four counters to use
+    private int offsetOf(final int hash, final int row) {
+        return (((hash >>> (row << 3)) & 3) << 2) + (row << 4);
+    }
+
+    private static int spread(final int hashCode) {
+        int x = hashCode;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(final int value) {
+        final int maxTableSize = 1 << 30;
+        if (value >= maxTableSize) {
+            return maxTableSize;
+        }
+        return 1 << -Integer.numberOfLeadingZeros(value - 1);
+    }
+}
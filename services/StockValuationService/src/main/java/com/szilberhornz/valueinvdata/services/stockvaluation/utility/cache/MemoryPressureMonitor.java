@@ -0,0 +1,149 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shrinks the cache when the old generation of the heap fills up, so the cache gives up memory before the JVM goes into
+ * back-to-back full GCs or the container gets OOM killed, and grows it back once the pressure is gone.
+ * <p>
+ * The JVM notifies us when the old generation is still above the watermark right after a garbage collection. The usage
+ * measured after a collection only counts the live objects, so unlike the plain usage it doesn't fire on garbage that the
+ * next collection would free anyway. Every notification halves the share of its capacity the cache may use, down to
+ * {@link #MIN_CAPACITY_RATIO}, and the excess is evicted by the cache maintenance right away.
+ * <p>
+ * There is no notification when the usage drops, so {@link #checkForRelief()} has to be called periodically, it is run by
+ * the {@link CacheMaintenanceScheduler}. When the old generation is comfortably below the watermark after the last
+ * collection, the share is doubled back towards the full capacity, one step per check.
+ */
+public class MemoryPressureMonitor implements NotificationListener, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryPressureMonitor.class);
+
+    static final double MIN_CAPACITY_RATIO = 0.125;
+    //the cache only grows back below this share of the watermark, so it doesn't flap around the threshold
+    static final double RELIEF_MARGIN = 0.8;
+
+    private final ValuationServerCache cache;
+    private final MemoryPoolMXBean oldGeneration;
+    private final long thresholdInBytes;
+    private final LongAdder shrinkCount = new LongAdder();
+
+    /**
+     * @param watermark the share of the maximum size of the old generation that counts as pressure, between 0 and 1
+     */
+    public MemoryPressureMonitor(final ValuationServerCache cache, final MemoryPoolMXBean oldGeneration, final double watermark) {
+        if (watermark <= 0 || watermark >= 1) {
+            throw new IllegalArgumentException("The heap watermark must be between 0 and 1, but it was " + watermark);
+        }
+        if (!oldGeneration.isCollectionUsageThresholdSupported()) {
+            throw new IllegalArgumentException("The " + oldGeneration.getName() + " memory pool doesn't support collection usage thresholds");
+        }
+        this.cache = cache;
+        this.oldGeneration = oldGeneration;
+        this.thresholdInBytes = (long) (maxSizeOf(oldGeneration) * watermark);
+    }
+
+    /**
+     * @return a monitor of the old generation of the heap, or null if the garbage collector in use doesn't have one that
+     * supports usage thresholds
+     */
+    @Nullable
+    public static MemoryPressureMonitor forOldGeneration(final ValuationServerCache cache, final double watermark) {
+        //the eden and survivor spaces don't support usage thresholds, only the tenured pool does
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported()) {
+                return new MemoryPressureMonitor(cache, pool, watermark);
+            }
+        }
+        LOG.warn("No old generation memory pool supports usage thresholds, the cache won't react to memory pressure!");
+        return null;
+    }
+
+    /**
+     * Sets the watermark on the old generation and starts listening to the notifications of the JVM
+     */
+    public void start() {
+        this.oldGeneration.setCollectionUsageThreshold(this.thresholdInBytes);
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+        LOG.info("The cache shrinks when {} is above {} bytes after a garbage collection", this.oldGeneration.getName(), this.thresholdInBytes);
+    }
+
+    /**
+     * Runs on the notification thread of the JVM, the eviction itself is left to the cache maintenance
+     */
+    @Override
+    public void handleNotification(final Notification notification, final Object handback) {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())
+                && this.oldGeneration.getName().equals(MemoryNotificationInfo.from((CompositeData) notification.getUserData()).getPoolName())) {
+            this.onMemoryPressure();
+        }
+    }
+
+    /**
+     * Halves the share of its capacity the cache may use, down to the minimum
+     */
+    public void onMemoryPressure() {
+        final double capacityRatio = Math.max(MIN_CAPACITY_RATIO, this.cache.getCapacityRatio() / 2);
+        if (capacityRatio < this.cache.getCapacityRatio()) {
+            this.shrinkCount.increment();
+            LOG.warn("{} is above {} bytes after a garbage collection, shrinking the cache to {}% of its capacity",
+                    this.oldGeneration.getName(), this.thresholdInBytes, (int) (capacityRatio * 100));
+            this.cache.setCapacityRatio(capacityRatio);
+        }
+    }
+
+    /**
+     * Grows the cache one step back towards its full capacity if the old generation is well below the watermark
+     */
+    public void checkForRelief() {
+        final double currentRatio = this.cache.getCapacityRatio();
+        final MemoryUsage usageAfterCollection = this.oldGeneration.getCollectionUsage();
+        if (currentRatio >= 1 || usageAfterCollection == null || usageAfterCollection.getUsed() >= this.thresholdInBytes * RELIEF_MARGIN) {
+            return;
+        }
+        final double capacityRatio = Math.min(1, currentRatio * 2);
+        LOG.info("{} is at {} bytes after the last garbage collection, growing the cache back to {}% of its capacity",
+                this.oldGeneration.getName(), usageAfterCollection.getUsed(), (int) (capacityRatio * 100));
+        this.cache.setCapacityRatio(capacityRatio);
+    }
+
+    /**
+     * @return how many times the cache got shrunk because of memory pressure
+     */
+    public long getShrinkCount() {
+        return this.shrinkCount.sum();
+    }
+
+    public long getThresholdInBytes() {
+        return this.thresholdInBytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (final ListenerNotFoundException exception) {
+            //never started, nothing to remove
+        }
+    }
+
+    //the old generation of some collectors has no maximum of its own, it can take the whole heap then
+    private static long maxSizeOf(final MemoryPoolMXBean pool) {
+        final long max = pool.getUsage().getMax();
+        return max > 0 ? max : Runtime.getRuntime().maxMemory();
+    }
+}
@@ -0,0 +1,138 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the ticker and DTO type pairs for which neither the database nor the FMP api had any data. Plenty of valid
+ * tickers have no price targets or no DCF at all, and without this cache every request for them would query the database
+ * and burn FMP api calls just to find out the same again.
+ * <p>
+ * An absence is only remembered for the TTL, since the FMP api may have the data later, and it is forgotten right away
+ * if the data shows up in the meantime. The cache holds at most maxSize tickers, when it is full the ticker recorded the
+ * longest time ago is dropped first. With a fixed TTL that is also the one that expires first.
+ */
+public class NegativeResultCache {
+
+    private final long ttlInMillis;
+    private final int maxSize;
+    private final Clock clock;
+    //guarded by this, insertion ordered so the first entry is the oldest one
+    private final LinkedHashMap<String, EnumMap<ValuationDtoType, Long>> absentUntilMillis = new LinkedHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public NegativeResultCache(final Duration ttl, final int maxSize) {
+        this(ttl, maxSize, Clock.systemUTC());
+    }
+
+    public NegativeResultCache(final Duration ttl, final int maxSize, final Clock clock) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The size of the negative result cache can't be negative, but it was " + maxSize);
+        }
+        this.ttlInMillis = ttl.toMillis();
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * @return a negative result cache that never remembers anything
+     */
+    public static NegativeResultCache disabled() {
+        return new NegativeResultCache(Duration.ZERO, 0);
+    }
+
+    /**
+     * Remembers that there is no data of the given type for the ticker, for the TTL from now
+     */
+    public synchronized void recordAbsent(final String ticker, final ValuationDtoType dtoType) {
+        if (this.maxSize == 0 || this.ttlInMillis <= 0) {
+            return;
+        }
+        //removed and put back, so the ticker moves to the end of the insertion order
+        EnumMap<ValuationDtoType, Long> absences = this.absentUntilMillis.remove(ticker);
+        if (absences == null) {
+            absences = new EnumMap<>(ValuationDtoType.class);
+        }
+        absences.put(dtoType, this.clock.millis() + this.ttlInMillis);
+        this.absentUntilMillis.put(ticker, absences);
+        if (this.absentUntilMillis.size() > this.maxSize) {
+            final Iterator<String> oldest = this.absentUntilMillis.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Forgets the absence of the given type of data for the ticker, because the data has just arrived
+     */
+    public synchronized void clear(final String ticker, final ValuationDtoType dtoType) {
+        final EnumMap<ValuationDtoType, Long> absences = this.absentUntilMillis.get(ticker);
+        if (absences != null) {
+            absences.remove(dtoType);
+            if (absences.isEmpty()) {
+                this.absentUntilMillis.remove(ticker);
+            }
+        }
+    }
+
+    /**
+     * @return the types of data we know the ticker doesn't have, the expired absences are dropped on the way
+     */
+    public synchronized Set<ValuationDtoType> absentDtoTypes(final String ticker) {
+        final EnumMap<ValuationDtoType, Long> absences = this.absentUntilMillis.get(ticker);
+        if (absences == null) {
+            this.missCount.increment();
+            return EnumSet.noneOf(ValuationDtoType.class);
+        }
+        final long now = this.clock.millis();
+        absences.values().removeIf(absentUntil -> absentUntil <= now);
+        if (absences.isEmpty()) {
+            this.absentUntilMillis.remove(ticker);
+            this.missCount.increment();
+            return EnumSet.noneOf(ValuationDtoType.class);
+        }
+        this.hitCount.increment();
+        return EnumSet.copyOf(absences.keySet());
+    }
+
+    /**
+     * Drops every expired absence, so the tickers nobody asks about again don't sit in the cache until it fills up
+     * @return the number of tickers dropped
+     */
+    public synchronized int purgeExpired() {
+        final long now = this.clock.millis();
+        int purged = 0;
+        final Iterator<EnumMap<ValuationDtoType, Long>> tickers = this.absentUntilMillis.values().iterator();
+        while (tickers.hasNext()) {
+            final EnumMap<ValuationDtoType, Long> absences = tickers.next();
+            absences.values().removeIf(absentUntil -> absentUntil <= now);
+            if (absences.isEmpty()) {
+                tickers.remove();
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    public synchronized int size() {
+        return this.absentUntilMillis.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+}
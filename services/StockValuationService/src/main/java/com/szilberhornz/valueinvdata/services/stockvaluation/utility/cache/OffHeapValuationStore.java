@@ -0,0 +1,222 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps RecordHolders outside the Java heap, in slabs of direct ByteBuffers. Every entry is encoded by the
+ * {@link RecordHolderCodec} into a fixed size slot, so an entry costs {@link RecordHolderCodec#ENTRY_SIZE} bytes of native
+ * memory instead of a few hundred bytes of objects the garbage collector has to trace. Only the ticker to slot index lives
+ * on the heap. With 128 bytes per entry the whole ticker universe (around 66 000 tickers) fits into less than 9 MB.
+ * <p>
+ * The slots are handed out in order, freed slots are reused first, and when every slot is taken the store overwrites
+ * the slots round-robin, which evicts the entries in roughly the order they arrived (FIFO).
+ * Reads share a read lock, writes are exclusive. The absolute get methods of the ByteBuffer never touch its position,
+ * so concurrent readers are safe as long as no writer modifies the slab at the same time.
+ */
+public final class OffHeapValuationStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapValuationStore.class);
+
+    static final int SLAB_SIZE_IN_BYTES = 1 << 20;
+    private static final int ENTRIES_PER_SLAB = SLAB_SIZE_IN_BYTES / RecordHolderCodec.ENTRY_SIZE;
+
+    private final int capacity;
+    private final ByteBuffer[] slabs;
+    //guarded by the lock, like everything else that is not final
+    private final Map<String, Integer> slotIndex;
+    private final String[] slotOwners;
+    private final int[] freeSlots;
+    private int freeSlotCount = 0;
+    private int nextUnusedSlot = 0;
+    private int evictionHand = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public OffHeapValuationStore(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the off-heap store must be at least 1, but it was " + capacity);
+        }
+        this.capacity = capacity;
+        final int slabCount = (capacity + ENTRIES_PER_SLAB - 1) / ENTRIES_PER_SLAB;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            final int slotsInSlab = Math.min(ENTRIES_PER_SLAB, capacity - i * ENTRIES_PER_SLAB);
+            this.slabs[i] = ByteBuffer.allocateDirect(slotsInSlab * RecordHolderCodec.ENTRY_SIZE);
+        }
+        this.slotIndex = HashMap.newHashMap(capacity);
+        this.slotOwners = new String[capacity];
+        this.freeSlots = new int[capacity];
+    }
+
+    /**
+     * Stores the record, overwriting the previous version of the same ticker, evicting the oldest entry if the store is full.
+     * @return false if the record can't be encoded (see {@link RecordHolderCodec}), in which case it is not stored
+     */
+    public boolean put(final RecordHolder recordHolder) {
+        if (!RecordHolderCodec.canEncode(recordHolder)) {
+            LOG.debug("Can't store {} off-heap, it doesn't fit into the binary layout", recordHolder.getTicker());
+            return false;
+        }
+        final String ticker = recordHolder.getTicker();
+        this.lock.writeLock().lock();
+        try {
+            Integer slot = this.slotIndex.get(ticker);
+            if (slot == null) {
+                slot = this.allocateSlot();
+                this.slotIndex.put(ticker, slot);
+                this.slotOwners[slot] = ticker;
+            }
+            RecordHolderCodec.encode(recordHolder, this.slabOf(slot), offsetOf(slot));
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes a new RecordHolder from the stored bytes, and counts a hit or a miss
+     */
+    @Nullable
+    public RecordHolder get(final String ticker) {
+        final RecordHolder recordHolder = this.peek(ticker);
+        this.recordLookup(recordHolder);
+        return recordHolder;
+    }
+
+    /**
+     * Like {@link #get(String)}, without counting the lookup in the statistics
+     */
+    @Nullable
+    public RecordHolder peek(final String ticker) {
+        this.lock.readLock().lock();
+        try {
+            final Integer slot = this.slotIndex.get(ticker);
+            return slot == null ? null : RecordHolderCodec.decode(this.slabOf(slot), offsetOf(slot));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the entry and returns it, counting a hit or a miss. This is how entries get promoted to an upper cache tier
+     */
+    @Nullable
+    public RecordHolder take(final String ticker) {
+        final RecordHolder recordHolder = this.remove(ticker);
+        this.recordLookup(recordHolder);
+        return recordHolder;
+    }
+
+    /**
+     * Like {@link #take(String)}, without counting the lookup in the statistics
+     */
+    @Nullable
+    public RecordHolder remove(final String ticker) {
+        this.lock.writeLock().lock();
+        try {
+            final Integer slot = this.slotIndex.remove(ticker);
+            if (slot == null) {
+                return null;
+            }
+            final RecordHolder recordHolder = RecordHolderCodec.decode(this.slabOf(slot), offsetOf(slot));
+            this.slotOwners[slot] = null;
+            this.freeSlots[this.freeSlotCount++] = slot;
+            return recordHolder;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes every stored entry and hands it to the consumer, while holding the read lock
+     */
+    public void forEach(final Consumer<RecordHolder> consumer) {
+        this.lock.readLock().lock();
+        try {
+            for (final int slot : this.slotIndex.values()) {
+                consumer.accept(RecordHolderCodec.decode(this.slabOf(slot), offsetOf(slot)));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(final String ticker) {
+        this.lock.readLock().lock();
+        try {
+            return this.slotIndex.containsKey(ticker);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.slotIndex.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the native memory allocated for the slabs
+     */
+    public long getOffHeapBytes() {
+        return (long) this.capacity * RecordHolderCodec.ENTRY_SIZE;
+    }
+
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    private void recordLookup(final RecordHolder recordHolder) {
+        if (recordHolder == null) {
+            this.missCount.increment();
+        } else {
+            this.hitCount.increment();
+        }
+    }
+
+    //must be called while holding the write lock
+    private int allocateSlot() {
+        if (this.freeSlotCount > 0) {
+            return this.freeSlots[--this.freeSlotCount];
+        }
+        if (this.nextUnusedSlot < this.capacity) {
+            return this.nextUnusedSlot++;
+        }
+        //every slot is taken and none got freed, so the hand always points at an occupied slot
+        final int victim = this.evictionHand;
+        this.evictionHand = (this.evictionHand + 1) % this.capacity;
+        this.slotIndex.remove(this.slotOwners[victim]);
+        return victim;
+    }
+
+    private ByteBuffer slabOf(final int slot) {
+        return this.slabs[slot / ENTRIES_PER_SLAB];
+    }
+
+    private static int offsetOf(final int slot) {
+        return (slot % ENTRIES_PER_SLAB) * RecordHolderCodec.ENTRY_SIZE;
+    }
+}
@@ -1,48 +1,87 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * This class is designed to prevent outside entities to change the state of its instances: e.g. a class looking up
  * cached items should be able to see what is inside the item, but changes should only be made within the
  * {@link com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache} package
  * Classes outside the cache package may construct new RecordHolders though, and also inspect their inner state, just not change it
  * <p/>
- * No need to synchronize this class due to the fact that the ConcurrentHashMap in the cache locks the bucket when performing write operations
+ * Instances are immutable snapshots. The cache never changes an entry in place, every write produces a new RecordHolder
+ * (see the package-private with* and merge methods) and swaps it into the map in a single compute() call, so a reader
+ * always sees a consistent entry without any synchronization.
  */
 public class RecordHolder {
 
     private final String ticker;
 
-    private DiscountedCashFlowDTO discountedCashFlowDto;
-    private PriceTargetConsensusDTO priceTargetConsensusDto;
-    private PriceTargetSummaryDTO priceTargetSummaryDto;
+    private final DiscountedCashFlowDTO discountedCashFlowDto;
+    private final PriceTargetConsensusDTO priceTargetConsensusDto;
+    private final PriceTargetSummaryDTO priceTargetSummaryDto;
 
-    private Throwable causeOfNullDtos = null;
+    private final Throwable causeOfNullDtos;
 
-    private RecordHolder(final String ticker, final DiscountedCashFlowDTO discountedCashFlowDto, final PriceTargetConsensusDTO priceTargetConsensusDto, final PriceTargetSummaryDTO priceTargetSummaryDto) {
-        this.ticker = ticker;
-        this.discountedCashFlowDto = discountedCashFlowDto;
-        this.priceTargetConsensusDto = priceTargetConsensusDto;
-        this.priceTargetSummaryDto = priceTargetSummaryDto;
-    }
+    //records are assumed to come from a single database query unless told otherwise, this is the cheapest possible refill
+    private final FillSource fillSource;
+    private final int upstreamCallCount;
+
+    //when each DTO was loaded from its source, used by the CacheExpiryPolicy
+    private final long dcfLoadedAtMillis;
+    private final long ptcLoadedAtMillis;
+    private final long ptsLoadedAtMillis;
+
+    //the response bodies rendered from this snapshot, by the type of the renderer. A copy-on-write memo: the data never
+    //changes, so neither do the bodies, and any write to the cache makes a new RecordHolder that starts without them.
+    //Only the cache holding this very instance adds to it, so the bodies are weighed and evicted together with the entry
+    private volatile Map<Class<?>, byte[]> renderedBodies = Map.of();
+    //the cache that stored this instance, null for the records that never got into a cache as they are
+    private volatile ValuationServerCache owner;
 
     private RecordHolder(final String ticker, final DiscountedCashFlowDTO discountedCashFlowDto, final PriceTargetConsensusDTO priceTargetConsensusDto,
                          final PriceTargetSummaryDTO priceTargetSummaryDto, final Throwable causeOfNullDtos) {
+        this(ticker, discountedCashFlowDto, priceTargetConsensusDto, priceTargetSummaryDto, causeOfNullDtos, FillSource.DATABASE, 1,
+                System.currentTimeMillis());
+    }
+
+    private RecordHolder(final String ticker, final DiscountedCashFlowDTO discountedCashFlowDto, final PriceTargetConsensusDTO priceTargetConsensusDto,
+                         final PriceTargetSummaryDTO priceTargetSummaryDto, final Throwable causeOfNullDtos, final FillSource fillSource,
+                         final int upstreamCallCount, final long loadedAtMillis) {
+        this(ticker, discountedCashFlowDto, priceTargetConsensusDto, priceTargetSummaryDto, causeOfNullDtos, fillSource, upstreamCallCount,
+                loadedAtMillis, loadedAtMillis, loadedAtMillis);
+    }
+
+    private RecordHolder(final String ticker, final DiscountedCashFlowDTO discountedCashFlowDto, final PriceTargetConsensusDTO priceTargetConsensusDto,
+                         final PriceTargetSummaryDTO priceTargetSummaryDto, final Throwable causeOfNullDtos, final FillSource fillSource,
+                         final int upstreamCallCount, final long dcfLoadedAtMillis, final long ptcLoadedAtMillis, final long ptsLoadedAtMillis) {
         this.ticker = ticker;
         this.discountedCashFlowDto = discountedCashFlowDto;
         this.priceTargetConsensusDto = priceTargetConsensusDto;
         this.priceTargetSummaryDto = priceTargetSummaryDto;
         this.causeOfNullDtos = causeOfNullDtos;
+        this.fillSource = fillSource;
+        this.upstreamCallCount = upstreamCallCount;
+        this.dcfLoadedAtMillis = dcfLoadedAtMillis;
+        this.ptcLoadedAtMillis = ptcLoadedAtMillis;
+        this.ptsLoadedAtMillis = ptsLoadedAtMillis;
     }
 
-    //we allow outside entities to get an immutable instance - immutable for them as they don't see the accessors
+    //we allow outside entities to get an immutable instance
     public static RecordHolder newRecordHolder(@NotNull final String ticker, @Nullable final DiscountedCashFlowDTO dcfDto, @Nullable final PriceTargetConsensusDTO ptcDto, @Nullable final PriceTargetSummaryDTO ptsDto){
-        return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto);
+        return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, null);
     }
 
     public static RecordHolder newRecordHolder(@NotNull final String ticker, @Nullable final DiscountedCashFlowDTO dcfDto,
@@ -51,6 +90,66 @@ public class RecordHolder {
         return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, causeOfNullDtos);
     }
 
+    public static RecordHolder newRecordHolder(@NotNull final String ticker, @Nullable final DiscountedCashFlowDTO dcfDto,
+                                               @Nullable final PriceTargetConsensusDTO ptcDto, @Nullable final PriceTargetSummaryDTO ptsDto,
+                                               @Nullable final Throwable causeOfNullDtos, @NotNull final FillSource fillSource, final int upstreamCallCount){
+        return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, causeOfNullDtos, fillSource, upstreamCallCount, System.currentTimeMillis());
+    }
+
+    /**
+     * Same as the one above, but the DTOs taken over as they are from the previous record keep the load times they have
+     * there, only the others are stamped with the current time. Used when a record is completed from the FMP api, so the
+     * DTOs that came from the database don't look like they were just fetched.
+     */
+    public static RecordHolder newRecordHolder(@NotNull final String ticker, @Nullable final DiscountedCashFlowDTO dcfDto,
+                                               @Nullable final PriceTargetConsensusDTO ptcDto, @Nullable final PriceTargetSummaryDTO ptsDto,
+                                               @Nullable final Throwable causeOfNullDtos, @NotNull final FillSource fillSource,
+                                               final int upstreamCallCount, @Nullable final RecordHolder previous){
+        final long now = System.currentTimeMillis();
+        if (previous == null) {
+            return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, causeOfNullDtos, fillSource, upstreamCallCount, now);
+        }
+        return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, causeOfNullDtos, fillSource, upstreamCallCount,
+                dcfDto != null && dcfDto == previous.discountedCashFlowDto ? previous.dcfLoadedAtMillis : now,
+                ptcDto != null && ptcDto == previous.priceTargetConsensusDto ? previous.ptcLoadedAtMillis : now,
+                ptsDto != null && ptsDto == previous.priceTargetSummaryDto ? previous.ptsLoadedAtMillis : now);
+    }
+
+    /**
+     * For data read back from the database. The time to live of the DTOs counts from when the data was fetched from the
+     * FMP api, not from when it was read, otherwise a months old row would be served as fresh for a whole TTL. The only
+     * date the database keeps is the one of the DCF, and the DTOs of a ticker are fetched and persisted together, so it
+     * stands for the whole row. Without it the age of the row is unknown and the DTOs count from when the row was read,
+     * otherwise a ticker without a DCF would be expired on every read and refreshed before every response.
+     */
+    public static RecordHolder newPersistedRecordHolder(@NotNull final String ticker, @Nullable final DiscountedCashFlowDTO dcfDto,
+                                                        @Nullable final PriceTargetConsensusDTO ptcDto, @Nullable final PriceTargetSummaryDTO ptsDto,
+                                                        @NotNull final FillSource fillSource, final int upstreamCallCount){
+        return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, null, fillSource, upstreamCallCount, fetchedAtMillisOf(dcfDto));
+    }
+
+    //the FMP api dates the DCF with the day it was calculated for, it is current from the start of that day
+    private static long fetchedAtMillisOf(@Nullable final DiscountedCashFlowDTO dcfDto) {
+        final long now = System.currentTimeMillis();
+        if (dcfDto == null || dcfDto.dateString() == null) {
+            return now;
+        }
+        try {
+            final long startOfDay = LocalDate.parse(dcfDto.dateString()).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            return Math.min(startOfDay, now);
+        } catch (final DateTimeParseException dateTimeParseException) {
+            return now;
+        }
+    }
+
+    //for restoring a previously cached entry with all of its metadata, only used within the cache package
+    static RecordHolder restoredRecordHolder(final String ticker, final DiscountedCashFlowDTO dcfDto, final PriceTargetConsensusDTO ptcDto,
+                                             final PriceTargetSummaryDTO ptsDto, final FillSource fillSource, final int upstreamCallCount,
+                                             final long dcfLoadedAtMillis, final long ptcLoadedAtMillis, final long ptsLoadedAtMillis) {
+        return new RecordHolder(ticker, dcfDto, ptcDto, ptsDto, null, fillSource, upstreamCallCount,
+                dcfLoadedAtMillis, ptcLoadedAtMillis, ptsLoadedAtMillis);
+    }
+
     public int getDtoCount(){
         int result = 0;
         if (this.discountedCashFlowDto != null) {
@@ -76,9 +175,84 @@ public class RecordHolder {
         return this.causeOfNullDtos;
     }
 
-    //we don't allow anyone to construct this object outside the actual cache implementors
-    RecordHolder(final String ticker) {
-        this.ticker = ticker;
+    public boolean hasDto(final ValuationDtoType dtoType) {
+        return switch (dtoType) {
+            case DISCOUNTED_CASH_FLOW -> this.discountedCashFlowDto != null;
+            case PRICE_TARGET_CONSENSUS -> this.priceTargetConsensusDto != null;
+            case PRICE_TARGET_SUMMARY -> this.priceTargetSummaryDto != null;
+        };
+    }
+
+    /**
+     * @return the epoch millis when the DTO of the given type was loaded from its source
+     */
+    public long getLoadedAtMillis(final ValuationDtoType dtoType) {
+        return switch (dtoType) {
+            case DISCOUNTED_CASH_FLOW -> this.dcfLoadedAtMillis;
+            case PRICE_TARGET_CONSENSUS -> this.ptcLoadedAtMillis;
+            case PRICE_TARGET_SUMMARY -> this.ptsLoadedAtMillis;
+        };
+    }
+
+    /**
+     * Returns the body the renderer made from this instance earlier, or renders it now. The body is only kept for the next
+     * call if this instance is still the entry of the cache that stored it, that cache counts it to its weighted size.
+     * Two threads may render the same body at the same time, the result is the same either way. The renderer must not
+     * depend on anything but this RecordHolder.
+     * @param rendererType one body is kept for every renderer type
+     */
+    @NotNull
+    public byte[] getOrRender(final Class<?> rendererType, final Function<RecordHolder, byte[]> renderer) {
+        final byte[] rendered = this.renderedBodies.get(rendererType);
+        if (rendered != null) {
+            return rendered;
+        }
+        final byte[] body = renderer.apply(this);
+        final ValuationServerCache cache = this.owner;
+        if (cache != null) {
+            cache.keepRenderedBody(this, rendererType, body);
+        }
+        return body;
+    }
+
+    //the first cache to store this instance owns it, a cache only keeps bodies for the instances it owns
+    void claimOwnership(final ValuationServerCache cache) {
+        if (this.owner == null) {
+            this.owner = cache;
+        }
+    }
+
+    /**
+     * Only called by the owner cache, under the lock of the map bin of the entry
+     * @return false if the body of the renderer type was already kept
+     */
+    boolean addRenderedBody(final Class<?> rendererType, final byte[] body) {
+        if (this.renderedBodies.containsKey(rendererType)) {
+            return false;
+        }
+        final Map<Class<?>, byte[]> withBody = new HashMap<>(this.renderedBodies);
+        withBody.put(rendererType, body);
+        this.renderedBodies = Map.copyOf(withBody);
+        return true;
+    }
+
+    Collection<byte[]> getRenderedBodies() {
+        return this.renderedBodies.values();
+    }
+
+    public FillSource getFillSource() {
+        return this.fillSource;
+    }
+
+    public int getUpstreamCallCount() {
+        return this.upstreamCallCount;
+    }
+
+    /**
+     * The estimated cost of filling this record again if it gets evicted, see {@link FillSource#getCostPerCall()}
+     */
+    public int getFillCost() {
+        return this.fillSource.getCostPerCall() * this.upstreamCallCount;
     }
 
     @NotNull
@@ -91,29 +265,75 @@ public class RecordHolder {
         return this.discountedCashFlowDto;
     }
 
-
-    //we don't allow anyone to access setters outside the actual cache package
-    void setDiscountedCashFlowDto(final DiscountedCashFlowDTO discountedCashFlowDto) {
-        this.discountedCashFlowDto = discountedCashFlowDto;
-    }
-
     @Nullable
     public PriceTargetConsensusDTO getPriceTargetConsensusDto() {
         return this.priceTargetConsensusDto;
     }
 
-    //we don't allow anyone to access setters outside the actual cache package
-    void setPriceTargetConsensusDto(final PriceTargetConsensusDTO priceTargetConsensusDto) {
-        this.priceTargetConsensusDto = priceTargetConsensusDto;
-    }
-
     @Nullable
     public PriceTargetSummaryDTO getPriceTargetSummaryDto() {
         return this.priceTargetSummaryDto;
     }
 
-    //we don't allow anyone to access setters outside the actual cache package
-    void setPriceTargetSummaryDto(final PriceTargetSummaryDTO priceTargetSummaryDto) {
-        this.priceTargetSummaryDto = priceTargetSummaryDto;
+    //the copy methods below are only visible in the cache package, they return this instance if nothing would change
+
+    /**
+     * Fills in the DTOs this record is missing from the other record, together with their load times. DTOs already present are kept
+     */
+    RecordHolder withMissingDtosFrom(final RecordHolder other) {
+        final boolean dcfMissing = this.discountedCashFlowDto == null && other.discountedCashFlowDto != null;
+        final boolean ptcMissing = this.priceTargetConsensusDto == null && other.priceTargetConsensusDto != null;
+        final boolean ptsMissing = this.priceTargetSummaryDto == null && other.priceTargetSummaryDto != null;
+        if (!dcfMissing && !ptcMissing && !ptsMissing) {
+            return this;
+        }
+        return new RecordHolder(this.ticker,
+                dcfMissing ? other.discountedCashFlowDto : this.discountedCashFlowDto,
+                ptcMissing ? other.priceTargetConsensusDto : this.priceTargetConsensusDto,
+                ptsMissing ? other.priceTargetSummaryDto : this.priceTargetSummaryDto,
+                this.causeOfNullDtos, this.fillSource, this.upstreamCallCount,
+                dcfMissing ? other.dcfLoadedAtMillis : this.dcfLoadedAtMillis,
+                ptcMissing ? other.ptcLoadedAtMillis : this.ptcLoadedAtMillis,
+                ptsMissing ? other.ptsLoadedAtMillis : this.ptsLoadedAtMillis);
+    }
+
+    /**
+     * Overwrites the DTOs of this record with the ones present in the refreshed record, together with their load times
+     */
+    RecordHolder withDtosFrom(final RecordHolder refreshed) {
+        final boolean hasDcf = refreshed.discountedCashFlowDto != null;
+        final boolean hasPtc = refreshed.priceTargetConsensusDto != null;
+        final boolean hasPts = refreshed.priceTargetSummaryDto != null;
+        if (!hasDcf && !hasPtc && !hasPts) {
+            return this;
+        }
+        return new RecordHolder(this.ticker,
+                hasDcf ? refreshed.discountedCashFlowDto : this.discountedCashFlowDto,
+                hasPtc ? refreshed.priceTargetConsensusDto : this.priceTargetConsensusDto,
+                hasPts ? refreshed.priceTargetSummaryDto : this.priceTargetSummaryDto,
+                this.causeOfNullDtos, this.fillSource, this.upstreamCallCount,
+                hasDcf ? refreshed.dcfLoadedAtMillis : this.dcfLoadedAtMillis,
+                hasPtc ? refreshed.ptcLoadedAtMillis : this.ptcLoadedAtMillis,
+                hasPts ? refreshed.ptsLoadedAtMillis : this.ptsLoadedAtMillis);
+    }
+
+    /**
+     * An entry filled partially from the FMP api and then topped up from the database is still as expensive as the FMP part,
+     * so the fill cost only goes up
+     */
+    RecordHolder withFillCost(final FillSource fillSource, final int upstreamCallCount) {
+        if (fillSource.getCostPerCall() * upstreamCallCount <= this.getFillCost()) {
+            return this;
+        }
+        return new RecordHolder(this.ticker, this.discountedCashFlowDto, this.priceTargetConsensusDto, this.priceTargetSummaryDto,
+                this.causeOfNullDtos, fillSource, upstreamCallCount, this.dcfLoadedAtMillis, this.ptcLoadedAtMillis, this.ptsLoadedAtMillis);
+    }
+
+    RecordHolder withLoadedAtMillis(final ValuationDtoType dtoType, final long loadedAtMillis) {
+        return new RecordHolder(this.ticker, this.discountedCashFlowDto, this.priceTargetConsensusDto, this.priceTargetSummaryDto,
+                this.causeOfNullDtos, this.fillSource, this.upstreamCallCount,
+                dtoType == ValuationDtoType.DISCOUNTED_CASH_FLOW ? loadedAtMillis : this.dcfLoadedAtMillis,
+                dtoType == ValuationDtoType.PRICE_TARGET_CONSENSUS ? loadedAtMillis : this.ptcLoadedAtMillis,
+                dtoType == ValuationDtoType.PRICE_TARGET_SUMMARY ? loadedAtMillis : this.ptsLoadedAtMillis);
     }
 }
@@ -0,0 +1,153 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads a {@link RecordHolder} in a fixed size, compact binary layout, so it can be stored outside the Java heap.
+ * Every entry takes exactly {@link #ENTRY_SIZE} bytes, which makes it possible to address entries by slot number:
+ * <pre>
+ * offset  size  field
+ *      0     1  ticker length
+ *      1    16  ticker, US-ASCII
+ *     17     1  flags: which DTOs are present
+ *     18     1  fill source
+ *     19     1  upstream call count
+ *     20     1  DCF date length
+ *     21    10  DCF date, US-ASCII
+ *     32    16  DCF: dcf, stock price
+ *     48    32  price target consensus: high, low, consensus, median
+ *     80    24  price target summary: last month, last quarter, last month avg, last quarter avg
+ *    104    24  load time of the three DTOs in epoch millis
+ * </pre>
+ * The ticker of the DTOs is not stored, it is always the ticker of the entry. The longest ticker we know of is 16
+ * characters long, and the FMP api sends the DCF date as yyyy-MM-dd, records not fitting these limits can't be encoded.
+ * Only absolute get and put methods are used, so the position of the buffer never changes.
+ */
+final class RecordHolderCodec {
+
+    static final int ENTRY_SIZE = 128;
+    static final int MAX_TICKER_LENGTH = 16;
+    private static final int MAX_DATE_LENGTH = 10;
+
+    private static final int TICKER_LENGTH = 0;
+    private static final int TICKER = 1;
+    private static final int FLAGS = 17;
+    private static final int FILL_SOURCE = 18;
+    private static final int UPSTREAM_CALLS = 19;
+    private static final int DCF_DATE_LENGTH = 20;
+    private static final int DCF_DATE = 21;
+    private static final int DCF = 32;
+    private static final int DCF_STOCK_PRICE = 40;
+    private static final int PTC_HIGH = 48;
+    private static final int PTC_LOW = 56;
+    private static final int PTC_CONSENSUS = 64;
+    private static final int PTC_MEDIAN = 72;
+    private static final int PTS_LAST_MONTH = 80;
+    private static final int PTS_LAST_QUARTER = 84;
+    private static final int PTS_LAST_MONTH_AVG = 88;
+    private static final int PTS_LAST_QUARTER_AVG = 96;
+    private static final int LOADED_AT = 104;
+
+    private static final int HAS_DCF = 1;
+    private static final int HAS_PTC = 1 << 1;
+    private static final int HAS_PTS = 1 << 2;
+
+    private RecordHolderCodec() {
+        //static utility class, no need to instantiate
+    }
+
+    static boolean canEncode(final RecordHolder recordHolder) {
+        final DiscountedCashFlowDTO dcfDto = recordHolder.getDiscountedCashFlowDto();
+        return fitsAscii(recordHolder.getTicker(), MAX_TICKER_LENGTH)
+                && (dcfDto == null || dcfDto.dateString() == null || fitsAscii(dcfDto.dateString(), MAX_DATE_LENGTH))
+                && recordHolder.getUpstreamCallCount() <= Byte.MAX_VALUE;
+    }
+
+    /**
+     * Writes the record to the buffer starting at the offset. The caller must check {@link #canEncode(RecordHolder)} first
+     */
+    static void encode(final RecordHolder recordHolder, final ByteBuffer buffer, final int offset) {
+        final byte[] ticker = recordHolder.getTicker().getBytes(StandardCharsets.US_ASCII);
+        buffer.put(offset + TICKER_LENGTH, (byte) ticker.length);
+        buffer.put(offset + TICKER, ticker);
+        int flags = 0;
+        final DiscountedCashFlowDTO dcfDto = recordHolder.getDiscountedCashFlowDto();
+        if (dcfDto != null) {
+            flags |= HAS_DCF;
+            final byte[] date = dcfDto.dateString() == null ? new byte[0] : dcfDto.dateString().getBytes(StandardCharsets.US_ASCII);
+            buffer.put(offset + DCF_DATE_LENGTH, (byte) date.length);
+            buffer.put(offset + DCF_DATE, date);
+            buffer.putDouble(offset + DCF, dcfDto.dcf());
+            buffer.putDouble(offset + DCF_STOCK_PRICE, dcfDto.stockPrice());
+        }
+        final PriceTargetConsensusDTO ptcDto = recordHolder.getPriceTargetConsensusDto();
+        if (ptcDto != null) {
+            flags |= HAS_PTC;
+            buffer.putDouble(offset + PTC_HIGH, ptcDto.targetHigh());
+            buffer.putDouble(offset + PTC_LOW, ptcDto.targetLow());
+            buffer.putDouble(offset + PTC_CONSENSUS, ptcDto.targetConsensus());
+            buffer.putDouble(offset + PTC_MEDIAN, ptcDto.targetMedian());
+        }
+        final PriceTargetSummaryDTO ptsDto = recordHolder.getPriceTargetSummaryDto();
+        if (ptsDto != null) {
+            flags |= HAS_PTS;
+            buffer.putInt(offset + PTS_LAST_MONTH, ptsDto.lastMonth());
+            buffer.putInt(offset + PTS_LAST_QUARTER, ptsDto.lastQuarter());
+            buffer.putDouble(offset + PTS_LAST_MONTH_AVG, ptsDto.lastMonthAvgPriceTarget());
+            buffer.putDouble(offset + PTS_LAST_QUARTER_AVG, ptsDto.lastQuarterAvgPriceTarget());
+        }
+        buffer.put(offset + FLAGS, (byte) flags);
+        buffer.put(offset + FILL_SOURCE, (byte) recordHolder.getFillSource().ordinal());
+        buffer.put(offset + UPSTREAM_CALLS, (byte) recordHolder.getUpstreamCallCount());
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            buffer.putLong(offset + LOADED_AT + dtoType.ordinal() * Long.BYTES, recordHolder.getLoadedAtMillis(dtoType));
+        }
+    }
+
+    static RecordHolder decode(final ByteBuffer buffer, final int offset) {
+        final String ticker = readAscii(buffer, offset + TICKER, buffer.get(offset + TICKER_LENGTH));
+        final int flags = buffer.get(offset + FLAGS);
+        DiscountedCashFlowDTO dcfDto = null;
+        if ((flags & HAS_DCF) != 0) {
+            final int dateLength = buffer.get(offset + DCF_DATE_LENGTH);
+            dcfDto = new DiscountedCashFlowDTO(ticker, readAscii(buffer, offset + DCF_DATE, dateLength),
+                    buffer.getDouble(offset + DCF), buffer.getDouble(offset + DCF_STOCK_PRICE));
+        }
+        PriceTargetConsensusDTO ptcDto = null;
+        if ((flags & HAS_PTC) != 0) {
+            ptcDto = new PriceTargetConsensusDTO(ticker, buffer.getDouble(offset + PTC_HIGH), buffer.getDouble(offset + PTC_LOW),
+                    buffer.getDouble(offset + PTC_CONSENSUS), buffer.getDouble(offset + PTC_MEDIAN));
+        }
+        PriceTargetSummaryDTO ptsDto = null;
+        if ((flags & HAS_PTS) != 0) {
+            ptsDto = new PriceTargetSummaryDTO(ticker, buffer.getInt(offset + PTS_LAST_MONTH), buffer.getDouble(offset + PTS_LAST_MONTH_AVG),
+                    buffer.getInt(offset + PTS_LAST_QUARTER), buffer.getDouble(offset + PTS_LAST_QUARTER_AVG));
+        }
+        final FillSource fillSource = FillSource.values()[buffer.get(offset + FILL_SOURCE)];
+        return RecordHolder.restoredRecordHolder(ticker, dcfDto, ptcDto, ptsDto, fillSource, buffer.get(offset + UPSTREAM_CALLS),
+                buffer.getLong(offset + LOADED_AT), buffer.getLong(offset + LOADED_AT + Long.BYTES), buffer.getLong(offset + LOADED_AT + 2 * Long.BYTES));
+    }
+
+    /**
+     * Reads only the ticker of the entry, without materializing the DTOs
+     */
+    static String decodeTicker(final ByteBuffer buffer, final int offset) {
+        return readAscii(buffer, offset + TICKER, buffer.get(offset + TICKER_LENGTH));
+    }
+
+    private static String readAscii(final ByteBuffer buffer, final int offset, final int length) {
+        final byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean fitsAscii(final String string, final int maxLength) {
+        return string.length() <= maxLength && string.chars().allMatch(c -> c < 128);
+    }
+}
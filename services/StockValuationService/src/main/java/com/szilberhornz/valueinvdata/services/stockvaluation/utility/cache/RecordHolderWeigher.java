@@ -0,0 +1,89 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Estimates the retained heap size of a cache entry in bytes, so the cache can be bounded by a heap budget instead of
+ * an entry count. The estimate is deterministic: it doesn't ask the JVM (that would need an agent), it adds up the
+ * shallow sizes of the objects an entry holds, assuming a 64-bit HotSpot JVM with compressed oops and compact strings,
+ * which is what our containers run. That means 12 byte object headers, 4 byte references and 8 byte alignment.
+ * <p>
+ * It is an estimate, and a slight overestimate rather than an underestimate, as the same ticker String instance
+ * may be shared by the DTOs. Identical instances are only counted once.
+ */
+public final class RecordHolderWeigher {
+
+    private static final int OBJECT_ALIGNMENT = 8;
+    private static final int ARRAY_HEADER = 16;
+    //header, hash, coder, hashIsZero, value reference
+    private static final int STRING_SHALLOW_SIZE = 24;
+    //header, ticker, 3 DTOs, cause, fill source, rendered bodies and owner references, upstream call count, three load times
+    private static final int RECORD_HOLDER_SHALLOW_SIZE = 72;
+    //a node of the ConcurrentHashMap holding the entry: header, hash, key, value, next
+    private static final int MAP_NODE_SIZE = 32;
+    //header, two String references, two doubles
+    private static final int DCF_DTO_SHALLOW_SIZE = 40;
+    //header, String reference, four doubles
+    private static final int PTC_DTO_SHALLOW_SIZE = 48;
+    //header, String reference, two ints, two doubles
+    private static final int PTS_DTO_SHALLOW_SIZE = 40;
+    //the key and value slots of a rendered body in the immutable map of the bodies, which has twice as many slots as entries
+    private static final int RENDERED_BODY_SLOTS_SIZE = 16;
+
+    private RecordHolderWeigher() {
+        //static utility class, no need to instantiate
+    }
+
+    /**
+     * @return the estimated number of bytes the cache retains for this entry, including the map node, the key and the
+     * response bodies rendered from it
+     */
+    public static long weigh(final RecordHolder recordHolder) {
+        final String key = recordHolder.getTicker();
+        long weight = MAP_NODE_SIZE + RECORD_HOLDER_SHALLOW_SIZE + weighString(key);
+        final DiscountedCashFlowDTO dcfDto = recordHolder.getDiscountedCashFlowDto();
+        if (dcfDto != null) {
+            weight += DCF_DTO_SHALLOW_SIZE + weighTicker(dcfDto.ticker(), key) + weighString(dcfDto.dateString());
+        }
+        final PriceTargetConsensusDTO ptcDto = recordHolder.getPriceTargetConsensusDto();
+        if (ptcDto != null) {
+            weight += PTC_DTO_SHALLOW_SIZE + weighTicker(ptcDto.ticker(), key);
+        }
+        final PriceTargetSummaryDTO ptsDto = recordHolder.getPriceTargetSummaryDto();
+        if (ptsDto != null) {
+            weight += PTS_DTO_SHALLOW_SIZE + weighTicker(ptsDto.ticker(), key);
+        }
+        for (final byte[] body : recordHolder.getRenderedBodies()) {
+            weight += weighRenderedBody(body);
+        }
+        return weight;
+    }
+
+    /**
+     * @return the estimated number of bytes a rendered response body adds to the entry it is kept with
+     */
+    static long weighRenderedBody(final byte[] body) {
+        return RENDERED_BODY_SLOTS_SIZE + align(ARRAY_HEADER + (long) body.length);
+    }
+
+    static long weighString(@Nullable final String string) {
+        if (string == null) {
+            return 0;
+        }
+        //compact strings store one byte per char if every char fits into latin-1, two bytes otherwise
+        final int bytesPerChar = string.chars().allMatch(c -> c < 256) ? 1 : 2;
+        return STRING_SHALLOW_SIZE + align(ARRAY_HEADER + (long) string.length() * bytesPerChar);
+    }
+
+    private static long weighTicker(@Nullable final String ticker, final String key) {
+        //identity check on purpose, only the very same instance is free
+        return ticker == key ? 0 : weighString(ticker);
+    }
+
+    private static long align(final long size) {
+        return (size + OBJECT_ALIGNMENT - 1) & -OBJECT_ALIGNMENT;
+    }
+}
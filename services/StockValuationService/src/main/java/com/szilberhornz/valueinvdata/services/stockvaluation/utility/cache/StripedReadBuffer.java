@@ -0,0 +1,105 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy, striped buffer to record cache reads without blocking the reader threads. Every stripe is a small, bounded
+ * ring buffer, and a thread always writes to the same stripe (chosen by its thread id), so concurrent readers mostly
+ * don't even compete for the same CAS.
+ * <p>
+ * If a stripe is full the read is simply dropped and the caller gets notified so it can schedule a drain. Losing a few reads
+ * is fine, as the access history is only used to estimate frequencies and recency for the eviction policy, and the
+ * popular tickers will be recorded plenty of times anyway.
+ * <p>
+ * Writers are lock-free, but {@link #drainTo(Consumer)} must only be called by one thread at a time, the cache guarantees
+ * it by calling it under its eviction lock.
+ */
+final class StripedReadBuffer {
+
+    static final int BUFFER_SIZE = 16;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    StripedReadBuffer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    StripedReadBuffer(final int parallelism) {
+        final int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, parallelism) * 2 - 1) << 1);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records the ticker in the stripe of the current thread
+     * @return false if the stripe was full, and the read was dropped. The caller should drain the buffer in this case
+     */
+    boolean offer(final String ticker) {
+        final Stripe stripe = this.stripes[this.stripeIndex()];
+        return stripe.offer(ticker);
+    }
+
+    /**
+     * Hands over all the buffered reads to the consumer, stripe by stripe. Single consumer only!
+     */
+    void drainTo(final Consumer<String> consumer) {
+        for (final Stripe stripe : this.stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+
+    int stripeCount() {
+        return this.stripes.length;
+    }
+
+    private int stripeIndex() {
+        final long threadId = Thread.currentThread().threadId();
+        return (int) ((threadId * 0x9E37_79B9_7F4A_7C15L) >>> 40) & this.stripeMask;
+    }
+
+    private static final class Stripe {
+
+        private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        //only the draining thread writes it, but the writers read it to check if there is free space
+        private volatile long readCounter;
+
+        private boolean offer(final String ticker) {
+            final long head = this.readCounter;
+            final long tail = this.writeCounter.get();
+            if (tail - head >= BUFFER_SIZE) {
+                return false;
+            }
+            if (this.writeCounter.compareAndSet(tail, tail + 1)) {
+                this.buffer.lazySet((int) (tail & BUFFER_MASK), ticker);
+            }
+            //losing the CAS race means another reader got the slot, and we just drop this read, which is fine
+            return true;
+        }
+
+        private void drainTo(final Consumer<String> consumer) {
+            long head = this.readCounter;
+            final long tail = this.writeCounter.get();
+            while (head < tail) {
+                final int index = (int) (head & BUFFER_MASK);
+                final String ticker = this.buffer.get(index);
+                if (ticker == null) {
+                    //the writer claimed the slot but didn't publish yet, we will pick it up in the next drain
+                    break;
+                }
+                this.buffer.lazySet(index, null);
+                consumer.accept(ticker);
+                head++;
+            }
+            this.readCounter = head;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
 
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.Scanner;
-import java.util.Set;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * This is a constant size cache for all the existing tickers, used to verify user-input.
@@ -14,38 +19,191 @@ import java.util.Set;
  * This also helps to prevent SQL-injection, although for any parameterized query, only PreparedStatements should
  * be used anyway.
  * If this cannot initialize, the application should exit instead of skipping over the issue.
+ * <p>
+ * The tickers can be reloaded at runtime to pick up the new listings and the delistings, see {@link #reload()}. The new
+ * index and the trie of the suggestions are built on the calling thread and published with a single volatile write, so
+ * the lookups never block and they see either the old or the new universe, never a half-built one. If the reload fails,
+ * the old universe stays in use.
+ * <p>
+ * Every ticker has a dense int id, see {@link TickerIndex}, and the ids are stable: a reload keeps the id of every ticker it
+ * saw before, even of the delisted ones, and gives the new listings new ids after them. So an id identifies the same
+ * ticker for the lifetime of the app, and the canonical String of a ticker stays the same instance too. The delisted
+ * tickers only cost their bytes in the index, a handful a day. For now only the access frequencies of the LFU cache are
+ * indexed by these ids, every other cache structure is still keyed by the canonical String.
  */
 public final class TickerCache {
 
-    private static final Set<String> TICKER_CACHE = new HashSet<>();
+    private static final Logger LOG = LoggerFactory.getLogger(TickerCache.class);
+
+    //a reload that would remove more than this share of the tickers is refused, the file is most likely truncated
+    static final double MAX_REMOVED_SHARE = 0.5;
+    private static final int LOGGED_TICKER_COUNT = 20;
+    //a typo in a ticker this short is already a third of it
+    private static final int SHORT_TICKER_LENGTH = 3;
+
+    //the id of every ticker that is not in the universe, see idOf()
+    public static final int UNKNOWN_TICKER_ID = -1;
 
-    private final String resourceFileName;
+    private final String source;
+    private final TickerIndexLoader loader;
+    private final List<Consumer<TickerUniverseDiff>> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile TickerUniverse tickerUniverse;
 
     public TickerCache(final String resourceFileName) {
-        this.resourceFileName = resourceFileName;
-        this.loadCache();
-    }
-
-    public boolean tickerExists(final String ticker){
-        return TICKER_CACHE.contains(ticker.toUpperCase());
-    }
-
-    //this currentThread() in the method should always be the [main] since initialization happens in the AppContainer, before
-    //the app starts the http server
-    private void loadCache(){
-        try (final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(this.resourceFileName)){
-            if (in != null) {
-                final Scanner scanner = new Scanner(in, StandardCharsets.UTF_8).useDelimiter(",");
-                while (scanner.hasNext()) {
-                    final String next = scanner.next();
-                    //we have to remove leading and trailing quotes
-                    TICKER_CACHE.add(next.substring(1, next.length()-1));
-                }
-            } else {
-                throw new TickerCacheLoadingFailedException("Ticker cache loading failed because the resource file " + this.resourceFileName + " does not exist or is empty!");
+        this("resource file " + resourceFileName, () -> TickerUniverseLoader.fromResource(resourceFileName));
+    }
+
+    /**
+     * Loads the tickers from a file instead of the resource packed with the app, e.g. a larger universe of every exchange
+     */
+    public TickerCache(final Path tickerFile) {
+        this("file " + tickerFile, () -> TickerUniverseLoader.fromFile(tickerFile));
+    }
+
+    private TickerCache(final String source, final TickerIndexLoader loader) {
+        this.source = source;
+        this.loader = loader;
+        final TickerIndex loaded = this.loadCache();
+        final boolean[] listed = new boolean[loaded.size()];
+        Arrays.fill(listed, true);
+        this.tickerUniverse = new TickerUniverse(loaded, listed, loaded.size(), TickerTrie.of(loaded));
+    }
+
+    /**
+     * Case-insensitive, and doesn't allocate anything, see {@link TickerIndex}
+     */
+    public boolean tickerExists(final CharSequence ticker){
+        return this.idOf(ticker) != UNKNOWN_TICKER_ID;
+    }
+
+    /**
+     * Case-insensitive, and doesn't allocate anything
+     * @return the id of the ticker, or UNKNOWN_TICKER_ID if it is not in the universe (anymore)
+     */
+    public int idOf(final CharSequence ticker) {
+        final TickerUniverse universe = this.tickerUniverse;
+        final int id = universe.symbols().idOf(ticker);
+        return id >= 0 && universe.listed()[id] ? id : UNKNOWN_TICKER_ID;
+    }
+
+    /**
+     * @return the upper-cased ticker of an id {@link #idOf(CharSequence)} returned, the same instance every time
+     */
+    public String tickerOf(final int id) {
+        return this.tickerUniverse.symbols().tickerOf(id);
+    }
+
+    /**
+     * The autocomplete, see {@link TickerTrie#withPrefix(CharSequence, int)}
+     * @return at most maxCount known tickers starting with the prefix, case-insensitive, in alphabetical order
+     */
+    public List<String> suggest(final CharSequence prefix, final int maxCount) {
+        return this.tickerUniverse.trie().withPrefix(prefix, maxCount);
+    }
+
+    /**
+     * The known tickers a mistyped ticker was most likely meant to be, at most one typo away from the short tickers and
+     * two from the longer ones, see {@link TickerTrie#similarTo(CharSequence, int, int)}
+     * @return at most maxCount tickers, the closest ones first
+     */
+    public List<String> didYouMean(final CharSequence ticker, final int maxCount) {
+        final int maxDistance = ticker.length() <= SHORT_TICKER_LENGTH ? 1 : 2;
+        return this.tickerUniverse.trie().similarTo(ticker, maxDistance, maxCount);
+    }
+
+    /**
+     * @return the number of bytes the known tickers occupy on the heap, in the index and in the trie of the suggestions
+     */
+    public long getFootprintInBytes() {
+        final TickerUniverse universe = this.tickerUniverse;
+        return universe.symbols().getFootprintInBytes() + 16 + ((universe.listed().length + 7L) & -8L) + universe.trie().getFootprintInBytes();
+    }
+
+    /**
+     * @return the number of tickers in the universe, without the delisted ones
+     */
+    public int size() {
+        return this.tickerUniverse.size();
+    }
+
+    /**
+     * Gets the diff of every successful reload that changed the universe, on the thread of the reload
+     */
+    public void addReloadListener(final Consumer<TickerUniverseDiff> reloadListener) {
+        this.reloadListeners.add(reloadListener);
+    }
+
+    /**
+     * Loads the tickers again from the same source and swaps them in
+     * @return the tickers added and removed by the reload
+     * @throws TickerCacheLoadingFailedException if the source can't be loaded, it is empty or it would remove more than
+     * half of the tickers, the current universe is kept then
+     */
+    public synchronized TickerUniverseDiff reload() {
+        final TickerIndex loaded = this.loadCache();
+        final TickerUniverse previous = this.tickerUniverse;
+        final TickerIndex symbols = extend(previous.symbols(), loaded);
+        final boolean[] listed = new boolean[symbols.size()];
+        loaded.forEach(ticker -> listed[symbols.idOf(ticker)] = true);
+        final TickerUniverseDiff diff = TickerUniverseDiff.between(symbols, previous.listed(), listed);
+        if (diff.removed().size() > previous.size() * MAX_REMOVED_SHARE) {
+            throw new TickerCacheLoadingFailedException("Ticker cache reload refused, the " + this.source + " would remove "
+                    + diff.removed().size() + " of the " + previous.size() + " tickers!");
+        }
+        this.tickerUniverse = new TickerUniverse(symbols, listed, loaded.size(), TickerTrie.of(loaded));
+        LOG.info("Reloaded {} tickers from the {}, {} added: {}, {} removed: {}", loaded.size(), this.source,
+                diff.added().size(), abbreviate(diff.added()), diff.removed().size(), abbreviate(diff.removed()));
+        if (!diff.isEmpty()) {
+            this.reloadListeners.forEach(listener -> listener.accept(diff));
+        }
+        return diff;
+    }
+
+    private TickerIndex loadCache(){
+        final TickerIndex loaded;
+        try {
+            loaded = this.loader.load();
+        } catch (final IOException | IllegalArgumentException exception){
+            throw new TickerCacheLoadingFailedException("Ticker cache loading failed due to the following reason: ", exception);
+        }
+        if (loaded == null || loaded.size() == 0) {
+            throw new TickerCacheLoadingFailedException("Ticker cache loading failed because the " + this.source + " does not exist or is empty!");
+        }
+        return loaded;
+    }
+
+    //the tickers seen before keep their ids, the new ones are appended
+    private static TickerIndex extend(final TickerIndex symbols, final TickerIndex loaded) {
+        final List<String> newTickers = new ArrayList<>();
+        loaded.forEach(ticker -> {
+            if (!symbols.contains(ticker)) {
+                newTickers.add(ticker);
             }
-        } catch (final IOException ioe){
-            throw new TickerCacheLoadingFailedException("Ticker cache loading failed due to the following reason: ", ioe);
+        });
+        if (newTickers.isEmpty()) {
+            return symbols;
         }
+        final List<String> tickers = new ArrayList<>(symbols.size() + newTickers.size());
+        symbols.forEach(tickers::add);
+        tickers.addAll(newTickers);
+        final TickerIndex extended = TickerIndex.of(tickers);
+        extended.adoptCanonicalTickers(symbols);
+        return extended;
+    }
+
+    private static String abbreviate(final List<String> tickers) {
+        return tickers.size() <= LOGGED_TICKER_COUNT ? tickers.toString()
+                : tickers.subList(0, LOGGED_TICKER_COUNT) + " and " + (tickers.size() - LOGGED_TICKER_COUNT) + " more";
+    }
+
+    //swapped in one go, so the suggestions are always made from the same universe the lookups use. The symbols have every
+    //ticker ever loaded, the listed flags tell which ones are in the universe now, and size is the number of those
+    private record TickerUniverse(TickerIndex symbols, boolean[] listed, int size, TickerTrie trie) {
+    }
+
+    @FunctionalInterface
+    private interface TickerIndexLoader {
+        @Nullable
+        TickerIndex load() throws IOException;
     }
 }
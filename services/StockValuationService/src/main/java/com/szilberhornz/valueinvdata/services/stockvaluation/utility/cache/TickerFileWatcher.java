@@ -0,0 +1,98 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the {@link TickerCache} whenever its ticker file changes, on a dedicated daemon thread, so new listings and
+ * delistings are picked up without a redeploy. The file is often written in more than one step, so the reload waits until
+ * no change came in for the quiet period.
+ * <p>
+ * The file should still be replaced atomically, by writing a temporary file and moving it over the old one, since a
+ * reload that happens to read a half-written file would drop the tickers that are not written yet. A file that lost more
+ * than half of its tickers is refused by the TickerCache for the same reason.
+ */
+public class TickerFileWatcher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TickerFileWatcher.class);
+
+    private final TickerCache tickerCache;
+    private final Path tickerFile;
+    private final long quietPeriodInMillis;
+    private final WatchService watchService;
+    private final Thread watcherThread;
+
+    public TickerFileWatcher(final TickerCache tickerCache, final Path tickerFile, final Duration quietPeriod) throws IOException {
+        this.tickerCache = tickerCache;
+        this.tickerFile = tickerFile.toAbsolutePath();
+        this.quietPeriodInMillis = quietPeriod.toMillis();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        //only directories can be watched, an atomic replacement shows up as a creation of the file in it
+        this.tickerFile.getParent().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watcherThread = new Thread(this::watch, "ticker-file-watcher");
+        this.watcherThread.setDaemon(true);
+    }
+
+    public void start() {
+        this.watcherThread.start();
+        LOG.info("Watching {} for changes of the ticker universe", this.tickerFile);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                boolean changed = this.isTickerFileChanged(this.watchService.take());
+                WatchKey next;
+                while ((next = this.watchService.poll(this.quietPeriodInMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= this.isTickerFileChanged(next);
+                }
+                if (changed) {
+                    this.reloadSafely();
+                }
+            }
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (final ClosedWatchServiceException exception) {
+            //closed, we are done
+        }
+    }
+
+    private boolean isTickerFileChanged(final WatchKey key) {
+        boolean changed = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            //on an overflow we can't tell which files changed, so it might have been ours
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || this.tickerFile.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reloadSafely() {
+        try {
+            this.tickerCache.reload();
+        } catch (final RuntimeException exception) {
+            //the old universe stays in use, the next change of the file is another chance
+            LOG.error("Reloading the tickers from {} failed, keeping the current tickers!", this.tickerFile, exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.watchService.close();
+        } catch (final IOException exception) {
+            LOG.warn("Failed to close the watch service of {}", this.tickerFile, exception);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int ids of the tickers, for the structures of a cache that are indexed by ticker. Backed by the {@link TickerCache}
+ * when there is a ticker universe, so the ids stay stable across the reloads of the tickers. Without one, e.g. in
+ * the CacheSimulator or in the tests, the ids are handed out in the order the tickers are first seen.
+ */
+interface TickerIds {
+
+    /**
+     * @return the id of the ticker, or TickerCache.UNKNOWN_TICKER_ID if it is not in the ticker universe
+     */
+    int idOf(String ticker);
+
+    String tickerOf(int id);
+
+    static TickerIds of(final TickerCache tickerCache) {
+        return new TickerIds() {
+            @Override
+            public int idOf(final String ticker) {
+                return tickerCache.idOf(ticker);
+            }
+
+            @Override
+            public String tickerOf(final int id) {
+                return tickerCache.tickerOf(id);
+            }
+        };
+    }
+
+    static TickerIds assignedOnFirstSight() {
+        return new FirstSightTickerIds();
+    }
+
+    final class FirstSightTickerIds implements TickerIds {
+
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final List<String> tickers = new ArrayList<>();
+
+        @Override
+        public int idOf(final String ticker) {
+            final Integer id = this.ids.get(ticker);
+            return id != null ? id : this.ids.computeIfAbsent(ticker, this::assign);
+        }
+
+        @Override
+        public synchronized String tickerOf(final int id) {
+            return this.tickers.get(id);
+        }
+
+        private synchronized int assign(final String ticker) {
+            this.tickers.add(ticker);
+            return this.tickers.size() - 1;
+        }
+    }
+}
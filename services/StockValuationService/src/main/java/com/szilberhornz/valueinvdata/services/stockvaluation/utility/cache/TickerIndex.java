@@ -0,0 +1,254 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A compact, immutable set of tickers for the lookups on the request path. A HashSet of the ~66k tickers costs a map node,
+ * a String and its byte array per ticker, about 90 bytes each, and checking a ticker in any casing needs an upper-cased
+ * copy of it first. This index packs every ticker into a single byte array instead, each one as a length byte followed
+ * by its upper-cased US-ASCII bytes, and finds them with an open addressing hash table of their ids, see below.
+ * <p>
+ * The hash is computed over the upper-cased characters on the fly, and the characters are compared with the packed bytes
+ * one by one, so a lookup is case-insensitive without allocating anything. It takes one or two probes most of the time, as
+ * the table is at most two thirds full. A ticker must be US-ASCII and 1 to 255 characters long, so that its length fits the
+ * length byte, anything else is rejected when the index is built. The ones we know of are much shorter than that.
+ * <p>
+ * Every ticker also gets a dense int id, its position among the indexed tickers, so the ids of a universe go from 0 to
+ * size - 1 and they can index plain arrays. The String of a ticker is only created the first time its id is turned back
+ * into a ticker, then it is kept, so every part of the app gets the same canonical instance with its hash already cached.
+ */
+public final class TickerIndex {
+
+    //the most a single length byte can hold
+    private static final int MAX_TICKER_LENGTH = 255;
+
+    //length-prefixed, upper-cased tickers, one after the other
+    private final byte[] packedTickers;
+    //the id of a ticker + 1, 0 is an empty bucket
+    private final int[] table;
+    //the offset of every ticker in the packedTickers by its id
+    private final int[] offsets;
+    //filled in on demand, a race only creates an equal String twice
+    private final String[] canonicalTickers;
+
+    private TickerIndex(final byte[] packedTickers, final int[] table, final int[] offsets) {
+        this.packedTickers = packedTickers;
+        this.table = table;
+        this.offsets = offsets;
+        this.canonicalTickers = new String[offsets.length];
+    }
+
+    /**
+     * @throws IllegalArgumentException if a ticker is empty, too long or not US-ASCII
+     */
+    public static TickerIndex of(final Collection<String> tickers) {
+        int sourceLength = 0;
+        for (final String ticker : tickers) {
+            if (ticker.isEmpty() || ticker.length() > MAX_TICKER_LENGTH || !ticker.chars().allMatch(c -> c < 128)) {
+                throw invalidTicker(ticker);
+            }
+            sourceLength += ticker.length();
+        }
+        //the US-ASCII characters fit in a byte each
+        final byte[] source = new byte[sourceLength];
+        final int[] tokenBounds = new int[2 * tickers.size()];
+        int offset = 0;
+        int token = 0;
+        for (final String ticker : tickers) {
+            for (int i = 0; i < ticker.length(); i++) {
+                source[offset + i] = (byte) ticker.charAt(i);
+            }
+            tokenBounds[token++] = offset;
+            tokenBounds[token++] = ticker.length();
+            offset += ticker.length();
+        }
+        return of(ByteBuffer.wrap(source), tokenBounds, tickers.size());
+    }
+
+    /**
+     * Builds the index straight from the bytes of a ticker file, without creating a String for any of the tickers. The ids
+     * follow the order of the tickers, the duplicates keep the id of their first occurrence
+     * @param source the content of the file, only read with absolute gets, so its position doesn't matter
+     * @param tokenBounds the start index and the length of every ticker in the source, one after the other
+     * @param tokenCount the number of tickers in the tokenBounds
+     * @throws IllegalArgumentException if a ticker is empty, too long or not US-ASCII
+     */
+    static TickerIndex of(final ByteBuffer source, final int[] tokenBounds, final int tokenCount) {
+        int packedLength = 0;
+        for (int token = 0; token < tokenCount; token++) {
+            final int start = tokenBounds[2 * token];
+            final int length = tokenBounds[2 * token + 1];
+            if (length == 0 || length > MAX_TICKER_LENGTH) {
+                throw invalidTicker(decode(source, start, length));
+            }
+            for (int i = start; i < start + length; i++) {
+                //the bytes above 127 are negative, and they are never US-ASCII
+                if (source.get(i) < 0) {
+                    throw invalidTicker(decode(source, start, length));
+                }
+            }
+            packedLength += 1 + length;
+        }
+        final byte[] packedTickers = new byte[packedLength];
+        //the next power of two from 1.5 times the ticker count, so the table is one to two thirds full
+        final int minTableSize = Math.max(2, tokenCount + tokenCount / 2);
+        final int[] table = new int[Integer.highestOneBit(minTableSize - 1) << 1];
+        final int mask = table.length - 1;
+        final int[] offsets = new int[tokenCount];
+        int offset = 0;
+        int size = 0;
+        for (int token = 0; token < tokenCount; token++) {
+            final int start = tokenBounds[2 * token];
+            final int length = tokenBounds[2 * token + 1];
+            //packed at the end first, a duplicate is simply overwritten by the next ticker
+            packedTickers[offset] = (byte) length;
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                final int upperCased = toUpperCase((char) source.get(start + i));
+                packedTickers[offset + 1 + i] = (byte) upperCased;
+                hash = 31 * hash + upperCased;
+            }
+            int bucket = spread(hash) & mask;
+            boolean duplicate = false;
+            while (table[bucket] != 0) {
+                final int indexed = offsets[table[bucket] - 1];
+                if (Arrays.equals(packedTickers, indexed, indexed + 1 + length, packedTickers, offset, offset + 1 + length)) {
+                    duplicate = true;
+                    break;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            if (!duplicate) {
+                table[bucket] = size + 1;
+                offsets[size++] = offset;
+                offset += 1 + length;
+            }
+        }
+        //the duplicates left some room at the end
+        return new TickerIndex(offset == packedLength ? packedTickers : Arrays.copyOf(packedTickers, offset), table,
+                size == tokenCount ? offsets : Arrays.copyOf(offsets, size));
+    }
+
+    /**
+     * Case-insensitive and allocation free
+     */
+    public boolean contains(final CharSequence ticker) {
+        return this.idOf(ticker) >= 0;
+    }
+
+    /**
+     * Case-insensitive and allocation free, like {@link #contains(CharSequence)}
+     * @return the id of the ticker, or -1 if it is not indexed
+     */
+    public int idOf(final CharSequence ticker) {
+        final int length = ticker.length();
+        if (length == 0 || length > MAX_TICKER_LENGTH) {
+            return -1;
+        }
+        final int mask = this.table.length - 1;
+        int bucket = hash(ticker) & mask;
+        int entry;
+        while ((entry = this.table[bucket]) != 0) {
+            if (this.matches(this.offsets[entry - 1], ticker)) {
+                return entry - 1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the upper-cased ticker of the id, the same instance every time
+     * @throws IndexOutOfBoundsException if there is no ticker with the id
+     */
+    public String tickerOf(final int id) {
+        String ticker = this.canonicalTickers[id];
+        if (ticker == null) {
+            ticker = this.decode(id);
+            this.canonicalTickers[id] = ticker;
+        }
+        return ticker;
+    }
+
+    private String decode(final int id) {
+        final int offset = this.offsets[id];
+        return new String(this.packedTickers, offset + 1, this.packedTickers[offset] & 0xFF, StandardCharsets.US_ASCII);
+    }
+
+    public int size() {
+        return this.offsets.length;
+    }
+
+    /**
+     * Hands every ticker to the consumer upper-cased, in the order of their ids. It may create a String per ticker, so it
+     * is meant for the background jobs, not for the request path
+     */
+    public void forEach(final Consumer<String> consumer) {
+        for (int id = 0; id < this.offsets.length; id++) {
+            //not kept as the canonical instance, most of the tickers are never requested
+            final String canonical = this.canonicalTickers[id];
+            consumer.accept(canonical != null ? canonical : this.decode(id));
+        }
+    }
+
+    /**
+     * Takes over the canonical tickers of an index this one extends, the tickers of the previous index must have the same
+     * ids in this one, so the instances handed out before stay the canonical ones
+     */
+    void adoptCanonicalTickers(final TickerIndex previous) {
+        System.arraycopy(previous.canonicalTickers, 0, this.canonicalTickers, 0, previous.canonicalTickers.length);
+    }
+
+    /**
+     * @return the number of bytes the arrays of the index occupy on the heap, without the canonical Strings handed out
+     */
+    public long getFootprintInBytes() {
+        //16 byte array headers, the byte array is aligned to 8 bytes, the references are compressed
+        return 16 + ((this.packedTickers.length + 7L) & -8L) + 3 * 16 + (long) this.table.length * Integer.BYTES
+                + 2L * this.offsets.length * Integer.BYTES;
+    }
+
+    private boolean matches(final int offset, final CharSequence ticker) {
+        final int length = ticker.length();
+        if ((this.packedTickers[offset] & 0xFF) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.packedTickers[offset + 1 + i] != toUpperCase(ticker.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //the same for every casing of the ticker, non-ASCII characters never match anything anyway
+    private static int hash(final CharSequence ticker) {
+        int hash = 0;
+        for (int i = 0; i < ticker.length(); i++) {
+            hash = 31 * hash + toUpperCase(ticker.charAt(i));
+        }
+        return spread(hash);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static IllegalArgumentException invalidTicker(final String ticker) {
+        return new IllegalArgumentException("Can't index the ticker '" + ticker + "', it must be 1 to " + MAX_TICKER_LENGTH + " US-ASCII characters");
+    }
+
+    private static String decode(final ByteBuffer source, final int start, final int length) {
+        final byte[] bytes = new byte[length];
+        source.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int toUpperCase(final char c) {
+        return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+    }
+}
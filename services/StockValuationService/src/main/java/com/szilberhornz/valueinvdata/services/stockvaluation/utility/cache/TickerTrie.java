@@ -0,0 +1,314 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, compressed radix trie of the tickers for the autocomplete and the "did you mean" suggestions. The chains
+ * of nodes with a single child are merged into one node, so the ~66k tickers take about as many nodes, and every node
+ * is a slot in a few parallel arrays with its label in a shared byte array, instead of an object with a map of children.
+ * <p>
+ * The children of a node are ordered by their first character, so the lookups find the tickers in alphabetical order
+ * without any sorting. A lookup only allocates the list of the results, their Strings, and a scratch buffer of the length
+ * of the longest ticker, plus the rows of the edit distances and the distances of the results for the fuzzy lookup.
+ */
+public final class TickerTrie {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    //the labels of the nodes, one after the other
+    private final byte[] labels;
+    private final int[] labelStarts;
+    private final byte[] labelLengths;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final boolean[] terminals;
+    private final int maxTickerLength;
+
+    private TickerTrie(final byte[] labels, final int[] labelStarts, final byte[] labelLengths, final int[] firstChildren,
+                       final int[] nextSiblings, final boolean[] terminals, final int maxTickerLength) {
+        this.labels = labels;
+        this.labelStarts = labelStarts;
+        this.labelLengths = labelLengths;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.terminals = terminals;
+        this.maxTickerLength = maxTickerLength;
+    }
+
+    /**
+     * Builds the trie of every ticker in the index
+     */
+    public static TickerTrie of(final TickerIndex tickerIndex) {
+        final List<String> tickers = new ArrayList<>(tickerIndex.size());
+        tickerIndex.forEach(tickers::add);
+        final String[] sortedTickers = tickers.toArray(String[]::new);
+        Arrays.sort(sortedTickers);
+        return new Builder(sortedTickers).build();
+    }
+
+    /**
+     * @return at most maxCount tickers starting with the prefix in alphabetical order, the prefix is case-insensitive
+     */
+    public List<String> withPrefix(final CharSequence prefix, final int maxCount) {
+        final List<String> results = new ArrayList<>(Math.min(maxCount, 16));
+        if (maxCount <= 0 || this.terminals.length == 0) {
+            return results;
+        }
+        final char[] buffer = new char[this.maxTickerLength];
+        int node = ROOT;
+        int length = 0;
+        while (true) {
+            //the whole label goes into the buffer, even if the prefix ends inside it
+            final int labelStart = this.labelStarts[node];
+            for (int i = 0; i < (this.labelLengths[node] & 0xFF); i++) {
+                final char c = (char) this.labels[labelStart + i];
+                if (length < prefix.length() && toUpperCase(prefix.charAt(length)) != c) {
+                    return results;
+                }
+                buffer[length++] = c;
+            }
+            if (length >= prefix.length()) {
+                this.collect(node, buffer, length, results, maxCount);
+                return results;
+            }
+            node = this.childStartingWith(node, toUpperCase(prefix.charAt(length)));
+            if (node == NONE) {
+                return results;
+            }
+        }
+    }
+
+    /**
+     * A fuzzy lookup for the tickers that are at most maxDistance single character insertions, deletions or substitutions
+     * away from the ticker, the Levenshtein distance, keeping its first character. The trie is walked depth first with one
+     * row of the distance matrix per character, and a branch is left as soon as every distance in its row is above the
+     * distance a ticker still needs to make it into the results, that shrinks once maxCount close enough ones are found.
+     * @return at most maxCount tickers, the closest ones first and in alphabetical order within the same distance
+     */
+    public List<String> similarTo(final CharSequence ticker, final int maxDistance, final int maxCount) {
+        final int columns = ticker.length() + 1;
+        //no ticker is that close to something this long
+        if (maxCount <= 0 || this.terminals.length == 0 || ticker.isEmpty() || ticker.length() > this.maxTickerLength + maxDistance) {
+            return new ArrayList<>(0);
+        }
+        final char[] upperCased = new char[ticker.length()];
+        for (int i = 0; i < ticker.length(); i++) {
+            upperCased[i] = toUpperCase(ticker.charAt(i));
+        }
+        final char[] buffer = new char[this.maxTickerLength];
+        final int[] rows = new int[(this.maxTickerLength + 1) * columns];
+        for (int column = 0; column < columns; column++) {
+            rows[column] = column;
+        }
+        final Matches matches = new Matches(Math.min(maxCount, this.terminals.length), maxDistance);
+        this.collectSimilar(ROOT, upperCased, buffer, 0, rows, matches);
+        return matches.tickers;
+    }
+
+    /**
+     * @return the number of bytes the arrays of the trie occupy on the heap
+     */
+    public long getFootprintInBytes() {
+        final long nodeCount = this.terminals.length;
+        //16 byte array headers, the byte and boolean arrays are aligned to 8 bytes
+        return 6 * 16 + align(this.labels.length) + 3 * nodeCount * Integer.BYTES + 2 * align(nodeCount);
+    }
+
+    //the buffer holds the tickers up to the end of the label of the node
+    private void collect(final int node, final char[] buffer, final int length, final List<String> results, final int maxCount) {
+        if (this.terminals[node]) {
+            results.add(new String(buffer, 0, length));
+        }
+        for (int child = this.firstChildren[node]; child != NONE && results.size() < maxCount; child = this.nextSiblings[child]) {
+            final int childLength = this.labelLengths[child] & 0xFF;
+            for (int i = 0; i < childLength; i++) {
+                buffer[length + i] = (char) this.labels[this.labelStarts[child] + i];
+            }
+            this.collect(child, buffer, length + childLength, results, maxCount);
+        }
+    }
+
+    //depth is the number of characters before the label of the node, the row of the distances at that depth is filled
+    private void collectSimilar(final int node, final char[] ticker, final char[] buffer, final int depth, final int[] rows,
+                                final Matches matches) {
+        final int columns = ticker.length + 1;
+        final int labelLength = this.labelLengths[node] & 0xFF;
+        int length = depth;
+        for (int i = 0; i < labelLength; i++) {
+            final char c = (char) this.labels[this.labelStarts[node] + i];
+            //the first character is the one a user is the least likely to get wrong, so it is not tried with any other
+            if (length == 0 && c != ticker[0]) {
+                return;
+            }
+            buffer[length] = c;
+            final int previous = length * columns;
+            final int current = previous + columns;
+            rows[current] = rows[previous] + 1;
+            int rowMinimum = rows[current];
+            for (int column = 1; column < columns; column++) {
+                final int substitution = rows[previous + column - 1] + (ticker[column - 1] == c ? 0 : 1);
+                final int insertion = rows[current + column - 1] + 1;
+                final int deletion = rows[previous + column] + 1;
+                rows[current + column] = Math.min(substitution, Math.min(insertion, deletion));
+                rowMinimum = Math.min(rowMinimum, rows[current + column]);
+            }
+            length++;
+            if (rowMinimum > matches.bound()) {
+                return;
+            }
+        }
+        if (this.terminals[node]) {
+            matches.offer(buffer, length, rows[length * columns + columns - 1]);
+        }
+        for (int child = this.firstChildren[node]; child != NONE; child = this.nextSiblings[child]) {
+            this.collectSimilar(child, ticker, buffer, length, rows, matches);
+        }
+    }
+
+    private int childStartingWith(final int node, final char c) {
+        int child = this.firstChildren[node];
+        while (child != NONE && this.labels[this.labelStarts[child]] != c) {
+            child = this.nextSiblings[child];
+        }
+        return child;
+    }
+
+    private static char toUpperCase(final char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    private static long align(final long byteCount) {
+        return (byteCount + 7) & -8L;
+    }
+
+    /**
+     * The closest tickers found so far, ordered by their distance. The tickers are found in alphabetical order, so a ticker
+     * only gets in if it is strictly closer than the farthest one once there are maxCount of them, and a String is only
+     * created for the ones that get in.
+     */
+    private static final class Matches {
+
+        private final List<String> tickers;
+        private final int[] distances;
+        private final int maxCount;
+        private final int maxDistance;
+
+        private Matches(final int maxCount, final int maxDistance) {
+            this.tickers = new ArrayList<>(Math.min(maxCount, 16));
+            this.distances = new int[maxCount];
+            this.maxCount = maxCount;
+            this.maxDistance = maxDistance;
+        }
+
+        //the largest distance a ticker can have to still get in
+        private int bound() {
+            return this.tickers.size() < this.maxCount ? this.maxDistance : this.distances[this.maxCount - 1] - 1;
+        }
+
+        private void offer(final char[] buffer, final int length, final int distance) {
+            if (distance > this.bound()) {
+                return;
+            }
+            int index = this.tickers.size();
+            while (index > 0 && this.distances[index - 1] > distance) {
+                index--;
+            }
+            if (this.tickers.size() == this.maxCount) {
+                this.tickers.remove(this.maxCount - 1);
+            }
+            System.arraycopy(this.distances, index, this.distances, index + 1, this.tickers.size() - index);
+            this.distances[index] = distance;
+            this.tickers.add(index, new String(buffer, 0, length));
+        }
+    }
+
+    /**
+     * Builds the trie from the sorted tickers recursively: a node covers a range of tickers, its label is their longest
+     * common prefix after the labels of its ancestors, and its children are the subranges that continue with the same character
+     */
+    private static final class Builder {
+
+        private final String[] sortedTickers;
+        private final byte[] labels;
+        private int labelsLength = 0;
+        //a compressed trie of n keys has at most 2n - 1 nodes, plus the root
+        private final int[] labelStarts;
+        private final byte[] labelLengths;
+        private final int[] firstChildren;
+        private final int[] nextSiblings;
+        private final boolean[] terminals;
+        private int nodeCount = 0;
+        private int maxTickerLength = 0;
+
+        private Builder(final String[] sortedTickers) {
+            this.sortedTickers = sortedTickers;
+            int totalLength = 0;
+            for (final String ticker : sortedTickers) {
+                totalLength += ticker.length();
+                this.maxTickerLength = Math.max(this.maxTickerLength, ticker.length());
+            }
+            this.labels = new byte[totalLength];
+            final int maxNodeCount = 2 * sortedTickers.length + 1;
+            this.labelStarts = new int[maxNodeCount];
+            this.labelLengths = new byte[maxNodeCount];
+            this.firstChildren = new int[maxNodeCount];
+            this.nextSiblings = new int[maxNodeCount];
+            this.terminals = new boolean[maxNodeCount];
+        }
+
+        private TickerTrie build() {
+            if (this.sortedTickers.length == 0) {
+                return new TickerTrie(new byte[0], new int[0], new byte[0], new int[0], new int[0], new boolean[0], 0);
+            }
+            this.buildNode(0, this.sortedTickers.length, 0);
+            return new TickerTrie(Arrays.copyOf(this.labels, this.labelsLength), Arrays.copyOf(this.labelStarts, this.nodeCount),
+                    Arrays.copyOf(this.labelLengths, this.nodeCount), Arrays.copyOf(this.firstChildren, this.nodeCount),
+                    Arrays.copyOf(this.nextSiblings, this.nodeCount), Arrays.copyOf(this.terminals, this.nodeCount), this.maxTickerLength);
+        }
+
+        //the tickers from..to share their first depth characters, and the ones in a sorted range share what the first and the last share
+        private int buildNode(final int from, final int to, final int depth) {
+            final int node = this.nodeCount++;
+            final String first = this.sortedTickers[from];
+            final String last = this.sortedTickers[to - 1];
+            int labelEnd = depth;
+            while (labelEnd < first.length() && labelEnd < last.length() && first.charAt(labelEnd) == last.charAt(labelEnd)) {
+                labelEnd++;
+            }
+            final byte[] label = first.substring(depth, labelEnd).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(label, 0, this.labels, this.labelsLength, label.length);
+            this.labelStarts[node] = this.labelsLength;
+            this.labelLengths[node] = (byte) label.length;
+            this.labelsLength += label.length;
+            this.firstChildren[node] = NONE;
+            this.nextSiblings[node] = NONE;
+            int childFrom = from;
+            //a ticker that ends here is a prefix of the others, so it is the first one in the range
+            if (first.length() == labelEnd) {
+                this.terminals[node] = true;
+                childFrom++;
+            }
+            int previousChild = NONE;
+            while (childFrom < to) {
+                final char c = this.sortedTickers[childFrom].charAt(labelEnd);
+                int childTo = childFrom + 1;
+                while (childTo < to && this.sortedTickers[childTo].charAt(labelEnd) == c) {
+                    childTo++;
+                }
+                final int child = this.buildNode(childFrom, childTo, labelEnd);
+                if (previousChild == NONE) {
+                    this.firstChildren[node] = child;
+                } else {
+                    this.nextSiblings[previousChild] = child;
+                }
+                previousChild = child;
+                childFrom = childTo;
+            }
+            return node;
+        }
+    }
+}
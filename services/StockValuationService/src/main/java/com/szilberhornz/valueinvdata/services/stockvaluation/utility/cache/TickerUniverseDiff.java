@@ -0,0 +1,39 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tickers a reload of the {@link TickerCache} added to and removed from the universe, e.g. the new listings and the
+ * delistings since the last load. The tickers are upper-cased.
+ */
+public record TickerUniverseDiff(List<String> added, List<String> removed) {
+
+    public TickerUniverseDiff {
+        added = List.copyOf(added);
+        removed = List.copyOf(removed);
+    }
+
+    /**
+     * @param symbols every ticker ever loaded, the ids stay the same between the loads
+     * @param previouslyListed whether the ticker with the id was in the previous universe, the new tickers have no flag yet
+     * @param listed whether the ticker with the id is in the current universe
+     */
+    static TickerUniverseDiff between(final TickerIndex symbols, final boolean[] previouslyListed, final boolean[] listed) {
+        final List<String> added = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        for (int id = 0; id < listed.length; id++) {
+            final boolean wasListed = id < previouslyListed.length && previouslyListed[id];
+            if (listed[id] && !wasListed) {
+                added.add(symbols.tickerOf(id));
+            } else if (!listed[id] && wasListed) {
+                removed.add(symbols.tickerOf(id));
+            }
+        }
+        return new TickerUniverseDiff(added, removed);
+    }
+
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.removed.isEmpty();
+    }
+}
@@ -0,0 +1,155 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Loads a ticker file, a single line of comma separated, quoted tickers like tickers.txt, straight into a {@link TickerIndex}.
+ * The file is memory mapped, or read in one go if it is packed in a jar, and the quoted tickers are found by scanning the
+ * bytes, so no String is created for any of the tickers on the way, unlike with a Scanner and a substring per ticker.
+ * <p>
+ * The tickers.txt of the US exchanges is scanned on the calling thread in a couple of milliseconds. Larger universes, like
+ * the tickers of every exchange of the world, are split into chunks at the commas and the chunks are scanned in parallel.
+ */
+public final class TickerUniverseLoader {
+
+    //below this size a parallel scan costs more than it saves
+    static final int PARALLEL_SCAN_THRESHOLD_IN_BYTES = 4 * 1024 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte SEPARATOR = ',';
+
+    private TickerUniverseLoader() {
+        //static helper class, no need to instantiate
+    }
+
+    /**
+     * The resource is looked up with the context class loader of the calling thread, that should always be the [main] since
+     * the initialization happens in the AppContainer, before the app starts the http server
+     * @return the tickers of the resource file on the classpath, or null if there is no such resource
+     * @throws IllegalArgumentException if a ticker can't be indexed, see {@link TickerIndex#of(java.util.Collection)}
+     */
+    @Nullable
+    public static TickerIndex fromResource(final String resourceFileName) throws IOException {
+        final URL resource = Thread.currentThread().getContextClassLoader().getResource(resourceFileName);
+        if (resource == null) {
+            return null;
+        }
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return fromFile(Path.of(resource.toURI()));
+            } catch (final URISyntaxException exception) {
+                throw new IOException("The resource file " + resourceFileName + " has an invalid location: " + resource, exception);
+            }
+        }
+        try (final InputStream in = resource.openStream()) {
+            return parse(ByteBuffer.wrap(in.readAllBytes()));
+        }
+    }
+
+    /**
+     * @return the tickers of the file, or null if there is no such file
+     * @throws IllegalArgumentException if a ticker can't be indexed, see {@link TickerIndex#of(java.util.Collection)}
+     */
+    @Nullable
+    public static TickerIndex fromFile(final Path tickerFile) throws IOException {
+        if (!Files.isRegularFile(tickerFile)) {
+            return null;
+        }
+        try (final FileChannel channel = FileChannel.open(tickerFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The ticker file " + tickerFile + " is too large, it has " + channel.size() + " bytes");
+            }
+            //the mapping stays valid after the channel is closed, and it is unmapped once the buffer is garbage collected
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static TickerIndex parse(final ByteBuffer content) {
+        final int chunkCount = content.remaining() < PARALLEL_SCAN_THRESHOLD_IN_BYTES ? 1 : Runtime.getRuntime().availableProcessors();
+        return parse(content, chunkCount);
+    }
+
+    static TickerIndex parse(final ByteBuffer content, final int chunkCount) {
+        final int[] chunkBounds = chunkBounds(content, chunkCount);
+        IntStream chunks = IntStream.range(0, chunkCount);
+        if (chunkCount > 1) {
+            chunks = chunks.parallel();
+        }
+        final Tokens[] tokensOfChunks = chunks.mapToObj(chunk -> scan(content, chunkBounds[chunk], chunkBounds[chunk + 1])).toArray(Tokens[]::new);
+        int tokenCount = 0;
+        for (final Tokens tokens : tokensOfChunks) {
+            tokenCount += tokens.count();
+        }
+        final int[] tokenBounds = new int[2 * tokenCount];
+        int offset = 0;
+        for (final Tokens tokens : tokensOfChunks) {
+            System.arraycopy(tokens.bounds(), 0, tokenBounds, offset, 2 * tokens.count());
+            offset += 2 * tokens.count();
+        }
+        return TickerIndex.of(content, tokenBounds, tokenCount);
+    }
+
+    //the chunks start right after a comma, the tickers have no commas in them, so no ticker is split between two chunks
+    private static int[] chunkBounds(final ByteBuffer content, final int chunkCount) {
+        final int start = content.position();
+        final int end = content.limit();
+        final int[] bounds = new int[chunkCount + 1];
+        bounds[0] = start;
+        for (int chunk = 1; chunk < chunkCount; chunk++) {
+            int bound = Math.max(bounds[chunk - 1], start + (int) ((long) (end - start) * chunk / chunkCount));
+            while (bound > start && bound < end && content.get(bound - 1) != SEPARATOR) {
+                bound++;
+            }
+            bounds[chunk] = bound;
+        }
+        bounds[chunkCount] = end;
+        return bounds;
+    }
+
+    //the start index and the length of every non-empty quoted token between from and to
+    private static Tokens scan(final ByteBuffer content, final int from, final int to) {
+        //two ints per ticker, a ticker takes about 9 bytes in tickers.txt with its quotes and comma
+        int[] bounds = new int[Math.max(16, (to - from) / 4)];
+        int count = 0;
+        int index = from;
+        while (index < to) {
+            if (content.get(index) != QUOTE) {
+                index++;
+                continue;
+            }
+            final int start = index + 1;
+            int end = start;
+            while (end < to && content.get(end) != QUOTE) {
+                end++;
+            }
+            if (end == to) {
+                //an unterminated quote at the end, there is no ticker in it
+                break;
+            }
+            if (end > start) {
+                if (2 * count + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+                }
+                bounds[2 * count] = start;
+                bounds[2 * count + 1] = end - start;
+                count++;
+            }
+            index = end + 1;
+        }
+        return new Tokens(bounds, count);
+    }
+
+    private record Tokens(int[] bounds, int count) {
+    }
+}
@@ -3,11 +3,20 @@ package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * Abstract class to provide extendibility in case the original caching solution needs to be replaced.
@@ -19,18 +28,336 @@ public abstract class ValuationServerCache {
     //ConcurrentHashMap is thread safe but only locks parts of the map, so it is faster than the Collections.synchronizedMap
     protected final Map<String, RecordHolder> valuationServerCache = new ConcurrentHashMap<>();
 
+    //the estimated heap footprint of all the cached entries, see RecordHolderWeigher
+    private final AtomicLong weightedSize = new AtomicLong();
+
+    //gets every entry the eviction policy removes, so a lower cache tier can keep it instead of dropping it
+    private volatile Consumer<RecordHolder> evictionListener = evicted -> {};
+
+    //the loads in progress, so concurrent misses for the same ticker wait for one load instead of starting their own
+    private final Map<String, CompletableFuture<RecordHolder>> loadsInFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalescedLoadCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+    //runs the maintenance a pressure threshold asked for, see requestMaintenance()
+    private volatile Runnable maintenanceRequester = null;
+    private final AtomicBoolean maintenancePending = new AtomicBoolean(false);
+    //the share of its capacity the cache may use, lowered while the heap is under pressure, see MemoryPressureMonitor
+    private volatile double capacityRatio = 1.0;
 
     public abstract RecordHolder get(String ticker);
 
+    /**
+     * Looks up the entry without recording the access, so background jobs don't make entries look more popular than they are
+     */
+    @Nullable
+    public RecordHolder peek(final String ticker) {
+        return this.valuationServerCache.get(ticker);
+    }
+
+    /**
+     * Returns the cached entry if it has every DTO, otherwise loads it with the loader. Concurrent calls for the same
+     * ticker share one load: the first caller runs the loader on its own thread, the others get the same future and
+     * don't call their loader at all. The loader is responsible for writing what it loaded to the cache, this method only
+     * coalesces the loads. A loader that throws completes the shared future exceptionally, and the next call loads again. An
+     * Error is rethrown to the caller that ran the loader after the waiting callers got it.
+     */
+    public CompletableFuture<RecordHolder> getOrLoad(final String ticker, final Function<String, RecordHolder> loader) {
+        final RecordHolder cached = this.peek(ticker);
+        if (cached != null && !cached.isDataMissing()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        final CompletableFuture<RecordHolder> load = new CompletableFuture<>();
+        final CompletableFuture<RecordHolder> loadInFlight = this.loadsInFlight.putIfAbsent(ticker, load);
+        if (loadInFlight != null) {
+            this.coalescedLoadCount.increment();
+            return loadInFlight;
+        }
+        try {
+            load.complete(loader.apply(ticker));
+        } catch (final Throwable throwable) {
+            //errors too, otherwise the coalesced callers would wait for the dead load forever
+            load.completeExceptionally(throwable);
+            if (throwable instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            this.loadsInFlight.remove(ticker, load);
+        }
+        return load;
+    }
+
+    /**
+     * @return the number of {@link #getOrLoad(String, Function)} calls that joined a load already in progress
+     */
+    public long getCoalescedLoadCount() {
+        return this.coalescedLoadCount.sum();
+    }
+
+    /**
+     * @return at most maxCount cached tickers, most frequently requested first. Implementations that don't track access
+     * frequencies return an empty list
+     */
+    public List<String> hottestTickers(final int maxCount) {
+        return List.of();
+    }
+
+    /**
+     * Hands every cached entry to the consumer, in no particular order. The iteration is weakly consistent, it doesn't
+     * block the writers, so entries added or removed in the meantime may or may not be seen
+     */
+    public void forEachEntry(final Consumer<RecordHolder> consumer) {
+        this.valuationServerCache.values().forEach(consumer);
+    }
+
+    /**
+     * @return how often the ticker was requested according to the eviction policy, 0 for implementations that don't track it
+     */
+    public int getAccessFrequency(final String ticker) {
+        return 0;
+    }
+
+    /**
+     * Gives a restored entry the access frequency it had before, so the eviction policy doesn't treat it as a newcomer.
+     * Does nothing by default.
+     */
+    public void restoreAccessFrequency(final String ticker, final int accessFrequency) {
+        //no-op by default
+    }
+
+    /**
+     * Called after a new RecordHolder got added to the cache for a ticker that wasn't cached before. Implementations
+     * with an eviction policy can use it to start tracking the new entry, the default is to do nothing.
+     */
+    protected void onEntryCreated(final String ticker) {
+        //no-op by default
+    }
+
+    /**
+     * @return the estimated number of bytes the cached entries occupy on the heap
+     */
+    public long getWeightedSize() {
+        return this.weightedSize.get();
+    }
+
+    /**
+     * Keeps the rendered body alongside the entry and counts it to the weighted size, but only if the RecordHolder is still
+     * the entry of its ticker, a replaced or removed one is left alone. Called by {@link RecordHolder#getOrRender}
+     */
+    void keepRenderedBody(final RecordHolder recordHolder, final Class<?> rendererType, final byte[] body) {
+        final String ticker = recordHolder.getTicker();
+        final long[] weightDelta = new long[1];
+        this.valuationServerCache.computeIfPresent(ticker, (key, cached) -> {
+            if (cached == recordHolder && cached.addRenderedBody(rendererType, body)) {
+                weightDelta[0] = RecordHolderWeigher.weighRenderedBody(body);
+            }
+            return cached;
+        });
+        if (weightDelta[0] != 0) {
+            this.weightedSize.addAndGet(weightDelta[0]);
+            this.onEntryWeighed(ticker, weightDelta[0]);
+        }
+    }
+
+    /**
+     * Called after an entry got weighed, either because it was just created, one of its DTOs was filled in or a response
+     * body got rendered from it.
+     * Implementations bounded by a heap budget can use it to trigger eviction, the default is to do nothing.
+     */
+    protected void onEntryWeighed(final String ticker, final long weightDelta) {
+        //no-op by default
+    }
+
+    /**
+     * Removes the entry from the cache, keeps the weighted size in sync and hands the entry over to the eviction listener.
+     * Implementations must evict through this method.
+     * @return the removed entry or null if the ticker was not cached
+     */
+    protected RecordHolder removeEntry(final String ticker) {
+        final RecordHolder removed = this.valuationServerCache.remove(ticker);
+        if (removed != null) {
+            //bodies are only added to mapped entries, so weighing it again gives the weight it was counted with
+            this.weightedSize.addAndGet(-RecordHolderWeigher.weigh(removed));
+            this.notifyEvicted(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Drops the entry of the ticker, e.g. because the ticker got delisted. Unlike an eviction it is not counted, and the
+     * entry is not handed over to the eviction listener either, so a lower cache tier doesn't keep it instead
+     * @return true if the ticker was cached
+     */
+    public boolean invalidate(final String ticker) {
+        final RecordHolder removed = this.valuationServerCache.remove(ticker);
+        if (removed == null) {
+            return false;
+        }
+        this.weightedSize.addAndGet(-RecordHolderWeigher.weigh(removed));
+        this.onEntryInvalidated(ticker);
+        return true;
+    }
+
+    /**
+     * Called after an entry got invalidated, so the eviction policy can stop tracking it. Does nothing by default.
+     */
+    protected void onEntryInvalidated(final String ticker) {
+        //no-op by default
+    }
+
+    /**
+     * Counts the eviction and hands the entry over to the eviction listener. Only implementations that store their
+     * entries outside the inherited map call it directly, the others evict through {@link #removeEntry(String)}
+     */
+    protected void notifyEvicted(final RecordHolder evicted) {
+        this.evictionCount.increment();
+        this.evictionListener.accept(evicted);
+    }
+
+    /**
+     * @return the number of entries the eviction policy removed so far
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size() {
+        return this.valuationServerCache.size();
+    }
+
+    /**
+     * Does the pending maintenance of the eviction policy on the calling thread: drains the buffered accesses and evicts
+     * until the cache is within its bounds again. Called periodically by the {@link CacheMaintenanceScheduler}, the
+     * default is to do nothing, for implementations that have nothing to maintain.
+     */
+    public void cleanUp() {
+        //no-op by default
+    }
+
+    /**
+     * Lets the cache use only the given share of its capacity (or heap budget), the coldest entries over it are evicted by
+     * a maintenance run requested right away. A ratio of 1 grows the cache back to its full capacity, which it fills on demand.
+     * Implementations without a bound ignore it.
+     */
+    public void setCapacityRatio(final double capacityRatio) {
+        if (capacityRatio <= 0 || capacityRatio > 1) {
+            throw new IllegalArgumentException("The capacity ratio must be in (0, 1], but it was " + capacityRatio);
+        }
+        final double previous = this.capacityRatio;
+        this.capacityRatio = capacityRatio;
+        if (capacityRatio < previous) {
+            this.requestMaintenance();
+        }
+    }
+
+    public double getCapacityRatio() {
+        return this.capacityRatio;
+    }
+
+    /**
+     * @return the part of the capacity the cache may use right now, at least 1
+     */
+    protected int scaledCapacity(final int capacity) {
+        return (int) Math.max(1, capacity * this.capacityRatio);
+    }
+
+    /**
+     * @return the part of the heap budget in bytes the cache may use right now, at least 1
+     */
+    protected long scaledCapacity(final long maxWeightInBytes) {
+        return (long) Math.max(1, maxWeightInBytes * this.capacityRatio);
+    }
+
+    /**
+     * Sets who runs {@link #cleanUp()} when a pressure threshold asks for it, normally the {@link CacheMaintenanceScheduler}.
+     * It must only schedule the maintenance, since it is called on the request threads.
+     */
+    public void setMaintenanceRequester(final Runnable maintenanceRequester) {
+        this.maintenanceRequester = maintenanceRequester;
+    }
+
+    /**
+     * Asks for a {@link #cleanUp()} as soon as possible, because the cache went over one of its bounds. Without a
+     * maintenance requester it runs on the common ForkJoinPool, one at a time.
+     */
+    protected void requestMaintenance() {
+        final Runnable requester = this.maintenanceRequester;
+        if (requester != null) {
+            requester.run();
+        } else if (this.maintenancePending.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    this.cleanUp();
+                } finally {
+                    this.maintenancePending.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets the callback that receives the evicted entries. It runs on the thread doing the eviction, so it must be quick
+     */
+    public void setEvictionListener(final Consumer<RecordHolder> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Adds a previously cached entry as it is, so its load times and fill cost survive, unlike with the put methods.
+     * Does nothing if the ticker is already cached.
+     * @return the entry that is in the cache after the call
+     */
+    public RecordHolder restore(final RecordHolder recordHolder) {
+        return this.update(recordHolder.getTicker(), cached -> cached == null ? recordHolder : cached);
+    }
+
+    /**
+     * Records where the cached data of the ticker came from and how many upstream calls it took to get it. The cost of an
+     * entry only goes up: topping up an entry from a cheaper source doesn't make it cheaper to refill the whole entry.
+     * Does nothing if the ticker is not in the cache.
+     */
+    public void recordFillCost(final String ticker, final FillSource fillSource, final int upstreamCallCount) {
+        this.update(ticker, cached -> cached == null ? null : cached.withFillCost(fillSource, upstreamCallCount));
+    }
+
+    /**
+     * Called after the fill cost of a cached entry got updated. New entries already have their fill cost when
+     * {@link #onEntryCreated(String)} is called. Cost-aware implementations can use it to reprioritize the entry, the default is to do nothing.
+     */
+    protected void onFillCostRecorded(final String ticker, final RecordHolder recordHolder) {
+        //no-op by default
+    }
+
+    /**
+     * Overwrites the DTOs of the cached entry with the DTOs present in the refreshed record, which restarts their time to live.
+     * The DTOs missing from the refreshed record are left alone. If the ticker is not cached (anymore), the DTOs are simply added.
+     */
+    public void replace(final String ticker, final RecordHolder refreshed) {
+        if (refreshed.getDtoCount() == 0) {
+            return;
+        }
+        this.update(ticker, cached -> cached == null ? dtosOnly(ticker, refreshed) : cached.withDtosFrom(refreshed));
+    }
+
+    /**
+     * Adds every DTO of the record the cached entry is missing, and records the fill cost of the record, in one atomic step.
+     * The DTOs already cached are kept, just like with the single DTO put methods.
+     */
+    public void putAll(final String ticker, final RecordHolder recordHolder) {
+        if (recordHolder.getDtoCount() == 0) {
+            LOG.warn("Tried to add a record without any DTOs to cache for ticker {}", ticker);
+            return;
+        }
+        this.update(ticker, cached -> (cached == null ? dtosOnly(ticker, recordHolder) : cached.withMissingDtosFrom(recordHolder))
+                .withFillCost(recordHolder.getFillSource(), recordHolder.getUpstreamCallCount()));
+    }
+
     public void put(final String ticker, final DiscountedCashFlowDTO dcfDto) {
         if (dcfDto != null) {
-            if (!this.valuationServerCache.containsKey(ticker)) {
-                final RecordHolder recordHolder = new RecordHolder(ticker);
-                recordHolder.setDiscountedCashFlowDto(dcfDto);
-                this.valuationServerCache.put(ticker, recordHolder);
-            } else if (this.valuationServerCache.get(ticker).getDiscountedCashFlowDto() == null) {
-                this.valuationServerCache.get(ticker).setDiscountedCashFlowDto(dcfDto);
-            }
+            this.putMissing(ticker, RecordHolder.newRecordHolder(ticker, dcfDto, null, null));
         } else {
             LOG.warn("Tried to add null DiscountedCashFlowDTO to cache for ticker {}", ticker);
         }
@@ -38,13 +365,7 @@ public abstract class ValuationServerCache {
 
     public void put(final String ticker, final PriceTargetConsensusDTO ptcDto) {
         if (ptcDto != null) {
-            if (!this.valuationServerCache.containsKey(ticker)) {
-                final RecordHolder recordHolder = new RecordHolder(ticker);
-                recordHolder.setPriceTargetConsensusDto(ptcDto);
-                this.valuationServerCache.put(ticker, recordHolder);
-            } else if (this.valuationServerCache.get(ticker).getPriceTargetConsensusDto() == null) {
-                this.valuationServerCache.get(ticker).setPriceTargetConsensusDto(ptcDto);
-            }
+            this.putMissing(ticker, RecordHolder.newRecordHolder(ticker, null, ptcDto, null));
         } else {
             LOG.warn("Tried to add null PriceTargetConsensusDTO to cache for ticker {}", ticker);
         }
@@ -52,15 +373,54 @@ public abstract class ValuationServerCache {
 
     public void put(final String ticker, final PriceTargetSummaryDTO ptsDto) {
         if (ptsDto != null) {
-            if (!this.valuationServerCache.containsKey(ticker)) {
-                final RecordHolder recordHolder = new RecordHolder(ticker);
-                recordHolder.setPriceTargetSummaryDto(ptsDto);
-                this.valuationServerCache.put(ticker, recordHolder);
-            } else if (this.valuationServerCache.get(ticker).getPriceTargetSummaryDto() == null) {
-                this.valuationServerCache.get(ticker).setPriceTargetSummaryDto(ptsDto);
-            }
+            this.putMissing(ticker, RecordHolder.newRecordHolder(ticker, null, null, ptsDto));
         } else {
             LOG.warn("Tried to add null PriceTargetSummaryDTO to cache for ticker {}", ticker);
         }
     }
+
+    private void putMissing(final String ticker, final RecordHolder singleDto) {
+        this.update(ticker, cached -> cached == null ? singleDto : cached.withMissingDtosFrom(singleDto));
+    }
+
+    /**
+     * The single write path of the cache: one compute() call swaps the new immutable entry in, so there is exactly one hash
+     * lookup per write, and concurrent writes of the same ticker can't lose each other's DTOs. The hooks run after the swap,
+     * outside the lock of the map bin. Implementations that store their entries outside the inherited map override it,
+     * together with the read methods, every other write method goes through it.
+     * @param remapping gets the cached entry or null, and returns the new entry, null to leave the ticker uncached, or the
+     *                  very same instance if nothing changes
+     * @return the entry in the cache after the write
+     */
+    protected RecordHolder update(final String ticker, final UnaryOperator<RecordHolder> remapping) {
+        final RecordHolder[] previous = new RecordHolder[1];
+        final long[] weightDelta = new long[1];
+        final RecordHolder current = this.valuationServerCache.compute(ticker, (key, cached) -> {
+            previous[0] = cached;
+            final RecordHolder remapped = remapping.apply(cached);
+            if (remapped != null && remapped != cached) {
+                //weighed under the lock, so no rendered body can be added to the entries in between
+                remapped.claimOwnership(this);
+                weightDelta[0] = RecordHolderWeigher.weigh(remapped) - (cached == null ? 0 : RecordHolderWeigher.weigh(cached));
+            }
+            return remapped;
+        });
+        if (current == null || current == previous[0]) {
+            return current;
+        }
+        this.weightedSize.addAndGet(weightDelta[0]);
+        if (previous[0] == null) {
+            this.onEntryCreated(ticker);
+        }
+        this.onEntryWeighed(ticker, weightDelta[0]);
+        if (previous[0] != null && previous[0].getFillCost() != current.getFillCost()) {
+            this.onFillCostRecorded(ticker, current);
+        }
+        return current;
+    }
+
+    //the cause and the fill cost of the record belong to the request that produced it, not to the cache entry
+    private static RecordHolder dtosOnly(final String ticker, final RecordHolder recordHolder) {
+        return RecordHolder.newRecordHolder(ticker, null, null, null).withMissingDtosFrom(recordHolder);
+    }
 }
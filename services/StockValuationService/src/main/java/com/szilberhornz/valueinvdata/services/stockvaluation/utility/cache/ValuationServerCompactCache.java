@@ -0,0 +1,445 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * A compact, struct-of-arrays implementation of the ValuationServerCache. A cached ticker normally costs a RecordHolder,
+ * up to three DTO records, their Strings and a map node, which is a few hundred bytes of object headers and references
+ * around a dozen numbers (see {@link RecordHolderWeigher}). This cache gives every ticker a dense slot number instead,
+ * and stores every field of the DTOs in its own primitive array indexed by the slot, the DCF date as an epoch day.
+ * <p>
+ * The RecordHolder and the DTOs only exist while a caller uses them: get() and peek() materialize them from the arrays,
+ * and writes materialize the cached entry, apply the same immutable RecordHolder transformation as every other cache, then
+ * store the result back into the arrays. Since the instances get() returns are not stored anywhere, no response body is
+ * kept by {@link RecordHolder#getOrRender} with this cache, every request renders its own. Scans over the whole cache, like
+ * looking for the hottest tickers, only read a single int array.
+ * <p>
+ * The arrays are allocated for the full capacity upfront. When the cache is full, a CLOCK policy picks the slot to reuse:
+ * the hand sweeps over the slots, gives every ticker requested since the last sweep a second chance, and evicts the
+ * first one that wasn't. Reads take the read lock, writes and evictions the write lock of a ReentrantReadWriteLock.
+ * This class doesn't use the map inherited from the ValuationServerCache.
+ */
+public class ValuationServerCompactCache extends ValuationServerCache {
+
+    //a slot of the arrays: 8 doubles, 5 ints, 3 longs, 2 bytes, a boolean and a ticker reference
+    static final int SLOT_SIZE_IN_BYTES = 8 * Double.BYTES + 5 * Integer.BYTES + 3 * Long.BYTES + 2 + 1 + 4;
+    //the ticker String, for every cached ticker, see RecordHolderWeigher
+    private static final int TICKER_SIZE_IN_BYTES = 48;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    //the date is not a yyyy-MM-dd date, so it is kept as it is in the irregularDcfDates
+    private static final int IRREGULAR_DATE = Integer.MIN_VALUE + 1;
+
+    private static final byte HAS_DCF = 1;
+    private static final byte HAS_PTC = 1 << 1;
+    private static final byte HAS_PTS = 1 << 2;
+
+    private static final ValuationDtoType[] DTO_TYPES = ValuationDtoType.values();
+    private static final FillSource[] FILL_SOURCES = FillSource.values();
+
+    private final int capacity;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //everything below is guarded by the lock, except for the access counts and the referenced bits, which the readers
+    //update without the write lock. A few lost updates there don't matter, just like with the counter of the LFU cache
+    //an open addressing hash table with linear probing from the ticker to its slot + 1, 0 is an empty bucket. It has at
+    //least twice as many buckets as slots, and unlike a HashMap it needs no node and no boxed Integer per ticker
+    private final int[] tickerIndex;
+    private final String[] tickers;
+    private final byte[] dtoFlags;
+    private final byte[] fillSources;
+    private final int[] upstreamCallCounts;
+    private final long[] loadedAtMillis;
+    private final int[] dcfEpochDays;
+    private final double[] dcfs;
+    private final double[] stockPrices;
+    private final double[] targetHighs;
+    private final double[] targetLows;
+    private final double[] targetConsensuses;
+    private final double[] targetMedians;
+    private final int[] lastMonthCounts;
+    private final double[] lastMonthAvgPriceTargets;
+    private final int[] lastQuarterCounts;
+    private final double[] lastQuarterAvgPriceTargets;
+    private final int[] accessCounts;
+    private final boolean[] referenced;
+    private final Map<Integer, String> irregularDcfDates = new HashMap<>();
+
+    //a stack of the free slots, the lowest slot is on top so the used slots stay dense
+    private final int[] freeSlots;
+    private int freeSlotCount;
+    private int size;
+    private int clockHand;
+
+    public ValuationServerCompactCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the compact cache must be positive, but it was " + capacity);
+        }
+        this.capacity = capacity;
+        this.tickers = new String[capacity];
+        this.dtoFlags = new byte[capacity];
+        this.fillSources = new byte[capacity];
+        this.upstreamCallCounts = new int[capacity];
+        this.loadedAtMillis = new long[capacity * DTO_TYPES.length];
+        this.dcfEpochDays = new int[capacity];
+        this.dcfs = new double[capacity];
+        this.stockPrices = new double[capacity];
+        this.targetHighs = new double[capacity];
+        this.targetLows = new double[capacity];
+        this.targetConsensuses = new double[capacity];
+        this.targetMedians = new double[capacity];
+        this.lastMonthCounts = new int[capacity];
+        this.lastMonthAvgPriceTargets = new double[capacity];
+        this.lastQuarterCounts = new int[capacity];
+        this.lastQuarterAvgPriceTargets = new double[capacity];
+        this.accessCounts = new int[capacity];
+        this.referenced = new boolean[capacity];
+        this.tickerIndex = new int[Integer.highestOneBit(Math.max(1, capacity - 1)) << 2];
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.freeSlots[i] = capacity - 1 - i;
+        }
+        this.freeSlotCount = capacity;
+    }
+
+    @Override
+    @Nullable
+    public RecordHolder get(final String ticker) {
+        this.lock.readLock().lock();
+        try {
+            final int slot = this.slotOf(ticker);
+            if (slot < 0) {
+                return null;
+            }
+            this.referenced[slot] = true;
+            this.accessCounts[slot]++;
+            return this.materialize(slot);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    @Nullable
+    public RecordHolder peek(final String ticker) {
+        this.lock.readLock().lock();
+        try {
+            final int slot = this.slotOf(ticker);
+            return slot < 0 ? null : this.materialize(slot);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The entries are materialized under the read lock, but handed to the consumer after it is released
+     */
+    @Override
+    public void forEachEntry(final Consumer<RecordHolder> consumer) {
+        final List<RecordHolder> entries = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < this.capacity; slot++) {
+                if (this.tickers[slot] != null) {
+                    entries.add(this.materialize(slot));
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        entries.forEach(consumer);
+    }
+
+    @Override
+    public List<String> hottestTickers(final int maxCount) {
+        this.lock.readLock().lock();
+        try {
+            return IntStream.range(0, this.capacity)
+                    .filter(slot -> this.tickers[slot] != null && this.accessCounts[slot] > 0)
+                    .boxed()
+                    .sorted(Comparator.comparingInt((Integer slot) -> this.accessCounts[slot]).reversed())
+                    .limit(maxCount)
+                    .map(slot -> this.tickers[slot])
+                    .toList();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getAccessFrequency(final String ticker) {
+        this.lock.readLock().lock();
+        try {
+            final int slot = this.slotOf(ticker);
+            return slot < 0 ? 0 : this.accessCounts[slot];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void restoreAccessFrequency(final String ticker, final int accessFrequency) {
+        this.lock.writeLock().lock();
+        try {
+            final int slot = this.slotOf(ticker);
+            if (slot >= 0) {
+                this.accessCounts[slot] = Math.max(this.accessCounts[slot], accessFrequency);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the arrays, allocated for the full capacity, and of the ticker Strings of the cached tickers
+     */
+    @Override
+    public long getWeightedSize() {
+        return (long) this.capacity * SLOT_SIZE_IN_BYTES + (long) this.tickerIndex.length * Integer.BYTES
+                + (long) this.size() * TICKER_SIZE_IN_BYTES;
+    }
+
+    /**
+     * Evicts until the cache fits into its scaled capacity, it only has something to do after the capacity got scaled down
+     */
+    @Override
+    public void cleanUp() {
+        this.lock.writeLock().lock();
+        try {
+            while (this.size > this.scaledCapacity(this.capacity)) {
+                this.evictOne();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public boolean invalidate(final String ticker) {
+        this.lock.writeLock().lock();
+        try {
+            final int slot = this.slotOf(ticker);
+            if (slot < 0) {
+                return false;
+            }
+            this.release(slot);
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected RecordHolder update(final String ticker, final UnaryOperator<RecordHolder> remapping) {
+        this.lock.writeLock().lock();
+        try {
+            final int cachedSlot = this.slotOf(ticker);
+            final RecordHolder cached = cachedSlot < 0 ? null : this.materialize(cachedSlot);
+            final RecordHolder current = remapping.apply(cached);
+            if (current == null || current == cached) {
+                return current;
+            }
+            final int slot = cachedSlot >= 0 ? cachedSlot : this.allocateSlot(ticker);
+            this.store(slot, current);
+            return current;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private int allocateSlot(final String ticker) {
+        while (this.size >= this.scaledCapacity(this.capacity)) {
+            this.evictOne();
+        }
+        final int slot = this.freeSlots[--this.freeSlotCount];
+        this.tickers[slot] = ticker;
+        this.accessCounts[slot] = 0;
+        this.referenced[slot] = false;
+        int bucket = this.homeBucketOf(ticker);
+        while (this.tickerIndex[bucket] != 0) {
+            bucket = (bucket + 1) & (this.tickerIndex.length - 1);
+        }
+        this.tickerIndex[bucket] = slot + 1;
+        this.size++;
+        return slot;
+    }
+
+    //CLOCK, the second sweep at the latest finds a slot, since the first one clears every referenced bit
+    private void evictOne() {
+        while (true) {
+            final int slot = this.clockHand;
+            this.clockHand = (slot + 1) % this.capacity;
+            if (this.tickers[slot] == null) {
+                continue;
+            }
+            if (this.referenced[slot]) {
+                this.referenced[slot] = false;
+                continue;
+            }
+            this.evict(slot);
+            return;
+        }
+    }
+
+    private void evict(final int slot) {
+        final RecordHolder evicted = this.materialize(slot);
+        this.release(slot);
+        this.notifyEvicted(evicted);
+    }
+
+    private void release(final int slot) {
+        this.removeFromIndex(slot);
+        this.tickers[slot] = null;
+        this.dtoFlags[slot] = 0;
+        this.irregularDcfDates.remove(slot);
+        this.freeSlots[this.freeSlotCount++] = slot;
+        this.size--;
+    }
+
+    //-1 if the ticker is not cached
+    private int slotOf(final String ticker) {
+        int bucket = this.homeBucketOf(ticker);
+        int entry;
+        while ((entry = this.tickerIndex[bucket]) != 0) {
+            if (this.tickers[entry - 1].equals(ticker)) {
+                return entry - 1;
+            }
+            bucket = (bucket + 1) & (this.tickerIndex.length - 1);
+        }
+        return -1;
+    }
+
+    //backward shift deletion: the entries after the removed one move back if the empty bucket is between them and their
+    //home bucket, so the probe sequences stay unbroken without tombstones
+    private void removeFromIndex(final int slot) {
+        final int mask = this.tickerIndex.length - 1;
+        int emptied = this.homeBucketOf(this.tickers[slot]);
+        while (this.tickerIndex[emptied] != slot + 1) {
+            emptied = (emptied + 1) & mask;
+        }
+        this.tickerIndex[emptied] = 0;
+        int bucket = emptied;
+        int entry;
+        while ((entry = this.tickerIndex[bucket = (bucket + 1) & mask]) != 0) {
+            final int home = this.homeBucketOf(this.tickers[entry - 1]);
+            //the distance from home to the empty bucket is shorter than to the current one, so it can move back
+            if (((emptied - home) & mask) < ((bucket - home) & mask)) {
+                this.tickerIndex[emptied] = entry;
+                this.tickerIndex[bucket] = 0;
+                emptied = bucket;
+            }
+        }
+    }
+
+    private int homeBucketOf(final String ticker) {
+        final int hash = ticker.hashCode();
+        return (hash ^ (hash >>> 16)) & (this.tickerIndex.length - 1);
+    }
+
+    private void store(final int slot, final RecordHolder recordHolder) {
+        byte flags = 0;
+        this.irregularDcfDates.remove(slot);
+        final DiscountedCashFlowDTO dcfDto = recordHolder.getDiscountedCashFlowDto();
+        if (dcfDto != null) {
+            flags |= HAS_DCF;
+            this.dcfEpochDays[slot] = this.toEpochDay(slot, dcfDto.dateString());
+            this.dcfs[slot] = dcfDto.dcf();
+            this.stockPrices[slot] = dcfDto.stockPrice();
+        }
+        final PriceTargetConsensusDTO ptcDto = recordHolder.getPriceTargetConsensusDto();
+        if (ptcDto != null) {
+            flags |= HAS_PTC;
+            this.targetHighs[slot] = ptcDto.targetHigh();
+            this.targetLows[slot] = ptcDto.targetLow();
+            this.targetConsensuses[slot] = ptcDto.targetConsensus();
+            this.targetMedians[slot] = ptcDto.targetMedian();
+        }
+        final PriceTargetSummaryDTO ptsDto = recordHolder.getPriceTargetSummaryDto();
+        if (ptsDto != null) {
+            flags |= HAS_PTS;
+            this.lastMonthCounts[slot] = ptsDto.lastMonth();
+            this.lastMonthAvgPriceTargets[slot] = ptsDto.lastMonthAvgPriceTarget();
+            this.lastQuarterCounts[slot] = ptsDto.lastQuarter();
+            this.lastQuarterAvgPriceTargets[slot] = ptsDto.lastQuarterAvgPriceTarget();
+        }
+        this.dtoFlags[slot] = flags;
+        this.fillSources[slot] = (byte) recordHolder.getFillSource().ordinal();
+        this.upstreamCallCounts[slot] = recordHolder.getUpstreamCallCount();
+        for (final ValuationDtoType dtoType : DTO_TYPES) {
+            this.loadedAtMillis[slot * DTO_TYPES.length + dtoType.ordinal()] = recordHolder.getLoadedAtMillis(dtoType);
+        }
+    }
+
+    private RecordHolder materialize(final int slot) {
+        final String ticker = this.tickers[slot];
+        final byte flags = this.dtoFlags[slot];
+        final DiscountedCashFlowDTO dcfDto = (flags & HAS_DCF) == 0 ? null
+                : new DiscountedCashFlowDTO(ticker, this.dcfDateOf(slot), this.dcfs[slot], this.stockPrices[slot]);
+        final PriceTargetConsensusDTO ptcDto = (flags & HAS_PTC) == 0 ? null
+                : new PriceTargetConsensusDTO(ticker, this.targetHighs[slot], this.targetLows[slot], this.targetConsensuses[slot], this.targetMedians[slot]);
+        final PriceTargetSummaryDTO ptsDto = (flags & HAS_PTS) == 0 ? null
+                : new PriceTargetSummaryDTO(ticker, this.lastMonthCounts[slot], this.lastMonthAvgPriceTargets[slot],
+                this.lastQuarterCounts[slot], this.lastQuarterAvgPriceTargets[slot]);
+        final int loadedAt = slot * DTO_TYPES.length;
+        return RecordHolder.restoredRecordHolder(ticker, dcfDto, ptcDto, ptsDto, FILL_SOURCES[this.fillSources[slot]], this.upstreamCallCounts[slot],
+                this.loadedAtMillis[loadedAt + ValuationDtoType.DISCOUNTED_CASH_FLOW.ordinal()],
+                this.loadedAtMillis[loadedAt + ValuationDtoType.PRICE_TARGET_CONSENSUS.ordinal()],
+                this.loadedAtMillis[loadedAt + ValuationDtoType.PRICE_TARGET_SUMMARY.ordinal()]);
+    }
+
+    private int toEpochDay(final int slot, @Nullable final String dateString) {
+        if (dateString == null) {
+            return NO_DATE;
+        }
+        try {
+            final LocalDate date = LocalDate.parse(dateString);
+            //only if it comes back as the very same String, and the epoch day fits next to the markers
+            if (date.toString().equals(dateString) && date.toEpochDay() > IRREGULAR_DATE && date.toEpochDay() <= Integer.MAX_VALUE) {
+                return (int) date.toEpochDay();
+            }
+        } catch (final DateTimeParseException exception) {
+            //not a yyyy-MM-dd date, kept as it is below
+        }
+        this.irregularDcfDates.put(slot, dateString);
+        return IRREGULAR_DATE;
+    }
+
+    @Nullable
+    private String dcfDateOf(final int slot) {
+        final int epochDay = this.dcfEpochDays[slot];
+        if (epochDay == NO_DATE) {
+            return null;
+        }
+        return epochDay == IRREGULAR_DATE ? this.irregularDcfDates.get(slot) : LocalDate.ofEpochDay(epochDay).toString();
+    }
+}
@@ -0,0 +1,145 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A GreedyDual style, cost-aware implementation of the ValuationServerCache. The LFU and W-TinyLFU caches treat every
+ * ticker the same, but refilling them is far from the same: a ticker that came from the database only costs us a join,
+ * while a ticker that had to be scraped from the FMP api took up to three slow calls that count against the daily quota
+ * of the api key. This cache sacrifices the cheap-to-refill entries first.
+ * <p>
+ * Every entry gets a priority of L + cost when it is added or requested, where the cost is the
+ * {@link RecordHolder#getFillCost() fill cost} of the entry and L is the inflation value of the cache. The entry with the
+ * lowest priority is evicted first, and L is raised to the priority of the last evicted entry. This way an expensive entry
+ * that is not requested anymore slowly loses its advantage as L catches up with it, so it can't stay in the cache forever.
+ * <p>
+ * Just like in the {@link ValuationServerLFUCache}, the get() method is O(1) and only records the new priority, the sorting
+ * happens in batches on eviction, which is done by whichever writer thread gets the eviction lock first when the
+ * capacity is exceeded. The eviction removes a few percent more than strictly needed so it doesn't run on every put.
+ * <p>
+ * Source of the design: <a href="https://doi.org/10.1007/BF01189992">The k-Server Dual and Loose Competitiveness for Paging</a>
+ * The eviction is implemented in the {@link GreedyDualEvictor inner class}
+ */
+public class ValuationServerCostAwareCache extends ValuationServerCache {
+
+    private static final double EVICTION_BATCH_PERCENTAGE = 0.05;
+
+    private final int capacity;
+
+    private final Map<String, Long> priorities = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final CacheEvictor cacheEvictor = new GreedyDualEvictor();
+
+    //only written under the eviction lock, but read by every get()
+    private volatile long inflation = 0;
+
+    public ValuationServerCostAwareCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the cost-aware cache must be positive, but it was " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * O(1), a hit restores the priority of the entry to the current inflation value plus its fill cost
+     */
+    @Override
+    @Nullable
+    public RecordHolder get(final String ticker) {
+        final RecordHolder recordHolder = this.valuationServerCache.get(ticker);
+        if (recordHolder != null) {
+            this.priorities.put(ticker, this.inflation + recordHolder.getFillCost());
+        }
+        return recordHolder;
+    }
+
+    @Override
+    protected void onEntryCreated(final String ticker) {
+        final RecordHolder recordHolder = this.valuationServerCache.get(ticker);
+        if (recordHolder != null) {
+            this.priorities.put(ticker, this.inflation + recordHolder.getFillCost());
+        }
+        if (this.valuationServerCache.size() > this.scaledCapacity(this.capacity) && this.evictionLock.tryLock()) {
+            try {
+                this.cacheEvictor.runEviction();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    protected void onFillCostRecorded(final String ticker, final RecordHolder recordHolder) {
+        this.priorities.put(ticker, this.inflation + recordHolder.getFillCost());
+    }
+
+    @Override
+    protected void onEntryInvalidated(final String ticker) {
+        this.priorities.remove(ticker);
+    }
+
+    /**
+     * Evicts on the calling thread if the capacity is exceeded, waiting for the eviction lock if needed
+     */
+    @Override
+    public void cleanUp() {
+        this.evictionLock.lock();
+        try {
+            if (this.valuationServerCache.size() > this.scaledCapacity(this.capacity)) {
+                this.cacheEvictor.runEviction();
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    //visible for testing
+    long getInflation() {
+        return this.inflation;
+    }
+
+    class GreedyDualEvictor implements CacheEvictor {
+
+        private static final Logger LOG = LoggerFactory.getLogger(GreedyDualEvictor.class);
+
+        @Override
+        public void runEviction() {
+            final long start = System.nanoTime();
+            final int capacity = ValuationServerCostAwareCache.this.scaledCapacity(ValuationServerCostAwareCache.this.capacity);
+            final int evictionTarget = capacity - Math.max(1, (int) (capacity * EVICTION_BATCH_PERCENTAGE));
+            final int evictCount = ValuationServerCostAwareCache.this.valuationServerCache.size() - evictionTarget;
+            if (evictCount <= 0) {
+                return;
+            }
+            final List<Map.Entry<String, Long>> candidates = new ArrayList<>(ValuationServerCostAwareCache.this.priorities.entrySet());
+            candidates.sort(Map.Entry.comparingByValue());
+            int evicted = 0;
+            long lastEvictedPriority = ValuationServerCostAwareCache.this.inflation;
+            for (int i = 0; i < candidates.size() && evicted < evictCount; i++) {
+                final String ticker = candidates.get(i).getKey();
+                if (ValuationServerCostAwareCache.this.removeEntry(ticker) != null) {
+                    lastEvictedPriority = candidates.get(i).getValue();
+                    evicted++;
+                }
+                ValuationServerCostAwareCache.this.priorities.remove(ticker);
+            }
+            ValuationServerCostAwareCache.this.inflation = Math.max(ValuationServerCostAwareCache.this.inflation, lastEvictedPriority);
+            final long durationInMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            LOG.info("Cost-aware eviction removed {} tickers in {} milliseconds, the inflation value is now {}",
+                    evicted, durationInMillis, ValuationServerCostAwareCache.this.inflation);
+        }
+    }
+}
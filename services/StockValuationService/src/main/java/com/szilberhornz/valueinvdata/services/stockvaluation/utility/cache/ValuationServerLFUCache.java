@@ -6,7 +6,8 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 
 /**
  * This class is a variation of Least Frequently Used Cache implementation. I chose the LFU method because I assume
@@ -16,18 +17,27 @@ import java.util.concurrent.CompletableFuture;
  * In the default case of an LFU implementation, eviction happens in the put() method when the capacity is reached and
  * every get() method rebalances the frequencyCounter TreeMap, which is O(logN) time. I wanted to retain the logic of the
  * LFU while keeping the get() method at O(1). To achieve it, I chose to do the TreeMap manipulation only periodically
- * and on a non-blocking asynchronous thread. This means that the rebalance and eviction takes more time, but in fact that
+ * and on a non-blocking asynchronous thread, the one of the {@link CacheMaintenanceScheduler} if there is one. This means that the rebalance and eviction takes more time, but in fact that
  * is not a concern at all as it runs parallel to the executor thread responsible for serving the user request.
  * Also, the cache growing a bit over the expected capacity doesn't cause any issues unless the expected
  * capacity already occupies too much memory, which should never be the default case anyway.
  * <p>
  * For the base LFU case I used this as a source: <a href="https://www.geeksforgeeks.org/implement-a-cache-eviction-policy-using-treemap-in-java/">LFU</a>
  * The async eviction is implemented in the {@link LFUEvictor inner class}
+ * <p>
+ * Optionally the cache can be bounded by a heap budget in bytes too, entries are weighed by the {@link RecordHolderWeigher}
+ * whenever they are created or filled in. Going over the budget schedules an eviction right away, which evicts the least
+ * frequently used entries until the estimated footprint fits into the budget again.
+ * <p>
+ * The access frequencies are kept in a plain int array indexed by the dense id of the ticker, see {@link TickerIds}, so
+ * counting an access doesn't box an Integer or lock a map bin. The entries themselves stay in the String keyed map of the
+ * ValuationServerCache.
  */
 public class ValuationServerLFUCache extends ValuationServerCache {
 
     private final int capacity;
     private final int rebalanceThreshold;
+    private final long maxWeightInBytes;
 
     //this will tell us when we need to trigger async eviction. This could very well be made thread safe by using the
     //AtomicInteger instead, but we can be very lax about the trigger, a few missed counter step won't matter at all
@@ -35,20 +45,49 @@ public class ValuationServerLFUCache extends ValuationServerCache {
 
     private final CacheEvictor cacheEvictor = new LFUEvictor(this);
 
-    //like the counter above, the frequency map and the frequencyCounter don't need to be thread safe as
-    //data consistency in them doesn't matter that much
-    private final Map<String, Integer> frequencyMap = new HashMap<>();
-    private final TreeMap<Integer, LinkedHashSet<String>> frequencyCounter = new TreeMap<>();
+    private static final int INITIAL_FREQUENCIES_LENGTH = 1024;
+
+    private final TickerIds tickerIds;
+    //the access frequency of every ticker by its id, 0 if it wasn't requested since it got cached. Like the counter above,
+    //it is not thread safe as a lost increment doesn't matter, and the refresh-ahead job on another thread may read a
+    //slightly stale count. A ticker with an id beyond the end swaps in a longer copy, see frequenciesFor()
+    private volatile int[] frequencies = new int[INITIAL_FREQUENCIES_LENGTH];
+    //the ids of the tickers by their frequency, only used by the evictor
+    private final TreeMap<Integer, LinkedHashSet<Integer>> frequencyCounter = new TreeMap<>();
 
     public ValuationServerLFUCache(final int rebalanceThreshold, final int capacity) {
+        this(rebalanceThreshold, capacity, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxWeightInBytes the heap budget of the cache, use Integer.MAX_VALUE as the capacity to bound the cache only by this
+     */
+    public ValuationServerLFUCache(final int rebalanceThreshold, final int capacity, final long maxWeightInBytes) {
+        this(rebalanceThreshold, capacity, maxWeightInBytes, TickerIds.assignedOnFirstSight());
+    }
+
+    /**
+     * @param tickerCache the access frequencies are indexed by the ids of its tickers, the tickers outside of its universe
+     *                    are not counted, so they are the first to be evicted
+     */
+    public ValuationServerLFUCache(final int rebalanceThreshold, final int capacity, final long maxWeightInBytes, final TickerCache tickerCache) {
+        this(rebalanceThreshold, capacity, maxWeightInBytes, TickerIds.of(tickerCache));
+    }
+
+    private ValuationServerLFUCache(final int rebalanceThreshold, final int capacity, final long maxWeightInBytes, final TickerIds tickerIds) {
+        if (maxWeightInBytes <= 0) {
+            throw new IllegalArgumentException("The heap budget of the LFU cache must be positive, but it was " + maxWeightInBytes);
+        }
         this.rebalanceThreshold = rebalanceThreshold;
         this.capacity = capacity;
+        this.maxWeightInBytes = maxWeightInBytes;
+        this.tickerIds = tickerIds;
     }
 
     /**
      *  The get method is still effectively O(1) while in a classic LFU it would be O(logN)
-     *  Every {@link ValuationServerLFUCache#rebalanceThreshold}-th call of this method starts a thread and runs the
-     *  {@link CacheEvictor#runEviction()} method in a non-blocking way
+     *  Every {@link ValuationServerLFUCache#rebalanceThreshold}-th call of this method requests a maintenance, which runs
+     *  the {@link CacheEvictor#runEviction()} method in a non-blocking way
      */
     @Override
     @Nullable
@@ -57,14 +96,98 @@ public class ValuationServerLFUCache extends ValuationServerCache {
             return null;
         }
         this.counter++;
-        this.frequencyMap.compute(ticker, (k, v) -> v == null ? 1 : v + 1);
+        final int tickerId = this.tickerIds.idOf(ticker);
+        if (tickerId != TickerCache.UNKNOWN_TICKER_ID) {
+            this.frequenciesFor(tickerId)[tickerId]++;
+        }
         if (this.counter >= this.rebalanceThreshold) {
             this.counter = 0;
-            new CompletableFuture<>().completeAsync(()-> this.cacheEvictor);
+            this.requestMaintenance();
         }
         return this.valuationServerCache.get(ticker);
     }
 
+    /**
+     * Requests a maintenance as soon as the heap budget is exceeded
+     */
+    @Override
+    protected void onEntryWeighed(final String ticker, final long weightDelta) {
+        if (weightDelta > 0 && this.getWeightedSize() > this.scaledCapacity(this.maxWeightInBytes)) {
+            this.requestMaintenance();
+        }
+    }
+
+    /**
+     * The frequency counter forgets the ticker at the next rebalance
+     */
+    @Override
+    protected void onEntryInvalidated(final String ticker) {
+        this.setAccessFrequency(ticker, 0);
+    }
+
+    /**
+     * Rebalances the frequencies and evicts on the calling thread
+     */
+    @Override
+    public void cleanUp() {
+        this.cacheEvictor.runEviction();
+    }
+
+    @Override
+    public List<String> hottestTickers(final int maxCount) {
+        //a copy, so the counts can't change while they are sorted
+        final int[] frequencies = this.frequencies.clone();
+        return IntStream.range(0, frequencies.length)
+                .filter(tickerId -> frequencies[tickerId] > 0)
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer tickerId) -> frequencies[tickerId]).reversed())
+                .map(this.tickerIds::tickerOf)
+                .filter(this.valuationServerCache::containsKey)
+                .limit(maxCount)
+                .toList();
+    }
+
+    @Override
+    public int getAccessFrequency(final String ticker) {
+        final int tickerId = this.tickerIds.idOf(ticker);
+        final int[] frequencies = this.frequencies;
+        return tickerId == TickerCache.UNKNOWN_TICKER_ID || tickerId >= frequencies.length ? 0 : frequencies[tickerId];
+    }
+
+    @Override
+    public void restoreAccessFrequency(final String ticker, final int accessFrequency) {
+        if (accessFrequency > this.getAccessFrequency(ticker)) {
+            this.setAccessFrequency(ticker, accessFrequency);
+        }
+    }
+
+    private void setAccessFrequency(final String ticker, final int accessFrequency) {
+        final int tickerId = this.tickerIds.idOf(ticker);
+        if (tickerId != TickerCache.UNKNOWN_TICKER_ID) {
+            this.frequenciesFor(tickerId)[tickerId] = accessFrequency;
+        }
+    }
+
+    private int[] frequenciesFor(final int tickerId) {
+        final int[] frequencies = this.frequencies;
+        return tickerId < frequencies.length ? frequencies : this.growFrequencies(tickerId);
+    }
+
+    //an increment racing with the copy may get lost, which is fine for the same reason as above
+    private synchronized int[] growFrequencies(final int tickerId) {
+        final int[] frequencies = this.frequencies;
+        if (tickerId < frequencies.length) {
+            return frequencies;
+        }
+        final int[] grown = Arrays.copyOf(frequencies, Math.max(tickerId + 1, 2 * frequencies.length));
+        this.frequencies = grown;
+        return grown;
+    }
+
+    public long getMaxWeightInBytes() {
+        return this.maxWeightInBytes;
+    }
+
     class LFUEvictor implements CacheEvictor {
 
         private static final Logger LOG = LoggerFactory.getLogger(LFUEvictor.class);
@@ -75,47 +198,81 @@ public class ValuationServerLFUCache extends ValuationServerCache {
             this.cache = cache;
         }
 
+        //the heap budget can schedule an eviction while another one is running, they must not touch the TreeMap at the same time.
+        //The lock is the TreeMap itself, as the evictor is not the only one of its cache when the eviction is run directly
         @Override
         public void runEviction() {
             final long start = System.nanoTime();
             LOG.info("Starting rebalance and cache eviction scan");
-            this.rebalanceFrequencyCounter();
-            this.evictExcess();
+            synchronized (this.cache.frequencyCounter) {
+                this.rebalanceFrequencyCounter();
+                this.evictExcess();
+                this.evictOverweight();
+            }
             final long end = System.nanoTime();
             final long durationInMillis = Duration.ofNanos(end - start).toMillis();
             LOG.info("Rebalance and cache eviction took {} milliseconds", durationInMillis);
         }
 
+        //rebuilt from scratch, so every ticker is only in the bucket of its current frequency
         private void rebalanceFrequencyCounter(){
-            for (final Map.Entry<String, Integer> entry : this.cache.frequencyMap.entrySet()) {
-                //update frequency
-                final int frequency = this.cache.frequencyMap.get(entry.getKey());
-                //update frequency counter
-                this.cache.frequencyCounter.computeIfAbsent(frequency, k -> new LinkedHashSet<>()).add(entry.getKey());
+            this.cache.frequencyCounter.clear();
+            final int[] frequencies = this.cache.frequencies;
+            for (int tickerId = 0; tickerId < frequencies.length; tickerId++) {
+                final int frequency = frequencies[tickerId];
+                if (frequency > 0) {
+                    this.cache.frequencyCounter.computeIfAbsent(frequency, k -> new LinkedHashSet<>()).add(tickerId);
+                }
             }
         }
 
         private void evictExcess() {
-            final int evictCount = this.cache.frequencyCounter.size() - ValuationServerLFUCache.this.capacity;
+            final int capacity = this.cache.scaledCapacity(ValuationServerLFUCache.this.capacity);
+            final int evictCount = this.cache.valuationServerCache.size() - capacity;
             if (evictCount > 0) {
                 LOG.info("Starting eviction of {} tickers", evictCount);
-                for (int i = 0; i < evictCount; i++) {
-                    final int lowestFrequency = this.cache.frequencyCounter.firstKey();
-                    final String leastFrequentKey = this.cache.frequencyCounter.get(lowestFrequency).getFirst();
-
-                    // Remove from cache and frequency maps
-                    this.cache.valuationServerCache.remove(leastFrequentKey);
-                    this.cache.frequencyMap.remove(leastFrequentKey);
-
-                    // Remove from frequencyCounter
-                    this.cache.frequencyCounter.get(lowestFrequency).remove(leastFrequentKey);
-                    if (this.cache.frequencyCounter.get(lowestFrequency).isEmpty()) {
-                        this.cache.frequencyCounter.remove(lowestFrequency);
-                    }
-                }
+                this.evictWhile(() -> this.cache.valuationServerCache.size() > capacity);
             } else {
                 LOG.info("No cache eviction needed at this time");
             }
         }
+
+        private void evictOverweight() {
+            final long maxWeight = this.cache.scaledCapacity(ValuationServerLFUCache.this.maxWeightInBytes);
+            if (this.cache.getWeightedSize() <= maxWeight) {
+                return;
+            }
+            LOG.info("The cache is over its heap budget of {} bytes with {} bytes, starting eviction", maxWeight, this.cache.getWeightedSize());
+            this.evictWhile(() -> this.cache.getWeightedSize() > maxWeight);
+        }
+
+        private void evictWhile(final BooleanSupplier overLimit) {
+            //tickers that were never requested since they got cached have no frequency at all, so they go first
+            final Iterator<String> tickers = this.cache.valuationServerCache.keySet().iterator();
+            while (overLimit.getAsBoolean() && tickers.hasNext()) {
+                final String ticker = tickers.next();
+                if (this.cache.getAccessFrequency(ticker) == 0) {
+                    this.cache.removeEntry(ticker);
+                }
+            }
+            while (overLimit.getAsBoolean() && !this.cache.frequencyCounter.isEmpty()) {
+                this.evictLeastFrequent();
+            }
+        }
+
+        private void evictLeastFrequent() {
+            final int lowestFrequency = this.cache.frequencyCounter.firstKey();
+            final int leastFrequentId = this.cache.frequencyCounter.get(lowestFrequency).getFirst();
+
+            // Remove from cache and reset the frequency
+            this.cache.removeEntry(this.cache.tickerIds.tickerOf(leastFrequentId));
+            this.cache.frequencies[leastFrequentId] = 0;
+
+            // Remove from frequencyCounter
+            this.cache.frequencyCounter.get(lowestFrequency).remove(leastFrequentId);
+            if (this.cache.frequencyCounter.get(lowestFrequency).isEmpty()) {
+                this.cache.frequencyCounter.remove(lowestFrequency);
+            }
+        }
     }
 }
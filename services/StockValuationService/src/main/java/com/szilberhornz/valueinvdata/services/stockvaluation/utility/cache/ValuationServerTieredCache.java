@@ -0,0 +1,223 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A two tier cache: any on-heap ValuationServerCache is the first tier (L1), and an {@link OffHeapValuationStore} is the
+ * second one (L2). The tiers are exclusive, a ticker is either in L1 or in L2:
+ * <ul>
+ *     <li>the entries evicted by the policy of L1 are demoted to L2 instead of being dropped</li>
+ *     <li>an L1 miss checks L2 before the caller has to go to the database, and an L2 hit promotes the entry back to L1</li>
+ * </ul>
+ * The heap stays as small as the L1 policy wants it to be, while a much larger part of the ticker universe is still
+ * served without a database query. This class only decorates L1, the map inherited from the ValuationServerCache is unused.
+ */
+public class ValuationServerTieredCache extends ValuationServerCache {
+
+    private final ValuationServerCache firstTier;
+    private final OffHeapValuationStore secondTier;
+
+    private final LongAdder firstTierHitCount = new LongAdder();
+    private final LongAdder firstTierMissCount = new LongAdder();
+
+    public ValuationServerTieredCache(final ValuationServerCache firstTier, final OffHeapValuationStore secondTier) {
+        this.firstTier = firstTier;
+        this.secondTier = secondTier;
+        this.firstTier.setEvictionListener(secondTier::put);
+    }
+
+    @Override
+    @Nullable
+    public RecordHolder get(final String ticker) {
+        final RecordHolder recordHolder = this.firstTier.get(ticker);
+        if (recordHolder != null) {
+            this.firstTierHitCount.increment();
+            return recordHolder;
+        }
+        this.firstTierMissCount.increment();
+        final RecordHolder demoted = this.secondTier.take(ticker);
+        return demoted == null ? null : this.firstTier.restore(demoted);
+    }
+
+    @Override
+    @Nullable
+    public RecordHolder peek(final String ticker) {
+        final RecordHolder recordHolder = this.firstTier.peek(ticker);
+        return recordHolder != null ? recordHolder : this.secondTier.peek(ticker);
+    }
+
+    @Override
+    public List<String> hottestTickers(final int maxCount) {
+        return this.firstTier.hottestTickers(maxCount);
+    }
+
+    /**
+     * Both tiers, the entries of L2 are decoded on the fly
+     */
+    @Override
+    public void forEachEntry(final Consumer<RecordHolder> consumer) {
+        this.firstTier.forEachEntry(consumer);
+        this.secondTier.forEach(consumer);
+    }
+
+    @Override
+    public int getAccessFrequency(final String ticker) {
+        return this.firstTier.getAccessFrequency(ticker);
+    }
+
+    @Override
+    public void restoreAccessFrequency(final String ticker, final int accessFrequency) {
+        this.firstTier.restoreAccessFrequency(ticker, accessFrequency);
+    }
+
+    /**
+     * @return the estimated heap footprint of L1, L2 is off-heap by design, see {@link OffHeapValuationStore#getOffHeapBytes()}
+     */
+    @Override
+    public long getWeightedSize() {
+        return this.firstTier.getWeightedSize();
+    }
+
+    /**
+     * The listener gets the entries that leave both tiers, which only happens if L2 can't store them
+     */
+    @Override
+    public void setEvictionListener(final Consumer<RecordHolder> evictionListener) {
+        this.firstTier.setEvictionListener(evicted -> {
+            if (!this.secondTier.put(evicted)) {
+                evictionListener.accept(evicted);
+            }
+        });
+    }
+
+    /**
+     * @return the size of L1, the maintenance only ever shrinks L1
+     */
+    @Override
+    public int size() {
+        return this.firstTier.size();
+    }
+
+    /**
+     * @return the entries evicted from L1, most of them got demoted to L2 rather than dropped
+     */
+    @Override
+    public long getEvictionCount() {
+        return this.firstTier.getEvictionCount();
+    }
+
+    @Override
+    public void cleanUp() {
+        this.firstTier.cleanUp();
+    }
+
+    /**
+     * Drops the entry from whichever tier it is in, it is not demoted to L2
+     */
+    @Override
+    public boolean invalidate(final String ticker) {
+        final boolean invalidated = this.firstTier.invalidate(ticker);
+        return this.secondTier.remove(ticker) != null || invalidated;
+    }
+
+    /**
+     * Only L1 is shrunk, its evicted entries are demoted to L2, which is off-heap
+     */
+    @Override
+    public void setCapacityRatio(final double capacityRatio) {
+        this.firstTier.setCapacityRatio(capacityRatio);
+    }
+
+    @Override
+    public double getCapacityRatio() {
+        return this.firstTier.getCapacityRatio();
+    }
+
+    @Override
+    public void setMaintenanceRequester(final Runnable maintenanceRequester) {
+        this.firstTier.setMaintenanceRequester(maintenanceRequester);
+    }
+
+    @Override
+    public RecordHolder restore(final RecordHolder recordHolder) {
+        this.promote(recordHolder.getTicker());
+        return this.firstTier.restore(recordHolder);
+    }
+
+    @Override
+    public void recordFillCost(final String ticker, final FillSource fillSource, final int upstreamCallCount) {
+        this.promote(ticker);
+        this.firstTier.recordFillCost(ticker, fillSource, upstreamCallCount);
+    }
+
+    @Override
+    public void replace(final String ticker, final RecordHolder refreshed) {
+        this.promote(ticker);
+        this.firstTier.replace(ticker, refreshed);
+    }
+
+    @Override
+    public void putAll(final String ticker, final RecordHolder recordHolder) {
+        this.promote(ticker);
+        this.firstTier.putAll(ticker, recordHolder);
+    }
+
+    @Override
+    public void put(final String ticker, final DiscountedCashFlowDTO dcfDto) {
+        this.promote(ticker);
+        this.firstTier.put(ticker, dcfDto);
+    }
+
+    @Override
+    public void put(final String ticker, final PriceTargetConsensusDTO ptcDto) {
+        this.promote(ticker);
+        this.firstTier.put(ticker, ptcDto);
+    }
+
+    @Override
+    public void put(final String ticker, final PriceTargetSummaryDTO ptsDto) {
+        this.promote(ticker);
+        this.firstTier.put(ticker, ptsDto);
+    }
+
+    public long getFirstTierHitCount() {
+        return this.firstTierHitCount.sum();
+    }
+
+    public long getFirstTierMissCount() {
+        return this.firstTierMissCount.sum();
+    }
+
+    public long getSecondTierHitCount() {
+        return this.secondTier.getHitCount();
+    }
+
+    public long getSecondTierMissCount() {
+        return this.secondTier.getMissCount();
+    }
+
+    public ValuationServerCache getFirstTier() {
+        return this.firstTier;
+    }
+
+    public OffHeapValuationStore getSecondTier() {
+        return this.secondTier;
+    }
+
+    //writes must go to the same entry a reader would find, so a demoted entry is moved back to L1 before it gets modified
+    private void promote(final String ticker) {
+        if (this.firstTier.peek(ticker) == null && this.secondTier.contains(ticker)) {
+            final RecordHolder demoted = this.secondTier.remove(ticker);
+            if (demoted != null) {
+                this.firstTier.restore(demoted);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A W-TinyLFU style implementation of the ValuationServerCache. The {@link ValuationServerLFUCache} works fine in a
+ * single threaded setting, but its frequency map is updated by every worker thread without any synchronization, which
+ * loses counts, and the eviction rebuilds the whole frequency TreeMap every time, which allocates a lot.
+ * <p>
+ * This implementation splits the cache into three LRU regions:
+ * <ul>
+ *     <li>the admission window (1% of the capacity), where every new ticker starts. It helps with bursts of requests for
+ *     tickers that are new but get popular quickly</li>
+ *     <li>the probation segment of the main region, where tickers land after they leave the window</li>
+ *     <li>the protected segment of the main region (80% of the main region), for tickers that got requested again while on probation</li>
+ * </ul>
+ * When the window overflows, its least recently used ticker becomes a candidate to enter the main region. If the main region is full
+ * too, the candidate has to beat the victim (the least recently used ticker on probation) in the estimated access frequency,
+ * which comes from the {@link FrequencySketch}. Whoever loses gets evicted. This way one-hit-wonder tickers can't
+ * push the popular ones out of the cache, which is exactly what we want with the expected Pareto distribution of the requests.
+ * <p>
+ * The get() method stays O(1) and doesn't take any locks: reads are only recorded in the {@link StripedReadBuffer}, and
+ * new entries in a concurrent queue. These buffers are drained and the policy is applied by whichever thread manages to
+ * grab the eviction lock with a tryLock() when a buffer fills up, so no reader ever waits for the maintenance.
+ * <p>
+ * Source of the design: <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache Admission Policy</a>
+ */
+public class ValuationServerTinyLFUCache extends ValuationServerCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ValuationServerTinyLFUCache.class);
+
+    private static final double WINDOW_PERCENTAGE = 0.01;
+    private static final double PROTECTED_PERCENTAGE = 0.8;
+    //new entries are applied to the policy at the latest when this many of them are waiting in the write buffer
+    private static final int WRITE_BUFFER_DRAIN_THRESHOLD = 16;
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    private final int capacity;
+    private final int maxWindowSize;
+    private final int maxProtectedSize;
+
+    private final FrequencySketch sketch;
+    private final StripedReadBuffer readBuffer = new StripedReadBuffer();
+    private final Queue<String> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    //everything below is only touched while holding the eviction lock, so plain collections are enough.
+    //LinkedHashSets give O(1) removal and re-insertion to the tail, which is all an LRU list needs
+    private final Map<String, Region> regions = new HashMap<>();
+    private final LinkedHashSet<String> window = new LinkedHashSet<>();
+    private final LinkedHashSet<String> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<String> protectedSegment = new LinkedHashSet<>();
+
+    public ValuationServerTinyLFUCache(final int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity of the W-TinyLFU cache must be at least 2, but it was " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxWindowSize = Math.max(1, (int) (capacity * WINDOW_PERCENTAGE));
+        this.maxProtectedSize = (int) ((capacity - this.maxWindowSize) * PROTECTED_PERCENTAGE);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * O(1) and lock-free unless the read buffer stripe of the current thread is full, in which case the thread tries
+     * to drain the buffers, but it never waits for another thread that is already doing it.
+     * Misses are recorded too, that is how the sketch learns about tickers that are not (yet) in the cache.
+     */
+    @Override
+    @Nullable
+    public RecordHolder get(final String ticker) {
+        final RecordHolder recordHolder = this.valuationServerCache.get(ticker);
+        if (!this.readBuffer.offer(ticker)) {
+            this.tryToDrainBuffers();
+        }
+        return recordHolder;
+    }
+
+    @Override
+    protected void onEntryCreated(final String ticker) {
+        this.writeBuffer.add(ticker);
+        if (this.valuationServerCache.size() > this.scaledCapacity(this.capacity) || this.writeBuffer.size() >= WRITE_BUFFER_DRAIN_THRESHOLD) {
+            this.tryToDrainBuffers();
+        }
+    }
+
+    /**
+     * Ranks the cached tickers by their estimated frequency in the sketch. Waits for the eviction lock, so it is meant for
+     * background jobs, not for the request path
+     */
+    @Override
+    public List<String> hottestTickers(final int maxCount) {
+        this.evictionLock.lock();
+        try {
+            this.maintenance();
+            return this.regions.keySet().stream()
+                    .sorted(Comparator.<String>comparingInt(this.sketch::frequency).reversed())
+                    .limit(maxCount)
+                    .toList();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * The estimated frequency from the sketch. Waits for the eviction lock, so it is meant for background jobs
+     */
+    @Override
+    public int getAccessFrequency(final String ticker) {
+        this.evictionLock.lock();
+        try {
+            return this.sketch.frequency(ticker);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void restoreAccessFrequency(final String ticker, final int accessFrequency) {
+        this.evictionLock.lock();
+        try {
+            for (int i = 0; i < Math.min(accessFrequency, FrequencySketch.MAX_FREQUENCY); i++) {
+                this.sketch.increment(ticker);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Waits for the eviction lock, invalidations are rare and never happen on the request path. The sketch keeps the
+     * frequency of the ticker, it ages out like any other
+     */
+    @Override
+    protected void onEntryInvalidated(final String ticker) {
+        this.evictionLock.lock();
+        try {
+            this.removeFromRegion(ticker);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Drains the buffers and applies the eviction policy on the calling thread, waiting for the eviction lock if needed.
+     * Mostly useful for tests and for callers that need the size to be within the capacity right now.
+     */
+    @Override
+    public void cleanUp() {
+        this.evictionLock.lock();
+        try {
+            this.maintenance();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private void tryToDrainBuffers() {
+        if (this.evictionLock.tryLock()) {
+            try {
+                this.maintenance();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    private void maintenance() {
+        this.readBuffer.drainTo(this::onAccess);
+        this.drainWriteBuffer();
+        this.evictEntries();
+    }
+
+    private void onAccess(final String ticker) {
+        this.sketch.increment(ticker);
+        final Region region = this.regions.get(ticker);
+        if (region == null) {
+            return;
+        }
+        switch (region) {
+            case WINDOW -> reorder(this.window, ticker);
+            case PROBATION -> {
+                //requested again while on probation, so it deserves protection
+                this.probation.remove(ticker);
+                this.protectedSegment.add(ticker);
+                this.regions.put(ticker, Region.PROTECTED);
+                this.demoteFromProtected();
+            }
+            case PROTECTED -> reorder(this.protectedSegment, ticker);
+        }
+    }
+
+    private void drainWriteBuffer() {
+        String ticker;
+        while ((ticker = this.writeBuffer.poll()) != null) {
+            if (!this.regions.containsKey(ticker) && this.valuationServerCache.containsKey(ticker)) {
+                this.window.add(ticker);
+                this.regions.put(ticker, Region.WINDOW);
+            }
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (this.protectedSegment.size() > this.maxProtectedSize) {
+            final String demoted = this.protectedSegment.removeFirst();
+            this.probation.add(demoted);
+            this.regions.put(demoted, Region.PROBATION);
+        }
+    }
+
+    private void evictEntries() {
+        int evicted = 0;
+        final int maxMainSize = Math.max(1, this.scaledCapacity(this.capacity) - this.maxWindowSize);
+        while (this.window.size() > this.maxWindowSize) {
+            final String candidate = this.window.removeFirst();
+            if (this.mainSize() < maxMainSize) {
+                this.probation.add(candidate);
+                this.regions.put(candidate, Region.PROBATION);
+                continue;
+            }
+            final String victim = this.probation.isEmpty() ? this.protectedSegment.getFirst() : this.probation.getFirst();
+            if (this.admit(candidate, victim)) {
+                this.evict(victim);
+                this.probation.add(candidate);
+                this.regions.put(candidate, Region.PROBATION);
+            } else {
+                this.evict(candidate);
+            }
+            evicted++;
+        }
+        //the main region is only over its size if the capacity got scaled down, the coldest tickers on probation go first
+        while (this.mainSize() > maxMainSize) {
+            this.evict(this.probation.isEmpty() ? this.protectedSegment.getFirst() : this.probation.getFirst());
+            evicted++;
+        }
+        if (evicted > 0) {
+            LOG.debug("W-TinyLFU cache evicted {} tickers", evicted);
+        }
+    }
+
+    //the candidate only gets in if it was requested more often than the victim, ties favor the incumbent
+    private boolean admit(final String candidate, final String victim) {
+        return this.sketch.frequency(candidate) > this.sketch.frequency(victim);
+    }
+
+    private void evict(final String ticker) {
+        this.removeFromRegion(ticker);
+        this.removeEntry(ticker);
+    }
+
+    private void removeFromRegion(final String ticker) {
+        final Region region = this.regions.remove(ticker);
+        if (region == Region.PROBATION) {
+            this.probation.remove(ticker);
+        } else if (region == Region.PROTECTED) {
+            this.protectedSegment.remove(ticker);
+        } else {
+            this.window.remove(ticker);
+        }
+    }
+
+    private int mainSize() {
+        return this.probation.size() + this.protectedSegment.size();
+    }
+
+    private static void reorder(final LinkedHashSet<String> segment, final String ticker) {
+        segment.remove(ticker);
+        segment.add(ticker);
+    }
+}
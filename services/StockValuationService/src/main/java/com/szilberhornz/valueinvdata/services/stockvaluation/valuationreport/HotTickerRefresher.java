@@ -0,0 +1,102 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPCallBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refresh-ahead for the head of the traffic. Requests follow a Pareto distribution, so a handful of tickers (think AAPL,
+ * MSFT, NVDA) get most of the requests, and those should never have to wait for a synchronous FMP api round trip.
+ * <p>
+ * Periodically takes the top K tickers by access frequency from the cache, and refreshes every DTO that would go stale
+ * before the next-but-one run, so they are always fresh when requested. A ticker the users are refreshing right now is
+ * skipped. The DTOs missing from a hot entry are completed from the database and the FMP api in the same go. FMP api calls
+ * are only made for the DTOs the api can actually be asked for, and only while the daily {@link FMPCallBudget} allows it,
+ * so the refresh-ahead can never eat up the quota that the users need. It is off unless USE_REFRESH_AHEAD is set, as it spends quota nobody asked for.
+ */
+public class HotTickerRefresher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HotTickerRefresher.class);
+
+    private final VRSagaDataBroker dataBroker;
+    private final FMPCallBudget callBudget;
+    private final int topTickerCount;
+    private final long timeoutForApiCallInMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "hot-ticker-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HotTickerRefresher(final VRSagaDataBroker dataBroker, final FMPCallBudget callBudget, final int topTickerCount,
+                              final long timeoutForApiCallInMillis) {
+        this.dataBroker = dataBroker;
+        this.callBudget = callBudget;
+        this.topTickerCount = topTickerCount;
+        this.timeoutForApiCallInMillis = timeoutForApiCallInMillis;
+    }
+
+    /**
+     * Starts refreshing the hot tickers periodically, on a daemon thread
+     */
+    public void start(final Duration interval) {
+        final long intervalInMillis = interval.toMillis();
+        //looking two intervals ahead means a slow or skipped run still doesn't let anything go stale
+        final long lookAheadInMillis = 2 * intervalInMillis;
+        this.scheduler.scheduleWithFixedDelay(() -> this.refreshHotTickers(lookAheadInMillis),
+                intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+        LOG.info("Refresh-ahead started for the top {} tickers every {} with a budget of {} FMP api calls a day",
+                this.topTickerCount, interval, this.callBudget.getDailyCallLimit());
+    }
+
+    /**
+     * @return the number of tickers refreshed in this run
+     */
+    int refreshHotTickers(final long lookAheadInMillis) {
+        final List<String> hottestTickers = this.dataBroker.getHottestTickers(this.topTickerCount);
+        int refreshed = 0;
+        for (final String ticker : hottestTickers) {
+            if (this.callBudget.getRemainingCalls() <= 0) {
+                LOG.warn("The refresh-ahead used up its FMP api call budget for today, skipping the rest of the hot tickers");
+                break;
+            }
+            try {
+                if (this.refreshTicker(ticker, lookAheadInMillis)) {
+                    refreshed++;
+                }
+            } catch (final RuntimeException runtimeException) {
+                //never let one ticker kill the scheduled job
+                LOG.error("Refresh-ahead failed for ticker {}!", ticker, runtimeException);
+            }
+        }
+        if (refreshed > 0) {
+            LOG.info("Refresh-ahead refreshed {} of the {} hottest tickers", refreshed, hottestTickers.size());
+        }
+        return refreshed;
+    }
+
+    private boolean refreshTicker(final String ticker, final long lookAheadInMillis) {
+        final RecordHolder recordFromCache = this.dataBroker.peekCache(ticker);
+        //a refresh started by a request is already getting the same data, no need to pay for it twice
+        if (recordFromCache == null || this.dataBroker.isRefreshInFlight(ticker)) {
+            return false;
+        }
+        //the missing DTOs are completed and the stale ones refreshed in one go, so an entry that will never be complete,
+        //e.g. because the api key can't get its price targets, still gets its DCF refreshed ahead
+        return this.dataBroker.tryRefreshDtos(ticker, recordFromCache,
+                record -> this.dataBroker.getDtoTypesGoingStale(record, lookAheadInMillis), this.callBudget::tryAcquire,
+                this.timeoutForApiCallInMillis);
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+}
@@ -1,5 +1,10 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.BlockingExecutors;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.CacheExpiryPolicy;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.FillSource;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.NegativeResultCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
@@ -12,10 +17,22 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 
 /**
  * This class deals with the data operations of the ValuationReport saga, such as the read and write
@@ -28,12 +45,42 @@ public class VRSagaDataBroker {
     private final ValuationDBRepository valuationDbRepository;
     private final ValuationServerCache valuationServerCache;
     private final FMPResponseHandler fmpResponseHandler;
+    private final CacheExpiryPolicy cacheExpiryPolicy;
+    private final NegativeResultCache negativeResultCache;
+    //runs the FMP api calls and the background refreshes, see BlockingExecutors
+    private final Executor executor;
+    //the refreshes in progress by ticker, so a popular stale or expired ticker only triggers one refresh at a time
+    private final Map<String, CompletableFuture<RecordHolder>> refreshesInFlight = new ConcurrentHashMap<>();
 
     public VRSagaDataBroker(final ValuationDBRepository valuationDbRepository, final ValuationServerCache valuationServerCache,
                             final FMPResponseHandler fmpResponseHandler) {
+        this(valuationDbRepository, valuationServerCache, fmpResponseHandler, CacheExpiryPolicy.NEVER_EXPIRES);
+    }
+
+    public VRSagaDataBroker(final ValuationDBRepository valuationDbRepository, final ValuationServerCache valuationServerCache,
+                            final FMPResponseHandler fmpResponseHandler, final CacheExpiryPolicy cacheExpiryPolicy) {
+        this(valuationDbRepository, valuationServerCache, fmpResponseHandler, cacheExpiryPolicy, NegativeResultCache.disabled());
+    }
+
+    /**
+     * @param negativeResultCache must be the same instance the FMPResponseHandler records the empty FMP api results to
+     */
+    public VRSagaDataBroker(final ValuationDBRepository valuationDbRepository, final ValuationServerCache valuationServerCache,
+                            final FMPResponseHandler fmpResponseHandler, final CacheExpiryPolicy cacheExpiryPolicy,
+                            final NegativeResultCache negativeResultCache) {
+        this(valuationDbRepository, valuationServerCache, fmpResponseHandler, cacheExpiryPolicy, negativeResultCache,
+                BlockingExecutors.defaultAsyncPool());
+    }
+
+    public VRSagaDataBroker(final ValuationDBRepository valuationDbRepository, final ValuationServerCache valuationServerCache,
+                            final FMPResponseHandler fmpResponseHandler, final CacheExpiryPolicy cacheExpiryPolicy,
+                            final NegativeResultCache negativeResultCache, final Executor executor) {
         this.valuationDbRepository = valuationDbRepository;
         this.valuationServerCache = valuationServerCache;
         this.fmpResponseHandler = fmpResponseHandler;
+        this.cacheExpiryPolicy = cacheExpiryPolicy;
+        this.negativeResultCache = negativeResultCache;
+        this.executor = executor;
     }
 
     @Nullable
@@ -41,6 +88,230 @@ public class VRSagaDataBroker {
         return this.valuationServerCache.get(ticker);
     }
 
+    /**
+     * Runs the loader for the ticker, unless a load for the same ticker is already running, in which case its result is
+     * shared, see {@link ValuationServerCache#getOrLoad(String, Function)}
+     */
+    public CompletableFuture<RecordHolder> getOrLoad(final String ticker, final Function<String, RecordHolder> loader) {
+        return this.valuationServerCache.getOrLoad(ticker, loader);
+    }
+
+    /**
+     * Same as {@link #getFromCache(String)}, but it doesn't count as an access, so background jobs can use it
+     */
+    @Nullable
+    public RecordHolder peekCache(final String ticker) {
+        return this.valuationServerCache.peek(ticker);
+    }
+
+    public List<String> getHottestTickers(final int maxCount) {
+        return this.valuationServerCache.hottestTickers(maxCount);
+    }
+
+    /**
+     * @return true if every DTO the cached record is missing is known to be absent from both the database and the FMP api,
+     * so looking for them again would be a waste of upstream calls
+     */
+    public boolean isMissingDataKnownAbsent(final String ticker, @Nullable final RecordHolder recordFromCache) {
+        final Set<ValuationDtoType> absentDtoTypes = this.negativeResultCache.absentDtoTypes(ticker);
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            if ((recordFromCache == null || !recordFromCache.hasDto(dtoType)) && !absentDtoTypes.contains(dtoType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    public CacheExpiryPolicy.Freshness getFreshness(final RecordHolder recordFromCache) {
+        return this.cacheExpiryPolicy.freshnessOf(recordFromCache, System.currentTimeMillis());
+    }
+
+    /**
+     * Starts refreshing the stale DTOs of the cached record on a background thread, see {@link #refreshStaleData(String, RecordHolder, long)}
+     * @return false if a refresh was already running for the ticker, in which case no new one is started
+     */
+    public boolean refreshInBackground(final String ticker, final RecordHolder recordFromCache, final long timeOutInMillis) {
+        final CompletableFuture<RecordHolder> refresh = new CompletableFuture<>();
+        if (this.refreshesInFlight.putIfAbsent(ticker, refresh) != null) {
+            return false;
+        }
+        refresh.whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                LOG.error("Background refresh of the stale data for ticker {} failed!", ticker, throwable);
+            }
+        });
+        CompletableFuture.runAsync(() -> this.runRefresh(ticker, refresh, () -> this.refreshStaleData(ticker, recordFromCache, timeOutInMillis)),
+                this.executor);
+        return true;
+    }
+
+    /**
+     * Refreshes the stale and expired DTOs of the cached record on the calling thread, see {@link #refreshStaleData(String, RecordHolder, long)}.
+     * If a refresh of the ticker is already running, started by another request or in the background, it waits for that one
+     * instead of calling the FMP api again, so a burst of requests for an expired ticker costs one round of FMP api calls.
+     * @return the refreshed record, or the cached one if the refresh it waited for failed
+     */
+    @NotNull
+    public RecordHolder refreshExpiredData(final String ticker, final RecordHolder recordFromCache, final long timeOutInMillis) {
+        final CompletableFuture<RecordHolder> refresh = new CompletableFuture<>();
+        final CompletableFuture<RecordHolder> refreshInFlight = this.refreshesInFlight.putIfAbsent(ticker, refresh);
+        if (refreshInFlight != null) {
+            LOG.info("Waiting for the refresh of ticker {} that is already in progress", ticker);
+            return refreshInFlight.exceptionally(throwable -> recordFromCache).join();
+        }
+        this.runRefresh(ticker, refresh, () -> {
+            //a refresh may have finished between reading the cache and getting here, no need to do it again
+            final RecordHolder current = this.valuationServerCache.peek(ticker);
+            if (current != null && current != recordFromCache && !current.isDataMissing()
+                    && this.getFreshness(current) != CacheExpiryPolicy.Freshness.EXPIRED) {
+                return current;
+            }
+            return this.refreshStaleData(ticker, recordFromCache, timeOutInMillis);
+        });
+        return refresh.join();
+    }
+
+    /**
+     * @return true if a refresh of the ticker is running right now, started by a request or in the background
+     */
+    public boolean isRefreshInFlight(final String ticker) {
+        return this.refreshesInFlight.containsKey(ticker);
+    }
+
+    /**
+     * Refresh-ahead of a cached record on the calling thread, unless a refresh of the ticker is already running, so a
+     * background job never refreshes a ticker at the same time as a request does. The DTOs missing from the record are
+     * looked up in the database first. Then the DTOs going stale and the ones still missing are fetched from the FMP api,
+     * see {@link #refreshDtos(String, RecordHolder, Set, long)}, but only the ones the FMP api can actually be asked for,
+     * and only if the call budget allows that many calls.
+     * @param dtoTypesGoingStale gives the DTOs of a record that should be refreshed
+     * @param callBudget gets the number of FMP api calls needed, and tells whether they may be made
+     * @return true if any DTO got filled in or refreshed, false if nothing was, e.g. because a refresh was already running
+     */
+    public boolean tryRefreshDtos(final String ticker, final RecordHolder recordFromCache,
+                                  final Function<RecordHolder, Set<ValuationDtoType>> dtoTypesGoingStale, final IntPredicate callBudget,
+                                  final long timeOutInMillis) {
+        final CompletableFuture<RecordHolder> refresh = new CompletableFuture<>();
+        if (this.refreshesInFlight.putIfAbsent(ticker, refresh) != null) {
+            return false;
+        }
+        final AtomicBoolean refreshed = new AtomicBoolean(false);
+        this.runRefresh(ticker, refresh, () -> {
+            RecordHolder current = recordFromCache;
+            if (current.isDataMissing()) {
+                final RecordHolder recordFromDb = this.getDataFromDb(current, ticker);
+                if (recordFromDb != null && recordFromDb.getDtoCount() > current.getDtoCount()) {
+                    this.addToCache(ticker, current, recordFromDb);
+                    refreshed.set(true);
+                    final RecordHolder cached = this.valuationServerCache.peek(ticker);
+                    current = cached != null ? cached : recordFromDb;
+                }
+            }
+            final Set<ValuationDtoType> dtoTypesToFetch = EnumSet.noneOf(ValuationDtoType.class);
+            dtoTypesToFetch.addAll(dtoTypesGoingStale.apply(current));
+            for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+                if (!current.hasDto(dtoType)) {
+                    dtoTypesToFetch.add(dtoType);
+                }
+            }
+            dtoTypesToFetch.removeAll(this.getUnfetchableDtoTypes(ticker));
+            if (dtoTypesToFetch.isEmpty() || !callBudget.test(dtoTypesToFetch.size())) {
+                return current;
+            }
+            refreshed.set(true);
+            return this.refreshDtos(ticker, current, dtoTypesToFetch, timeOutInMillis);
+        });
+        refresh.join();
+        return refreshed.get();
+    }
+
+    /**
+     * @return the DTO types of the ticker that the FMP api would not be called for: the ones known to be absent, and the
+     * ones whose endpoint the api key can't use right now
+     */
+    public Set<ValuationDtoType> getUnfetchableDtoTypes(final String ticker) {
+        final Set<ValuationDtoType> unfetchable = EnumSet.noneOf(ValuationDtoType.class);
+        unfetchable.addAll(this.negativeResultCache.absentDtoTypes(ticker));
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            if (this.fmpResponseHandler.getKnownFailureOf(dtoType) != null) {
+                unfetchable.add(dtoType);
+            }
+        }
+        return unfetchable;
+    }
+
+    //completes the future of the refresh registered for the ticker, then lets the next refresh of the ticker start
+    private void runRefresh(final String ticker, final CompletableFuture<RecordHolder> refresh, final Supplier<RecordHolder> refreshing) {
+        try {
+            refresh.complete(refreshing.get());
+        } catch (final Throwable throwable) {
+            //errors too, otherwise the callers joining the refresh would wait for it forever
+            refresh.completeExceptionally(throwable);
+            if (throwable instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            this.refreshesInFlight.remove(ticker, refresh);
+        }
+    }
+
+    /**
+     * Gets the stale and expired DTOs of the cached record again from the FMP api, see {@link #refreshDtos(String, RecordHolder, Set, long)}
+     */
+    @NotNull
+    public RecordHolder refreshStaleData(final String ticker, final RecordHolder recordFromCache, final long timeOutInMillis) {
+        final Set<ValuationDtoType> staleDtoTypes = this.cacheExpiryPolicy.staleDtoTypes(recordFromCache, System.currentTimeMillis());
+        return this.refreshDtos(ticker, recordFromCache, staleDtoTypes, timeOutInMillis);
+    }
+
+    /**
+     * @return the types of the DTOs of the cached record that will be stale in lookAheadInMillis milliseconds from now
+     */
+    public Set<ValuationDtoType> getDtoTypesGoingStale(final RecordHolder recordFromCache, final long lookAheadInMillis) {
+        return this.cacheExpiryPolicy.staleDtoTypes(recordFromCache, System.currentTimeMillis() + lookAheadInMillis);
+    }
+
+    /**
+     * Gets the given DTOs of the cached record again from the FMP api, and writes the refreshed ones to the cache and the
+     * database. The database is skipped when reading, as it can't be fresher than the cache.
+     * @return the refreshed record, where the DTOs that could not be refreshed fall back to the cached ones
+     */
+    @NotNull
+    public RecordHolder refreshDtos(final String ticker, final RecordHolder recordFromCache, final Set<ValuationDtoType> staleDtoTypes,
+                                    final long timeOutInMillis) {
+        LOG.info("Refreshing the {} data for ticker {} from the FMP api", staleDtoTypes, ticker);
+        //the FMP api is only called for the DTOs that are missing from this record
+        final RecordHolder freshPart = RecordHolder.newRecordHolder(ticker,
+                staleDtoTypes.contains(ValuationDtoType.DISCOUNTED_CASH_FLOW) ? null : recordFromCache.getDiscountedCashFlowDto(),
+                staleDtoTypes.contains(ValuationDtoType.PRICE_TARGET_CONSENSUS) ? null : recordFromCache.getPriceTargetConsensusDto(),
+                staleDtoTypes.contains(ValuationDtoType.PRICE_TARGET_SUMMARY) ? null : recordFromCache.getPriceTargetSummaryDto());
+        final RecordHolder recordFromFmpApi = this.getDataFromFmpApi(freshPart, ticker, timeOutInMillis);
+        final RecordHolder refreshed = RecordHolder.newRecordHolder(ticker,
+                staleDtoTypes.contains(ValuationDtoType.DISCOUNTED_CASH_FLOW) ? recordFromFmpApi.getDiscountedCashFlowDto() : null,
+                staleDtoTypes.contains(ValuationDtoType.PRICE_TARGET_CONSENSUS) ? recordFromFmpApi.getPriceTargetConsensusDto() : null,
+                staleDtoTypes.contains(ValuationDtoType.PRICE_TARGET_SUMMARY) ? recordFromFmpApi.getPriceTargetSummaryDto() : null);
+        //an empty FMP api result doesn't make the data absent while we still have an older version of it
+        for (final ValuationDtoType dtoType : staleDtoTypes) {
+            if (recordFromCache.hasDto(dtoType)) {
+                this.negativeResultCache.clear(ticker, dtoType);
+            }
+        }
+        if (refreshed.getDtoCount() > 0) {
+            this.valuationServerCache.replace(ticker, refreshed);
+            this.valuationServerCache.recordFillCost(ticker, FillSource.FMP_API, refreshed.getDtoCount());
+            this.valuationDbRepository.replaceRecord(refreshed);
+        }
+        if (recordFromFmpApi.getCauseOfNullDtos() != null) {
+            LOG.warn("Could only refresh {} of the {} stale DTOs for ticker {}!", refreshed.getDtoCount(), staleDtoTypes.size(),
+                    ticker, recordFromFmpApi.getCauseOfNullDtos());
+        }
+        return RecordHolder.newRecordHolder(ticker,
+                recordFromFmpApi.getDiscountedCashFlowDto() != null ? recordFromFmpApi.getDiscountedCashFlowDto() : recordFromCache.getDiscountedCashFlowDto(),
+                recordFromFmpApi.getPriceTargetConsensusDto() != null ? recordFromFmpApi.getPriceTargetConsensusDto() : recordFromCache.getPriceTargetConsensusDto(),
+                recordFromFmpApi.getPriceTargetSummaryDto() != null ? recordFromFmpApi.getPriceTargetSummaryDto() : recordFromCache.getPriceTargetSummaryDto());
+    }
+
     @Nullable
     public RecordHolder getDataFromDb(@Nullable final RecordHolder recordFromCache, final String ticker){
         if (recordFromCache == null){
@@ -49,16 +320,20 @@ public class VRSagaDataBroker {
             DiscountedCashFlowDTO dcfDto = recordFromCache.getDiscountedCashFlowDto();
             PriceTargetSummaryDTO ptsDto = recordFromCache.getPriceTargetSummaryDto();
             PriceTargetConsensusDTO ptcDto = recordFromCache.getPriceTargetConsensusDto();
+            int dbQueryCount = 0;
             if (dcfDto == null){
                 dcfDto = this.valuationDbRepository.queryDiscountedCashFlowData(ticker);
+                dbQueryCount++;
             }
             if (ptsDto == null) {
                 ptsDto = this.valuationDbRepository.queryPriceTargetSummaryData(ticker);
+                dbQueryCount++;
             }
             if (ptcDto == null){
                 ptcDto = this.valuationDbRepository.queryPriceTargetConsensusData(ticker);
+                dbQueryCount++;
             }
-            return RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto);
+            return RecordHolder.newPersistedRecordHolder(ticker, dcfDto, ptcDto, ptsDto, FillSource.DATABASE, dbQueryCount);
         }
         return recordFromCache;
     }
@@ -77,15 +352,18 @@ public class VRSagaDataBroker {
         CompletableFuture<DiscountedCashFlowDTO> dcfDtoFuture = null;
         CompletableFuture<PriceTargetSummaryDTO> ptsDtoFuture = null;
         CompletableFuture<PriceTargetConsensusDTO> ptcDtoFuture = null;
-        //start the missing ones asynchronously
-        if (dcfDto == null){
-            dcfDtoFuture = CompletableFuture.supplyAsync(()->this.fmpResponseHandler.getDiscountedCashFlowReportFromFmpApi(ticker));
+        //start the missing ones asynchronously, except the ones we recently learned the FMP api doesn't have
+        final Set<ValuationDtoType> absentDtoTypes = this.negativeResultCache.absentDtoTypes(ticker);
+        //only the calls that actually go out count, not the ones skipped because of a known failure of the endpoint
+        final AtomicInteger fmpCallCount = new AtomicInteger();
+        if (dcfDto == null && !absentDtoTypes.contains(ValuationDtoType.DISCOUNTED_CASH_FLOW)){
+            dcfDtoFuture = this.callFmpApi(ValuationDtoType.DISCOUNTED_CASH_FLOW, ()->this.fmpResponseHandler.getDiscountedCashFlowReportFromFmpApi(ticker), fmpCallCount);
         }
-        if (ptsDto == null) {
-            ptsDtoFuture = CompletableFuture.supplyAsync(()->this.fmpResponseHandler.getPriceTargetSummaryReportFromFmpApi(ticker));
+        if (ptsDto == null && !absentDtoTypes.contains(ValuationDtoType.PRICE_TARGET_SUMMARY)) {
+            ptsDtoFuture = this.callFmpApi(ValuationDtoType.PRICE_TARGET_SUMMARY, ()->this.fmpResponseHandler.getPriceTargetSummaryReportFromFmpApi(ticker), fmpCallCount);
         }
-        if (ptcDto == null){
-            ptcDtoFuture = CompletableFuture.supplyAsync(()->this.fmpResponseHandler.getPriceTargetConsensusReportFromFmpApi(ticker));
+        if (ptcDto == null && !absentDtoTypes.contains(ValuationDtoType.PRICE_TARGET_CONSENSUS)){
+            ptcDtoFuture = this.callFmpApi(ValuationDtoType.PRICE_TARGET_CONSENSUS, ()->this.fmpResponseHandler.getPriceTargetConsensusReportFromFmpApi(ticker), fmpCallCount);
         }
         //capture exceptions, if any, and return it along with data. This is necessary because we may have partial success
         // and may be getting exceptions for other parts at the same time! We don't want to dismiss valid data just because
@@ -93,15 +371,15 @@ public class VRSagaDataBroker {
         final AtomicReference<Throwable> fmpApiCallFailure = new AtomicReference<>();
         try {
             //we have to block before returning to scrape all the missing data we can
-            dcfDto = dcfDto == null ? dcfDtoFuture.exceptionally( throwable -> {
+            dcfDto = dcfDtoFuture != null ? dcfDtoFuture.exceptionally( throwable -> {
                 fmpApiCallFailure.set(throwable);
                 return null;
             }).completeOnTimeout(null, timeOutInMillis, TimeUnit.MILLISECONDS).get() : dcfDto;
-            ptsDto = ptsDto == null ? ptsDtoFuture.exceptionally( throwable -> {
+            ptsDto = ptsDtoFuture != null ? ptsDtoFuture.exceptionally( throwable -> {
                 fmpApiCallFailure.set(throwable);
                 return null;
             }).completeOnTimeout(null, timeOutInMillis, TimeUnit.MILLISECONDS).get() : ptsDto;
-            ptcDto = ptcDto == null ? ptcDtoFuture.exceptionally( throwable -> {
+            ptcDto = ptcDtoFuture != null ? ptcDtoFuture.exceptionally( throwable -> {
                 fmpApiCallFailure.set(throwable);
                 return null;
             }).completeOnTimeout(null, timeOutInMillis, TimeUnit.MILLISECONDS).get() : ptcDto;
@@ -112,12 +390,26 @@ public class VRSagaDataBroker {
             fmpApiCallFailure.set(executionException.getCause());
         }
         //as this is the last step, we return what we have, even if it's all null
+        //the number of FMP calls is recorded so the cache knows how expensive it would be to get this data again
+        final FillSource fillSource = fmpCallCount.get() > 0 ? FillSource.FMP_API : FillSource.DATABASE;
+        final int upstreamCallCount = Math.max(fmpCallCount.get(), 1);
+        //the DTOs we already had keep their load times, only the ones from the FMP api are new
         if (fmpApiCallFailure.get() != null) {
             //the throwable is always an ExecutionException, we are interested in its cause
-            return RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto, fmpApiCallFailure.get().getCause());
+            return RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto, fmpApiCallFailure.get().getCause(), fillSource, upstreamCallCount, recordFromDb);
         } else {
-            return RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto);
+            return RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto, null, fillSource, upstreamCallCount, recordFromDb);
+        }
+    }
+
+    //an endpoint the api key can't use right now fails the same way as a real call would, without the http round trip and the thread
+    private <T> CompletableFuture<T> callFmpApi(final ValuationDtoType dtoType, final Supplier<T> apiCall, final AtomicInteger callCount) {
+        final RuntimeException knownFailure = this.fmpResponseHandler.getKnownFailureOf(dtoType);
+        if (knownFailure != null) {
+            return CompletableFuture.failedFuture(new CompletionException(knownFailure));
         }
+        callCount.incrementAndGet();
+        return CompletableFuture.supplyAsync(apiCall, this.executor);
     }
 
     public void persistData(final String ticker, final RecordHolder recordFromCache, final RecordHolder recordFromDb, final RecordHolder recordFromFmpApi) {
@@ -128,7 +420,7 @@ public class VRSagaDataBroker {
         }
     }
 
-    private void writeToDb(final String ticker, final RecordHolder recordFromDb, final RecordHolder recordFromFmpApi) {
+    public void writeToDb(final String ticker, final RecordHolder recordFromDb, final RecordHolder recordFromFmpApi) {
         if (recordFromDb == null) {
             LOG.info("Writing {} ticker data to the database!", ticker);
             this.valuationDbRepository.insertFullRecord(recordFromFmpApi);
@@ -151,22 +443,10 @@ public class VRSagaDataBroker {
     public void addToCache(final String ticker, final RecordHolder recordFromCache, final RecordHolder superSet){
         if (recordFromCache == null){
             LOG.info("Adding full {} ticker data to the cache!", ticker);
-            this.valuationServerCache.put(ticker, superSet.getDiscountedCashFlowDto());
-            this.valuationServerCache.put(ticker, superSet.getPriceTargetConsensusDto());
-            this.valuationServerCache.put(ticker, superSet.getPriceTargetSummaryDto());
         } else if (recordFromCache.isDataMissing()){
-            if (recordFromCache.getDiscountedCashFlowDto() == null) {
-                LOG.info("Adding discounted cashflow {} ticker data to the cache!", ticker);
-                this.valuationServerCache.put(ticker, superSet.getDiscountedCashFlowDto());
-            }
-            if (recordFromCache.getPriceTargetConsensusDto() == null) {
-                LOG.info("Adding price target consensus {} ticker data to the cache!", ticker);
-                this.valuationServerCache.put(ticker, superSet.getPriceTargetConsensusDto());
-            }
-            if (recordFromCache.getPriceTargetSummaryDto() == null) {
-                LOG.info("Adding price target summary {} ticker data to the cache!", ticker);
-                this.valuationServerCache.put(ticker, superSet.getPriceTargetSummaryDto());
-            }
+            LOG.info("Adding the missing {} ticker data to the cache!", ticker);
         }
+        //one atomic write for all the DTOs and the fill cost, the cache only adds the DTOs it doesn't have yet
+        this.valuationServerCache.putAll(ticker, superSet);
     }
 }
@@ -2,6 +2,7 @@ package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
 
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.BlockingExecutors;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.RateLimitReachedException;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.ApiKeyException;
@@ -12,9 +13,11 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -31,22 +34,38 @@ public class VRSagaOrchestrator {
 
     private static final String INVALID_TICKER_MESSAGE = "The server only responds to valuation report requests " +
             "for real tickers! The ticker %s is not a valid ticker! Please try again with a valid ticker!";
+    private static final int DID_YOU_MEAN_COUNT = 3;
     private final TickerCache tickerCache;
     private final ValuationResponseBodyFormatter formatter;
     private final VRSagaCircuitBreaker circuitBreaker;
     private final VRSagaDataBroker dataBroker;
+    //runs the saga and its blocking steps, see BlockingExecutors
+    private final Executor executor;
 
     public VRSagaOrchestrator(final TickerCache tickerCache, final ValuationResponseBodyFormatter formatter,
                               final VRSagaCircuitBreaker circuitBreaker, final VRSagaDataBroker dataBroker) {
+        this(tickerCache, formatter, circuitBreaker, dataBroker, BlockingExecutors.defaultAsyncPool());
+    }
+
+    public VRSagaOrchestrator(final TickerCache tickerCache, final ValuationResponseBodyFormatter formatter,
+                              final VRSagaCircuitBreaker circuitBreaker, final VRSagaDataBroker dataBroker, final Executor executor) {
         this.tickerCache = tickerCache;
         this.formatter = formatter; // must use this with http 200
         this.circuitBreaker = circuitBreaker;
         this.dataBroker = dataBroker;
+        this.executor = executor;
     }
 
     public ValuationReport getValuationResponse(final String ticker) {
+        //validated and upper-cased in one allocation free lookup. The saga carries the canonical String, not the id, as the
+        //caches, the database and the FMP api are all keyed by the ticker itself
+        final int tickerId = this.tickerCache.idOf(ticker);
+        if (tickerId == TickerCache.UNKNOWN_TICKER_ID) { //the easy way out
+            return this.respondToInvalidTicker(ticker.toUpperCase(Locale.ROOT));
+        }
+        final String canonicalTicker = this.tickerCache.tickerOf(tickerId);
         try {
-            final CompletableFuture<ValuationReport> responseFuture = CompletableFuture.supplyAsync(() -> this.generateValueReport(ticker.toUpperCase(Locale.ROOT)));
+            final CompletableFuture<ValuationReport> responseFuture = CompletableFuture.supplyAsync(() -> this.generateValueReport(canonicalTicker), this.executor);
             return responseFuture.get(this.circuitBreaker.getOverallTimeoutInMillis(), TimeUnit.MILLISECONDS);
         } catch (final InterruptedException interruptedException) {
             LOG.error("Unexpected interruption while generating report for ticker {}", ticker, interruptedException);
@@ -63,69 +82,110 @@ public class VRSagaOrchestrator {
 
     @NotNull
     private ValuationReport generateValueReport(final String upperCaseTicker) {
-        if (!this.tickerCache.tickerExists(upperCaseTicker)) { //the easy way out
-            return this.respondToInvalidTicker(upperCaseTicker);
-        }
         //try to get report RecordHolder from cache, then from db then from FMP API
         final RecordHolder recordFromCache = this.dataBroker.getFromCache(upperCaseTicker);
-        final RecordHolder recordFromDb;
         if (recordFromCache != null && !recordFromCache.isDataMissing()) { //a quick win
-            LOG.info("Valuation report for ticker {} generated from in-memory cache", upperCaseTicker);
+            return this.respondFromCache(upperCaseTicker, recordFromCache);
+        } else if (this.dataBroker.isMissingDataKnownAbsent(upperCaseTicker, recordFromCache)) {
+            return this.respondWithoutKnownAbsentData(upperCaseTicker, recordFromCache);
+        }
+        //concurrent misses for the same ticker share one load, so a burst of requests costs one database query and one
+        //round of FMP api calls instead of one for every request
+        final RecordHolder loadedRecord = this.dataBroker.getOrLoad(upperCaseTicker, ticker -> this.loadRecord(ticker, recordFromCache)).join();
+        //this record may contain fatal error, we must check for that
+        if (loadedRecord.getCauseOfNullDtos() instanceof final IllegalStateException ise) {
+            return this.handleDbError(upperCaseTicker, ise);
+        } else if (loadedRecord.getCauseOfNullDtos() == null) {
             return new ValuationReport.Builder()
-                    .recordHolder(recordFromCache)
+                    .recordHolder(loadedRecord)
                     .responseBodyFormatter(this.formatter)
                     .statusCode(HttpStatusCode.OK.getStatusCode())
                     .build();
         } else {
-            //this record may contain fatal error, we must check for that
-            recordFromDb = this.getRecordFromDatabase(upperCaseTicker, recordFromCache);
-            if (recordFromDb != null && recordFromDb.getCauseOfNullDtos() != null && recordFromDb.getCauseOfNullDtos() instanceof final IllegalStateException ise) {
-                return this.handleDbError(upperCaseTicker, ise);
-            }
+            //we handle error and return what we can (that is what we have from the db which is equals or a superset of what we have from the cache)
+            return this.handleFmpApiError(loadedRecord, loadedRecord.getCauseOfNullDtos(), upperCaseTicker);
+        }
+    }
+
+    @NotNull
+    private RecordHolder loadRecord(final String upperCaseTicker, @Nullable final RecordHolder recordFromCache) {
+        //this record may contain fatal error, in which case it is returned as it is
+        final RecordHolder recordFromDb = this.getRecordFromDatabase(upperCaseTicker, recordFromCache);
+        if (recordFromDb != null && recordFromDb.getCauseOfNullDtos() instanceof IllegalStateException) {
+            return recordFromDb;
         }
         if (recordFromDb != null && !recordFromDb.isDataMissing()){
             LOG.info("Valuation report for ticker {} generated from database", upperCaseTicker);
             this.dataBroker.addToCache(upperCaseTicker, recordFromCache, recordFromDb);
-            return new ValuationReport.Builder()
-                    .recordHolder(recordFromDb)
-                    .responseBodyFormatter(this.formatter)
-                    .statusCode(HttpStatusCode.OK.getStatusCode())
-                    .build();
+            return recordFromDb;
         } else {
-            return this.completeReportFromFmpApi(upperCaseTicker, recordFromDb, recordFromCache);
+            return this.completeRecordFromFmpApi(upperCaseTicker, recordFromDb, recordFromCache);
+        }
+    }
+
+    //stale data inside the grace period is served right away and refreshed in the background, expired data is refreshed first
+    @NotNull
+    private ValuationReport respondFromCache(final String upperCaseTicker, final RecordHolder recordFromCache) {
+        final RecordHolder record = switch (this.dataBroker.getFreshness(recordFromCache)) {
+            case FRESH -> {
+                LOG.info("Valuation report for ticker {} generated from in-memory cache", upperCaseTicker);
+                yield recordFromCache;
+            }
+            case STALE -> {
+                LOG.info("Valuation report for ticker {} generated from stale in-memory cache data, refreshing it in the background", upperCaseTicker);
+                this.dataBroker.refreshInBackground(upperCaseTicker, recordFromCache, this.circuitBreaker.getTimeoutForApiCallInMillis());
+                yield recordFromCache;
+            }
+            case EXPIRED -> {
+                //concurrent requests for the same expired ticker share one refresh
+                final RecordHolder refreshed = this.dataBroker.refreshExpiredData(upperCaseTicker, recordFromCache, this.circuitBreaker.getTimeoutForApiCallInMillis());
+                LOG.info("Valuation report for ticker {} generated from expired in-memory cache data refreshed from the FMP api", upperCaseTicker);
+                yield refreshed;
+            }
+        };
+        return new ValuationReport.Builder()
+                .recordHolder(record)
+                .responseBodyFormatter(this.formatter)
+                .statusCode(HttpStatusCode.OK.getStatusCode())
+                .build();
+    }
+
+    //neither the database nor the FMP api had the missing data recently, so we answer with what we have without asking them again
+    @NotNull
+    private ValuationReport respondWithoutKnownAbsentData(final String upperCaseTicker, @Nullable final RecordHolder recordFromCache) {
+        if (recordFromCache != null) {
+            LOG.info("The rest of the data for ticker {} is known to be absent upstream, answering from the in-memory cache", upperCaseTicker);
+            return this.respondFromCache(upperCaseTicker, recordFromCache);
         }
+        LOG.info("No data is known to exist for ticker {}, answering with an empty report", upperCaseTicker);
+        return new ValuationReport.Builder()
+                .recordHolder(RecordHolder.newRecordHolder(upperCaseTicker, null, null, null))
+                .responseBodyFormatter(this.formatter)
+                .statusCode(HttpStatusCode.OK.getStatusCode())
+                .build();
     }
 
     @NotNull
-    private ValuationReport completeReportFromFmpApi(final String upperCaseTicker, final RecordHolder recordFromDb, final RecordHolder recordFromCache) {
+    private RecordHolder completeRecordFromFmpApi(final String upperCaseTicker, final RecordHolder recordFromDb, final RecordHolder recordFromCache) {
         final RecordHolder recordFromFmpApi = this.dataBroker.getDataFromFmpApi(recordFromDb, upperCaseTicker, this.circuitBreaker.getTimeoutForApiCallInMillis());
         if (recordFromFmpApi.getCauseOfNullDtos() == null){
             LOG.info("Valuation report for ticker {} generated from the FMP api", upperCaseTicker);
-            //before returning, make sure to start another thread to persist the data from the FMP api to db and cache!
-            this.cacheAndPersistAnyNewData(upperCaseTicker, recordFromCache, recordFromDb, recordFromFmpApi);
-            return new ValuationReport.Builder()
-                    .statusCode(HttpStatusCode.OK.getStatusCode())
-                    .recordHolder(recordFromFmpApi)
-                    .responseBodyFormatter(this.formatter)
-                    .build();
+        } else if (recordFromDb == null && recordFromFmpApi.getDtoCount() == 0) {
+            //we need to deal with the exceptions coming from the FMP api
+            LOG.warn("No report was generated for ticker {}! No data found in database and only received error messages from FMP api, sending back the appropriate response to the caller!", upperCaseTicker);
+        } else if (recordFromDb != null && (recordFromDb.getDtoCount() == recordFromFmpApi.getDtoCount())) {
+            LOG.warn("Valuation report for ticker {} generated from actual data from database and error messages from FMP api", upperCaseTicker);
         } else {
-            //else we need to deal with the exceptions coming from the FMP api
-            if (recordFromDb == null && recordFromFmpApi.getDtoCount() == 0) {
-                LOG.warn("No report was generated for ticker {}! No data found in database and only received error messages from FMP api, sending back the appropriate response to the caller!", upperCaseTicker);
-            } else if (recordFromDb != null && (recordFromDb.getDtoCount() == recordFromFmpApi.getDtoCount())) {
-                LOG.warn("Valuation report for ticker {} generated from actual data from database and error messages from FMP api", upperCaseTicker);
-            } else {
-                LOG.warn("Valuation report for ticker {} generated from FMP Api partial data and error messages", upperCaseTicker);
-            }
-            //same as above, before returning, make sure to start another thread to persist the data from the FMP api to db and cache!
-            this.cacheAndPersistAnyNewData(upperCaseTicker, recordFromCache, recordFromDb, recordFromFmpApi);
-            //we handle error and return what we can (that is what we have from the db which is equals or a superset of what we have from the cache)
-            return this.handleFmpApiError(recordFromFmpApi, recordFromFmpApi.getCauseOfNullDtos(), upperCaseTicker);
+            LOG.warn("Valuation report for ticker {} generated from FMP Api partial data and error messages", upperCaseTicker);
         }
+        //the cache is written before returning, so nobody coalesced on this load can miss it, only the db write runs on another thread
+        this.cacheAndPersistAnyNewData(upperCaseTicker, recordFromCache, recordFromDb, recordFromFmpApi);
+        return recordFromFmpApi;
     }
 
     private void cacheAndPersistAnyNewData(final String upperCaseTicker, final RecordHolder recordFromCache, final RecordHolder recordFromDb, final RecordHolder recordFromFmpApi) {
-        CompletableFuture.runAsync(() -> this.dataBroker.persistData(upperCaseTicker, recordFromCache, recordFromDb, recordFromFmpApi));
+        this.dataBroker.addToCache(upperCaseTicker, recordFromCache, recordFromFmpApi);
+        CompletableFuture.runAsync(() -> this.dataBroker.writeToDb(upperCaseTicker, recordFromDb, recordFromFmpApi), this.executor);
     }
 
     @Nullable
@@ -133,7 +193,7 @@ public class VRSagaOrchestrator {
         RecordHolder recordFromDb = null;
         try {
             //this fills up missing data if it can
-            final CompletableFuture<RecordHolder> rhFuture = CompletableFuture.supplyAsync(() -> this.dataBroker.getDataFromDb(recordFromCache, upperCaseTicker));
+            final CompletableFuture<RecordHolder> rhFuture = CompletableFuture.supplyAsync(() -> this.dataBroker.getDataFromDb(recordFromCache, upperCaseTicker), this.executor);
             //wait till timeout or success, we go to the FMP Api only if we are still missing data.
             recordFromDb = rhFuture.completeOnTimeout(recordFromCache, this.circuitBreaker.getTimeoutForDbQueryInMillis(), TimeUnit.MILLISECONDS).get();
         } catch (final ExecutionException executionException) {
@@ -157,7 +217,10 @@ public class VRSagaOrchestrator {
 
     private ValuationReport respondToInvalidTicker(final String ticker) {
         LOG.warn("Received illegal request for invalid ticker {}! Sending back http 403", ticker);
-        final String errorMessage = String.format(INVALID_TICKER_MESSAGE, ticker);
+        //the closest tickers save the caller a round of blind retries
+        final List<String> suggestions = this.tickerCache.didYouMean(ticker, DID_YOU_MEAN_COUNT);
+        final String errorMessage = suggestions.isEmpty() ? String.format(INVALID_TICKER_MESSAGE, ticker)
+                : String.format(INVALID_TICKER_MESSAGE, ticker) + " Did you mean " + String.join(", ", suggestions) + "?";
         return new ValuationReport.Builder()
                 .statusCode(HttpStatusCode.FORBIDDEN.getStatusCode())
                 .errorMessage(errorMessage)
@@ -6,6 +6,8 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.for
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.formatter.ValuationResponseBodyJSONFormatter;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Wrapper around the data generated by the ValuationReport saga
  */
@@ -28,6 +30,24 @@ public class ValuationReport implements StockValuationServiceResponse {
         return this.responseBodyFormatter.getFormattedResponseBody(this.recordHolder, this.errorMessage);
     }
 
+    /**
+     * The UTF-8 encoded message body, or the error message if there is no body, ready to be written to the response.
+     * Without an error message the body only depends on the RecordHolder and the type of the formatter, so it is rendered
+     * once for every RecordHolder and kept alongside it, and a cache hit only has to look the bytes up.
+     */
+    public byte[] getMessageBodyBytes() {
+        if (this.recordHolder != null && (this.errorMessage == null || this.errorMessage.isEmpty())) {
+            return this.recordHolder.getOrRender(this.responseBodyFormatter.getClass(),
+                    rendered -> this.encode(this.responseBodyFormatter.getFormattedResponseBody(rendered, this.errorMessage)));
+        }
+        return this.encode(this.getMessageBody());
+    }
+
+    private byte[] encode(@Nullable final String messageBody) {
+        final String message = messageBody == null ? this.errorMessage : messageBody;
+        return message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+    }
+
     @Override
     @Nullable
     public String getErrorMessage() {
@@ -0,0 +1,62 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * A daily budget of FMP api calls for background jobs. The free tier api keys have a small daily quota, and the calls
+ * serving the users must always have priority over the calls made to keep the cache warm, so a background job
+ * only gets a share of the quota. The budget resets at midnight UTC, same as the quota of the FMP api.
+ */
+public class FMPCallBudget {
+
+    private final int dailyCallLimit;
+    private final Clock clock;
+
+    private LocalDate currentDay;
+    private int callsUsed = 0;
+
+    public FMPCallBudget(final int dailyQuota, final double share) {
+        this(dailyQuota, share, Clock.systemUTC());
+    }
+
+    public FMPCallBudget(final int dailyQuota, final double share, final Clock clock) {
+        if (share < 0 || share > 1) {
+            throw new IllegalArgumentException("The share of the FMP quota must be between 0 and 1, but it was " + share);
+        }
+        this.dailyCallLimit = (int) (dailyQuota * share);
+        this.clock = clock;
+        this.currentDay = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * Takes the given number of calls from today's budget, if there is enough left
+     * @return true if the calls can be made
+     */
+    public synchronized boolean tryAcquire(final int calls) {
+        this.resetOnNewDay();
+        if (this.callsUsed + calls > this.dailyCallLimit) {
+            return false;
+        }
+        this.callsUsed += calls;
+        return true;
+    }
+
+    public synchronized int getRemainingCalls() {
+        this.resetOnNewDay();
+        return this.dailyCallLimit - this.callsUsed;
+    }
+
+    public int getDailyCallLimit() {
+        return this.dailyCallLimit;
+    }
+
+    private void resetOnNewDay() {
+        final LocalDate today = LocalDate.now(this.clock.withZone(ZoneOffset.UTC));
+        if (!today.equals(this.currentDay)) {
+            this.currentDay = today;
+            this.callsUsed = 0;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Learns which FMP api endpoints the configured api key can't use right now. A free tier key gets http 403 from the
+ * price target endpoints every single time, and once the daily quota is gone (http 429) or the key turns out to be invalid
+ * (http 401) every endpoint fails the same way until the next day or the next bounce.
+ * <p>
+ * A failed endpoint is blocked for a backoff period, during which the caller gets the last failure back without making the
+ * call. When the backoff is over, exactly one caller is let through to probe the endpoint again: a success unblocks it,
+ * another failure blocks it for twice as long as before, up to the maximum backoff. Keyed by the ValuationDtoType, since
+ * every type of data comes from its own endpoint.
+ */
+public class FMPEndpointCapabilities {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FMPEndpointCapabilities.class);
+
+    private final long initialBackoffInMillis;
+    private final long maxBackoffInMillis;
+    private final Clock clock;
+    //guarded by this
+    private final Map<ValuationDtoType, Blocked> blockedEndpoints = new EnumMap<>(ValuationDtoType.class);
+
+    public FMPEndpointCapabilities(final Duration initialBackoff, final Duration maxBackoff) {
+        this(initialBackoff, maxBackoff, Clock.systemUTC());
+    }
+
+    public FMPEndpointCapabilities(final Duration initialBackoff, final Duration maxBackoff, final Clock clock) {
+        if (maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("The maximum backoff " + maxBackoff + " can't be shorter than the initial backoff " + initialBackoff);
+        }
+        this.initialBackoffInMillis = initialBackoff.toMillis();
+        this.maxBackoffInMillis = maxBackoff.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * @return capabilities that never block any endpoint
+     */
+    public static FMPEndpointCapabilities disabled() {
+        return new FMPEndpointCapabilities(Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * Checks whether the endpoint may be called now. If the backoff of a blocked endpoint is over, the caller becomes the
+     * probe, and the endpoint stays blocked for everyone else until the probe reports back or its backoff runs out too.
+     * @return the failure to report instead of calling the endpoint, or null if the endpoint may be called
+     */
+    @Nullable
+    public synchronized RuntimeException failureOf(final ValuationDtoType endpoint) {
+        final Blocked blocked = this.blockedEndpoints.get(endpoint);
+        if (blocked == null) {
+            return null;
+        }
+        final long now = this.clock.millis();
+        if (now < blocked.blockedUntilMillis) {
+            return blocked.failure;
+        }
+        LOG.info("Probing the {} FMP api endpoint again after {} milliseconds of backoff", endpoint, blocked.backoffInMillis);
+        this.blockedEndpoints.put(endpoint, new Blocked(blocked.failure, blocked.backoffInMillis, now + blocked.backoffInMillis));
+        return null;
+    }
+
+    /**
+     * The endpoint can't be used with this api key, like a http 403 for a premium endpoint
+     */
+    public synchronized void recordFailure(final ValuationDtoType endpoint, final RuntimeException failure) {
+        final Blocked previous = this.blockedEndpoints.get(endpoint);
+        final long backoffInMillis = previous == null ? this.initialBackoffInMillis
+                : Math.min(previous.backoffInMillis * 2, this.maxBackoffInMillis);
+        if (backoffInMillis <= 0) {
+            return;
+        }
+        LOG.warn("Not calling the {} FMP api endpoint for the next {} milliseconds, it failed with: {}", endpoint, backoffInMillis, failure.getMessage());
+        this.blockedEndpoints.put(endpoint, new Blocked(failure, backoffInMillis, this.clock.millis() + backoffInMillis));
+    }
+
+    /**
+     * No endpoint can be used with this api key, like a http 401 for an invalid key or a http 429 for the exhausted quota
+     */
+    public synchronized void recordKeyWideFailure(final RuntimeException failure) {
+        for (final ValuationDtoType endpoint : ValuationDtoType.values()) {
+            this.recordFailure(endpoint, failure);
+        }
+    }
+
+    public synchronized void recordSuccess(final ValuationDtoType endpoint) {
+        if (this.blockedEndpoints.remove(endpoint) != null) {
+            LOG.info("The {} FMP api endpoint is usable again", endpoint);
+        }
+    }
+
+    public synchronized boolean isBlocked(final ValuationDtoType endpoint) {
+        final Blocked blocked = this.blockedEndpoints.get(endpoint);
+        return blocked != null && this.clock.millis() < blocked.blockedUntilMillis;
+    }
+
+    private record Blocked(RuntimeException failure, long backoffInMillis, long blockedUntilMillis) {
+    }
+}
@@ -1,6 +1,8 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp;
 
 import com.szilberhornz.valueinvdata.services.stockvaluation.AppContext;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.NegativeResultCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.RecordMapper;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
@@ -15,6 +17,7 @@ import org.slf4j.LoggerFactory;
 
 import java.net.http.HttpResponse;
 import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 /**
  * Class responsible for handling the responses from the FMP api, such as transforming it to record
@@ -25,9 +28,37 @@ public class FMPResponseHandler {
     private static final Logger LOG = LoggerFactory.getLogger(FMPResponseHandler.class);
 
     final FMPApiHttpClient client;
+    private final NegativeResultCache negativeResultCache;
+    private final FMPEndpointCapabilities endpointCapabilities;
 
     public FMPResponseHandler(final FMPApiHttpClient client) {
+        this(client, NegativeResultCache.disabled());
+    }
+
+    /**
+     * @param negativeResultCache remembers the tickers for which the FMP api answered with an empty result
+     */
+    public FMPResponseHandler(final FMPApiHttpClient client, final NegativeResultCache negativeResultCache) {
+        this(client, negativeResultCache, FMPEndpointCapabilities.disabled());
+    }
+
+    /**
+     * @param endpointCapabilities learns from the responses which endpoints the api key can't use right now
+     */
+    public FMPResponseHandler(final FMPApiHttpClient client, final NegativeResultCache negativeResultCache,
+                              final FMPEndpointCapabilities endpointCapabilities) {
         this.client = client;
+        this.negativeResultCache = negativeResultCache;
+        this.endpointCapabilities = endpointCapabilities;
+    }
+
+    /**
+     * Callers should check this before calling the endpoint of the given type of data, see {@link FMPEndpointCapabilities#failureOf(ValuationDtoType)}
+     * @return the failure to report instead of calling the endpoint, or null if the endpoint may be called
+     */
+    @Nullable
+    public RuntimeException getKnownFailureOf(final ValuationDtoType dtoType) {
+        return this.endpointCapabilities.failureOf(dtoType);
     }
 
     @Nullable
@@ -35,9 +66,9 @@ public class FMPResponseHandler {
         final String logMsg = "discounted cashflow";
         final HttpResponse<String> response = this.handlePossibleRetry(()-> this.client.getDiscountedCashFlow(ticker), logMsg);
         if (response != null && response.statusCode() == HttpStatusCode.OK.getStatusCode()){
-            return RecordMapper.newDcfDto(response);
+            return this.mapResponse(ticker, ValuationDtoType.DISCOUNTED_CASH_FLOW, response, RecordMapper::newDcfDto);
         } else {
-            this.handleError(response, logMsg);
+            this.handleError(response, ValuationDtoType.DISCOUNTED_CASH_FLOW, logMsg);
             return null;
         }
     }
@@ -47,9 +78,9 @@ public class FMPResponseHandler {
         final String logMsg = "price target consensus";
         final HttpResponse<String> response = this.handlePossibleRetry(()-> this.client.getPriceTargetConsensus(ticker), logMsg);
         if (response != null && response.statusCode() == HttpStatusCode.OK.getStatusCode()){
-            return RecordMapper.newPtcDto(response);
+            return this.mapResponse(ticker, ValuationDtoType.PRICE_TARGET_CONSENSUS, response, RecordMapper::newPtcDto);
         } else {
-            this.handleError(response, logMsg);
+            this.handleError(response, ValuationDtoType.PRICE_TARGET_CONSENSUS, logMsg);
             return null;
         }
     }
@@ -59,22 +90,46 @@ public class FMPResponseHandler {
         final String logMsg = "price target summary";
         final HttpResponse<String> response = this.handlePossibleRetry(()-> this.client.getPriceTargetSummary(ticker), logMsg);
         if (response != null && response.statusCode() == HttpStatusCode.OK.getStatusCode()){
-            return RecordMapper.newPtsDto(response);
+            return this.mapResponse(ticker, ValuationDtoType.PRICE_TARGET_SUMMARY, response, RecordMapper::newPtsDto);
         } else {
-            this.handleError(response, logMsg);
+            this.handleError(response, ValuationDtoType.PRICE_TARGET_SUMMARY, logMsg);
             return null;
         }
     }
 
-    private void handleError(final HttpResponse<String> httpResponse, final String logMsg) {
+    //an empty array is how the FMP api says that it has no such data for the ticker, which is worth remembering for a while
+    @Nullable
+    private <T> T mapResponse(final String ticker, final ValuationDtoType dtoType, final HttpResponse<String> response,
+                              final Function<HttpResponse<String>, T> mapper) {
+        this.endpointCapabilities.recordSuccess(dtoType);
+        if (response.body() == null || response.body().isBlank() || "[]".equals(response.body().strip())) {
+            LOG.info("The FMP api has no {} data for ticker {}", dtoType, ticker);
+            this.negativeResultCache.recordAbsent(ticker, dtoType);
+            return null;
+        }
+        final T dto = mapper.apply(response);
+        if (dto != null) {
+            this.negativeResultCache.clear(ticker, dtoType);
+        }
+        return dto;
+    }
+
+    //the quota and the validity of the key affect every endpoint, the privileges are per endpoint
+    private void handleError(final HttpResponse<String> httpResponse, final ValuationDtoType dtoType, final String logMsg) {
         if (httpResponse == null) {
             LOG.error("Couldn't retrieve any response from FMP api for the {} api call, please look for possible reasons in earlier error logs", logMsg);
         } else if (httpResponse.statusCode() == HttpStatusCode.TOO_MANY_REQUESTS.getStatusCode()) {
-            throw new RateLimitReachedException("Daily rate limit reached for the supplied api key!");
+            final RateLimitReachedException rateLimitReachedException = new RateLimitReachedException("Daily rate limit reached for the supplied api key!");
+            this.endpointCapabilities.recordKeyWideFailure(rateLimitReachedException);
+            throw rateLimitReachedException;
         } else if (httpResponse.statusCode() == HttpStatusCode.UNAUTHORIZED.getStatusCode()) {
-            throw new InvalidApiKeyException(httpResponse.body());
+            final InvalidApiKeyException invalidApiKeyException = new InvalidApiKeyException(httpResponse.body());
+            this.endpointCapabilities.recordKeyWideFailure(invalidApiKeyException);
+            throw invalidApiKeyException;
         } else if (httpResponse.statusCode() == HttpStatusCode.FORBIDDEN.getStatusCode()) {
-            throw new InsufficientPrivilegesException(httpResponse.body());
+            final InsufficientPrivilegesException insufficientPrivilegesException = new InsufficientPrivilegesException(httpResponse.body());
+            this.endpointCapabilities.recordFailure(dtoType, insufficientPrivilegesException);
+            throw insufficientPrivilegesException;
         } else {
             LOG.error("FMP Api returned the following error response {} for the api call: {}", httpResponse, logMsg);
         }
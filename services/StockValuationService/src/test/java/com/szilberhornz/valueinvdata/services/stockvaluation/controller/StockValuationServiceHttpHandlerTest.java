@@ -1,6 +1,8 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.controller;
 
 import com.sun.net.httpserver.HttpExchange;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.TickerSuggestionResponse;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpResponseMessage;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
@@ -13,10 +15,15 @@ import org.mockito.Mockito;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class StockValuationServiceHttpHandlerTest {
 
     private final ValuationReportRestController restControllerMock = Mockito.mock(ValuationReportRestController.class);
+    private final TickerSuggestionRestController suggestionControllerMock = Mockito.mock(TickerSuggestionRestController.class);
 
     @Test
     void testInvalidRequestMethod() throws IOException {
@@ -24,9 +31,9 @@ class StockValuationServiceHttpHandlerTest {
         Mockito.when(exchangeMock.getRequestMethod()).thenReturn("POST");
         final OutputStream osMock = Mockito.mock(OutputStream.class);
         Mockito.when(exchangeMock.getResponseBody()).thenReturn(osMock);
-        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock);
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
         sut.handle(exchangeMock);
-        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 88L);
+        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 123L);
     }
 
     @Test
@@ -37,9 +44,9 @@ class StockValuationServiceHttpHandlerTest {
         Mockito.when(exchangeMock.getRequestURI()).thenReturn(requestURI);
         final OutputStream osMock = Mockito.mock(OutputStream.class);
         Mockito.when(exchangeMock.getResponseBody()).thenReturn(osMock);
-        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock);
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
         sut.handle(exchangeMock);
-        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 88L);
+        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 123L);
     }
 
     @Test
@@ -50,9 +57,9 @@ class StockValuationServiceHttpHandlerTest {
         Mockito.when(exchangeMock.getRequestURI()).thenReturn(requestURI);
         final OutputStream osMock = Mockito.mock(OutputStream.class);
         Mockito.when(exchangeMock.getResponseBody()).thenReturn(osMock);
-        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock);
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
         sut.handle(exchangeMock);
-        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 88L);
+        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 123L);
     }
 
     @Test
@@ -71,8 +78,50 @@ class StockValuationServiceHttpHandlerTest {
                 .recordHolder(RecordHolder.newRecordHolder("TICKER", dcfDto, ptcDto, ptsDto))
                 .build();
         Mockito.when(this.restControllerMock.getValuationReport("TICKER")).thenReturn(report);
-        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock);
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
         sut.handle(exchangeMock);
         Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(200, 204L);
     }
+
+    @Test
+    void testWithoutQuery() throws IOException {
+        final URI requestURI = URI.create("/valuation-report");
+        final HttpExchange exchangeMock = Mockito.mock(HttpExchange.class);
+        Mockito.when(exchangeMock.getRequestMethod()).thenReturn("GET");
+        Mockito.when(exchangeMock.getRequestURI()).thenReturn(requestURI);
+        final OutputStream osMock = Mockito.mock(OutputStream.class);
+        Mockito.when(exchangeMock.getResponseBody()).thenReturn(osMock);
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
+        sut.handle(exchangeMock);
+        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(404, 123L);
+    }
+
+    @Test
+    void testWithValidSuggestionURI() throws IOException {
+        final URI requestURI = URI.create("/tickers/suggest?prefix=aap");
+        final HttpExchange exchangeMock = Mockito.mock(HttpExchange.class);
+        Mockito.when(exchangeMock.getRequestMethod()).thenReturn("GET");
+        Mockito.when(exchangeMock.getRequestURI()).thenReturn(requestURI);
+        final OutputStream osMock = Mockito.mock(OutputStream.class);
+        Mockito.when(exchangeMock.getResponseBody()).thenReturn(osMock);
+        final String body = "{\"prefix\":\"AAP\",\"suggestions\":[\"AAP\",\"AAPL\"]}";
+        Mockito.when(this.suggestionControllerMock.getSuggestions("aap"))
+                .thenReturn(new TickerSuggestionResponse(HttpStatusCode.OK.getStatusCode(), body, null));
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
+        sut.handle(exchangeMock);
+        Mockito.verify(exchangeMock, Mockito.times(1)).sendResponseHeaders(200, body.length());
+        Mockito.verifyNoInteractions(this.restControllerMock);
+    }
+
+    @Test
+    void routeShouldGiveTheSameResponseWithoutAnExchange() {
+        final String body = "{\"prefix\":\"AAP\",\"suggestions\":[\"AAP\",\"AAPL\"]}";
+        Mockito.when(this.suggestionControllerMock.getSuggestions("aap"))
+                .thenReturn(new TickerSuggestionResponse(HttpStatusCode.OK.getStatusCode(), body, null));
+        final StockValuationServiceHttpHandler sut = new StockValuationServiceHttpHandler(this.restControllerMock, this.suggestionControllerMock);
+        final HttpResponseMessage response = sut.route("GET", URI.create("/tickers/suggest?prefix=aap"));
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(body.getBytes(StandardCharsets.UTF_8), response.body());
+        assertEquals(404, sut.route("HEAD", URI.create("/tickers/suggest?prefix=aap")).statusCode());
+    }
 }
@@ -0,0 +1,37 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.controller;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.TickerSuggestionResponse;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerCache;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickerSuggestionRestControllerTest {
+
+    private final TickerCache tickerCacheMock = Mockito.mock(TickerCache.class);
+
+    @Test
+    void suggestionsShouldBeRenderedAsJson() {
+        Mockito.when(this.tickerCacheMock.suggest("aap", 5)).thenReturn(List.of("AAP", "AAPL"));
+        final TickerSuggestionRestController sut = new TickerSuggestionRestController(this.tickerCacheMock, 5);
+        final TickerSuggestionResponse response = sut.getSuggestions("aap");
+        assertEquals(200, response.getStatusCode());
+        assertNull(response.getErrorMessage());
+        final JSONObject body = new JSONObject(response.getMessageBody());
+        assertEquals("AAP", body.getString("prefix"));
+        assertEquals(List.of("AAP", "AAPL"), body.getJSONArray("suggestions").toList());
+    }
+
+    @Test
+    void emptyOrTooLongPrefixShouldBeABadRequest() {
+        final TickerSuggestionRestController sut = new TickerSuggestionRestController(this.tickerCacheMock, 5);
+        assertEquals(400, sut.getSuggestions("").getStatusCode());
+        assertEquals(400, sut.getSuggestions("A".repeat(33)).getStatusCode());
+        assertNotNull(sut.getSuggestions(" ").getErrorMessage());
+        Mockito.verifyNoInteractions(this.tickerCacheMock);
+    }
+}
@@ -0,0 +1,69 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.fmp;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPCallBudget;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FMPCallBudgetTest {
+
+    @Test
+    void budgetShouldBeTheShareOfTheQuota() {
+        final FMPCallBudget sut = new FMPCallBudget(250, 0.2);
+        assertEquals(50, sut.getDailyCallLimit());
+        assertTrue(sut.tryAcquire(48));
+        assertFalse(sut.tryAcquire(3));
+        assertTrue(sut.tryAcquire(2));
+        assertEquals(0, sut.getRemainingCalls());
+    }
+
+    @Test
+    void budgetShouldResetAtMidnightUtc() {
+        final MutableClock clock = new MutableClock(Instant.parse("2024-09-24T23:59:00Z"));
+        final FMPCallBudget sut = new FMPCallBudget(10, 0.5, clock);
+        assertTrue(sut.tryAcquire(5));
+        assertFalse(sut.tryAcquire(1));
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(5, sut.getRemainingCalls());
+        assertTrue(sut.tryAcquire(1));
+    }
+
+    @Test
+    void invalidShareShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new FMPCallBudget(250, 1.5));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(final Duration duration) {
+            this.instant = this.instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.fmp;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPEndpointCapabilities;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.RateLimitReachedException;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.InsufficientPrivilegesException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FMPEndpointCapabilitiesTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-09-24T12:00:00Z"));
+    private final FMPEndpointCapabilities sut = new FMPEndpointCapabilities(Duration.ofMinutes(10), Duration.ofMinutes(30), this.clock);
+
+    @Test
+    void forbiddenEndpointShouldOnlyBlockItself() {
+        final InsufficientPrivilegesException failure = new InsufficientPrivilegesException("Special Endpoint");
+        this.sut.recordFailure(ValuationDtoType.PRICE_TARGET_SUMMARY, failure);
+        assertSame(failure, this.sut.failureOf(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        assertNull(this.sut.failureOf(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+        assertNull(this.sut.failureOf(ValuationDtoType.PRICE_TARGET_CONSENSUS));
+    }
+
+    @Test
+    void keyWideFailureShouldBlockEveryEndpoint() {
+        this.sut.recordKeyWideFailure(new RateLimitReachedException("Daily rate limit reached"));
+        for (final ValuationDtoType endpoint : ValuationDtoType.values()) {
+            assertInstanceOf(RateLimitReachedException.class, this.sut.failureOf(endpoint));
+        }
+    }
+
+    @Test
+    void onlyOneProbeShouldBeLetThroughAfterTheBackoff() {
+        this.sut.recordFailure(ValuationDtoType.PRICE_TARGET_SUMMARY, new InsufficientPrivilegesException("Special Endpoint"));
+        this.clock.advance(Duration.ofMinutes(10));
+        assertNull(this.sut.failureOf(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        assertNotNull(this.sut.failureOf(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        this.sut.recordSuccess(ValuationDtoType.PRICE_TARGET_SUMMARY);
+        assertNull(this.sut.failureOf(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        assertFalse(this.sut.isBlocked(ValuationDtoType.PRICE_TARGET_SUMMARY));
+    }
+
+    @Test
+    void failedProbesShouldDoubleTheBackoffUpToTheMaximum() {
+        this.sut.recordFailure(ValuationDtoType.PRICE_TARGET_SUMMARY, new InsufficientPrivilegesException("Special Endpoint"));
+        this.clock.advance(Duration.ofMinutes(10));
+        assertNull(this.sut.failureOf(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        this.sut.recordFailure(ValuationDtoType.PRICE_TARGET_SUMMARY, new InsufficientPrivilegesException("Special Endpoint"));
+        this.clock.advance(Duration.ofMinutes(19));
+        assertTrue(this.sut.isBlocked(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        this.clock.advance(Duration.ofMinutes(1));
+        assertNull(this.sut.failureOf(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        this.sut.recordFailure(ValuationDtoType.PRICE_TARGET_SUMMARY, new InsufficientPrivilegesException("Special Endpoint"));
+        //40 minutes would be the double, but the maximum is 30
+        this.clock.advance(Duration.ofMinutes(30));
+        assertFalse(this.sut.isBlocked(ValuationDtoType.PRICE_TARGET_SUMMARY));
+    }
+
+    @Test
+    void disabledCapabilitiesShouldNeverBlock() {
+        final FMPEndpointCapabilities disabled = FMPEndpointCapabilities.disabled();
+        disabled.recordKeyWideFailure(new RateLimitReachedException("Daily rate limit reached"));
+        assertNull(disabled.failureOf(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(final Duration duration) {
+            this.instant = this.instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
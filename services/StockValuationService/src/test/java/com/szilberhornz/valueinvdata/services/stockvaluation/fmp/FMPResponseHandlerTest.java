@@ -1,9 +1,12 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.fmp;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.NegativeResultCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPApiHttpClient;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPEndpointCapabilities;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPResponseHandler;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.RateLimitReachedException;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.ApiKeyException;
@@ -14,6 +17,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -217,4 +222,41 @@ class FMPResponseHandlerTest {
         final Exception exception = assertThrows(InsufficientPrivilegesException.class, ()-> this.sut.getPriceTargetConsensusReportFromFmpApi("AAPL"));
         assertEquals(responseBodyString, exception.getMessage());
     }
+
+    @Test
+    void emptyResultShouldBeRecordedAsAbsentData() throws ApiKeyException {
+        final HttpResponse<String> response = Mockito.mock(HttpResponse.class);
+        when(response.body()).thenReturn("[]");
+        when(response.statusCode()).thenReturn(200);
+        when(this.clientMock.getPriceTargetSummary("DUMMY")).thenReturn(response);
+        final NegativeResultCache negativeResultCache = new NegativeResultCache(Duration.ofHours(1), 10);
+        this.sut = new FMPResponseHandler(this.clientMock, negativeResultCache);
+        assertNull(this.sut.getPriceTargetSummaryReportFromFmpApi("DUMMY"));
+        assertEquals(Set.of(ValuationDtoType.PRICE_TARGET_SUMMARY), negativeResultCache.absentDtoTypes("DUMMY"));
+    }
+
+    @Test
+    void errorResponseShouldNotBeRecordedAsAbsentData() throws ApiKeyException {
+        final HttpResponse<String> response = Mockito.mock(HttpResponse.class);
+        when(response.body()).thenReturn("[]");
+        when(response.statusCode()).thenReturn(500);
+        when(this.clientMock.getPriceTargetSummary("DUMMY")).thenReturn(response);
+        final NegativeResultCache negativeResultCache = new NegativeResultCache(Duration.ofHours(1), 10);
+        this.sut = new FMPResponseHandler(this.clientMock, negativeResultCache);
+        assertNull(this.sut.getPriceTargetSummaryReportFromFmpApi("DUMMY"));
+        assertTrue(negativeResultCache.absentDtoTypes("DUMMY").isEmpty());
+    }
+
+    @Test
+    void forbiddenEndpointShouldBeRememberedAsUnusable() throws ApiKeyException {
+        final HttpResponse<String> response = Mockito.mock(HttpResponse.class);
+        when(response.body()).thenReturn("Special Endpoint");
+        when(response.statusCode()).thenReturn(403);
+        when(this.clientMock.getPriceTargetConsensus("AAPL")).thenReturn(response);
+        this.sut = new FMPResponseHandler(this.clientMock, NegativeResultCache.disabled(),
+                new FMPEndpointCapabilities(Duration.ofMinutes(10), Duration.ofHours(1)));
+        assertThrows(InsufficientPrivilegesException.class, ()-> this.sut.getPriceTargetConsensusReportFromFmpApi("AAPL"));
+        assertInstanceOf(InsufficientPrivilegesException.class, this.sut.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_CONSENSUS));
+        assertNull(this.sut.getKnownFailureOf(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+    }
 }
@@ -14,6 +14,8 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -297,4 +299,22 @@ class ValuationDBRepositoryImplTest {
         repo.insertFullRecord(recordHolder);
         verify(stmtMock, times(1)).executeUpdate();
     }
+
+    @Test
+    void streamingAllRecordsShouldMapEveryRow() {
+        final List<RecordHolder> records = new ArrayList<>();
+        final int count = this.sut.streamRecords(0, records::add);
+        assertEquals(records.size(), count);
+        final RecordHolder msft = records.stream().filter(r -> "MSFT".equals(r.getTicker())).findFirst().orElseThrow();
+        assertEquals(455.76, msft.getDiscountedCashFlowDto().dcf());
+        assertEquals(480.3, msft.getPriceTargetSummaryDto().lastMonthAvgPriceTarget());
+        assertEquals(460, msft.getPriceTargetConsensusDto().targetMedian());
+    }
+
+    @Test
+    void streamingShouldRespectTheMaxCount() {
+        final List<RecordHolder> records = new ArrayList<>();
+        assertEquals(3, this.sut.streamRecords(3, records::add));
+        assertEquals(3, records.size());
+    }
 }
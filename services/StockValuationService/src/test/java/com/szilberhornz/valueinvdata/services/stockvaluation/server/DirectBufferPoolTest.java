@@ -0,0 +1,36 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectBufferPoolTest {
+
+    @Test
+    void releasedBufferShouldBeReusedCleared() {
+        final DirectBufferPool sut = new DirectBufferPool(64, 2);
+        final ByteBuffer buffer = sut.acquire();
+        assertTrue(buffer.isDirect());
+        assertEquals(64, buffer.capacity());
+        buffer.put((byte) 1);
+        sut.release(buffer);
+        final ByteBuffer reused = sut.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(64, reused.limit());
+    }
+
+    @Test
+    void poolShouldNotKeepMoreThanItsMaximum() {
+        final DirectBufferPool sut = new DirectBufferPool(64, 2);
+        final ByteBuffer first = sut.acquire();
+        final ByteBuffer second = sut.acquire();
+        final ByteBuffer third = sut.acquire();
+        sut.release(first);
+        sut.release(second);
+        sut.release(third);
+        assertEquals(2, sut.getPooledBufferCount());
+    }
+}
@@ -0,0 +1,80 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpRequestParserTest {
+
+    private static ByteBuffer directBuffer(final String content) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(HttpRequestParser.MAX_HEAD_SIZE);
+        buffer.put(content.getBytes(StandardCharsets.US_ASCII));
+        return buffer.flip();
+    }
+
+    @Test
+    void http11RequestShouldBeKeptAliveByDefault() {
+        final ByteBuffer buffer = directBuffer("GET /valuation-report?ticker=AAPL HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        final HttpRequestHead head = HttpRequestParser.parse(buffer);
+        assertNotNull(head);
+        assertEquals("GET", head.method());
+        assertEquals("/valuation-report?ticker=AAPL", head.target());
+        assertTrue(head.keepAlive());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void connectionHeaderShouldOverrideTheDefaultOfTheVersion() {
+        assertFalse(HttpRequestParser.parse(directBuffer("GET / HTTP/1.1\r\nconnection: Close\r\n\r\n")).keepAlive());
+        assertFalse(HttpRequestParser.parse(directBuffer("GET / HTTP/1.0\r\n\r\n")).keepAlive());
+        assertTrue(HttpRequestParser.parse(directBuffer("GET / HTTP/1.0\r\nConnection:  keep-alive \r\n\r\n")).keepAlive());
+        assertFalse(HttpRequestParser.parse(directBuffer("GET / HTTP/1.1\r\nConnection: upgrade, close\r\n\r\n")).keepAlive());
+    }
+
+    @Test
+    void incompleteRequestShouldLeaveTheBufferAsItWas() {
+        final ByteBuffer buffer = directBuffer("GET /valuation-report?ticker=AAPL HTTP/1.1\r\nHost: local");
+        assertNull(HttpRequestParser.parse(buffer));
+        assertEquals(0, buffer.position());
+        //the head is complete, the body is not
+        final ByteBuffer withBody = directBuffer("GET / HTTP/1.1\r\nContent-Length: 5\r\n\r\nab");
+        assertNull(HttpRequestParser.parse(withBody));
+        assertEquals(0, withBody.position());
+    }
+
+    @Test
+    void pipelinedRequestsShouldBeParsedOneByOneAndTheBodiesSkipped() {
+        final ByteBuffer buffer = directBuffer("GET /first HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc"
+                + "DELETE /second HTTP/1.1\r\n\r\n"
+                + "GET /third HTTP/1.1\r\nConnection: close\r\n\r\nGET /fourth");
+        assertEquals(new HttpRequestHead("GET", "/first", true), HttpRequestParser.parse(buffer));
+        assertEquals(new HttpRequestHead("DELETE", "/second", true), HttpRequestParser.parse(buffer));
+        assertEquals(new HttpRequestHead("GET", "/third", false), HttpRequestParser.parse(buffer));
+        assertNull(HttpRequestParser.parse(buffer));
+        assertEquals("GET /fourth".length(), buffer.remaining());
+    }
+
+    @Test
+    void malformedRequestsShouldBeRejectedWithBadRequest() {
+        for (final String request : new String[]{"GET\r\n\r\n", "GET /\r\n\r\n", "get / HTTP/1.1\r\n\r\n", "GET / HTTP/2.0\r\n\r\n",
+                "GET /a b HTTP/1.1\r\n\r\n", "GET / HTTP/1.1\r\nNo colon\r\n\r\n", "GET / HTTP/1.1\r\nContent-Length: -1\r\n\r\n",
+                "GET / HTTP/1.1\nHost: localhost\r\n\r\n"}) {
+            final MalformedHttpRequestException exception = assertThrows(MalformedHttpRequestException.class,
+                    () -> HttpRequestParser.parse(directBuffer(request)), request);
+            assertEquals(400, exception.getStatusCode(), request);
+        }
+    }
+
+    @Test
+    void unsupportedAndTooLargeRequestsShouldBeRejected() {
+        assertEquals(501, assertThrows(MalformedHttpRequestException.class,
+                () -> HttpRequestParser.parse(directBuffer("GET / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"))).getStatusCode());
+        assertEquals(413, assertThrows(MalformedHttpRequestException.class,
+                () -> HttpRequestParser.parse(directBuffer("GET / HTTP/1.1\r\nContent-Length: 10000\r\n\r\n"))).getStatusCode());
+        final ByteBuffer full = directBuffer("GET /" + "a".repeat(HttpRequestParser.MAX_HEAD_SIZE - 5));
+        assertEquals(431, assertThrows(MalformedHttpRequestException.class, () -> HttpRequestParser.parse(full)).getStatusCode());
+    }
+}
@@ -0,0 +1,41 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JdkHttpServerEngineTest {
+
+    @Test
+    void everyPathShouldBeHandledByTheHandler() throws IOException, InterruptedException {
+        final HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 10);
+        try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             final JdkHttpServerEngine sut = new JdkHttpServerEngine(httpServer, exchange -> {
+                 final byte[] body = exchange.getRequestURI().toString().getBytes(StandardCharsets.UTF_8);
+                 exchange.sendResponseHeaders(200, body.length);
+                 try (final OutputStream responseBody = exchange.getResponseBody()) {
+                     responseBody.write(body);
+                 }
+             }, executor);
+             final HttpClient client = HttpClient.newHttpClient()) {
+            sut.start();
+            final URI uri = URI.create("http://localhost:" + sut.getAddress().getPort() + "/valuation-report?ticker=AAPL");
+            final HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("/valuation-report?ticker=AAPL", response.body());
+        }
+    }
+}
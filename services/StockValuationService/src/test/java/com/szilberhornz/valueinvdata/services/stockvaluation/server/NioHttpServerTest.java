@@ -0,0 +1,244 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NioHttpServerTest {
+
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private NioHttpServer sut;
+
+    //answers with the path and the query, the /slow path takes a while, the /boom path fails
+    private static HttpResponseMessage route(final String method, final URI requestURI) {
+        if ("/slow".equals(requestURI.getPath())) {
+            try {
+                Thread.sleep(200);
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } else if ("/boom".equals(requestURI.getPath())) {
+            throw new IllegalStateException("boom");
+        }
+        final String body = method + " " + requestURI.getPath() + (requestURI.getQuery() == null ? "" : "?" + requestURI.getQuery());
+        return new HttpResponseMessage(200, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.sut = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50, NioHttpServerTest::route,
+                this.requestExecutor, Duration.ofSeconds(30));
+        this.sut.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.sut.close();
+        this.requestExecutor.shutdownNow();
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.sut.getAddress().getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private record Response(int statusCode, String connection, String body) {
+    }
+
+    //reads a response by its Content-Length
+    private static Response readResponse(final InputStream in) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new IOException("The connection was closed in the middle of a response!");
+            }
+            head.write(b);
+        }
+        final String[] lines = head.toString(StandardCharsets.US_ASCII).split("\r\n");
+        final int statusCode = Integer.parseInt(lines[0].split(" ")[1]);
+        int contentLength = 0;
+        String connection = null;
+        for (final String line : lines) {
+            if (line.startsWith("Content-Length: ")) {
+                contentLength = Integer.parseInt(line.substring("Content-Length: ".length()));
+            } else if (line.startsWith("Connection: ")) {
+                connection = line.substring("Connection: ".length());
+            }
+        }
+        return new Response(statusCode, connection, new String(in.readNBytes(contentLength), StandardCharsets.UTF_8));
+    }
+
+    private static void send(final Socket socket, final String requests) throws IOException {
+        socket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+
+    @Test
+    void keepAliveConnectionShouldServeRequestsOneAfterTheOther() throws IOException {
+        try (final Socket socket = this.connect()) {
+            for (int i = 0; i < 3; i++) {
+                send(socket, "GET /valuation-report?ticker=T" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                final Response response = readResponse(socket.getInputStream());
+                assertEquals(200, response.statusCode());
+                assertEquals("keep-alive", response.connection());
+                assertEquals("GET /valuation-report?ticker=T" + i, response.body());
+            }
+        }
+    }
+
+    @Test
+    void pipelinedResponsesShouldComeInTheOrderOfTheRequests() throws IOException {
+        try (final Socket socket = this.connect()) {
+            //the first one takes the longest, the others have to wait for it
+            final StringBuilder requests = new StringBuilder("GET /slow HTTP/1.1\r\n\r\n");
+            for (int i = 0; i < 2 * NioHttpServer.MAX_PIPELINED_REQUESTS; i++) {
+                requests.append("GET /fast?i=").append(i).append(" HTTP/1.1\r\n\r\n");
+            }
+            send(socket, requests.toString());
+            assertEquals("GET /slow", readResponse(socket.getInputStream()).body());
+            for (int i = 0; i < 2 * NioHttpServer.MAX_PIPELINED_REQUESTS; i++) {
+                assertEquals("GET /fast?i=" + i, readResponse(socket.getInputStream()).body());
+            }
+        }
+    }
+
+    @Test
+    void requestSplitAcrossReadsShouldBeReassembled() throws IOException, InterruptedException {
+        try (final Socket socket = this.connect()) {
+            socket.setTcpNoDelay(true);
+            send(socket, "GET /valuation-rep");
+            Thread.sleep(50);
+            send(socket, "ort?ticker=AAPL HTTP/1.1\r\nHo");
+            Thread.sleep(50);
+            send(socket, "st: localhost\r\n\r\n");
+            assertEquals("GET /valuation-report?ticker=AAPL", readResponse(socket.getInputStream()).body());
+        }
+    }
+
+    @Test
+    void connectionShouldBeClosedAfterTheResponseIfTheClientAsks() throws IOException {
+        try (final Socket socket = this.connect()) {
+            send(socket, "GET /a HTTP/1.1\r\nConnection: close\r\n\r\nGET /b HTTP/1.1\r\n\r\n");
+            final Response response = readResponse(socket.getInputStream());
+            assertEquals("GET /a", response.body());
+            assertEquals("close", response.connection());
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        try (final Socket socket = this.connect()) {
+            send(socket, "GET /http10 HTTP/1.0\r\n\r\n");
+            assertEquals("close", readResponse(socket.getInputStream()).connection());
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    void malformedRequestShouldBeAnsweredAfterTheOnesBeforeItAndTheConnectionClosed() throws IOException {
+        try (final Socket socket = this.connect()) {
+            send(socket, "GET /slow HTTP/1.1\r\n\r\nGARBAGE\r\n\r\n");
+            assertEquals(200, readResponse(socket.getInputStream()).statusCode());
+            final Response rejected = readResponse(socket.getInputStream());
+            assertEquals(400, rejected.statusCode());
+            assertEquals("close", rejected.connection());
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    void failingRouterShouldBeAnsweredWithInternalServerError() throws IOException {
+        try (final Socket socket = this.connect()) {
+            send(socket, "GET /boom HTTP/1.1\r\n\r\nGET /after HTTP/1.1\r\n\r\n");
+            assertEquals(500, readResponse(socket.getInputStream()).statusCode());
+            assertEquals("GET /after", readResponse(socket.getInputStream()).body());
+        }
+    }
+
+    @Test
+    void standardClientShouldBeServed() throws IOException, InterruptedException {
+        try (final HttpClient client = HttpClient.newHttpClient()) {
+            final URI base = URI.create("http://localhost:" + this.sut.getAddress().getPort());
+            final List<HttpResponse<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                responses.add(client.send(HttpRequest.newBuilder(base.resolve("/tickers/suggest?prefix=AA" + i)).build(),
+                        HttpResponse.BodyHandlers.ofString()));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, responses.get(i).statusCode());
+                assertEquals("GET /tickers/suggest?prefix=AA" + i, responses.get(i).body());
+            }
+        }
+    }
+
+    @Test
+    void idleConnectionShouldBeClosedAfterTheTimeout() throws IOException {
+        this.sut.close();
+        this.sut = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50, NioHttpServerTest::route,
+                this.requestExecutor, Duration.ofMillis(100));
+        this.sut.start();
+        try (final Socket socket = this.connect()) {
+            send(socket, "GET /a HTTP/1.1\r\n\r\n");
+            assertEquals("GET /a", readResponse(socket.getInputStream()).body());
+            //the idle connections are looked for every second
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    void everyEventLoopShouldListenOnTheSamePort() throws IOException {
+        assumeTrue(NioHttpServer.isMultiListenerSupported());
+        this.sut.close();
+        this.sut = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50, 4, NioHttpServerTest::route,
+                this.requestExecutor, Duration.ofSeconds(30));
+        this.sut.start();
+        assertEquals(4, this.sut.getEventLoopCount());
+        final List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 64; i++) {
+                final Socket socket = this.connect();
+                sockets.add(socket);
+                send(socket, "GET /loop?i=" + i + " HTTP/1.1\r\n\r\n");
+            }
+            for (int i = 0; i < sockets.size(); i++) {
+                assertEquals("GET /loop?i=" + i, readResponse(sockets.get(i).getInputStream()).body());
+            }
+        } finally {
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void closedServerShouldFreeThePort() throws IOException {
+        final int port = this.sut.getAddress().getPort();
+        this.sut.close();
+        this.sut = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 50, 2, NioHttpServerTest::route,
+                this.requestExecutor, Duration.ofSeconds(30));
+        this.sut.start();
+        try (final Socket socket = this.connect()) {
+            send(socket, "GET /again HTTP/1.1\r\n\r\n");
+            assertEquals("GET /again", readResponse(socket.getInputStream()).body());
+        }
+    }
+}
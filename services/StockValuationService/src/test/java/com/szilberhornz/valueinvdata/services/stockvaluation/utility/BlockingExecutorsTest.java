@@ -0,0 +1,29 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingExecutorsTest {
+
+    @Test
+    void virtualThreadPerTaskExecutorShouldRunEveryTaskOnANewNamedVirtualThread() {
+        try (final ExecutorService sut = BlockingExecutors.newVirtualThreadPerTaskExecutor("saga-")) {
+            final Thread first = CompletableFuture.supplyAsync(Thread::currentThread, sut).join();
+            final Thread second = CompletableFuture.supplyAsync(Thread::currentThread, sut).join();
+            assertTrue(first.isVirtual());
+            assertTrue(second.isVirtual());
+            assertNotSame(first, second);
+            assertTrue(first.getName().startsWith("saga-"));
+            assertNotEquals(first.getName(), second.getName());
+        }
+    }
+
+    @Test
+    void defaultAsyncPoolShouldBeTheExecutorOfCompletableFuture() {
+        assertSame(new CompletableFuture<Void>().defaultExecutor(), BlockingExecutors.defaultAsyncPool());
+    }
+}
@@ -0,0 +1,69 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheExpiryPolicyTest {
+
+    private static final long NOW = 1_727_000_000_000L;
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    private final CacheExpiryPolicy sut = new CacheExpiryPolicy(Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(7), Duration.ofDays(1));
+
+    @Test
+    void freshnessShouldDependOnTheTtlOfEachDtoType() {
+        RecordHolder recordHolder = this.recordLoadedHoursAgo(2);
+        assertEquals(CacheExpiryPolicy.Freshness.FRESH, this.sut.freshnessOf(recordHolder, NOW));
+        //the DCF only lives for a day, the price targets for a week
+        recordHolder = recordHolder.withLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW, NOW - 30 * HOUR);
+        assertEquals(CacheExpiryPolicy.Freshness.STALE, this.sut.freshnessOf(recordHolder, NOW));
+        assertEquals(Set.of(ValuationDtoType.DISCOUNTED_CASH_FLOW), this.sut.staleDtoTypes(recordHolder, NOW));
+        recordHolder = recordHolder.withLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW, NOW - 49 * HOUR);
+        assertEquals(CacheExpiryPolicy.Freshness.EXPIRED, this.sut.freshnessOf(recordHolder, NOW));
+    }
+
+    @Test
+    void priceTargetsShouldLiveLonger() {
+        RecordHolder recordHolder = this.recordLoadedHoursAgo(3 * 24);
+        recordHolder = recordHolder.withLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW, NOW);
+        assertEquals(CacheExpiryPolicy.Freshness.FRESH, this.sut.freshnessOf(recordHolder, NOW));
+        recordHolder = recordHolder.withLoadedAtMillis(ValuationDtoType.PRICE_TARGET_SUMMARY, NOW - 8 * 24 * HOUR);
+        assertEquals(Set.of(ValuationDtoType.PRICE_TARGET_SUMMARY), this.sut.staleDtoTypes(recordHolder, NOW));
+    }
+
+    @Test
+    void neverExpiringPolicyShouldAlwaysBeFresh() {
+        final RecordHolder recordHolder = this.recordLoadedHoursAgo(100_000);
+        assertEquals(CacheExpiryPolicy.Freshness.FRESH, CacheExpiryPolicy.NEVER_EXPIRES.freshnessOf(recordHolder, NOW));
+    }
+
+    @Test
+    void replaceShouldRestartTheTtl() {
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        cache.restore(RecordHolder.newRecordHolder("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2), null, null)
+                .withLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW, 0));
+        final DiscountedCashFlowDTO refreshedDcfDto = new DiscountedCashFlowDTO("AAPL", "2024-09-25", 190, 221.2);
+        cache.replace("AAPL", RecordHolder.newRecordHolder("AAPL", refreshedDcfDto, null, null));
+        assertEquals(refreshedDcfDto, cache.get("AAPL").getDiscountedCashFlowDto());
+        assertEquals(CacheExpiryPolicy.Freshness.FRESH, this.sut.freshnessOf(cache.get("AAPL"), System.currentTimeMillis()));
+    }
+
+    private RecordHolder recordLoadedHoursAgo(final long hours) {
+        RecordHolder recordHolder = RecordHolder.newRecordHolder("DUMMY",
+                new DiscountedCashFlowDTO("DUMMY", "2024-09-26", 15.5, 14),
+                new PriceTargetConsensusDTO("DUMMY", 20, 10, 16, 15),
+                new PriceTargetSummaryDTO("DUMMY", 2, 16, 5, 14));
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            recordHolder = recordHolder.withLoadedAtMillis(dtoType, NOW - hours * HOUR);
+        }
+        return recordHolder;
+    }
+}
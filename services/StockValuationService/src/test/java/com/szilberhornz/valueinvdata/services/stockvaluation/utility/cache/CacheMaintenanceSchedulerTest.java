@@ -0,0 +1,85 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMaintenanceSchedulerTest {
+
+    @Test
+    void maintenanceShouldEvictTheExcessAndMeasureTheRun() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(1000, 2);
+        for (final String ticker : new String[]{"AAPL", "MSFT", "AMZN", "NVDA"}) {
+            cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+        }
+        cache.get("AAPL");
+        cache.get("MSFT");
+        try (final CacheMaintenanceScheduler sut = new CacheMaintenanceScheduler(cache, NegativeResultCache.disabled())) {
+            assertNull(sut.getLastRun());
+            final CacheMaintenanceScheduler.MaintenanceRun run = sut.runMaintenance();
+            assertEquals(2, run.evictedCount());
+            assertEquals(4, run.sizeBefore());
+            assertEquals(2, run.sizeAfter());
+            assertTrue(run.durationInMillis() >= 0);
+            assertEquals(run, sut.getLastRun());
+            assertEquals(1, sut.getRunCount());
+            assertEquals(2, sut.getTotalEvictedCount());
+            assertNotNull(cache.peek("AAPL"));
+            assertNotNull(cache.peek("MSFT"));
+        }
+    }
+
+    @Test
+    void maintenanceShouldDropTheExpiredAbsences() {
+        final NegativeResultCache negativeResultCache = new NegativeResultCache(Duration.ofMillis(1), 10);
+        negativeResultCache.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        try (final CacheMaintenanceScheduler sut = new CacheMaintenanceScheduler(new ValuationServerNoEvictionCache(), negativeResultCache)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (negativeResultCache.size() > 0) {
+                    sut.runMaintenance();
+                    TimeUnit.MILLISECONDS.sleep(1);
+                }
+            });
+        }
+    }
+
+    @Test
+    void crossingThePressureThresholdShouldRunTheMaintenanceOnTheSchedulerThread() {
+        //the rebalance threshold is the pressure threshold of the LFU cache
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(10, 1);
+        try (final CacheMaintenanceScheduler sut = new CacheMaintenanceScheduler(cache, NegativeResultCache.disabled())) {
+            //the periodic run is far away, only the requested one can run in this test
+            sut.start(Duration.ofHours(1));
+            cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 100, 110));
+            cache.put("MSFT", new DiscountedCashFlowDTO("MSFT", "2024-09-24", 100, 110));
+            for (int i = 0; i < 10; i++) {
+                cache.get("AAPL");
+            }
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (sut.getRunCount() == 0 || cache.size() > 1) {
+                    TimeUnit.MILLISECONDS.sleep(5);
+                }
+            });
+            assertNull(cache.peek("MSFT"));
+            assertEquals(1, sut.getTotalEvictedCount());
+        }
+    }
+
+    @Test
+    void theTieredCacheShouldReportTheMaintenanceOfTheFirstTier() {
+        final ValuationServerCostAwareCache firstTier = new ValuationServerCostAwareCache(100);
+        final ValuationServerTieredCache cache = new ValuationServerTieredCache(firstTier, new OffHeapValuationStore(10));
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 100, 110));
+        try (final CacheMaintenanceScheduler sut = new CacheMaintenanceScheduler(cache, NegativeResultCache.disabled())) {
+            final CacheMaintenanceScheduler.MaintenanceRun run = sut.runMaintenance();
+            assertEquals(1, run.sizeBefore());
+            assertEquals(1, run.sizeAfter());
+            assertEquals(0, run.evictedCount());
+        }
+    }
+}
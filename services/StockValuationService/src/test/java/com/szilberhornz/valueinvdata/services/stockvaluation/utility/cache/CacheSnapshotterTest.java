@@ -0,0 +1,126 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSnapshotterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void snapshotShouldRestoreEntriesAndFrequencies() throws IOException {
+        final Path snapshotFile = this.tempDir.resolve("cache.snapshot");
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 10);
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        cache.put("AAPL", new PriceTargetConsensusDTO("AAPL", 20, 10, 16, 15));
+        cache.put("MSFT", new PriceTargetSummaryDTO("MSFT", 2, 16, 5, 14));
+        cache.recordFillCost("AAPL", FillSource.FMP_API, 2);
+        cache.get("AAPL");
+        cache.get("AAPL");
+        cache.get("MSFT");
+        final long aaplLoadedAt = cache.peek("AAPL").getLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        assertEquals(2, new CacheSnapshotter(snapshotFile, cache).writeSnapshot());
+
+        final ValuationServerLFUCache restarted = new ValuationServerLFUCache(100, 10);
+        assertEquals(2, new CacheSnapshotter(snapshotFile, restarted).loadSnapshot());
+        final RecordHolder aapl = restarted.peek("AAPL");
+        assertNotNull(aapl);
+        assertEquals(2, aapl.getDtoCount());
+        assertEquals(FillSource.FMP_API, aapl.getFillSource());
+        assertEquals(aaplLoadedAt, aapl.getLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+        assertEquals(new PriceTargetSummaryDTO("MSFT", 2, 16, 5, 14), restarted.peek("MSFT").getPriceTargetSummaryDto());
+        assertEquals(2, restarted.getAccessFrequency("AAPL"));
+        assertEquals(1, restarted.getAccessFrequency("MSFT"));
+        assertEquals(restarted.getWeightedSize(), cache.getWeightedSize());
+    }
+
+    @Test
+    void missingSnapshotShouldLeaveTheCacheEmpty() {
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        final CacheSnapshotter snapshotter = new CacheSnapshotter(this.tempDir.resolve("nothing.snapshot"), cache);
+        assertFalse(snapshotter.snapshotExists());
+        assertEquals(0, snapshotter.loadSnapshot());
+    }
+
+    @Test
+    void corruptedSnapshotShouldBeIgnored() throws IOException {
+        final Path snapshotFile = this.tempDir.resolve("cache.snapshot");
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        new CacheSnapshotter(snapshotFile, cache).writeSnapshot();
+        //flip a byte of the DCF value, the checksum should catch it
+        try (final FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), CacheSnapshotter.HEADER_SIZE + 35);
+        }
+        final ValuationServerNoEvictionCache restarted = new ValuationServerNoEvictionCache();
+        assertEquals(0, new CacheSnapshotter(snapshotFile, restarted).loadSnapshot());
+        assertNull(restarted.peek("AAPL"));
+    }
+
+    @Test
+    void snapshotOfAnotherVersionShouldBeIgnored() throws IOException {
+        final Path snapshotFile = this.tempDir.resolve("cache.snapshot");
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        new CacheSnapshotter(snapshotFile, cache).writeSnapshot();
+        try (final FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, CacheSnapshotter.VERSION + 1), 4);
+        }
+        assertEquals(0, new CacheSnapshotter(snapshotFile, new ValuationServerNoEvictionCache()).loadSnapshot());
+        assertTrue(Files.size(snapshotFile) > CacheSnapshotter.HEADER_SIZE);
+    }
+
+    @Test
+    void closeShouldWaitForTheScheduledSnapshotBeforeWritingTheLastOne() throws Exception {
+        final Path snapshotFile = this.tempDir.resolve("cache.snapshot");
+        final CountDownLatch scheduledWriteStarted = new CountDownLatch(1);
+        final CountDownLatch releaseScheduledWrite = new CountDownLatch(1);
+        final AtomicInteger concurrentWriters = new AtomicInteger();
+        final AtomicInteger maxConcurrentWriters = new AtomicInteger();
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 10) {
+            @Override
+            public void forEachEntry(final Consumer<RecordHolder> consumer) {
+                maxConcurrentWriters.accumulateAndGet(concurrentWriters.incrementAndGet(), Math::max);
+                scheduledWriteStarted.countDown();
+                try {
+                    releaseScheduledWrite.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                super.forEachEntry(consumer);
+                concurrentWriters.decrementAndGet();
+            }
+        };
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        final CacheSnapshotter sut = new CacheSnapshotter(snapshotFile, cache);
+        sut.start(Duration.ofMillis(10));
+        assertTrue(scheduledWriteStarted.await(5, TimeUnit.SECONDS));
+        final Thread shutdownHook = Thread.ofPlatform().start(sut::close);
+        shutdownHook.join(200);
+        assertTrue(shutdownHook.isAlive());
+        releaseScheduledWrite.countDown();
+        shutdownHook.join(5000);
+        assertFalse(shutdownHook.isAlive());
+        assertEquals(1, maxConcurrentWriters.get());
+        assertEquals(1, new CacheSnapshotter(snapshotFile, new ValuationServerNoEvictionCache()).loadSnapshot());
+    }
+}
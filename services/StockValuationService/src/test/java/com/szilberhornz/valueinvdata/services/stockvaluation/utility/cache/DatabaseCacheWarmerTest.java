@@ -0,0 +1,43 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.repository.api.ValuationDBRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DatabaseCacheWarmerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamedRecordsShouldLandInTheCacheWithoutOverwritingNewerEntries() {
+        final ValuationDBRepository repositoryMock = mock(ValuationDBRepository.class);
+        when(repositoryMock.streamRecords(eq(2), any())).thenAnswer(invocation -> {
+            final Consumer<RecordHolder> consumer = invocation.getArgument(1);
+            consumer.accept(RecordHolder.newRecordHolder("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-23", 1, 1), null, null));
+            consumer.accept(RecordHolder.newRecordHolder("MSFT", new DiscountedCashFlowDTO("MSFT", "2024-09-23", 2, 2), null, null));
+            return 2;
+        });
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        //a user request was faster than the warm-up
+        cache.put("MSFT", new DiscountedCashFlowDTO("MSFT", "2024-09-27", 3, 3));
+        final AtomicInteger executedTasks = new AtomicInteger();
+        final Executor blockingExecutor = task -> {
+            executedTasks.incrementAndGet();
+            new Thread(task).start();
+        };
+        final int loaded = new DatabaseCacheWarmer(repositoryMock, cache, 2).warmUpAsync(blockingExecutor).join();
+        assertEquals(2, loaded);
+        assertEquals(1, executedTasks.get());
+        assertEquals(1, cache.get("AAPL").getDiscountedCashFlowDto().dcf());
+        assertEquals(3, cache.get("MSFT").getDiscountedCashFlowDto().dcf());
+    }
+}
@@ -0,0 +1,49 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+    @Test
+    void unseenTickerShouldHaveZeroFrequency() {
+        final FrequencySketch sut = new FrequencySketch(512);
+        assertEquals(0, sut.frequency("AAPL"));
+    }
+
+    @Test
+    void incrementShouldBeReflectedInFrequency() {
+        final FrequencySketch sut = new FrequencySketch(512);
+        for (int i = 0; i < 5; i++) {
+            sut.increment("AAPL");
+        }
+        sut.increment("MSFT");
+        assertEquals(5, sut.frequency("AAPL"));
+        assertEquals(1, sut.frequency("MSFT"));
+    }
+
+    @Test
+    void frequencyShouldSaturateAtFifteen() {
+        final FrequencySketch sut = new FrequencySketch(512);
+        for (int i = 0; i < 100; i++) {
+            sut.increment("AAPL");
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sut.frequency("AAPL"));
+    }
+
+    @Test
+    void countersShouldBeHalvedWhenSampleSizeIsReached() {
+        final FrequencySketch sut = new FrequencySketch(16);
+        for (int i = 0; i < 10; i++) {
+            sut.increment("AAPL");
+        }
+        //fill up the rest of the sample with other tickers to trigger the aging
+        int i = 0;
+        while (sut.frequency("AAPL") == 10 && i < sut.getSampleSize()) {
+            sut.increment("TICKER" + i++);
+        }
+        assertTrue(sut.frequency("AAPL") <= 6, "The frequency should have been halved, but it was " + sut.frequency("AAPL"));
+    }
+}
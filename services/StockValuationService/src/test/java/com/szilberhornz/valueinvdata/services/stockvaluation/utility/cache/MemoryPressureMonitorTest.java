@@ -0,0 +1,91 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MemoryPressureMonitorTest {
+
+    private static final long MAX_OLD_GENERATION_SIZE = 1000;
+
+    private final MemoryPoolMXBean oldGeneration = mock(MemoryPoolMXBean.class);
+
+    MemoryPressureMonitorTest() {
+        when(this.oldGeneration.getName()).thenReturn("Old Gen");
+        when(this.oldGeneration.isCollectionUsageThresholdSupported()).thenReturn(true);
+        when(this.oldGeneration.getUsage()).thenReturn(new MemoryUsage(0, 500, 1000, MAX_OLD_GENERATION_SIZE));
+    }
+
+    @Test
+    void pressureShouldShrinkTheCacheToTheColdestEntries() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(1000, 8);
+        for (int i = 0; i < 8; i++) {
+            final String ticker = "T" + i;
+            cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+            for (int j = 0; j < i; j++) {
+                cache.get(ticker);
+            }
+        }
+        cache.setMaintenanceRequester(cache::cleanUp);
+        final MemoryPressureMonitor sut = new MemoryPressureMonitor(cache, this.oldGeneration, 0.8);
+        assertEquals(800, sut.getThresholdInBytes());
+        sut.onMemoryPressure();
+        assertEquals(0.5, cache.getCapacityRatio());
+        assertEquals(4, cache.size());
+        for (int i = 4; i < 8; i++) {
+            assertNotNull(cache.peek("T" + i));
+        }
+        assertEquals(1, sut.getShrinkCount());
+    }
+
+    @Test
+    void repeatedPressureShouldNotShrinkBelowTheMinimum() {
+        final ValuationServerCache cache = new ValuationServerNoEvictionCache();
+        final MemoryPressureMonitor sut = new MemoryPressureMonitor(cache, this.oldGeneration, 0.8);
+        for (int i = 0; i < 10; i++) {
+            sut.onMemoryPressure();
+        }
+        assertEquals(MemoryPressureMonitor.MIN_CAPACITY_RATIO, cache.getCapacityRatio());
+        assertEquals(3, sut.getShrinkCount());
+    }
+
+    @Test
+    void theCacheShouldGrowBackOnlyWellBelowTheWatermark() {
+        final ValuationServerCache cache = new ValuationServerNoEvictionCache();
+        final MemoryPressureMonitor sut = new MemoryPressureMonitor(cache, this.oldGeneration, 0.8);
+        sut.onMemoryPressure();
+        sut.onMemoryPressure();
+        //below the watermark, but within the relief margin
+        when(this.oldGeneration.getCollectionUsage()).thenReturn(new MemoryUsage(0, 700, 1000, MAX_OLD_GENERATION_SIZE));
+        sut.checkForRelief();
+        assertEquals(0.25, cache.getCapacityRatio());
+        when(this.oldGeneration.getCollectionUsage()).thenReturn(new MemoryUsage(0, 300, 1000, MAX_OLD_GENERATION_SIZE));
+        sut.checkForRelief();
+        assertEquals(0.5, cache.getCapacityRatio());
+        sut.checkForRelief();
+        sut.checkForRelief();
+        assertEquals(1, cache.getCapacityRatio());
+    }
+
+    @Test
+    void poolsWithoutCollectionUsageThresholdsShouldBeRejected() {
+        when(this.oldGeneration.isCollectionUsageThresholdSupported()).thenReturn(false);
+        final ValuationServerCache cache = new ValuationServerNoEvictionCache();
+        assertThrows(IllegalArgumentException.class, () -> new MemoryPressureMonitor(cache, this.oldGeneration, 0.8));
+    }
+
+    @Test
+    void theOldGenerationOfTheRunningJvmShouldBeFound() {
+        //every collector of the JDK 21 has a tenured pool with usage thresholds, except for Epsilon and ZGC without generations
+        final MemoryPressureMonitor sut = MemoryPressureMonitor.forOldGeneration(new ValuationServerNoEvictionCache(), 0.9);
+        if (sut != null) {
+            assertTrue(sut.getThresholdInBytes() > 0);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NegativeResultCacheTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-09-24T12:00:00Z"));
+
+    @Test
+    void absencesShouldBeRememberedPerDtoType() {
+        final NegativeResultCache sut = new NegativeResultCache(Duration.ofHours(1), 10, this.clock);
+        assertTrue(sut.absentDtoTypes("DUMMY").isEmpty());
+        sut.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        sut.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_CONSENSUS);
+        assertEquals(Set.of(ValuationDtoType.PRICE_TARGET_SUMMARY, ValuationDtoType.PRICE_TARGET_CONSENSUS), sut.absentDtoTypes("DUMMY"));
+        assertTrue(sut.absentDtoTypes("AAPL").isEmpty());
+        assertEquals(1, sut.getHitCount());
+        assertEquals(2, sut.getMissCount());
+    }
+
+    @Test
+    void absencesShouldExpireAfterTheTtl() {
+        final NegativeResultCache sut = new NegativeResultCache(Duration.ofHours(1), 10, this.clock);
+        sut.recordAbsent("DUMMY", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        this.clock.advance(Duration.ofMinutes(30));
+        sut.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        this.clock.advance(Duration.ofMinutes(31));
+        assertEquals(Set.of(ValuationDtoType.PRICE_TARGET_SUMMARY), sut.absentDtoTypes("DUMMY"));
+        this.clock.advance(Duration.ofMinutes(30));
+        assertTrue(sut.absentDtoTypes("DUMMY").isEmpty());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    void purgeShouldDropTheExpiredAbsencesOfEveryTicker() {
+        final NegativeResultCache sut = new NegativeResultCache(Duration.ofHours(1), 10, this.clock);
+        sut.recordAbsent("A", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        sut.recordAbsent("B", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        this.clock.advance(Duration.ofMinutes(30));
+        sut.recordAbsent("B", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        sut.recordAbsent("C", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        this.clock.advance(Duration.ofMinutes(31));
+        assertEquals(1, sut.purgeExpired());
+        assertEquals(2, sut.size());
+        assertEquals(Set.of(ValuationDtoType.PRICE_TARGET_SUMMARY), sut.absentDtoTypes("B"));
+    }
+
+    @Test
+    void arrivingDataShouldClearTheAbsence() {
+        final NegativeResultCache sut = new NegativeResultCache(Duration.ofHours(1), 10, this.clock);
+        sut.recordAbsent("DUMMY", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        sut.clear("DUMMY", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        assertTrue(sut.absentDtoTypes("DUMMY").isEmpty());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    void theOldestTickerShouldBeDroppedWhenTheCacheIsFull() {
+        final NegativeResultCache sut = new NegativeResultCache(Duration.ofHours(1), 2, this.clock);
+        sut.recordAbsent("A", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        sut.recordAbsent("B", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        //recording again makes A the newest one
+        sut.recordAbsent("A", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        sut.recordAbsent("C", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        assertEquals(2, sut.size());
+        assertTrue(sut.absentDtoTypes("B").isEmpty());
+        assertEquals(2, sut.absentDtoTypes("A").size());
+        assertEquals(1, sut.absentDtoTypes("C").size());
+    }
+
+    @Test
+    void disabledCacheShouldNeverRememberAnything() {
+        final NegativeResultCache sut = NegativeResultCache.disabled();
+        sut.recordAbsent("DUMMY", ValuationDtoType.DISCOUNTED_CASH_FLOW);
+        assertTrue(sut.absentDtoTypes("DUMMY").isEmpty());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(final Duration duration) {
+            this.instant = this.instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapValuationStoreTest {
+
+    @Test
+    void storedRecordShouldDecodeToTheSameData() {
+        final String ticker = "AAPL";
+        final DiscountedCashFlowDTO dcfDto = new DiscountedCashFlowDTO(ticker, "2024-09-24", 189.5, 220.2);
+        final PriceTargetConsensusDTO ptcDto = new PriceTargetConsensusDTO(ticker, 20, 10, 16, 15);
+        final PriceTargetSummaryDTO ptsDto = new PriceTargetSummaryDTO(ticker, 2, 16, 5, 14);
+        final RecordHolder original = RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto, null, FillSource.FMP_API, 3)
+                .withLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW, 1000L);
+        final OffHeapValuationStore store = new OffHeapValuationStore(10);
+        assertTrue(store.put(original));
+        final RecordHolder decoded = store.get(ticker);
+        assertNotNull(decoded);
+        assertEquals(dcfDto, decoded.getDiscountedCashFlowDto());
+        assertEquals(ptcDto, decoded.getPriceTargetConsensusDto());
+        assertEquals(ptsDto, decoded.getPriceTargetSummaryDto());
+        assertEquals(FillSource.FMP_API, decoded.getFillSource());
+        assertEquals(3, decoded.getUpstreamCallCount());
+        assertEquals(1000L, decoded.getLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+        assertEquals(original.getLoadedAtMillis(ValuationDtoType.PRICE_TARGET_SUMMARY), decoded.getLoadedAtMillis(ValuationDtoType.PRICE_TARGET_SUMMARY));
+    }
+
+    @Test
+    void missingDtosShouldStayMissing() {
+        final OffHeapValuationStore store = new OffHeapValuationStore(10);
+        store.put(RecordHolder.newRecordHolder("MSFT", null, new PriceTargetConsensusDTO("MSFT", 20, 10, 16, 15), null));
+        final RecordHolder decoded = store.get("MSFT");
+        assertNotNull(decoded);
+        assertNull(decoded.getDiscountedCashFlowDto());
+        assertNull(decoded.getPriceTargetSummaryDto());
+        assertEquals(1, decoded.getDtoCount());
+    }
+
+    @Test
+    void fullStoreShouldEvictTheOldestEntry() {
+        final OffHeapValuationStore store = new OffHeapValuationStore(2);
+        store.put(RecordHolder.newRecordHolder("A", null, null, null));
+        store.put(RecordHolder.newRecordHolder("B", null, null, null));
+        store.put(RecordHolder.newRecordHolder("C", null, null, null));
+        assertEquals(2, store.size());
+        assertFalse(store.contains("A"));
+        assertTrue(store.contains("B"));
+        assertTrue(store.contains("C"));
+    }
+
+    @Test
+    void takenSlotShouldBeReused() {
+        final OffHeapValuationStore store = new OffHeapValuationStore(2);
+        store.put(RecordHolder.newRecordHolder("A", null, null, null));
+        store.put(RecordHolder.newRecordHolder("B", null, null, null));
+        assertNotNull(store.take("A"));
+        store.put(RecordHolder.newRecordHolder("C", null, null, null));
+        assertTrue(store.contains("B"));
+        assertTrue(store.contains("C"));
+        assertNull(store.take("A"));
+        assertEquals(1, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+    }
+
+    @Test
+    void slotsShouldSpanMultipleSlabs() {
+        final int capacity = OffHeapValuationStore.SLAB_SIZE_IN_BYTES / RecordHolderCodec.ENTRY_SIZE + 5;
+        final OffHeapValuationStore store = new OffHeapValuationStore(capacity);
+        for (int i = 0; i < capacity; i++) {
+            store.put(RecordHolder.newRecordHolder("T" + i, new DiscountedCashFlowDTO("T" + i, "2024-09-24", i, i), null, null));
+        }
+        assertEquals(capacity, store.size());
+        assertEquals(capacity - 1, store.get("T" + (capacity - 1)).getDiscountedCashFlowDto().dcf());
+        assertEquals(7, store.get("T7").getDiscountedCashFlowDto().dcf());
+    }
+
+    @Test
+    void tooLongTickerShouldBeRejected() {
+        final OffHeapValuationStore store = new OffHeapValuationStore(2);
+        assertFalse(store.put(RecordHolder.newRecordHolder("ABCDEFGHIJKLMNOPQ", null, null, null)));
+        assertEquals(0, store.size());
+    }
+}
@@ -3,8 +3,13 @@ package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class RecordHolderTest {
@@ -48,4 +53,42 @@ class RecordHolderTest {
         assertNull(record.getCauseOfNullDtos());
         assertEquals("DUMMY", record.getTicker());
     }
+
+    @Test
+    void fillCostShouldOnlyGoUp(){
+        final RecordHolder record = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto, null, FillSource.FMP_API, 3);
+        assertEquals(30, record.getFillCost());
+        assertSame(record, record.withFillCost(FillSource.DATABASE, 1));
+        final RecordHolder moreExpensive = record.withFillCost(FillSource.FMP_API, 4);
+        assertEquals(40, moreExpensive.getFillCost());
+        assertEquals(30, record.getFillCost());
+        final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        assertEquals(FillSource.DATABASE, dbRecord.getFillSource());
+        assertEquals(1, dbRecord.getFillCost());
+    }
+
+    @Test
+    void persistedRecordShouldBeAsOldAsTheDateOfItsDcf(){
+        final RecordHolder record = RecordHolder.newPersistedRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto, FillSource.DATABASE, 1);
+        final long dcfDate = LocalDate.of(2024, 9, 26).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            assertEquals(dcfDate, record.getLoadedAtMillis(dtoType));
+        }
+        final CacheExpiryPolicy dailyDcf = new CacheExpiryPolicy(Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(7), Duration.ofDays(1));
+        assertEquals(CacheExpiryPolicy.Freshness.EXPIRED, dailyDcf.freshnessOf(record, System.currentTimeMillis()));
+    }
+
+    @Test
+    void persistedRecordWithoutDateShouldBeAsOldAsItsRead(){
+        final long beforeRead = System.currentTimeMillis();
+        final RecordHolder record = RecordHolder.newPersistedRecordHolder("DUMMY", null, this.ptcDto, this.ptsDto, FillSource.DATABASE, 2);
+        assertTrue(record.getLoadedAtMillis(ValuationDtoType.PRICE_TARGET_CONSENSUS) >= beforeRead);
+        final CacheExpiryPolicy weeklyPriceTargets = new CacheExpiryPolicy(Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(7), Duration.ofDays(1));
+        //a ticker without a DCF must not be refreshed before every response
+        assertEquals(CacheExpiryPolicy.Freshness.FRESH, weeklyPriceTargets.freshnessOf(record, System.currentTimeMillis()));
+        final RecordHolder today = RecordHolder.newPersistedRecordHolder("DUMMY",
+                new DiscountedCashFlowDTO("DUMMY", LocalDate.now(ZoneOffset.UTC).toString(), 15.5, 14), null, null, FillSource.DATABASE, 1);
+        final CacheExpiryPolicy dailyDcf = new CacheExpiryPolicy(Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(7), Duration.ofDays(1));
+        assertEquals(CacheExpiryPolicy.Freshness.FRESH, dailyDcf.freshnessOf(today, System.currentTimeMillis()));
+    }
 }
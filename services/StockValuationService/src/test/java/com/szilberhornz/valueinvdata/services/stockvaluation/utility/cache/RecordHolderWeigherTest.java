@@ -0,0 +1,74 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordHolderWeigherTest {
+
+    @Test
+    void weightShouldGrowWithEveryDto() {
+        final String ticker = "AAPL";
+        final DiscountedCashFlowDTO dcfDto = new DiscountedCashFlowDTO(ticker, "2024-09-24", 189, 220.2);
+        final PriceTargetConsensusDTO ptcDto = new PriceTargetConsensusDTO(ticker, 20, 10, 16, 15);
+        final PriceTargetSummaryDTO ptsDto = new PriceTargetSummaryDTO(ticker, 2, 16, 5, 14);
+        final long empty = RecordHolderWeigher.weigh(RecordHolder.newRecordHolder(ticker, null, null, null));
+        final long dcfOnly = RecordHolderWeigher.weigh(RecordHolder.newRecordHolder(ticker, dcfDto, null, null));
+        final long full = RecordHolderWeigher.weigh(RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto));
+        assertTrue(empty < dcfOnly);
+        assertTrue(dcfOnly < full);
+        //deterministic
+        assertEquals(full, RecordHolderWeigher.weigh(RecordHolder.newRecordHolder(ticker, dcfDto, ptcDto, ptsDto)));
+    }
+
+    @Test
+    void stringsShouldBeWeighedByLengthAndEncoding() {
+        //24 bytes of String, 16 bytes of array header and 4 latin-1 bytes aligned to 8
+        assertEquals(24 + 24, RecordHolderWeigher.weighString("AAPL"));
+        assertEquals(24 + 32, RecordHolderWeigher.weighString("ABCDEFGHIJKL"));
+        assertEquals(24 + 24, RecordHolderWeigher.weighString("őű"));
+        assertEquals(0, RecordHolderWeigher.weighString(null));
+    }
+
+    @Test
+    void cacheShouldTrackWeightOnInsertPartialFillAndRemoval() {
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        final long afterInsert = cache.getWeightedSize();
+        assertEquals(RecordHolderWeigher.weigh(cache.get("AAPL")), afterInsert);
+        cache.put("AAPL", new PriceTargetConsensusDTO("AAPL", 20, 10, 16, 15));
+        assertTrue(cache.getWeightedSize() > afterInsert);
+        assertEquals(RecordHolderWeigher.weigh(cache.get("AAPL")), cache.getWeightedSize());
+        cache.removeEntry("AAPL");
+        assertEquals(0, cache.getWeightedSize());
+    }
+
+    @Test
+    void renderedBodiesShouldCountToTheWeightedSizeUntilTheEntryIsReplaced() {
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        final long withoutBody = cache.getWeightedSize();
+        final RecordHolder cached = cache.get("AAPL");
+        final byte[] body = cached.getOrRender(String.class, recordHolder -> new byte[1000]);
+        assertEquals(withoutBody + 16 + 1016, cache.getWeightedSize());
+        assertSame(body, cached.getOrRender(String.class, recordHolder -> new byte[1000]));
+        assertEquals(withoutBody + 16 + 1016, cache.getWeightedSize());
+        //the new entry starts without bodies, the replaced one doesn't keep any either
+        cache.put("AAPL", new PriceTargetConsensusDTO("AAPL", 20, 10, 16, 15));
+        assertEquals(RecordHolderWeigher.weigh(cache.get("AAPL")), cache.getWeightedSize());
+        assertNotSame(body, cached.getOrRender(Integer.class, recordHolder -> new byte[1000]));
+        assertEquals(RecordHolderWeigher.weigh(cache.get("AAPL")), cache.getWeightedSize());
+        cache.removeEntry("AAPL");
+        assertEquals(0, cache.getWeightedSize());
+    }
+
+    @Test
+    void recordHolderOutsideOfTheCacheShouldNotKeepItsBody() {
+        final RecordHolder recordHolder = RecordHolder.newRecordHolder("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2), null, null);
+        final byte[] body = recordHolder.getOrRender(String.class, rendered -> new byte[10]);
+        assertNotSame(body, recordHolder.getOrRender(String.class, rendered -> new byte[10]));
+    }
+}
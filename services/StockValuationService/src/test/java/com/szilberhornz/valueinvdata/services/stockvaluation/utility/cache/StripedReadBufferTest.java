@@ -0,0 +1,41 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedReadBufferTest {
+
+    @Test
+    void offeredReadsShouldBeDrainedInOrder() {
+        final StripedReadBuffer sut = new StripedReadBuffer(1);
+        sut.offer("AAPL");
+        sut.offer("MSFT");
+        final List<String> drained = new ArrayList<>();
+        sut.drainTo(drained::add);
+        assertEquals(List.of("AAPL", "MSFT"), drained);
+    }
+
+    @Test
+    void fullStripeShouldRejectOffer() {
+        final StripedReadBuffer sut = new StripedReadBuffer(1);
+        for (int i = 0; i < StripedReadBuffer.BUFFER_SIZE; i++) {
+            assertTrue(sut.offer("AAPL"));
+        }
+        assertFalse(sut.offer("MSFT"));
+        final List<String> drained = new ArrayList<>();
+        sut.drainTo(drained::add);
+        assertEquals(StripedReadBuffer.BUFFER_SIZE, drained.size());
+        //after draining there is space again
+        assertTrue(sut.offer("MSFT"));
+    }
+
+    @Test
+    void stripeCountShouldBePowerOfTwo() {
+        final StripedReadBuffer sut = new StripedReadBuffer(6);
+        assertEquals(16, sut.stripeCount());
+    }
+}
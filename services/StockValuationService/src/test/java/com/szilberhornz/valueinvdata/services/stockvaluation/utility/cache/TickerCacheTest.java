@@ -1,11 +1,21 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class TickerCacheTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     void testSuccessfulInitialization(){
         final String testResourceFileName = "testTickers.txt";
@@ -28,4 +38,80 @@ class TickerCacheTest {
         final Exception exception = assertThrows(TickerCacheLoadingFailedException.class, () -> new TickerCache(testResourceFileName));
         assertEquals("Ticker cache loading failed because the resource file emptyTickersFile.txt does not exist or is empty!", exception.getMessage());
     }
+
+    @Test
+    void testInitializationFromAnExternalFile() throws IOException {
+        final Path tickerFile = this.tempDir.resolve("globalTickers.txt");
+        Files.writeString(tickerFile, "\"AAPL\",\"7203.T\",\"VOW3.DE\"");
+        final TickerCache sut = new TickerCache(tickerFile);
+        assertTrue(sut.tickerExists("vow3.de"));
+        assertFalse(sut.tickerExists("GOGN"));
+    }
+
+    @Test
+    void testInitializationWithAnEmptyExternalFile() throws IOException {
+        final Path tickerFile = Files.createFile(this.tempDir.resolve("emptyTickers.txt"));
+        final Exception exception = assertThrows(TickerCacheLoadingFailedException.class, () -> new TickerCache(tickerFile));
+        assertEquals("Ticker cache loading failed because the file " + tickerFile + " does not exist or is empty!", exception.getMessage());
+    }
+
+    @Test
+    void reloadShouldSwapInTheNewTickersAndReportTheDiff() throws IOException {
+        final Path tickerFile = this.tempDir.resolve("tickers.txt");
+        Files.writeString(tickerFile, "\"AAPL\",\"MSFT\",\"TWTR\"");
+        final TickerCache sut = new TickerCache(tickerFile);
+        final List<TickerUniverseDiff> diffs = new ArrayList<>();
+        sut.addReloadListener(diffs::add);
+        Files.writeString(tickerFile, "\"AAPL\",\"MSFT\",\"ARM\",\"RDDT\"");
+
+        final TickerUniverseDiff diff = sut.reload();
+        assertEquals(List.of("ARM", "RDDT"), diff.added());
+        assertEquals(List.of("TWTR"), diff.removed());
+        assertEquals(List.of(diff), diffs);
+        assertTrue(sut.tickerExists("rddt"));
+        assertFalse(sut.tickerExists("TWTR"));
+        assertEquals(4, sut.size());
+
+        //nothing changed, nobody is notified
+        assertTrue(sut.reload().isEmpty());
+        assertEquals(1, diffs.size());
+    }
+
+    @Test
+    void idsShouldStayTheSameAcrossReloads() throws IOException {
+        final Path tickerFile = this.tempDir.resolve("tickers.txt");
+        Files.writeString(tickerFile, "\"AAPL\",\"MSFT\",\"TWTR\"");
+        final TickerCache sut = new TickerCache(tickerFile);
+        final int msftId = sut.idOf("msft");
+        final String msft = sut.tickerOf(msftId);
+        final int twtrId = sut.idOf("TWTR");
+        Files.writeString(tickerFile, "\"RDDT\",\"MSFT\",\"AAPL\"");
+        sut.reload();
+
+        assertEquals(msftId, sut.idOf("MSFT"));
+        assertSame(msft, sut.tickerOf(sut.idOf("MSFT")));
+        assertEquals(TickerCache.UNKNOWN_TICKER_ID, sut.idOf("TWTR"));
+        //the delisted ticker keeps its id, the new listing gets the next one
+        assertEquals("TWTR", sut.tickerOf(twtrId));
+        assertEquals(3, sut.idOf("rddt"));
+
+        Files.writeString(tickerFile, "\"RDDT\",\"MSFT\",\"AAPL\",\"TWTR\"");
+        assertEquals(List.of("TWTR"), sut.reload().added());
+        assertEquals(twtrId, sut.idOf("TWTR"));
+        assertEquals(4, sut.size());
+    }
+
+    @Test
+    void aFailedReloadShouldKeepTheCurrentTickers() throws IOException {
+        final Path tickerFile = this.tempDir.resolve("tickers.txt");
+        Files.writeString(tickerFile, "\"AAPL\",\"MSFT\",\"NVDA\",\"AMZN\"");
+        final TickerCache sut = new TickerCache(tickerFile);
+        //looks like a half written file
+        Files.writeString(tickerFile, "\"AAPL\"");
+        assertThrows(TickerCacheLoadingFailedException.class, sut::reload);
+        Files.delete(tickerFile);
+        assertThrows(TickerCacheLoadingFailedException.class, sut::reload);
+        assertTrue(sut.tickerExists("NVDA"));
+        assertEquals(4, sut.size());
+    }
 }
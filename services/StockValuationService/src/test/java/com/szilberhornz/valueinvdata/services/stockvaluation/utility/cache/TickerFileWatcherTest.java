@@ -0,0 +1,43 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickerFileWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void anAtomicReplacementOfTheFileShouldReloadTheTickers() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final Path tickerFile = this.tempDir.resolve("tickers.txt");
+        Files.writeString(tickerFile, "\"AAPL\",\"MSFT\",\"TWTR\"");
+        final TickerCache tickerCache = new TickerCache(tickerFile);
+        final CompletableFuture<TickerUniverseDiff> reloaded = new CompletableFuture<>();
+        tickerCache.addReloadListener(reloaded::complete);
+        try (final TickerFileWatcher sut = new TickerFileWatcher(tickerCache, tickerFile, Duration.ofMillis(100))) {
+            sut.start();
+            final Path newTickerFile = this.tempDir.resolve("tickers.txt.new");
+            Files.writeString(newTickerFile, "\"AAPL\",\"MSFT\",\"RDDT\"");
+            Files.move(newTickerFile, tickerFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            final TickerUniverseDiff diff = reloaded.get(30, TimeUnit.SECONDS);
+            assertEquals(List.of("RDDT"), diff.added());
+            assertEquals(List.of("TWTR"), diff.removed());
+            assertTrue(tickerCache.tickerExists("RDDT"));
+        }
+    }
+}
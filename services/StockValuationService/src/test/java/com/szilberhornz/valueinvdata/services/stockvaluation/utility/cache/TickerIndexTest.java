@@ -0,0 +1,74 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickerIndexTest {
+
+    @Test
+    void lookupsShouldBeCaseInsensitive() {
+        final TickerIndex sut = TickerIndex.of(List.of("AAPL", "brk.b", "000540.SZ"));
+        assertTrue(sut.contains("AAPL"));
+        assertTrue(sut.contains("aApL"));
+        assertTrue(sut.contains("BRK.B"));
+        assertTrue(sut.contains("000540.sz"));
+        assertTrue(sut.contains(new StringBuilder("brk.b")));
+        assertFalse(sut.contains("AAP"));
+        assertFalse(sut.contains("AAPLL"));
+        assertFalse(sut.contains(""));
+        assertFalse(sut.contains("ÄAPL"));
+        assertEquals(3, sut.size());
+    }
+
+    @Test
+    void duplicatesShouldBeIndexedOnce() {
+        final TickerIndex sut = TickerIndex.of(List.of("AAPL", "aapl", "MSFT", "AAPL"));
+        assertEquals(2, sut.size());
+        assertTrue(sut.contains("msft"));
+    }
+
+    @Test
+    void everyTickerShouldBeFoundInALargeIndex() {
+        final List<String> tickers = new ArrayList<>();
+        for (int i = 0; i < 70_000; i++) {
+            tickers.add("T" + Integer.toString(i, 36).toUpperCase() + ".X");
+        }
+        final TickerIndex sut = TickerIndex.of(tickers);
+        for (final String ticker : tickers) {
+            assertTrue(sut.contains(ticker.toLowerCase()), ticker);
+        }
+        assertFalse(sut.contains("T.X"));
+        //a HashSet of the same tickers would take about 90 bytes per ticker, the ids add 8 bytes to the packed bytes and the table
+        assertTrue(sut.getFootprintInBytes() < 25L * tickers.size(), "the footprint was " + sut.getFootprintInBytes());
+    }
+
+    @Test
+    void idsShouldBeDenseInTheOrderOfTheTickers() {
+        final TickerIndex sut = TickerIndex.of(List.of("AAPL", "msft", "aapl", "NVDA"));
+        assertEquals(0, sut.idOf("aapl"));
+        assertEquals(1, sut.idOf("MSFT"));
+        //the duplicate got no id of its own
+        assertEquals(2, sut.idOf("nvda"));
+        assertEquals(-1, sut.idOf("AMZN"));
+        assertEquals("MSFT", sut.tickerOf(1));
+        assertSame(sut.tickerOf(1), sut.tickerOf(sut.idOf("Msft")));
+        assertThrows(IndexOutOfBoundsException.class, () -> sut.tickerOf(3));
+    }
+
+    @Test
+    void nonAsciiTickersShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TickerIndex.of(List.of("AAPL", "ÄAPL")));
+        assertThrows(IllegalArgumentException.class, () -> TickerIndex.of(List.of("")));
+    }
+
+    @Test
+    void anEmptyIndexShouldContainNothing() {
+        final TickerIndex sut = TickerIndex.of(List.of());
+        assertFalse(sut.contains("AAPL"));
+        assertEquals(0, sut.size());
+    }
+}
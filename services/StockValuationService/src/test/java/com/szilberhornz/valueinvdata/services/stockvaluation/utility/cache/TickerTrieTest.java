@@ -0,0 +1,67 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickerTrieTest {
+
+    private final TickerTrie sut = TickerTrie.of(TickerIndex.of(List.of("AAPL", "AAP", "AA", "AAL", "ABBV", "MSFT", "MSF", "BRK.B", "BRK.A", "T")));
+
+    @Test
+    void prefixLookupShouldBeCaseInsensitiveAndAlphabetical() {
+        assertEquals(List.of("AA", "AAL", "AAP", "AAPL"), this.sut.withPrefix("aa", 10));
+        assertEquals(List.of("AAP", "AAPL"), this.sut.withPrefix("AAP", 10));
+        assertEquals(List.of("BRK.A", "BRK.B"), this.sut.withPrefix("brk", 10));
+        //the prefix ends inside the label of a node
+        assertEquals(List.of("MSF", "MSFT"), this.sut.withPrefix("Ms", 10));
+        assertEquals(List.of("T"), this.sut.withPrefix("t", 10));
+    }
+
+    @Test
+    void prefixLookupShouldStopAtMaxCount() {
+        assertEquals(List.of("AA", "AAL"), this.sut.withPrefix("A", 2));
+        assertEquals(10, this.sut.withPrefix("", 100).size());
+        assertTrue(this.sut.withPrefix("A", 0).isEmpty());
+    }
+
+    @Test
+    void unknownPrefixShouldHaveNoSuggestions() {
+        assertTrue(this.sut.withPrefix("X", 10).isEmpty());
+        assertTrue(this.sut.withPrefix("AAPLL", 10).isEmpty());
+        assertTrue(this.sut.withPrefix("MX", 10).isEmpty());
+    }
+
+    @Test
+    void similarTickersShouldBeOrderedByDistance() {
+        //one substitution away from AAPL, two edits away from AAL and AAP
+        assertEquals(List.of("AAPL", "AAL", "AAP"), this.sut.similarTo("appl", 2, 3));
+        assertEquals(List.of("AAPL", "AAL"), this.sut.similarTo("AAPL", 1, 2));
+        assertEquals(List.of("MSF", "MSFT"), this.sut.similarTo("MSFX", 1, 10));
+        assertEquals(List.of("BRK.A", "BRK.B"), this.sut.similarTo("brk.c", 1, 10));
+    }
+
+    @Test
+    void tooDistantTickersShouldHaveNoSuggestions() {
+        assertTrue(this.sut.similarTo("GOOGL", 1, 10).isEmpty());
+        assertTrue(this.sut.similarTo("AAPLXXXXXX", 2, 10).isEmpty());
+    }
+
+    @Test
+    void everyTickerShouldBeFoundInALargeTrie() {
+        final List<String> tickers = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            tickers.add("T" + Integer.toString(i, 36).toUpperCase());
+        }
+        final TickerTrie large = TickerTrie.of(TickerIndex.of(tickers));
+        assertEquals(20_000, large.withPrefix("T", Integer.MAX_VALUE).size());
+        for (final String ticker : tickers) {
+            assertEquals(ticker, large.withPrefix(ticker, 1).get(0));
+            assertEquals(ticker, large.similarTo(ticker, 1, 1).get(0));
+        }
+        assertTrue(large.getFootprintInBytes() > 0);
+    }
+}
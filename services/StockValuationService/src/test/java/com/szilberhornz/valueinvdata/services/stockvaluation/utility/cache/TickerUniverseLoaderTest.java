@@ -0,0 +1,93 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickerUniverseLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void quotedTickersShouldBeIndexed() {
+        final TickerIndex sut = TickerUniverseLoader.parse(utf8("\"GOGN\",\"SNCM.TA\", \"000540.SZ\",\"\",\"agorf\"\n"));
+        assertEquals(4, sut.size());
+        assertTrue(sut.contains("gogn"));
+        assertTrue(sut.contains("SNCM.TA"));
+        assertTrue(sut.contains("000540.SZ"));
+        assertTrue(sut.contains("AGORF"));
+        assertFalse(sut.contains(" "));
+    }
+
+    @Test
+    void chunkedScanShouldFindTheSameTickers() {
+        final List<String> tickers = new ArrayList<>();
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            final String ticker = "T" + Integer.toString(i, 36).toUpperCase() + ".X";
+            tickers.add(ticker);
+            content.append(i == 0 ? "" : ",").append('"').append(ticker).append('"');
+        }
+        final ByteBuffer bytes = utf8(content.toString());
+        for (final int chunkCount : new int[]{1, 2, 7, 64}) {
+            final TickerIndex sut = TickerUniverseLoader.parse(bytes, chunkCount);
+            assertEquals(tickers.size(), sut.size(), chunkCount + " chunks");
+            for (final String ticker : tickers) {
+                assertTrue(sut.contains(ticker), ticker + " in " + chunkCount + " chunks");
+            }
+        }
+    }
+
+    @Test
+    void moreChunksThanTickersShouldStillWork() {
+        final TickerIndex sut = TickerUniverseLoader.parse(utf8("\"AAPL\",\"MSFT\""), 16);
+        assertEquals(2, sut.size());
+        assertTrue(sut.contains("MSFT"));
+    }
+
+    @Test
+    void anExternalFileShouldBeMemoryMapped() throws IOException {
+        final Path tickerFile = this.tempDir.resolve("tickers.txt");
+        Files.writeString(tickerFile, "\"AAPL\",\"BRK.B\",\"7203.T\"");
+        final TickerIndex sut = TickerUniverseLoader.fromFile(tickerFile);
+        assertNotNull(sut);
+        assertEquals(3, sut.size());
+        assertTrue(sut.contains("brk.b"));
+        assertTrue(sut.contains("7203.T"));
+    }
+
+    @Test
+    void missingSourcesShouldReturnNull() throws IOException {
+        assertNull(TickerUniverseLoader.fromFile(this.tempDir.resolve("missing.txt")));
+        assertNull(TickerUniverseLoader.fromResource("nonexistentTickersFile.txt"));
+    }
+
+    @Test
+    void theResourceShouldBeLoaded() throws IOException {
+        final TickerIndex sut = TickerUniverseLoader.fromResource("testTickers.txt");
+        assertNotNull(sut);
+        assertEquals(6, sut.size());
+        assertTrue(sut.contains("JMG.L"));
+    }
+
+    @Test
+    void nonAsciiTickersShouldBeRejected() {
+        final ByteBuffer content = utf8("\"AAPL\",\"ÄAPL\"");
+        final Exception exception = assertThrows(IllegalArgumentException.class, () -> TickerUniverseLoader.parse(content));
+        assertTrue(exception.getMessage().contains("ÄAPL"), exception.getMessage());
+    }
+
+    private static ByteBuffer utf8(final String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,156 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValuationServerCompactCacheTest {
+
+    private static final DiscountedCashFlowDTO DCF_DTO = new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189.5, 220.2);
+    private static final PriceTargetConsensusDTO PTC_DTO = new PriceTargetConsensusDTO("AAPL", 300, 180, 245.5, 250);
+    private static final PriceTargetSummaryDTO PTS_DTO = new PriceTargetSummaryDTO("AAPL", 5, 240.1, 17, 238.7);
+
+    @Test
+    void nonPositiveCapacityShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ValuationServerCompactCache(0));
+    }
+
+    @Test
+    void theMaterializedEntryShouldEqualTheCachedOne() {
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(10);
+        final RecordHolder recordHolder = RecordHolder.newRecordHolder("AAPL", DCF_DTO, PTC_DTO, PTS_DTO, null, FillSource.FMP_API, 3);
+        sut.putAll("AAPL", recordHolder);
+        final RecordHolder cached = sut.get("AAPL");
+        assertNotNull(cached);
+        assertEquals(DCF_DTO, cached.getDiscountedCashFlowDto());
+        assertEquals(PTC_DTO, cached.getPriceTargetConsensusDto());
+        assertEquals(PTS_DTO, cached.getPriceTargetSummaryDto());
+        assertEquals(recordHolder.getFillCost(), cached.getFillCost());
+        for (final ValuationDtoType dtoType : ValuationDtoType.values()) {
+            assertEquals(recordHolder.getLoadedAtMillis(dtoType), cached.getLoadedAtMillis(dtoType));
+        }
+        assertNull(sut.get("MSFT"));
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    void singleDtoPutsShouldFillInTheMissingDtos() {
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(10);
+        sut.put("AAPL", PTS_DTO);
+        assertTrue(sut.peek("AAPL").isDataMissing());
+        sut.put("AAPL", DCF_DTO);
+        sut.put("AAPL", PTC_DTO);
+        sut.put("AAPL", new PriceTargetSummaryDTO("AAPL", 1, 1, 1, 1));
+        final RecordHolder cached = sut.peek("AAPL");
+        assertFalse(cached.isDataMissing());
+        //the DTOs already cached are kept
+        assertEquals(PTS_DTO, cached.getPriceTargetSummaryDto());
+    }
+
+    @Test
+    void datesThatAreNotIsoDatesShouldBeKeptAsTheyAre() {
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(10);
+        final DiscountedCashFlowDTO oddDate = new DiscountedCashFlowDTO("MSFT", "09/24/2024", 423, 433.88);
+        final DiscountedCashFlowDTO noDate = new DiscountedCashFlowDTO("AMZN", null, 154, 194.08);
+        sut.put("MSFT", oddDate);
+        sut.put("AMZN", noDate);
+        assertEquals(oddDate, sut.peek("MSFT").getDiscountedCashFlowDto());
+        assertEquals(noDate, sut.peek("AMZN").getDiscountedCashFlowDto());
+    }
+
+    @Test
+    void clockShouldGiveTheRequestedTickersASecondChance() {
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(3);
+        final List<RecordHolder> evicted = new ArrayList<>();
+        sut.setEvictionListener(evicted::add);
+        for (final String ticker : new String[]{"AAPL", "MSFT", "AMZN"}) {
+            sut.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+        }
+        sut.get("AAPL");
+        sut.get("AMZN");
+        sut.put("NVDA", new DiscountedCashFlowDTO("NVDA", "2024-09-24", 100, 110));
+        assertEquals(3, sut.size());
+        assertNull(sut.peek("MSFT"));
+        assertEquals(1, evicted.size());
+        assertEquals("MSFT", evicted.getFirst().getTicker());
+        assertEquals(1, sut.getEvictionCount());
+        assertEquals(List.of("AAPL", "AMZN"), sut.hottestTickers(10).stream().sorted().toList());
+    }
+
+    @Test
+    void removedTickersShouldNotBreakTheLookupOfTheOthers() {
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(50);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                final String ticker = "R" + round + "T" + i;
+                sut.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", i, round));
+            }
+            for (int i = 0; i < 50; i++) {
+                final RecordHolder cached = sut.peek("R" + round + "T" + i);
+                assertNotNull(cached);
+                assertEquals(i, cached.getDiscountedCashFlowDto().dcf());
+            }
+            assertNull(sut.peek("R" + (round - 1) + "T0"));
+        }
+        assertEquals(450, sut.getEvictionCount());
+    }
+
+    @Test
+    void scalingTheCapacityDownShouldEvictOnCleanUp() {
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(10);
+        sut.setMaintenanceRequester(() -> {});
+        for (int i = 0; i < 10; i++) {
+            sut.put("T" + i, new DiscountedCashFlowDTO("T" + i, "2024-09-24", 100, 110));
+        }
+        sut.setCapacityRatio(0.5);
+        sut.cleanUp();
+        assertEquals(5, sut.size());
+        //the freed slots are reused
+        for (int i = 10; i < 20; i++) {
+            sut.put("T" + i, new DiscountedCashFlowDTO("T" + i, "2024-09-24", 100, 110));
+        }
+        assertEquals(5, sut.size());
+    }
+
+    @Test
+    void anEntryShouldTakeAboutHalfTheHeapOfRecordHolders() {
+        final int capacity = 1000;
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(capacity);
+        final ValuationServerNoEvictionCache objectCache = new ValuationServerNoEvictionCache();
+        for (int i = 0; i < capacity; i++) {
+            final String ticker = "TICK" + i;
+            final RecordHolder recordHolder = RecordHolder.newRecordHolder(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110),
+                    new PriceTargetConsensusDTO(ticker, 1, 2, 3, 4), new PriceTargetSummaryDTO(ticker, 1, 2, 3, 4));
+            sut.putAll(ticker, recordHolder);
+            objectCache.putAll(ticker, recordHolder);
+        }
+        //the payload alone is 104 bytes, the rest of the 336 bytes of a RecordHolder entry is object headers and references
+        assertTrue(sut.getWeightedSize() * 9 < objectCache.getWeightedSize() * 5,
+                sut.getWeightedSize() + " bytes should be much less than " + objectCache.getWeightedSize());
+    }
+
+    @Test
+    void invalidatedTickersShouldFreeTheirSlots() {
+        final List<RecordHolder> evicted = new ArrayList<>();
+        final ValuationServerCompactCache sut = new ValuationServerCompactCache(3);
+        sut.setEvictionListener(evicted::add);
+        sut.put("AAPL", DCF_DTO);
+        sut.put("MSFT", new DiscountedCashFlowDTO("MSFT", "2024-09-24", 400, 410));
+        sut.put("NVDA", new DiscountedCashFlowDTO("NVDA", "2024-09-24", 120, 130));
+        assertTrue(sut.invalidate("MSFT"));
+        assertFalse(sut.invalidate("MSFT"));
+        assertNull(sut.get("MSFT"));
+        assertEquals(2, sut.size());
+        sut.put("AMZN", new DiscountedCashFlowDTO("AMZN", "2024-09-24", 180, 190));
+        assertEquals(3, sut.size());
+        assertTrue(evicted.isEmpty());
+        assertNotNull(sut.get("NVDA"));
+    }
+}
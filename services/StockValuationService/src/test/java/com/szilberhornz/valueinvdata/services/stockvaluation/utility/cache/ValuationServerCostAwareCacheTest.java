@@ -0,0 +1,67 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValuationServerCostAwareCacheTest {
+
+    @Test
+    void nonPositiveCapacityShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ValuationServerCostAwareCache(0));
+    }
+
+    @Test
+    void cheapEntriesShouldBeEvictedBeforeExpensiveOnes() {
+        final ValuationServerCostAwareCache sut = new ValuationServerCostAwareCache(10);
+        for (int i = 0; i < 5; i++) {
+            this.putFromFmp(sut, "FMP" + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            sut.put("DB" + i, this.dcfDto("DB" + i));
+        }
+        assertTrue(sut.valuationServerCache.size() <= 10);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(sut.get("FMP" + i), "FMP" + i + " should not have been evicted");
+        }
+    }
+
+    @Test
+    void expensiveEntriesShouldAgeOutWhenNotRequested() {
+        final ValuationServerCostAwareCache sut = new ValuationServerCostAwareCache(10);
+        this.putFromFmp(sut, "STALE");
+        //cheap but popular tickers push the inflation value up with every eviction round
+        for (int i = 0; i < 1000; i++) {
+            final String ticker = "DB" + i;
+            sut.put(ticker, this.dcfDto(ticker));
+            sut.recordFillCost(ticker, FillSource.DATABASE, 1);
+            for (int j = 0; j < 3; j++) {
+                sut.get(ticker);
+            }
+        }
+        assertTrue(sut.getInflation() > 0);
+        assertNull(sut.get("STALE"));
+    }
+
+    private void putFromFmp(final ValuationServerCostAwareCache sut, final String ticker) {
+        sut.put(ticker, this.dcfDto(ticker));
+        sut.recordFillCost(ticker, FillSource.FMP_API, 3);
+    }
+
+    @Test
+    void shrinkingTheCapacityShouldEvictTheExcess() {
+        final ValuationServerCostAwareCache sut = new ValuationServerCostAwareCache(10);
+        for (int i = 0; i < 10; i++) {
+            sut.put("T" + i, this.dcfDto("T" + i));
+        }
+        sut.setCapacityRatio(0.5);
+        sut.cleanUp();
+        assertTrue(sut.size() <= 5, "the size should be within the shrunk capacity, but it was " + sut.size());
+        assertThrows(IllegalArgumentException.class, () -> sut.setCapacityRatio(0));
+    }
+
+    private DiscountedCashFlowDTO dcfDto(final String ticker) {
+        return new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110);
+    }
+}
@@ -3,8 +3,10 @@ package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class ValuationServerLFUCacheTest {
 
@@ -37,11 +39,9 @@ class ValuationServerLFUCacheTest {
         assertNull(cache.get(amazonDcfDto.ticker()));
     }
 
-    //in this test no eviction will happen because even though the capacity is 2 and there are 3 tickers in the cache,
-    //the TreeMap will only return 2 as the size (since its key is the frequency). But due to the fact that
-    //the eviction does not have to be too strict, it is an accepted behavior
+    //the eviction is bounded by the number of cached tickers, not by the number of distinct frequencies
     @Test
-    void testEvictionWithOneExcessTickerButMatchingFrequencyCounts() {
+    void testEvictionWithOneExcessTickerAndMatchingFrequencyCounts() {
         final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 2);
         final DiscountedCashFlowDTO appleDcfDto = new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2);
         final DiscountedCashFlowDTO microsoftDcfDto = new DiscountedCashFlowDTO("MSFT", "2024-09-24", 423, 433.88);
@@ -59,10 +59,46 @@ class ValuationServerLFUCacheTest {
         final ValuationServerLFUCache.LFUEvictor sut = cache.new LFUEvictor(cache);
         //calling this directly means that eviction runs on the main thread, so the test doesn't exit before the eviction ends
         sut.runEviction();
-        //all three tickers will be present
         assertEquals(appleDcfDto, cache.get(appleDcfDto.ticker()).getDiscountedCashFlowDto());
         assertEquals(microsoftDcfDto, cache.get(microsoftDcfDto.ticker()).getDiscountedCashFlowDto());
-        assertEquals(amazonDcfDto, cache.get(amazonDcfDto.ticker()).getDiscountedCashFlowDto());
+        assertNull(cache.get(amazonDcfDto.ticker()));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void rebalanceShouldForgetTheOldFrequencyOfATicker() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 2);
+        for (final String ticker : new String[]{"AAPL", "MSFT", "AMZN"}) {
+            cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+        }
+        cache.get("AAPL");
+        cache.get("MSFT");
+        cache.get("MSFT");
+        cache.cleanUp();
+        //AMZN was never requested
+        assertNull(cache.peek("AMZN"));
+        cache.put("AMZN", new DiscountedCashFlowDTO("AMZN", "2024-09-24", 100, 110));
+        for (int i = 0; i < 5; i++) {
+            cache.get("AMZN");
+            cache.get("AAPL");
+        }
+        cache.cleanUp();
+        //AAPL was in the bucket of frequency 1 before, it must not be evicted for that
+        assertNotNull(cache.peek("AAPL"));
+        assertNotNull(cache.peek("AMZN"));
+        assertNull(cache.peek("MSFT"));
+    }
+
+    @Test
+    void reachingTheRebalanceThresholdShouldRequestMaintenance() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(10, 2);
+        final AtomicInteger maintenanceRequests = new AtomicInteger();
+        cache.setMaintenanceRequester(maintenanceRequests::incrementAndGet);
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2));
+        for (int i = 0; i < 25; i++) {
+            cache.get("AAPL");
+        }
+        assertEquals(2, maintenanceRequests.get());
     }
 
     @Test
@@ -88,4 +124,98 @@ class ValuationServerLFUCacheTest {
         assertEquals(microsoftDcfDto, cache.get(microsoftDcfDto.ticker()).getDiscountedCashFlowDto());
         assertEquals(amazonDcfDto, cache.get(amazonDcfDto.ticker()).getDiscountedCashFlowDto());
     }
+
+    @Test
+    void evictionShouldEnforceTheHeapBudget() {
+        final DiscountedCashFlowDTO appleDcfDto = new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189, 220.2);
+        final long entryWeight = RecordHolderWeigher.weigh(RecordHolder.newRecordHolder("AAPL", appleDcfDto, null, null));
+        //room for two entries, the entry count is not bounded
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, Integer.MAX_VALUE, 2 * entryWeight + 1);
+        final DiscountedCashFlowDTO microsoftDcfDto = new DiscountedCashFlowDTO("MSFT", "2024-09-24", 423, 433.88);
+        final DiscountedCashFlowDTO amazonDcfDto = new DiscountedCashFlowDTO("AMZN", "2024-09-24", 154, 194.08);
+        cache.put(appleDcfDto.ticker(), appleDcfDto);
+        cache.put(microsoftDcfDto.ticker(), microsoftDcfDto);
+        for (int i = 0; i < 10; i++) {
+            cache.get(appleDcfDto.ticker());
+            cache.get(microsoftDcfDto.ticker());
+        }
+        cache.put(amazonDcfDto.ticker(), amazonDcfDto);
+        //calling this directly means that eviction runs on the main thread, so the test doesn't exit before the eviction ends
+        cache.new LFUEvictor(cache).runEviction();
+        assertTrue(cache.getWeightedSize() <= cache.getMaxWeightInBytes());
+        assertNotNull(cache.get(appleDcfDto.ticker()));
+        assertNotNull(cache.get(microsoftDcfDto.ticker()));
+        //never requested, so it goes first
+        assertNull(cache.get(amazonDcfDto.ticker()));
+    }
+
+    @Test
+    void hottestTickersShouldBeOrderedByFrequency() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 10);
+        for (final String ticker : new String[]{"AAPL", "MSFT", "AMZN"}) {
+            cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+        }
+        for (int i = 0; i < 5; i++) {
+            cache.get("MSFT");
+        }
+        for (int i = 0; i < 3; i++) {
+            cache.get("AAPL");
+        }
+        cache.get("AMZN");
+        //peeking doesn't count
+        for (int i = 0; i < 10; i++) {
+            cache.peek("AMZN");
+        }
+        assertEquals(List.of("MSFT", "AAPL"), cache.hottestTickers(2));
+    }
+
+    @Test
+    void invalidatedTickersShouldLoseTheirFrequency() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 10);
+        cache.put("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 100, 110));
+        cache.get("AAPL");
+        cache.get("AAPL");
+        assertTrue(cache.invalidate("AAPL"));
+        assertNull(cache.get("AAPL"));
+        assertEquals(0, cache.getAccessFrequency("AAPL"));
+        assertEquals(0, cache.getWeightedSize());
+        assertEquals(0, cache.getEvictionCount());
+        cache.cleanUp();
+        assertTrue(cache.hottestTickers(10).isEmpty());
+    }
+
+    @Test
+    void frequenciesShouldBeCountedByTheIdsOfTheTickerUniverse() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(100, 2, Long.MAX_VALUE, new TickerCache("testTickers.txt"));
+        for (final String ticker : new String[]{"GOGN", "AGORF", "NOTLISTED"}) {
+            cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+        }
+        cache.get("GOGN");
+        cache.get("GOGN");
+        cache.get("AGORF");
+        for (int i = 0; i < 5; i++) {
+            cache.get("NOTLISTED");
+        }
+        assertEquals(2, cache.getAccessFrequency("GOGN"));
+        //a ticker outside of the universe has no id to count it by
+        assertEquals(0, cache.getAccessFrequency("NOTLISTED"));
+        cache.cleanUp();
+        assertNull(cache.peek("NOTLISTED"));
+        assertEquals(List.of("GOGN", "AGORF"), cache.hottestTickers(10));
+    }
+
+    @Test
+    void frequenciesShouldGrowWithTheNumberOfTickersSeen() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(Integer.MAX_VALUE, 3000);
+        for (int i = 0; i < 2000; i++) {
+            final String ticker = "T" + i;
+            cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110));
+            cache.get(ticker);
+        }
+        cache.get("T1999");
+        cache.restoreAccessFrequency("T1500", 7);
+        assertEquals(1, cache.getAccessFrequency("T0"));
+        assertEquals(2, cache.getAccessFrequency("T1999"));
+        assertEquals(List.of("T1500", "T1999"), cache.hottestTickers(2));
+    }
 }
@@ -5,8 +5,20 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceT
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ValuationServerNoEvictionCacheTest {
 
@@ -92,4 +104,99 @@ class ValuationServerNoEvictionCacheTest {
         this.sut.put("DUMMY", dcfDto);
         assertNull(this.sut.get("DUMMY"));
     }
+
+    @Test
+    void putAllShouldOnlyAddTheMissingDtosAndTheFillCostInOneStep(){
+        final PriceTargetSummaryDTO cachedPtsDto = new PriceTargetSummaryDTO("AAPL", 5, 213.23, 14, 201.12);
+        this.sut.put("AAPL", cachedPtsDto);
+        final RecordHolder before = this.sut.get("AAPL");
+        final RecordHolder fromApi = RecordHolder.newRecordHolder("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189.22, 220.2),
+                new PriceTargetConsensusDTO("AAPL", 20, 10, 16, 15), new PriceTargetSummaryDTO("AAPL", 1, 1, 1, 1), null, FillSource.FMP_API, 3);
+        this.sut.putAll("AAPL", fromApi);
+        final RecordHolder after = this.sut.get("AAPL");
+        assertEquals(3, after.getDtoCount());
+        assertSame(cachedPtsDto, after.getPriceTargetSummaryDto());
+        assertEquals(30, after.getFillCost());
+        //the entry a reader got earlier is a snapshot, it never changes under the reader
+        assertEquals(1, before.getDtoCount());
+        assertEquals(1, before.getFillCost());
+        assertEquals(RecordHolderWeigher.weigh(after), this.sut.getWeightedSize());
+    }
+
+    @Test
+    void concurrentLoadsOfTheSameTickerShouldShareOneLoad() throws InterruptedException {
+        final AtomicInteger loaderCalls = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final RecordHolder loaded = RecordHolder.newRecordHolder("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189.22, 220.2), null, null);
+        final CompletableFuture<RecordHolder> leader = CompletableFuture.supplyAsync(() -> this.sut.getOrLoad("AAPL", ticker -> {
+            loaderCalls.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                releaseLoad.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return loaded;
+        }).join());
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        final List<CompletableFuture<RecordHolder>> followers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            followers.add(this.sut.getOrLoad("AAPL", ticker -> {
+                loaderCalls.incrementAndGet();
+                return null;
+            }));
+        }
+        releaseLoad.countDown();
+        assertSame(loaded, leader.join());
+        followers.forEach(follower -> assertSame(loaded, follower.join()));
+        assertEquals(1, loaderCalls.get());
+        assertEquals(10, this.sut.getCoalescedLoadCount());
+    }
+
+    @Test
+    void completeCachedEntryShouldNotBeLoaded() {
+        final RecordHolder cached = RecordHolder.newRecordHolder("AAPL", new DiscountedCashFlowDTO("AAPL", "2024-09-24", 189.22, 220.2),
+                new PriceTargetConsensusDTO("AAPL", 250, 180, 230, 235), new PriceTargetSummaryDTO("AAPL", 5, 213.23, 14, 201.12));
+        this.sut.putAll("AAPL", cached);
+        final RecordHolder result = this.sut.getOrLoad("AAPL", ticker -> {
+            throw new AssertionError("the loader must not be called");
+        }).join();
+        assertEquals(3, result.getDtoCount());
+    }
+
+    @Test
+    void failedLoadShouldNotBeShared() {
+        final CompletableFuture<RecordHolder> failed = this.sut.getOrLoad("AAPL", ticker -> {
+            throw new IllegalArgumentException("Oops!");
+        });
+        assertThrows(RuntimeException.class, failed::join);
+        final RecordHolder loaded = RecordHolder.newRecordHolder("AAPL", null, null, null);
+        assertSame(loaded, this.sut.getOrLoad("AAPL", ticker -> loaded).join());
+    }
+
+    @Test
+    void loadFailingWithAnErrorShouldStillCompleteTheCoalescedCallers() throws InterruptedException {
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final CompletableFuture<RecordHolder> leader = CompletableFuture.supplyAsync(() -> this.sut.getOrLoad("AAPL", ticker -> {
+            loadStarted.countDown();
+            try {
+                releaseLoad.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new StackOverflowError("Oops!");
+        }).join());
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        final CompletableFuture<RecordHolder> follower = this.sut.getOrLoad("AAPL", ticker -> null);
+        releaseLoad.countDown();
+        final ExecutionException followerFailure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, followerFailure.getCause());
+        //the leader got the error itself
+        final ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, leaderFailure.getCause());
+        final RecordHolder loaded = RecordHolder.newRecordHolder("AAPL", null, null, null);
+        assertSame(loaded, this.sut.getOrLoad("AAPL", ticker -> loaded).join());
+    }
 }
@@ -0,0 +1,80 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValuationServerTieredCacheTest {
+
+    @Test
+    void evictedEntryShouldBeDemotedAndPromotedOnTheNextRequest() {
+        final ValuationServerTinyLFUCache firstTier = new ValuationServerTinyLFUCache(2);
+        final ValuationServerTieredCache cache = new ValuationServerTieredCache(firstTier, new OffHeapValuationStore(10));
+        cache.put("A", new DiscountedCashFlowDTO("A", "2024-09-24", 1, 1));
+        cache.put("B", new DiscountedCashFlowDTO("B", "2024-09-24", 2, 2));
+        cache.put("C", new DiscountedCashFlowDTO("C", "2024-09-24", 3, 3));
+        firstTier.cleanUp();
+        //nobody asked for any of them, so the window candidate B lost against the probation victim A
+        assertNull(firstTier.peek("B"));
+        assertTrue(cache.getSecondTier().contains("B"));
+
+        final RecordHolder promoted = cache.get("B");
+        assertNotNull(promoted);
+        assertEquals(2, promoted.getDiscountedCashFlowDto().dcf());
+        assertFalse(cache.getSecondTier().contains("B"));
+        assertSame(promoted, firstTier.peek("B"));
+        assertEquals(0, cache.getFirstTierHitCount());
+        assertEquals(1, cache.getFirstTierMissCount());
+        assertEquals(1, cache.getSecondTierHitCount());
+        assertEquals(0, cache.getSecondTierMissCount());
+    }
+
+    @Test
+    void missInBothTiersShouldBeCounted() {
+        final ValuationServerTieredCache cache = new ValuationServerTieredCache(new ValuationServerNoEvictionCache(), new OffHeapValuationStore(10));
+        cache.put("A", new DiscountedCashFlowDTO("A", "2024-09-24", 1, 1));
+        assertNotNull(cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(1, cache.getFirstTierHitCount());
+        assertEquals(1, cache.getFirstTierMissCount());
+        assertEquals(0, cache.getSecondTierHitCount());
+        assertEquals(1, cache.getSecondTierMissCount());
+    }
+
+    @Test
+    void writeToDemotedEntryShouldPromoteItFirst() {
+        final ValuationServerNoEvictionCache firstTier = new ValuationServerNoEvictionCache();
+        final ValuationServerTieredCache cache = new ValuationServerTieredCache(firstTier, new OffHeapValuationStore(10));
+        cache.put("A", new DiscountedCashFlowDTO("A", "2024-09-24", 1, 1));
+        //simulate an eviction by the first tier
+        firstTier.removeEntry("A");
+        assertTrue(cache.getSecondTier().contains("A"));
+        cache.put("A", new PriceTargetConsensusDTO("A", 20, 10, 16, 15));
+        final RecordHolder recordHolder = firstTier.peek("A");
+        assertNotNull(recordHolder);
+        assertEquals(2, recordHolder.getDtoCount());
+        assertFalse(cache.getSecondTier().contains("A"));
+    }
+
+    @Test
+    void invalidatedEntriesShouldLeaveBothTiersWithoutADemotion() {
+        final ValuationServerTinyLFUCache firstTier = new ValuationServerTinyLFUCache(2);
+        final ValuationServerTieredCache cache = new ValuationServerTieredCache(firstTier, new OffHeapValuationStore(10));
+        cache.put("A", new DiscountedCashFlowDTO("A", "2024-09-24", 1, 1));
+        cache.put("B", new DiscountedCashFlowDTO("B", "2024-09-24", 2, 2));
+        cache.put("C", new DiscountedCashFlowDTO("C", "2024-09-24", 3, 3));
+        firstTier.cleanUp();
+        assertTrue(cache.getSecondTier().contains("B"));
+
+        assertTrue(cache.invalidate("A"));
+        assertTrue(cache.invalidate("B"));
+        assertFalse(cache.invalidate("D"));
+        assertNull(cache.peek("A"));
+        assertNull(cache.peek("B"));
+        assertEquals(0, cache.getSecondTier().size());
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("C"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValuationServerTinyLFUCacheTest {
+
+    @Test
+    void capacityLowerThanTwoShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ValuationServerTinyLFUCache(1));
+    }
+
+    @Test
+    void frequentlyRequestedTickersShouldSurviveOneHitWonders() {
+        final ValuationServerTinyLFUCache sut = new ValuationServerTinyLFUCache(10);
+        final List<String> popular = List.of("AAPL", "MSFT", "NVDA", "AMZN", "META");
+        for (final String ticker : popular) {
+            sut.put(ticker, this.dcfDto(ticker));
+        }
+        for (int i = 0; i < 20; i++) {
+            for (final String ticker : popular) {
+                sut.get(ticker);
+            }
+        }
+        sut.cleanUp();
+        //a scan of tickers that are only requested once
+        for (int i = 0; i < 100; i++) {
+            final String ticker = "SCAN" + i;
+            sut.get(ticker);
+            sut.put(ticker, this.dcfDto(ticker));
+        }
+        sut.cleanUp();
+        for (final String ticker : popular) {
+            assertNotNull(sut.get(ticker), ticker + " should not have been evicted");
+        }
+    }
+
+    @Test
+    void sizeShouldStayWithinCapacityAfterCleanUp() {
+        final ValuationServerTinyLFUCache sut = new ValuationServerTinyLFUCache(50);
+        for (int i = 0; i < 500; i++) {
+            final String ticker = "TICKER" + i;
+            sut.put(ticker, this.dcfDto(ticker));
+        }
+        sut.cleanUp();
+        final long cachedCount = IntStream.range(0, 500)
+                .filter(i -> sut.valuationServerCache.containsKey("TICKER" + i))
+                .count();
+        assertEquals(50, cachedCount);
+    }
+
+    @Test
+    void concurrentReadsShouldNotBreakTheCache() {
+        final ValuationServerTinyLFUCache sut = new ValuationServerTinyLFUCache(100);
+        for (int i = 0; i < 100; i++) {
+            final String ticker = "TICKER" + i;
+            sut.put(ticker, this.dcfDto(ticker));
+        }
+        final List<CompletableFuture<Void>> readers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    sut.get("TICKER" + (i % 100));
+                }
+            }));
+        }
+        CompletableFuture.allOf(readers.toArray(new CompletableFuture[0])).join();
+        sut.cleanUp();
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(sut.get("TICKER" + i));
+        }
+    }
+
+    @Test
+    void shrinkingTheCapacityShouldKeepTheProtectedTickers() {
+        final ValuationServerTinyLFUCache sut = new ValuationServerTinyLFUCache(100);
+        for (int i = 0; i < 50; i++) {
+            sut.put("T" + i, this.dcfDto("T" + i));
+        }
+        sut.cleanUp();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 10; j++) {
+                sut.get("T" + j);
+            }
+        }
+        sut.cleanUp();
+        sut.setCapacityRatio(0.2);
+        sut.cleanUp();
+        assertTrue(sut.size() <= 20, "the size should be within the shrunk capacity, but it was " + sut.size());
+        for (int j = 0; j < 10; j++) {
+            assertNotNull(sut.peek("T" + j));
+        }
+    }
+
+    @Test
+    void invalidatedTickersShouldNotCountAsEvictions() {
+        final ValuationServerTinyLFUCache sut = new ValuationServerTinyLFUCache(10);
+        for (int i = 0; i < 10; i++) {
+            sut.put("T" + i, this.dcfDto("T" + i));
+        }
+        sut.cleanUp();
+        assertTrue(sut.invalidate("T3"));
+        assertFalse(sut.invalidate("T3"));
+        assertNull(sut.get("T3"));
+        assertEquals(9, sut.size());
+        assertEquals(0, sut.getEvictionCount());
+        assertFalse(sut.hottestTickers(10).contains("T3"));
+        //the freed room is used by the next ticker without evicting anything
+        sut.put("T10", this.dcfDto("T10"));
+        sut.cleanUp();
+        assertEquals(10, sut.size());
+        assertEquals(0, sut.getEvictionCount());
+    }
+
+    private DiscountedCashFlowDTO dcfDto(final String ticker) {
+        return new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 110);
+    }
+}
@@ -0,0 +1,85 @@
+package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPCallBudget;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+class HotTickerRefresherTest {
+
+    private final VRSagaDataBroker dataBrokerMock = Mockito.mock(VRSagaDataBroker.class);
+
+    private final DiscountedCashFlowDTO dcfDto = new DiscountedCashFlowDTO("DUMMY", "2024-09-26", 15.5, 14);
+    private final PriceTargetConsensusDTO ptcDto = new PriceTargetConsensusDTO("DUMMY", 20, 10, 16, 15);
+    private final PriceTargetSummaryDTO ptsDto = new PriceTargetSummaryDTO("DUMMY", 2, 16, 5, 14);
+
+    @Test
+    void onlyDtosGoingStaleShouldBeRefreshed() {
+        final RecordHolder aapl = RecordHolder.newRecordHolder("AAPL", this.dcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getHottestTickers(1)).thenReturn(List.of("AAPL"));
+        Mockito.when(this.dataBrokerMock.peekCache("AAPL")).thenReturn(aapl);
+        Mockito.when(this.dataBrokerMock.getDtoTypesGoingStale(aapl, 1000)).thenReturn(Set.of(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+        Mockito.when(this.dataBrokerMock.tryRefreshDtos(any(), any(), any(), any(), anyLong())).thenReturn(true);
+        final HotTickerRefresher sut = new HotTickerRefresher(this.dataBrokerMock, new FMPCallBudget(100, 1), 1, 1000);
+        assertEquals(1, sut.refreshHotTickers(1000));
+        final ArgumentCaptor<Function<RecordHolder, Set<ValuationDtoType>>> dtoTypesGoingStale = ArgumentCaptor.captor();
+        Mockito.verify(this.dataBrokerMock, Mockito.times(1)).tryRefreshDtos(eq("AAPL"), eq(aapl), dtoTypesGoingStale.capture(), any(), anyLong());
+        //the staleness is checked with the look-ahead of the run
+        assertEquals(Set.of(ValuationDtoType.DISCOUNTED_CASH_FLOW), dtoTypesGoingStale.getValue().apply(aapl));
+    }
+
+    @Test
+    void refreshShouldStopWhenTheBudgetIsUsedUp() {
+        final RecordHolder aapl = RecordHolder.newRecordHolder("AAPL", this.dcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getHottestTickers(5)).thenReturn(List.of("AAPL", "MSFT", "NVDA"));
+        Mockito.when(this.dataBrokerMock.peekCache(any())).thenReturn(aapl);
+        //the broker asks for the budget of a full refresh, like it would for a ticker with every DTO going stale
+        Mockito.when(this.dataBrokerMock.tryRefreshDtos(any(), any(), any(), any(), anyLong()))
+                .thenAnswer(invocation -> invocation.getArgument(3, IntPredicate.class).test(ValuationDtoType.values().length));
+        //a budget of 4 calls a day is only enough for one full refresh
+        final FMPCallBudget callBudget = new FMPCallBudget(4, 1);
+        final HotTickerRefresher sut = new HotTickerRefresher(this.dataBrokerMock, callBudget, 5, 1000);
+        assertEquals(1, sut.refreshHotTickers(1000));
+        assertEquals(1, callBudget.getRemainingCalls());
+    }
+
+    @Test
+    void tickerTheUsersAreRefreshingShouldBeSkippedWithoutUsingTheBudget() {
+        final RecordHolder aapl = RecordHolder.newRecordHolder("AAPL", this.dcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getHottestTickers(1)).thenReturn(List.of("AAPL"));
+        Mockito.when(this.dataBrokerMock.peekCache("AAPL")).thenReturn(aapl);
+        Mockito.when(this.dataBrokerMock.isRefreshInFlight("AAPL")).thenReturn(true);
+        final FMPCallBudget callBudget = new FMPCallBudget(100, 1);
+        final HotTickerRefresher sut = new HotTickerRefresher(this.dataBrokerMock, callBudget, 1, 1000);
+        assertEquals(0, sut.refreshHotTickers(1000));
+        assertEquals(100, callBudget.getRemainingCalls());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).tryRefreshDtos(any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void hotEntriesWithMissingDataShouldGoThroughTheSameRefresh() {
+        final RecordHolder partial = RecordHolder.newRecordHolder("AAPL", this.dcfDto, null, null);
+        Mockito.when(this.dataBrokerMock.getHottestTickers(1)).thenReturn(List.of("AAPL"));
+        Mockito.when(this.dataBrokerMock.peekCache("AAPL")).thenReturn(partial);
+        Mockito.when(this.dataBrokerMock.tryRefreshDtos(any(), any(), any(), any(), anyLong())).thenReturn(true);
+        final HotTickerRefresher sut = new HotTickerRefresher(this.dataBrokerMock, new FMPCallBudget(100, 1), 1, 1000);
+        assertEquals(1, sut.refreshHotTickers(1000));
+        Mockito.verify(this.dataBrokerMock, Mockito.times(1)).tryRefreshDtos(eq("AAPL"), eq(partial), any(), any(), anyLong());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromFmpApi(any(), any(), anyLong());
+    }
+}
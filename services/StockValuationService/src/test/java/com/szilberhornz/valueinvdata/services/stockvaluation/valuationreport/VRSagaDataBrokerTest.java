@@ -1,5 +1,9 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.ValuationDtoType;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.CacheExpiryPolicy;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.FillSource;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.NegativeResultCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
@@ -8,12 +12,22 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceT
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.FMPResponseHandler;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.RateLimitReachedException;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.ApiKeyException;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.InsufficientPrivilegesException;
 import com.szilberhornz.valueinvdata.services.stockvaluation.repository.api.ValuationDBRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.times;
+import static org.mockito.ArgumentMatchers.any;
 
 class VRSagaDataBrokerTest {
 
@@ -59,6 +73,51 @@ class VRSagaDataBrokerTest {
         Mockito.verify(this.fmpHandlerMock, Mockito.times(1)).getPriceTargetSummaryReportFromFmpApi("DUMMY");
     }
 
+    @Test
+    void getDataFromFmpApiShouldSkipTheKnownAbsentDTOs() {
+        final NegativeResultCache negativeResultCache = new NegativeResultCache(Duration.ofHours(1), 10);
+        negativeResultCache.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        negativeResultCache.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_CONSENSUS);
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock,
+                CacheExpiryPolicy.NEVER_EXPIRES, negativeResultCache);
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenReturn(this.dcfDto);
+        final RecordHolder result = sut.getDataFromFmpApi(null, "DUMMY", 2500);
+        Mockito.verify(this.fmpHandlerMock, times(1)).getDiscountedCashFlowReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetConsensusReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetSummaryReportFromFmpApi("DUMMY");
+        assertEquals(1, result.getDtoCount());
+        assertEquals(1, result.getUpstreamCallCount());
+        assertTrue(sut.isMissingDataKnownAbsent("DUMMY", result));
+        assertFalse(sut.isMissingDataKnownAbsent("DUMMY", null));
+    }
+
+    @Test
+    void getDataFromFmpApiShouldNotCallTheEndpointsKnownToFail() {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
+        Mockito.when(this.fmpHandlerMock.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_SUMMARY)).thenReturn(new InsufficientPrivilegesException("Special Endpoint"));
+        Mockito.when(this.fmpHandlerMock.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_CONSENSUS)).thenReturn(new InsufficientPrivilegesException("Special Endpoint"));
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenReturn(this.dcfDto);
+        final RecordHolder result = sut.getDataFromFmpApi(null, "DUMMY", 2500);
+        Mockito.verify(this.fmpHandlerMock, times(1)).getDiscountedCashFlowReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetConsensusReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetSummaryReportFromFmpApi("DUMMY");
+        assertEquals(this.dcfDto, result.getDiscountedCashFlowDto());
+        assertInstanceOf(InsufficientPrivilegesException.class, result.getCauseOfNullDtos());
+        assertEquals(FillSource.FMP_API, result.getFillSource());
+        assertEquals(1, result.getUpstreamCallCount());
+    }
+
+    @Test
+    void recordCompletedWithoutCallingTheFmpApiShouldNotBeChargedForIt() {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
+        Mockito.when(this.fmpHandlerMock.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_SUMMARY)).thenReturn(new InsufficientPrivilegesException("Special Endpoint"));
+        final RecordHolder recordFromDb = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, null);
+        final RecordHolder result = sut.getDataFromFmpApi(recordFromDb, "DUMMY", 2500);
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetSummaryReportFromFmpApi("DUMMY");
+        assertEquals(FillSource.DATABASE, result.getFillSource());
+        assertEquals(1, result.getUpstreamCallCount());
+    }
+
     @Test
     void getDataFromFmpApiFullResultTest() {
         Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenReturn(this.dcfDto);
@@ -140,9 +199,7 @@ class VRSagaDataBrokerTest {
         final RecordHolder recordFromApi = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
         final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
         sut.persistData("DUMMY", null, null, recordFromApi);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.dcfDto);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.ptcDto);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.ptsDto);
+        Mockito.verify(this.serverCacheMock, times(1)).putAll("DUMMY", recordFromApi);
         Mockito.verify(this.dbRepositoryMock, times(1)).insertFullRecord(recordFromApi);
     }
 
@@ -153,9 +210,7 @@ class VRSagaDataBrokerTest {
         final RecordHolder recordFromDb = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
         final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
         sut.persistData("DUMMY", recordFromCache, recordFromDb, recordFromApi);
-        Mockito.verify(this.serverCacheMock, times(0)).put("DUMMY", this.dcfDto);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.ptcDto);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.ptsDto);
+        Mockito.verify(this.serverCacheMock, times(1)).putAll("DUMMY", recordFromApi);
         Mockito.verify(this.dbRepositoryMock, times(1)).insertPriceTargetSummaryData(recordFromApi.getPriceTargetSummaryDto());
         Mockito.verify(this.dbRepositoryMock, times(1)).insertPriceTargetConsensusData(recordFromApi.getPriceTargetConsensusDto());
     }
@@ -167,9 +222,7 @@ class VRSagaDataBrokerTest {
         final RecordHolder recordFromDb = RecordHolder.newRecordHolder("DUMMY", null, this.ptcDto, null);
         final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
         sut.persistData("DUMMY", recordFromCache, recordFromDb, recordFromApi);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.dcfDto);
-        Mockito.verify(this.serverCacheMock, times(0)).put("DUMMY", this.ptcDto);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.ptsDto);
+        Mockito.verify(this.serverCacheMock, times(1)).putAll("DUMMY", recordFromApi);
         Mockito.verify(this.dbRepositoryMock, times(1)).insertPriceTargetSummaryData(recordFromApi.getPriceTargetSummaryDto());
         Mockito.verify(this.dbRepositoryMock, times(1)).insertDiscountedCashFlowData(recordFromApi.getDiscountedCashFlowDto());
     }
@@ -181,9 +234,160 @@ class VRSagaDataBrokerTest {
         final RecordHolder recordFromDb = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
         final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
         sut.persistData("DUMMY", recordFromCache, recordFromDb, recordFromApi);
-        Mockito.verify(this.serverCacheMock, times(1)).put("DUMMY", this.dcfDto);
-        Mockito.verify(this.serverCacheMock, times(0)).put("DUMMY", this.ptcDto);
-        Mockito.verify(this.serverCacheMock, times(0)).put("DUMMY", this.ptsDto);
+        Mockito.verify(this.serverCacheMock, times(1)).putAll("DUMMY", recordFromApi);
         Mockito.verify(this.dbRepositoryMock, times(0)).insertFullRecord(recordFromApi);
     }
+
+    //only the DCF is stale with this policy, right after it is loaded
+    private final CacheExpiryPolicy staleDcfPolicy = new CacheExpiryPolicy(Duration.ofMillis(-1), Duration.ofDays(7), Duration.ofDays(7), Duration.ofDays(1));
+
+    @Test
+    void refreshStaleDataShouldOnlyRefreshTheStaleDtos() {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock, this.staleDcfPolicy);
+        final DiscountedCashFlowDTO refreshedDcfDto = new DiscountedCashFlowDTO("DUMMY", "2024-09-27", 16.5, 15);
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenReturn(refreshedDcfDto);
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        assertEquals(CacheExpiryPolicy.Freshness.STALE, sut.getFreshness(cachedRecord));
+        final RecordHolder result = sut.refreshStaleData("DUMMY", cachedRecord, 1000);
+        Mockito.verify(this.fmpHandlerMock, times(1)).getDiscountedCashFlowReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetConsensusReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetSummaryReportFromFmpApi("DUMMY");
+        Mockito.verify(this.serverCacheMock, times(1)).replace(Mockito.eq("DUMMY"), Mockito.any());
+        Mockito.verify(this.dbRepositoryMock, times(1)).replaceRecord(Mockito.any());
+        assertEquals(refreshedDcfDto, result.getDiscountedCashFlowDto());
+        assertEquals(this.ptcDto, result.getPriceTargetConsensusDto());
+        assertEquals(this.ptsDto, result.getPriceTargetSummaryDto());
+    }
+
+    @Test
+    void failedRefreshShouldFallBackToTheStaleData() {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock, this.staleDcfPolicy);
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenThrow(new RateLimitReachedException("limit reached"));
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        final RecordHolder result = sut.refreshStaleData("DUMMY", cachedRecord, 1000);
+        Mockito.verify(this.serverCacheMock, times(0)).replace(Mockito.any(), Mockito.any());
+        Mockito.verify(this.dbRepositoryMock, times(0)).replaceRecord(Mockito.any());
+        assertEquals(this.dcfDto, result.getDiscountedCashFlowDto());
+    }
+
+    @Test
+    void refreshAheadShouldRefreshTheStaleDtosOfAnEntryThatCanNeverBeComplete() {
+        //a free tier key can't get the price targets, the DCF still has to be refreshed ahead
+        Mockito.when(this.fmpHandlerMock.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_SUMMARY)).thenReturn(new InsufficientPrivilegesException("Special Endpoint"));
+        Mockito.when(this.fmpHandlerMock.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_CONSENSUS)).thenReturn(new InsufficientPrivilegesException("Special Endpoint"));
+        final DiscountedCashFlowDTO refreshedDcfDto = new DiscountedCashFlowDTO("DUMMY", "2024-09-27", 16.5, 15);
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenReturn(refreshedDcfDto);
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock, this.staleDcfPolicy);
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
+        final List<Integer> requestedCalls = new ArrayList<>();
+        assertTrue(sut.tryRefreshDtos("DUMMY", cachedRecord, record -> Set.of(ValuationDtoType.DISCOUNTED_CASH_FLOW), callCount -> {
+            requestedCalls.add(callCount);
+            return true;
+        }, 5000));
+        assertEquals(List.of(1), requestedCalls);
+        Mockito.verify(this.fmpHandlerMock, times(1)).getDiscountedCashFlowReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetConsensusReportFromFmpApi("DUMMY");
+        Mockito.verify(this.fmpHandlerMock, times(0)).getPriceTargetSummaryReportFromFmpApi("DUMMY");
+        Mockito.verify(this.serverCacheMock, times(1)).replace(Mockito.eq("DUMMY"), Mockito.argThat(refreshed -> refreshed.getDiscountedCashFlowDto() == refreshedDcfDto));
+        assertFalse(sut.isRefreshInFlight("DUMMY"));
+    }
+
+    @Test
+    void refreshAheadShouldNotUseTheBudgetForDtosItCanNotFetch() {
+        final NegativeResultCache negativeResultCache = new NegativeResultCache(Duration.ofHours(1), 10);
+        negativeResultCache.recordAbsent("DUMMY", ValuationDtoType.PRICE_TARGET_SUMMARY);
+        Mockito.when(this.fmpHandlerMock.getKnownFailureOf(ValuationDtoType.PRICE_TARGET_CONSENSUS)).thenReturn(new InsufficientPrivilegesException("Special Endpoint"));
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock,
+                CacheExpiryPolicy.NEVER_EXPIRES, negativeResultCache);
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
+        assertFalse(sut.tryRefreshDtos("DUMMY", cachedRecord, record -> Set.of(), callCount -> {
+            throw new AssertionError("no budget is needed when nothing can be fetched");
+        }, 5000));
+        Mockito.verify(this.dbRepositoryMock, times(1)).queryPriceTargetConsensusData("DUMMY");
+        Mockito.verifyNoMoreInteractions(this.serverCacheMock);
+    }
+
+    @Test
+    void refreshAheadShouldCompleteTheEntryFromTheDatabaseWithoutTheFmpApi() {
+        Mockito.when(this.dbRepositoryMock.queryPriceTargetConsensusData("DUMMY")).thenReturn(this.ptcDto);
+        Mockito.when(this.dbRepositoryMock.queryPriceTargetSummaryData("DUMMY")).thenReturn(this.ptsDto);
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
+        assertTrue(sut.tryRefreshDtos("DUMMY", cachedRecord, record -> Set.of(), callCount -> {
+            throw new AssertionError("the database had everything");
+        }, 5000));
+        Mockito.verify(this.serverCacheMock, times(1)).putAll(Mockito.eq("DUMMY"), Mockito.argThat(record -> !record.isDataMissing()));
+        Mockito.verify(this.fmpHandlerMock, times(0)).getDiscountedCashFlowReportFromFmpApi(any());
+    }
+
+    @Test
+    void refreshAheadShouldNotCallTheFmpApiWithoutBudget() {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock, this.staleDcfPolicy);
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        assertFalse(sut.tryRefreshDtos("DUMMY", cachedRecord, record -> Set.of(ValuationDtoType.DISCOUNTED_CASH_FLOW), callCount -> false, 5000));
+        Mockito.verify(this.fmpHandlerMock, times(0)).getDiscountedCashFlowReportFromFmpApi(any());
+        assertFalse(sut.isRefreshInFlight("DUMMY"));
+    }
+
+    @Test
+    void onlyOneBackgroundRefreshShouldRunForATicker() throws InterruptedException {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock, this.staleDcfPolicy);
+        final CountDownLatch fmpCallStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFmpCall = new CountDownLatch(1);
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenAnswer(invocation -> {
+            fmpCallStarted.countDown();
+            releaseFmpCall.await(5, TimeUnit.SECONDS);
+            return this.dcfDto;
+        });
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        assertTrue(sut.refreshInBackground("DUMMY", cachedRecord, 5000));
+        assertTrue(fmpCallStarted.await(5, TimeUnit.SECONDS));
+        assertFalse(sut.refreshInBackground("DUMMY", cachedRecord, 5000));
+        //the refresh-ahead doesn't refresh it at the same time either
+        assertTrue(sut.isRefreshInFlight("DUMMY"));
+        assertFalse(sut.tryRefreshDtos("DUMMY", cachedRecord, record -> Set.of(ValuationDtoType.DISCOUNTED_CASH_FLOW), callCount -> true, 5000));
+        releaseFmpCall.countDown();
+        Mockito.verify(this.serverCacheMock, Mockito.timeout(5000).times(1)).replace(Mockito.eq("DUMMY"), Mockito.any());
+        Mockito.verify(this.fmpHandlerMock, times(1)).getDiscountedCashFlowReportFromFmpApi("DUMMY");
+    }
+
+    @Test
+    void concurrentRefreshesOfAnExpiredTickerShouldShareOneRoundOfFmpApiCalls() throws Exception {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock, this.staleDcfPolicy);
+        final DiscountedCashFlowDTO refreshedDcfDto = new DiscountedCashFlowDTO("DUMMY", "2024-09-27", 16.5, 15);
+        final CountDownLatch fmpCallStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFmpCall = new CountDownLatch(1);
+        Mockito.when(this.fmpHandlerMock.getDiscountedCashFlowReportFromFmpApi("DUMMY")).thenAnswer(invocation -> {
+            fmpCallStarted.countDown();
+            releaseFmpCall.await(5, TimeUnit.SECONDS);
+            return refreshedDcfDto;
+        });
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        final CompletableFuture<RecordHolder> first = CompletableFuture.supplyAsync(() -> sut.refreshExpiredData("DUMMY", cachedRecord, 5000));
+        assertTrue(fmpCallStarted.await(5, TimeUnit.SECONDS));
+        final CompletableFuture<RecordHolder> second = new CompletableFuture<>();
+        final Thread secondRequest = Thread.ofPlatform().start(() -> second.complete(sut.refreshExpiredData("DUMMY", cachedRecord, 5000)));
+        //the second one must be waiting for the first one, not calling the FMP api itself
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (secondRequest.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(Thread.State.WAITING, secondRequest.getState());
+        assertFalse(sut.refreshInBackground("DUMMY", cachedRecord, 5000));
+        releaseFmpCall.countDown();
+        assertEquals(refreshedDcfDto, first.get(5, TimeUnit.SECONDS).getDiscountedCashFlowDto());
+        assertEquals(refreshedDcfDto, second.get(5, TimeUnit.SECONDS).getDiscountedCashFlowDto());
+        Mockito.verify(this.fmpHandlerMock, times(1)).getDiscountedCashFlowReportFromFmpApi("DUMMY");
+    }
+
+    @Test
+    void dtosCompletedFromTheFmpApiShouldNotRestartTheTtlOfTheOnesFromTheDatabase() {
+        final VRSagaDataBroker sut = new VRSagaDataBroker(this.dbRepositoryMock, this.serverCacheMock, this.fmpHandlerMock);
+        Mockito.when(this.fmpHandlerMock.getPriceTargetConsensusReportFromFmpApi("DUMMY")).thenReturn(this.ptcDto);
+        final RecordHolder recordFromDb = RecordHolder.newPersistedRecordHolder("DUMMY", this.dcfDto, null, this.ptsDto, FillSource.DATABASE, 1);
+        final RecordHolder result = sut.getDataFromFmpApi(recordFromDb, "DUMMY", 1000);
+        assertEquals(recordFromDb.getLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW), result.getLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+        assertEquals(recordFromDb.getLoadedAtMillis(ValuationDtoType.PRICE_TARGET_SUMMARY), result.getLoadedAtMillis(ValuationDtoType.PRICE_TARGET_SUMMARY));
+        assertTrue(result.getLoadedAtMillis(ValuationDtoType.PRICE_TARGET_CONSENSUS) > recordFromDb.getLoadedAtMillis(ValuationDtoType.DISCOUNTED_CASH_FLOW));
+    }
 }
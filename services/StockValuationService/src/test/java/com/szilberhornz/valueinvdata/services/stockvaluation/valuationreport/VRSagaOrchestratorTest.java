@@ -1,5 +1,6 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.CacheExpiryPolicy;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
@@ -9,10 +10,18 @@ import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.fmp.authr.ApiKeyException;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.circuitbreaker.VRSagaDefaultCircuitBreaker;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.formatter.ValuationResponseBodyJSONFormatter;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 
@@ -25,9 +34,23 @@ class VRSagaOrchestratorTest {
     private final PriceTargetConsensusDTO ptcDto = new PriceTargetConsensusDTO("DUMMY", 20, 10, 16, 15);
     private final PriceTargetSummaryDTO ptsDto = new PriceTargetSummaryDTO("DUMMY", 2, 16, 5, 14);
 
+    @BeforeEach
+    void setUp() {
+        //the real broker coalesces the loads in the cache, here every load simply runs
+        Mockito.when(this.dataBrokerMock.getOrLoad(any(), any())).thenAnswer(invocation -> {
+            final Function<String, RecordHolder> loader = invocation.getArgument(1);
+            return CompletableFuture.completedFuture(loader.apply(invocation.getArgument(0)));
+        });
+    }
+
+    private void mockKnownTicker(final String ticker) {
+        Mockito.when(this.tickerCacheMock.idOf(ticker)).thenReturn(7);
+        Mockito.when(this.tickerCacheMock.tickerOf(7)).thenReturn(ticker);
+    }
+
     @Test
     void http403ForInvalidTicker(){
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(false);
+        Mockito.when(this.tickerCacheMock.idOf("DUMMY")).thenReturn(TickerCache.UNKNOWN_TICKER_ID);
         final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
         final ValuationReport result = sut.getValuationResponse("DUMMY");
         assertEquals(403, result.getStatusCode());
@@ -35,23 +58,110 @@ class VRSagaOrchestratorTest {
                 "for real tickers! The ticker DUMMY is not a valid ticker! Please try again with a valid ticker!", result.getErrorMessage());
     }
 
+    @Test
+    void http403ForInvalidTickerShouldSuggestTheClosestTickers(){
+        Mockito.when(this.tickerCacheMock.idOf("APPL")).thenReturn(TickerCache.UNKNOWN_TICKER_ID);
+        Mockito.when(this.tickerCacheMock.didYouMean("APPL", 3)).thenReturn(List.of("AAPL", "APP"));
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
+        final ValuationReport result = sut.getValuationResponse("APPL");
+        assertEquals(403, result.getStatusCode());
+        assertEquals("The server only responds to valuation report requests for real tickers! The ticker APPL is not a " +
+                "valid ticker! Please try again with a valid ticker! Did you mean AAPL, APP?", result.getErrorMessage());
+    }
+
     @Test
     void cachedItemShouldBeReturnedImmediately() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
+        Mockito.when(this.dataBrokerMock.getFreshness(cachedRecord)).thenReturn(CacheExpiryPolicy.Freshness.FRESH);
         final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
         final ValuationReport result = sut.getValuationResponse("DUMMY");
         Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromDb( any(), any());
         Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromFmpApi( any(), any(), anyLong());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).refreshInBackground(any(), any(), anyLong());
         final String expectedBody = "{\"ticker\":\"DUMMY\",\"discountedCashFlow\":{\"date\":\"2024-09-26\",\"dcf\":15.5,\"stockPrice\":14},\"priceTargetConsensus\":{\"lastQuarterAvgPriceTarget\":14,\"lastMonthAvgPriceTarget\":16,\"lastQuarter\":5,\"lastMonth\":2}}";
         assertEquals(200, result.getStatusCode());
         assertEquals(expectedBody, result.getMessageBody());
     }
 
+    @Test
+    void sagaShouldRunOnTheGivenExecutor() {
+        this.mockKnownTicker("DUMMY");
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
+        Mockito.when(this.dataBrokerMock.getFreshness(cachedRecord)).thenReturn(CacheExpiryPolicy.Freshness.FRESH);
+        final AtomicInteger executedTasks = new AtomicInteger();
+        final Executor countingExecutor = task -> {
+            executedTasks.incrementAndGet();
+            task.run();
+        };
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock, countingExecutor);
+        final ValuationReport result = sut.getValuationResponse("DUMMY");
+        assertEquals(200, result.getStatusCode());
+        assertEquals(1, executedTasks.get());
+    }
+
+    @Test
+    void staleCachedItemShouldBeReturnedImmediatelyAndRefreshedInTheBackground() {
+        this.mockKnownTicker("DUMMY");
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
+        Mockito.when(this.dataBrokerMock.getFreshness(cachedRecord)).thenReturn(CacheExpiryPolicy.Freshness.STALE);
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
+        final ValuationReport result = sut.getValuationResponse("DUMMY");
+        Mockito.verify(this.dataBrokerMock, Mockito.times(1)).refreshInBackground(any(), any(), anyLong());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).refreshStaleData(any(), any(), anyLong());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromDb( any(), any());
+        assertEquals(200, result.getStatusCode());
+    }
+
+    @Test
+    void expiredCachedItemShouldBeRefreshedBeforeReturning() {
+        this.mockKnownTicker("DUMMY");
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        final DiscountedCashFlowDTO refreshedDcfDto = new DiscountedCashFlowDTO("DUMMY", "2024-09-27", 16.5, 15);
+        final RecordHolder refreshedRecord = RecordHolder.newRecordHolder("DUMMY", refreshedDcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
+        Mockito.when(this.dataBrokerMock.getFreshness(cachedRecord)).thenReturn(CacheExpiryPolicy.Freshness.EXPIRED);
+        Mockito.when(this.dataBrokerMock.refreshExpiredData(any(), any(), anyLong())).thenReturn(refreshedRecord);
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
+        final ValuationReport result = sut.getValuationResponse("DUMMY");
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).refreshInBackground(any(), any(), anyLong());
+        assertEquals(200, result.getStatusCode());
+        assertTrue(result.getMessageBody().contains("2024-09-27"));
+    }
+
+    @Test
+    void knownAbsentDataShouldNotTriggerDbOrFmpApiCalls() {
+        this.mockKnownTicker("DUMMY");
+        final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
+        Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
+        Mockito.when(this.dataBrokerMock.isMissingDataKnownAbsent("DUMMY", cachedRecord)).thenReturn(true);
+        Mockito.when(this.dataBrokerMock.getFreshness(cachedRecord)).thenReturn(CacheExpiryPolicy.Freshness.FRESH);
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
+        final ValuationReport result = sut.getValuationResponse("DUMMY");
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromDb( any(), any());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromFmpApi( any(), any(), anyLong());
+        assertEquals(200, result.getStatusCode());
+        assertTrue(result.getMessageBody().contains("\"dcf\":15.5"));
+    }
+
+    @Test
+    void tickerWithoutAnyKnownDataShouldGetAnEmptyReportWithoutUpstreamCalls() {
+        this.mockKnownTicker("DUMMY");
+        Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
+        Mockito.when(this.dataBrokerMock.isMissingDataKnownAbsent("DUMMY", null)).thenReturn(true);
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
+        final ValuationReport result = sut.getValuationResponse("DUMMY");
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromDb( any(), any());
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).getDataFromFmpApi( any(), any(), anyLong());
+        assertEquals(200, result.getStatusCode());
+    }
+
     @Test
     void nullCachedItemShouldTriggerDbCall() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(dbRecord);
@@ -66,7 +176,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void incompleteCachedItemShouldTriggerDbCall() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, null);
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
         final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
@@ -82,7 +192,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void illegalStateDbShouldReturnHttp500() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, null);
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
         Mockito.when(this.dataBrokerMock.getDataFromDb(cachedRecord,"DUMMY")).thenThrow(new IllegalStateException("Oops!"));
@@ -97,7 +207,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpApiShouldBeCalledIfNoCachedOrDbDataIsComplete() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         final RecordHolder cachedRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, null);
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(cachedRecord);
         final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, null);
@@ -111,9 +221,30 @@ class VRSagaOrchestratorTest {
         assertEquals(expectedBody, result.getMessageBody());
     }
 
+    @Test
+    void recordFromTheFmpApiShouldBeCachedBeforeTheLoadCompletes() {
+        this.mockKnownTicker("DUMMY");
+        Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
+        Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(null);
+        final RecordHolder fmpApiRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
+        Mockito.when(this.dataBrokerMock.getDataFromFmpApi(null, "DUMMY", 2500L)).thenReturn(fmpApiRecord);
+        //a request coalesced on the load must find the record in the cache as soon as the load is over
+        Mockito.doAnswer(invocation -> {
+            final Function<String, RecordHolder> loader = invocation.getArgument(1);
+            final RecordHolder loaded = loader.apply(invocation.getArgument(0));
+            Mockito.verify(this.dataBrokerMock, Mockito.times(1)).addToCache("DUMMY", null, fmpApiRecord);
+            return CompletableFuture.completedFuture(loaded);
+        }).when(this.dataBrokerMock).getOrLoad(any(), any());
+        final VRSagaOrchestrator sut = new VRSagaOrchestrator(this.tickerCacheMock, new ValuationResponseBodyJSONFormatter(), new VRSagaDefaultCircuitBreaker(), this.dataBrokerMock);
+        final ValuationReport result = sut.getValuationResponse("DUMMY");
+        assertEquals(200, result.getStatusCode());
+        Mockito.verify(this.dataBrokerMock, Mockito.timeout(1000).times(1)).writeToDb("DUMMY", null, fmpApiRecord);
+        Mockito.verify(this.dataBrokerMock, Mockito.times(0)).persistData(any(), any(), any(), any());
+    }
+
     @Test
     void fmpApiShouldBeCalledIfEveryRecordIsNull() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(null);
         final RecordHolder fmpApiRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, this.ptcDto, this.ptsDto);
@@ -127,7 +258,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpApiKeyExceptionShouldProduce401() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(null);
         final ApiKeyException apiKeyException = new ApiKeyException("test!");
@@ -142,7 +273,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpRateLimitExceptionShouldProduce429() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(null);
         final RateLimitReachedException limitReachedException = new RateLimitReachedException("test!");
@@ -157,7 +288,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpRandomExceptionShouldProduce500() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(null);
         final RuntimeException runtimeException = new RuntimeException("unexpected!");
@@ -171,7 +302,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpApiKeyExceptionWithPartialDataShouldProduce200() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(dbRecord);
@@ -188,7 +319,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpRateLimitExceptionWithPartialDataShouldProduce200() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(dbRecord);
@@ -205,7 +336,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpRandomExceptionButPartialDataShouldProduce200() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         final RecordHolder dbRecord = RecordHolder.newRecordHolder("DUMMY", this.dcfDto, null, null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(dbRecord);
@@ -222,7 +353,7 @@ class VRSagaOrchestratorTest {
 
     @Test
     void fmpRandomExceptionWithoutEvenPartialDataShouldProduce500() {
-        Mockito.when(this.tickerCacheMock.tickerExists("DUMMY")).thenReturn(true);
+        this.mockKnownTicker("DUMMY");
         Mockito.when(this.dataBrokerMock.getFromCache("DUMMY")).thenReturn(null);
         Mockito.when(this.dataBrokerMock.getDataFromDb(null,"DUMMY")).thenReturn(null);
         final RuntimeException runtimeException = new RuntimeException("unexpected!");
@@ -1,11 +1,19 @@
 package com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport;
 
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.RecordHolder;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerNoEvictionCache;
 import com.szilberhornz.valueinvdata.services.stockvaluation.utility.HttpStatusCode;
 import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.formatter.ValuationResponseBodyJSONFormatter;
+import com.szilberhornz.valueinvdata.services.stockvaluation.valuationreport.formatter.ValuationResponseBodyFormatter;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class ValuationReportTest {
 
@@ -24,4 +32,46 @@ class ValuationReportTest {
         assertEquals("testMsg", response.getErrorMessage());
         assertEquals(expectedJsonString, response.getMessageBody());
     }
+
+    @Test
+    void theBodyOfTheSameRecordHolderShouldOnlyBeRenderedOnce() {
+        final AtomicInteger renderCount = new AtomicInteger();
+        final ValuationResponseBodyJSONFormatter jsonFormatter = new ValuationResponseBodyJSONFormatter();
+        final ValuationResponseBodyFormatter countingFormatter = (recordHolder, errorString) -> {
+            renderCount.incrementAndGet();
+            return jsonFormatter.getFormattedResponseBody(recordHolder, errorString);
+        };
+        //only the entries of a cache keep their bodies
+        final ValuationServerNoEvictionCache cache = new ValuationServerNoEvictionCache();
+        cache.put("DUMMY", new DiscountedCashFlowDTO("DUMMY", "2024-09-26", 15.5, 14));
+        final RecordHolder recordHolder = cache.get("DUMMY");
+        final byte[] first = this.reportOf(recordHolder, countingFormatter, "").getMessageBodyBytes();
+        final byte[] second = this.reportOf(recordHolder, countingFormatter, "").getMessageBodyBytes();
+        assertSame(first, second);
+        assertEquals(1, renderCount.get());
+        assertArrayEquals(jsonFormatter.getFormattedResponseBody(recordHolder, "").getBytes(StandardCharsets.UTF_8), first);
+        //an error message makes the body unique to the report, it is never kept
+        final byte[] withError = this.reportOf(recordHolder, countingFormatter, "testMsg").getMessageBodyBytes();
+        assertEquals(2, renderCount.get());
+        assertEquals("{\"ticker\":\"DUMMY\",\"discountedCashFlow\":{\"date\":\"2024-09-26\",\"dcf\":15.5,\"stockPrice\":14},\"error\":\"testMsg\"}",
+                new String(withError, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void errorMessageShouldBeTheBodyWithoutARecordHolder() {
+        final ValuationReport response = new ValuationReport.Builder()
+                .statusCode(HttpStatusCode.FORBIDDEN.getStatusCode())
+                .errorMessage("invalid ticker")
+                .build();
+        assertEquals("{\"error\":\"invalid ticker\"}", new String(response.getMessageBodyBytes(), StandardCharsets.UTF_8));
+    }
+
+    private ValuationReport reportOf(final RecordHolder recordHolder, final ValuationResponseBodyFormatter formatter, final String errorMessage) {
+        return new ValuationReport.Builder()
+                .statusCode(HttpStatusCode.OK.getStatusCode())
+                .responseBodyFormatter(formatter)
+                .recordHolder(recordHolder)
+                .errorMessage(errorMessage)
+                .build();
+    }
 }
@@ -0,0 +1,193 @@
+package com.szilberhornz.valueinvdata.tools.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpRequestRouter;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.HttpResponseMessage;
+import com.szilberhornz.valueinvdata.services.stockvaluation.server.NioHttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the two http server engines of the service on the cache-hit path: the com.sun HttpServer and the
+ * {@link NioHttpServer}. Both route with the same router, which answers every request right away with a valuation report
+ * sized body, like a cache hit does, on a virtual thread per request. The load comes from keep-alive connections, each
+ * sending its requests back to back, PIPELINE of them at a time. Like the other benchmarks it is a plain main, so the
+ * numbers are indicative only, and the clients share the machine with the server. Configured with VM Options:
+ * <ul>
+ *     <li>CONNECTIONS: the number of concurrent keep-alive connections, each needs two file descriptors here</li>
+ *     <li>PIPELINE: the number of requests a connection sends before reading their responses</li>
+ *     <li>EVENT_LOOPS: the number of SO_REUSEPORT listeners and event loops of the nio engine</li>
+ *     <li>WARMUP_SECONDS, SECONDS: how long the load runs untimed and timed with each engine</li>
+ * </ul>
+ */
+public final class HttpEngineBenchmark {
+
+    private static final int DEFAULT_CONNECTIONS = 2000;
+    private static final int DEFAULT_PIPELINE = 1;
+    private static final int DEFAULT_EVENT_LOOPS = 1;
+    private static final int DEFAULT_WARMUP_SECONDS = 5;
+    private static final int DEFAULT_SECONDS = 10;
+    //the com.sun HttpServer default of the service, and the one of the nio engine
+    private static final int HTTP_SERVER_BACKLOG = 32;
+    private static final int NIO_SERVER_BACKLOG = 1024;
+    private static final byte[] CACHE_HIT_BODY = ("{\"ticker\":\"AAPL\",\"discountedCashFlow\":{\"date\":\"2024-09-26\",\"dcf\":151.1,"
+            + "\"stockPrice\":149.65},\"priceTargetConsensus\":{\"lastQuarterAvgPriceTarget\":14,\"lastMonthAvgPriceTarget\":16,"
+            + "\"lastQuarter\":5,\"lastMonth\":2}}").getBytes(StandardCharsets.UTF_8);
+    private static final HttpRequestRouter CACHE_HIT_ROUTER = (method, requestURI) -> new HttpResponseMessage(200, CACHE_HIT_BODY);
+
+    private HttpEngineBenchmark() {
+        //entry point only
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int connections = Integer.parseInt(System.getProperty("CONNECTIONS", String.valueOf(DEFAULT_CONNECTIONS)));
+        final int pipeline = Integer.parseInt(System.getProperty("PIPELINE", String.valueOf(DEFAULT_PIPELINE)));
+        final int eventLoops = Integer.parseInt(System.getProperty("EVENT_LOOPS", String.valueOf(DEFAULT_EVENT_LOOPS)));
+        final int warmupSeconds = Integer.parseInt(System.getProperty("WARMUP_SECONDS", String.valueOf(DEFAULT_WARMUP_SECONDS)));
+        final int seconds = Integer.parseInt(System.getProperty("SECONDS", String.valueOf(DEFAULT_SECONDS)));
+
+        final PrintStream out = System.out;
+        out.printf(Locale.ROOT, "%d keep-alive connections, %d pipelined requests each, %d nio event loops, %d cores%n", connections,
+                pipeline, eventLoops, Runtime.getRuntime().availableProcessors());
+        out.printf(Locale.ROOT, "%-10s %12s %10s %10s %10s %8s%n", "engine", "requests/s", "p50 ms", "p99 ms", "max ms", "failed");
+        for (final String engine : new String[]{"httpserver", "nio"}) {
+            final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+            final Closeable server;
+            final int port;
+            if ("nio".equals(engine)) {
+                final NioHttpServer nioHttpServer = new NioHttpServer(address, NIO_SERVER_BACKLOG, eventLoops, CACHE_HIT_ROUTER,
+                        requestExecutor, Duration.ofMinutes(1));
+                nioHttpServer.start();
+                server = nioHttpServer;
+                port = nioHttpServer.getAddress().getPort();
+            } else {
+                final HttpServer httpServer = HttpServer.create(address, HTTP_SERVER_BACKLOG);
+                httpServer.createContext("/", exchange -> {
+                    final HttpResponseMessage response = CACHE_HIT_ROUTER.route(exchange.getRequestMethod(), exchange.getRequestURI());
+                    exchange.sendResponseHeaders(response.statusCode(), response.body().length);
+                    try (final OutputStream responseBody = exchange.getResponseBody()) {
+                        responseBody.write(response.body());
+                    }
+                });
+                httpServer.setExecutor(requestExecutor);
+                httpServer.start();
+                server = () -> httpServer.stop(0);
+                port = httpServer.getAddress().getPort();
+            }
+            try {
+                final LoadResult result = runLoad(port, connections, pipeline, warmupSeconds, seconds);
+                out.printf(Locale.ROOT, "%-10s %12.1f %10.2f %10.2f %10.2f %8d%n", engine, (double) result.latencies().length / seconds,
+                        percentile(result.latencies(), 0.5), percentile(result.latencies(), 0.99), percentile(result.latencies(), 1),
+                        result.failedConnections());
+            } finally {
+                server.close();
+                requestExecutor.shutdownNow();
+            }
+        }
+    }
+
+    //the latencies of the responses that arrived in the timed part, a pipelined batch counts once for each of its requests
+    private static LoadResult runLoad(final int port, final int connections, final int pipeline, final int warmupSeconds,
+                                      final int seconds) throws InterruptedException {
+        final long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        final long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+        final byte[] requests = "GET /valuation-report?ticker=AAPL HTTP/1.1\r\nHost: localhost\r\n\r\n".repeat(pipeline)
+                .getBytes(StandardCharsets.US_ASCII);
+        final long[][] latenciesByConnection = new long[connections][];
+        final AtomicInteger failedConnections = new AtomicInteger();
+        final List<Thread> clients = new ArrayList<>(connections);
+        for (int connection = 0; connection < connections; connection++) {
+            final int connectionIndex = connection;
+            clients.add(Thread.ofVirtual().start(() -> {
+                long[] latencies = new long[256];
+                int count = 0;
+                try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    socket.setTcpNoDelay(true);
+                    final OutputStream requestStream = socket.getOutputStream();
+                    final InputStream responseStream = new BufferedInputStream(socket.getInputStream());
+                    long now;
+                    while ((now = System.nanoTime()) < measureEnd) {
+                        requestStream.write(requests);
+                        for (int i = 0; i < pipeline; i++) {
+                            readResponse(responseStream);
+                        }
+                        final long end = System.nanoTime();
+                        if (now >= measureStart) {
+                            if (count + pipeline > latencies.length) {
+                                latencies = Arrays.copyOf(latencies, 2 * latencies.length + pipeline);
+                            }
+                            for (int i = 0; i < pipeline; i++) {
+                                latencies[count++] = end - now;
+                            }
+                        }
+                    }
+                } catch (final IOException exception) {
+                    failedConnections.incrementAndGet();
+                }
+                latenciesByConnection[connectionIndex] = Arrays.copyOf(latencies, count);
+            }));
+        }
+        for (final Thread client : clients) {
+            client.join();
+        }
+        final long[] latencies = Arrays.stream(latenciesByConnection).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new LoadResult(latencies, failedConnections.get());
+    }
+
+    //skips the head and the body of a response, the head is parsed only for the Content-Length, in any casing
+    private static void readResponse(final InputStream in) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int contentLength = -1;
+        while (true) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new IOException("The server closed the connection!");
+            } else if (b == '\n') {
+                if (line.isEmpty()) {
+                    break;
+                }
+                final String header = line.toString();
+                if (header.regionMatches(true, 0, "Content-Length:", 0, "Content-Length:".length())) {
+                    contentLength = Integer.parseInt(header.substring("Content-Length:".length()).trim());
+                }
+                line.setLength(0);
+            } else if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("The response has no Content-Length!");
+        }
+        in.skipNBytes(contentLength);
+    }
+
+    private static double percentile(final long[] sortedLatencies, final double percentile) {
+        if (sortedLatencies.length == 0) {
+            return Double.NaN;
+        }
+        final int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+        return sortedLatencies[Math.max(0, index)] / 1e6;
+    }
+
+    private record LoadResult(long[] latencies, int failedConnections) {
+    }
+}
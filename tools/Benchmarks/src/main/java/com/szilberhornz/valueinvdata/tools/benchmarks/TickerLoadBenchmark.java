@@ -0,0 +1,89 @@
+package com.szilberhornz.valueinvdata.tools.benchmarks;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerIndex;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerUniverseLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * Compares the {@link TickerUniverseLoader} with the Scanner based loading the TickerCache did before, on the time it takes
+ * to get from tickers.txt to a {@link TickerIndex}. The first round of each is what a cold start pays, before the JIT kicks
+ * in, so run it in a fresh JVM for every implementation with IMPLEMENTATION=SCANNER or LOADER to get a fair cold number.
+ * The warm rounds after it show the steady state.
+ * <p>
+ * Configured with VM Options:
+ * <ul>
+ *     <li>IMPLEMENTATION: SCANNER, LOADER or BOTH (default, in this order)</li>
+ *     <li>TICKER_FILE: an external ticker file to load instead of the tickers.txt resource</li>
+ *     <li>ROUNDS: the number of warm rounds</li>
+ * </ul>
+ */
+public final class TickerLoadBenchmark {
+
+    private static final String TICKER_RESOURCE = "tickers.txt";
+    private static final int DEFAULT_ROUNDS = 20;
+
+    private TickerLoadBenchmark() {
+        //entry point only
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final String implementation = System.getProperty("IMPLEMENTATION", "BOTH").toUpperCase(Locale.ROOT);
+        final String tickerFile = System.getProperty("TICKER_FILE");
+        final int rounds = Integer.parseInt(System.getProperty("ROUNDS", String.valueOf(DEFAULT_ROUNDS)));
+        final PrintStream out = System.out;
+        out.printf(Locale.ROOT, "%-22s %10s %14s %14s%n", "implementation", "tickers", "cold millis", "warm millis");
+        if (!"LOADER".equals(implementation)) {
+            report(out, "Scanner + substring", rounds, () -> scannerLoad(tickerFile));
+        }
+        if (!"SCANNER".equals(implementation)) {
+            report(out, "TickerUniverseLoader", rounds,
+                    () -> tickerFile == null ? TickerUniverseLoader.fromResource(TICKER_RESOURCE) : TickerUniverseLoader.fromFile(Path.of(tickerFile)));
+        }
+    }
+
+    private static void report(final PrintStream out, final String name, final int rounds, final Load load) throws IOException {
+        long start = System.nanoTime();
+        final TickerIndex index = load.load();
+        final double coldMillis = (System.nanoTime() - start) / 1e6;
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            start = System.nanoTime();
+            load.load();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        out.printf(Locale.ROOT, "%-22s %10d %14.2f %14.2f%n", name, index.size(), coldMillis, bestNanos / 1e6);
+    }
+
+    //what the TickerCache did before the TickerUniverseLoader, with the HashSet replaced by the TickerIndex
+    private static TickerIndex scannerLoad(final String tickerFile) throws IOException {
+        try (final InputStream in = tickerFile == null
+                ? Thread.currentThread().getContextClassLoader().getResourceAsStream(TICKER_RESOURCE)
+                : Files.newInputStream(Path.of(tickerFile))) {
+            if (in == null) {
+                throw new IOException("The ticker resource " + TICKER_RESOURCE + " is not on the classpath!");
+            }
+            final List<String> tickers = new ArrayList<>();
+            final Scanner scanner = new Scanner(in, StandardCharsets.UTF_8).useDelimiter(",");
+            while (scanner.hasNext()) {
+                final String next = scanner.next();
+                tickers.add(next.substring(1, next.length() - 1));
+            }
+            return TickerIndex.of(tickers);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Load {
+        TickerIndex load() throws IOException;
+    }
+}
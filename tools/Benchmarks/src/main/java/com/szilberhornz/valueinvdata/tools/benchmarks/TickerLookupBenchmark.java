@@ -0,0 +1,169 @@
+package com.szilberhornz.valueinvdata.tools.benchmarks;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Compares the {@link TickerIndex} with the HashSet the TickerCache used before, on the memory footprint of the whole
+ * tickers.txt universe and on the time of a lookup. The lookups are a mix of known tickers in mixed casing, like the ones
+ * coming from the users, and unknown ones, like the typos and the junk the validation has to turn away.
+ * <p>
+ * It is a plain main without a harness, so the numbers are indicative only: every round is timed as a whole after the
+ * warmup rounds, and the best and the average round are reported. The footprint is measured as the growth of the used
+ * heap after forced garbage collections, so run it with a fixed heap, e.g. -Xms512m -Xmx512m. Configured with VM Options:
+ * <ul>
+ *     <li>LOOKUP_COUNT: the number of lookups in a round</li>
+ *     <li>MISS_RATIO: the share of unknown tickers among the lookups</li>
+ *     <li>WARMUP_ROUNDS, ROUNDS: the number of untimed and timed rounds</li>
+ *     <li>SEED: the seed of the lookup mix</li>
+ * </ul>
+ */
+public final class TickerLookupBenchmark {
+
+    private static final String TICKER_RESOURCE = "tickers.txt";
+    private static final int DEFAULT_LOOKUP_COUNT = 1_000_000;
+    private static final double DEFAULT_MISS_RATIO = 0.2;
+    private static final int DEFAULT_WARMUP_ROUNDS = 10;
+    private static final int DEFAULT_ROUNDS = 10;
+    private static final long DEFAULT_SEED = 42;
+
+    //keeps the results of the lookups alive, so the JIT can't drop them
+    private static long sink;
+
+    private TickerLookupBenchmark() {
+        //entry point only
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final List<String> tickers = loadTickers();
+        final String[] lookups = lookupMix(tickers,
+                Integer.parseInt(System.getProperty("LOOKUP_COUNT", String.valueOf(DEFAULT_LOOKUP_COUNT))),
+                Double.parseDouble(System.getProperty("MISS_RATIO", String.valueOf(DEFAULT_MISS_RATIO))),
+                Long.parseLong(System.getProperty("SEED", String.valueOf(DEFAULT_SEED))));
+        final int warmupRounds = Integer.parseInt(System.getProperty("WARMUP_ROUNDS", String.valueOf(DEFAULT_WARMUP_ROUNDS)));
+        final int rounds = Integer.parseInt(System.getProperty("ROUNDS", String.valueOf(DEFAULT_ROUNDS)));
+
+        final PrintStream out = System.out;
+        out.printf(Locale.ROOT, "%d tickers, %d lookups per round, %d warmup and %d timed rounds%n",
+                tickers.size(), lookups.length, warmupRounds, rounds);
+        out.printf(Locale.ROOT, "%-28s %14s %16s %16s %10s%n", "implementation", "heap bytes", "ns/lookup (best)", "ns/lookup (avg)", "found");
+
+        //the same lookup the TickerCache did before the TickerIndex
+        final long hashSetBytes = measureRetainedBytes(() -> hashSetOf(tickers));
+        final Set<String> hashSet = hashSetOf(tickers);
+        report(out, "HashSet + toUpperCase", hashSetBytes, ticker -> hashSet.contains(ticker.toUpperCase()), lookups, warmupRounds, rounds);
+
+        final long indexBytes = measureRetainedBytes(() -> TickerIndex.of(tickers));
+        final TickerIndex index = TickerIndex.of(tickers);
+        report(out, "TickerIndex", indexBytes, index::contains, lookups, warmupRounds, rounds);
+        out.printf(Locale.ROOT, "TickerIndex.getFootprintInBytes(): %d%n", index.getFootprintInBytes());
+        //printed so the sink is used
+        out.printf(Locale.ROOT, "(checksum %d)%n", sink);
+    }
+
+    private static void report(final PrintStream out, final String name, final long heapBytes, final Predicate<String> lookup,
+                               final String[] lookups, final int warmupRounds, final int rounds) {
+        for (int i = 0; i < warmupRounds; i++) {
+            sink += runRound(lookup, lookups);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        long totalNanos = 0;
+        int found = 0;
+        for (int i = 0; i < rounds; i++) {
+            final long start = System.nanoTime();
+            found = runRound(lookup, lookups);
+            final long elapsed = System.nanoTime() - start;
+            sink += found;
+            bestNanos = Math.min(bestNanos, elapsed);
+            totalNanos += elapsed;
+        }
+        out.printf(Locale.ROOT, "%-28s %14d %16.1f %16.1f %10d%n", name, heapBytes,
+                (double) bestNanos / lookups.length, (double) totalNanos / rounds / lookups.length, found);
+    }
+
+    private static int runRound(final Predicate<String> lookup, final String[] lookups) {
+        int found = 0;
+        for (final String ticker : lookups) {
+            if (lookup.test(ticker)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    static String[] lookupMix(final List<String> tickers, final int count, final double missRatio, final long seed) {
+        final Random random = new Random(seed);
+        final String[] lookups = new String[count];
+        for (int i = 0; i < count; i++) {
+            final String ticker = tickers.get(random.nextInt(tickers.size()));
+            //a known ticker with a made up suffix is about as close to a real one as a typo
+            lookups[i] = random.nextDouble() < missRatio ? ticker + "QZ" : mixCase(ticker, random);
+        }
+        return lookups;
+    }
+
+    private static String mixCase(final String ticker, final Random random) {
+        final char[] chars = ticker.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (random.nextBoolean()) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+        }
+        return new String(chars);
+    }
+
+    //the TickerCache owned the strings in its set, they were parsed from the file, so they are counted too
+    private static Set<String> hashSetOf(final List<String> tickers) {
+        final Set<String> hashSet = new HashSet<>();
+        for (final String ticker : tickers) {
+            hashSet.add(new String(ticker.toCharArray()));
+        }
+        return hashSet;
+    }
+
+    //the growth of the used heap while the built object is still reachable
+    private static long measureRetainedBytes(final Supplier<Object> factory) {
+        final long before = usedHeapAfterGc();
+        final Object retained = factory.get();
+        final long after = usedHeapAfterGc();
+        sink += System.identityHashCode(retained);
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //tickers.txt is a single line of comma separated, quoted tickers
+    private static List<String> loadTickers() throws IOException {
+        try (final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(TICKER_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("The ticker resource " + TICKER_RESOURCE + " is not on the classpath!");
+            }
+            final List<String> tickers = new ArrayList<>();
+            for (final String quoted : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(",")) {
+                final String ticker = quoted.strip();
+                if (ticker.length() > 2) {
+                    tickers.add(ticker.substring(1, ticker.length() - 1));
+                }
+            }
+            return tickers;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.szilberhornz.valueinvdata.tools.benchmarks;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerIndex;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerTrie;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.TickerUniverseLoader;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+/**
+ * Measures the lookups of the {@link TickerTrie} on the tickers.txt universe: the autocomplete with the prefixes a user
+ * types on the way to a ticker, and the "did you mean" lookup with tickers that have a random typo in them. Like the
+ * other benchmarks it is a plain main, so the numbers are indicative only. Configured with VM Options:
+ * <ul>
+ *     <li>LOOKUP_COUNT: the number of lookups in a round</li>
+ *     <li>MAX_COUNT: the maximum number of suggestions of a lookup</li>
+ *     <li>WARMUP_ROUNDS, ROUNDS: the number of untimed and timed rounds</li>
+ *     <li>SEED: the seed of the lookup mix</li>
+ * </ul>
+ */
+public final class TickerSuggestBenchmark {
+
+    private static final String TICKER_RESOURCE = "tickers.txt";
+    private static final int DEFAULT_LOOKUP_COUNT = 100_000;
+    private static final int DEFAULT_MAX_COUNT = 10;
+    private static final int DEFAULT_WARMUP_ROUNDS = 5;
+    private static final int DEFAULT_ROUNDS = 5;
+    private static final long DEFAULT_SEED = 42;
+
+    //keeps the results of the lookups alive, so the JIT can't drop them
+    private static long sink;
+
+    private TickerSuggestBenchmark() {
+        //entry point only
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final TickerIndex index = TickerUniverseLoader.fromResource(TICKER_RESOURCE);
+        if (index == null) {
+            throw new IOException("The ticker resource " + TICKER_RESOURCE + " is not on the classpath!");
+        }
+        final List<String> tickers = new ArrayList<>(index.size());
+        index.forEach(tickers::add);
+        final int lookupCount = Integer.parseInt(System.getProperty("LOOKUP_COUNT", String.valueOf(DEFAULT_LOOKUP_COUNT)));
+        final int maxCount = Integer.parseInt(System.getProperty("MAX_COUNT", String.valueOf(DEFAULT_MAX_COUNT)));
+        final int warmupRounds = Integer.parseInt(System.getProperty("WARMUP_ROUNDS", String.valueOf(DEFAULT_WARMUP_ROUNDS)));
+        final int rounds = Integer.parseInt(System.getProperty("ROUNDS", String.valueOf(DEFAULT_ROUNDS)));
+        final Random random = new Random(Long.parseLong(System.getProperty("SEED", String.valueOf(DEFAULT_SEED))));
+
+        final long start = System.nanoTime();
+        final TickerTrie trie = TickerTrie.of(index);
+        final double buildMillis = (System.nanoTime() - start) / 1e6;
+
+        final String[] prefixes = new String[lookupCount];
+        final String[] typos = new String[lookupCount];
+        for (int i = 0; i < lookupCount; i++) {
+            final String ticker = tickers.get(random.nextInt(tickers.size()));
+            prefixes[i] = ticker.substring(0, 1 + random.nextInt(ticker.length())).toLowerCase(Locale.ROOT);
+            final char[] typo = ticker.toCharArray();
+            typo[random.nextInt(typo.length)] = (char) ('A' + random.nextInt(26));
+            typos[i] = new String(typo);
+        }
+
+        final PrintStream out = System.out;
+        out.printf(Locale.ROOT, "%d tickers, trie built in %.1f ms, %d bytes on the heap%n", tickers.size(), buildMillis, trie.getFootprintInBytes());
+        out.printf(Locale.ROOT, "%-14s %16s %16s%n", "lookup", "ns/lookup (best)", "ns/lookup (avg)");
+        report(out, "withPrefix", prefix -> trie.withPrefix(prefix, maxCount).size(), prefixes, warmupRounds, rounds);
+        report(out, "similarTo", typo -> trie.similarTo(typo, typo.length() <= 3 ? 1 : 2, maxCount).size(), typos, warmupRounds, rounds);
+        //printed so the sink is used
+        out.printf(Locale.ROOT, "(checksum %d)%n", sink);
+    }
+
+    private static void report(final PrintStream out, final String name, final ToIntFunction<String> lookup, final String[] lookups,
+                               final int warmupRounds, final int rounds) {
+        for (int i = 0; i < warmupRounds; i++) {
+            runRound(lookup, lookups);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        long totalNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            final long start = System.nanoTime();
+            runRound(lookup, lookups);
+            final long nanos = System.nanoTime() - start;
+            bestNanos = Math.min(bestNanos, nanos);
+            totalNanos += nanos;
+        }
+        out.printf(Locale.ROOT, "%-14s %16.1f %16.1f%n", name, (double) bestNanos / lookups.length,
+                (double) totalNanos / rounds / lookups.length);
+    }
+
+    private static void runRound(final ToIntFunction<String> lookup, final String[] lookups) {
+        for (final String ticker : lookups) {
+            sink += lookup.applyAsInt(ticker);
+        }
+    }
+}
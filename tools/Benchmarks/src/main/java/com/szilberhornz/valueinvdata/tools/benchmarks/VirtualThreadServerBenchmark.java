@@ -0,0 +1,184 @@
+package com.szilberhornz.valueinvdata.tools.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.BlockingExecutors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Compares the two executor modes of the http server, see USE_VIRTUAL_THREADS in the AppContext, under a high cache miss
+ * ratio. The server is a plain HttpServer with a handler that blocks like the valuation report saga does: the request
+ * thread waits for the saga on the saga executor, and on a cache miss the saga waits for a simulated database query and
+ * FMP api call on the same executor. A cache hit answers right away. The load comes from a number of clients sending
+ * requests back to back. Like the other benchmarks it is a plain main, so the numbers are indicative only. Configured with
+ * VM Options:
+ * <ul>
+ *     <li>CLIENTS: the number of concurrent clients</li>
+ *     <li>MISS_RATIO: the share of the requests that miss the cache, 0 to 1</li>
+ *     <li>MISS_LATENCY_MS: how long a cache miss waits on the database and the FMP api</li>
+ *     <li>WORKER_THREADS: the size of the fixed request pool of the platform mode, like in the service</li>
+ *     <li>TIMEOUT_MS: the overall timeout of the saga, a request that takes longer gets a 504</li>
+ *     <li>WARMUP_SECONDS, SECONDS: how long the load runs untimed and timed in each mode</li>
+ * </ul>
+ */
+public final class VirtualThreadServerBenchmark {
+
+    private static final int DEFAULT_CLIENTS = 200;
+    private static final double DEFAULT_MISS_RATIO = 0.8;
+    private static final int DEFAULT_MISS_LATENCY_MS = 50;
+    private static final int DEFAULT_WORKER_THREADS = 10;
+    private static final int DEFAULT_TIMEOUT_MS = 2500;
+    private static final int DEFAULT_WARMUP_SECONDS = 3;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final byte[] RESPONSE_BODY = "{\"ticker\":\"DUMMY\"}".getBytes(StandardCharsets.UTF_8);
+
+    private VirtualThreadServerBenchmark() {
+        //entry point only
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int clients = Integer.parseInt(System.getProperty("CLIENTS", String.valueOf(DEFAULT_CLIENTS)));
+        final double missRatio = Double.parseDouble(System.getProperty("MISS_RATIO", String.valueOf(DEFAULT_MISS_RATIO)));
+        final int missLatencyMillis = Integer.parseInt(System.getProperty("MISS_LATENCY_MS", String.valueOf(DEFAULT_MISS_LATENCY_MS)));
+        final int workerThreads = Integer.parseInt(System.getProperty("WORKER_THREADS", String.valueOf(DEFAULT_WORKER_THREADS)));
+        final int timeoutMillis = Integer.parseInt(System.getProperty("TIMEOUT_MS", String.valueOf(DEFAULT_TIMEOUT_MS)));
+        final int warmupSeconds = Integer.parseInt(System.getProperty("WARMUP_SECONDS", String.valueOf(DEFAULT_WARMUP_SECONDS)));
+        final int seconds = Integer.parseInt(System.getProperty("SECONDS", String.valueOf(DEFAULT_SECONDS)));
+
+        final PrintStream out = System.out;
+        out.printf(Locale.ROOT, "%d clients, %.0f%% cache misses of %d ms, %d worker threads, %d cores%n", clients,
+                missRatio * 100, missLatencyMillis, workerThreads, Runtime.getRuntime().availableProcessors());
+        out.printf(Locale.ROOT, "%-9s %12s %10s %10s %10s %8s%n", "mode", "requests/s", "p50 ms", "p99 ms", "max ms", "504s");
+        for (final boolean virtual : new boolean[]{false, true}) {
+            final ExecutorService requestExecutor = virtual ? BlockingExecutors.newVirtualThreadPerTaskExecutor("http-request-")
+                    : Executors.newFixedThreadPool(workerThreads);
+            final ExecutorService sagaExecutor = virtual ? BlockingExecutors.newVirtualThreadPerTaskExecutor("saga-") : null;
+            final Executor blockingExecutor = sagaExecutor != null ? sagaExecutor : BlockingExecutors.defaultAsyncPool();
+            final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+            server.createContext("/valuation", exchange -> handle(exchange, blockingExecutor, missRatio, missLatencyMillis, timeoutMillis));
+            server.setExecutor(requestExecutor);
+            server.start();
+            try {
+                final URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/valuation?ticker=DUMMY");
+                runLoad(uri, clients, warmupSeconds);
+                final LoadResult result = runLoad(uri, clients, seconds);
+                out.printf(Locale.ROOT, "%-9s %12.1f %10.1f %10.1f %10.1f %8d%n", virtual ? "virtual" : "platform",
+                        (double) result.latencies().length / seconds, percentile(result.latencies(), 0.5),
+                        percentile(result.latencies(), 0.99), percentile(result.latencies(), 1), result.timeouts());
+            } finally {
+                server.stop(0);
+                requestExecutor.shutdownNow();
+                if (sagaExecutor != null) {
+                    sagaExecutor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    //blocks like VRSagaOrchestrator: the request thread waits for the saga, the saga waits for the database and the api
+    private static void handle(final HttpExchange exchange, final Executor blockingExecutor, final double missRatio,
+                               final int missLatencyMillis, final int timeoutMillis) throws IOException {
+        int statusCode = 200;
+        try {
+            CompletableFuture.supplyAsync(() -> {
+                if (ThreadLocalRandom.current().nextDouble() < missRatio) {
+                    CompletableFuture.runAsync(() -> sleep(missLatencyMillis), blockingExecutor).join();
+                }
+                return RESPONSE_BODY;
+            }, blockingExecutor).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException timeoutException) {
+            statusCode = 504;
+        } catch (final ExecutionException executionException) {
+            statusCode = 500;
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            statusCode = 500;
+        }
+        exchange.sendResponseHeaders(statusCode, RESPONSE_BODY.length);
+        try (final OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(RESPONSE_BODY);
+        }
+    }
+
+    private static LoadResult runLoad(final URI uri, final int clients, final int seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final List<long[]> latenciesByClient = new ArrayList<>(clients);
+        final int[] timeoutsByClient = new int[clients];
+        final List<Thread> clientThreads = new ArrayList<>(clients);
+        try (final HttpClient httpClient = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            final HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+            for (int client = 0; client < clients; client++) {
+                final int clientIndex = client;
+                final long[][] latencies = {new long[1024]};
+                latenciesByClient.add(null);
+                clientThreads.add(Thread.ofVirtual().start(() -> {
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        final long start = System.nanoTime();
+                        try {
+                            final HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 504) {
+                                timeoutsByClient[clientIndex]++;
+                            }
+                        } catch (final IOException ioException) {
+                            continue;
+                        } catch (final InterruptedException interruptedException) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        if (count == latencies[0].length) {
+                            latencies[0] = Arrays.copyOf(latencies[0], count * 2);
+                        }
+                        latencies[0][count++] = System.nanoTime() - start;
+                    }
+                    latenciesByClient.set(clientIndex, Arrays.copyOf(latencies[0], count));
+                }));
+            }
+            for (final Thread clientThread : clientThreads) {
+                clientThread.join();
+            }
+        }
+        final long[] latencies = latenciesByClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new LoadResult(latencies, Arrays.stream(timeoutsByClient).sum());
+    }
+
+    private static double percentile(final long[] sortedLatencies, final double percentile) {
+        if (sortedLatencies.length == 0) {
+            return Double.NaN;
+        }
+        final int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+        return sortedLatencies[Math.max(0, index)] / 1e6;
+    }
+
+    private static void sleep(final int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record LoadResult(long[] latencies, int timeouts) {
+    }
+}
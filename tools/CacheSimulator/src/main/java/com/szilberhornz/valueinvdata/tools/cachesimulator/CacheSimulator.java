@@ -0,0 +1,114 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCostAwareCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerLFUCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerNoEvictionCache;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerTinyLFUCache;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.ArcPolicy;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.LruPolicy;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.S3FifoPolicy;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.SimulatedCachePolicy;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.ValuationServerCachePolicy;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.WTinyLfuPolicy;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.trace.TickerUniverse;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.trace.TraceReader;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.trace.ZipfTraceGenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Offline, trace-driven simulator to answer questions like "is LFU_CACHE_SIZE=2000 enough?" or "would another eviction
+ * policy suit our traffic better?" without running experiments in production.
+ * <p>
+ * Like the service, it is configured with VM Options:
+ * <ul>
+ *     <li>TRACE_FILE: path of a recorded trace. If missing, a synthetic Zipf trace is generated from tickers.txt</li>
+ *     <li>TRACE_FORMAT: PLAIN (default) or SERVICE_LOG, see {@link TraceReader}</li>
+ *     <li>REQUEST_COUNT, ZIPF_SKEW, SEED: parameters of the synthetic trace</li>
+ *     <li>CAPACITIES: comma separated list of cache capacities to sweep</li>
+ *     <li>DB_QUERY_MILLIS, FMP_CALL_MILLIS: latencies used to estimate the upstream cost</li>
+ * </ul>
+ */
+public final class CacheSimulator {
+
+    private static final String DEFAULT_CAPACITIES = "100,500,1000,2000,5000,10000";
+    private static final int DEFAULT_REQUEST_COUNT = 1_000_000;
+    private static final double DEFAULT_ZIPF_SKEW = 0.9;
+    private static final long DEFAULT_SEED = 42;
+    private static final double DEFAULT_DB_QUERY_MILLIS = 15;
+    private static final double DEFAULT_FMP_CALL_MILLIS = 450;
+    private static final int LFU_REBALANCE_THRESHOLD = 200;
+
+    private CacheSimulator() {
+        //entry point only
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final List<String> trace = loadTrace();
+        final int[] capacities = parseCapacities(System.getProperty("CAPACITIES", DEFAULT_CAPACITIES));
+        final Simulation simulation = new Simulation(trace,
+                doubleProperty("DB_QUERY_MILLIS", DEFAULT_DB_QUERY_MILLIS),
+                doubleProperty("FMP_CALL_MILLIS", DEFAULT_FMP_CALL_MILLIS));
+        final List<SimulationResult> results = simulation.sweep(defaultPolicies(), capacities);
+        printReport(results, System.out);
+    }
+
+    /**
+     * The reference policies, followed by the actual cache implementations of the service
+     */
+    static List<IntFunction<SimulatedCachePolicy>> defaultPolicies() {
+        return List.of(
+                LruPolicy::new,
+                ArcPolicy::new,
+                S3FifoPolicy::new,
+                WTinyLfuPolicy::new,
+                capacity -> new ValuationServerCachePolicy("ValuationServerLFUCache", new ValuationServerLFUCache(LFU_REBALANCE_THRESHOLD, capacity)),
+                capacity -> new ValuationServerCachePolicy("ValuationServerTinyLFUCache", new ValuationServerTinyLFUCache(capacity)),
+                capacity -> new ValuationServerCachePolicy("ValuationServerCostAwareCache", new ValuationServerCostAwareCache(capacity)),
+                //the upper bound: only compulsory misses
+                capacity -> new ValuationServerCachePolicy("Unbounded (no eviction)", new ValuationServerNoEvictionCache())
+        );
+    }
+
+    static void printReport(final List<SimulationResult> results, final PrintStream out) {
+        out.printf(Locale.ROOT, "%-30s %9s %10s %9s %12s %11s %14s %16s%n",
+                "policy", "capacity", "requests", "hit ratio", "db queries", "fmp calls", "db avoided", "throughput/s");
+        for (final SimulationResult result : results) {
+            out.printf(Locale.ROOT, "%-30s %9d %10d %8.2f%% %12d %11d %14d %16.0f%n",
+                    result.policyName(), result.capacity(), result.requests(), result.hitRatio() * 100,
+                    result.dbQueries(), result.fmpCalls(), result.dbQueriesAvoided(),
+                    result.throughputPerSecond());
+        }
+    }
+
+    static int[] parseCapacities(final String capacities) {
+        return Arrays.stream(capacities.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    private static List<String> loadTrace() throws IOException {
+        final String traceFile = System.getProperty("TRACE_FILE");
+        if (traceFile != null) {
+            final TraceReader.Format format = TraceReader.Format.valueOf(System.getProperty("TRACE_FORMAT", "PLAIN").toUpperCase(Locale.ROOT));
+            return TraceReader.read(Path.of(traceFile), format);
+        }
+        final ZipfTraceGenerator generator = new ZipfTraceGenerator(TickerUniverse.load(),
+                doubleProperty("ZIPF_SKEW", DEFAULT_ZIPF_SKEW),
+                Long.parseLong(System.getProperty("SEED", String.valueOf(DEFAULT_SEED))));
+        return generator.generate(Integer.parseInt(System.getProperty("REQUEST_COUNT", String.valueOf(DEFAULT_REQUEST_COUNT))));
+    }
+
+    private static double doubleProperty(final String name, final double defaultValue) {
+        final String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,52 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator;
+
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.SimulatedCachePolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Replays a trace through cache policies for a sweep of capacities. Every (policy, capacity) pair gets a fresh policy
+ * instance and a fresh cost model, so the runs are independent of each other.
+ */
+public final class Simulation {
+
+    private final List<String> trace;
+    private final double dbQueryMillis;
+    private final double fmpCallMillis;
+
+    public Simulation(final List<String> trace, final double dbQueryMillis, final double fmpCallMillis) {
+        this.trace = List.copyOf(trace);
+        this.dbQueryMillis = dbQueryMillis;
+        this.fmpCallMillis = fmpCallMillis;
+    }
+
+    public List<SimulationResult> sweep(final List<IntFunction<SimulatedCachePolicy>> policyFactories, final int[] capacities) {
+        final List<SimulationResult> results = new ArrayList<>();
+        for (final int capacity : capacities) {
+            for (final IntFunction<SimulatedCachePolicy> policyFactory : policyFactories) {
+                results.add(this.run(policyFactory.apply(capacity), capacity));
+            }
+        }
+        return results;
+    }
+
+    public SimulationResult run(final SimulatedCachePolicy policy, final int capacity) {
+        final UpstreamCostModel costModel = new UpstreamCostModel(this.dbQueryMillis, this.fmpCallMillis);
+        long hits = 0;
+        final long start = System.nanoTime();
+        for (final String ticker : this.trace) {
+            if (policy.recordAccess(ticker)) {
+                hits++;
+                costModel.recordHit();
+            } else {
+                costModel.recordMiss(ticker);
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        return new SimulationResult(policy.getName(), capacity, this.trace.size(), hits,
+                costModel.getDbQueries(), costModel.getFmpCalls(), costModel.getDbQueriesAvoided(),
+                costModel.getUpstreamMillis(), costModel.getAvoidedUpstreamMillis(), elapsed);
+    }
+}
@@ -0,0 +1,17 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator;
+
+/**
+ * The outcome of replaying one trace through one policy with one capacity
+ */
+public record SimulationResult(String policyName, int capacity, long requests, long hits,
+                               long dbQueries, long fmpCalls, long dbQueriesAvoided,
+                               double upstreamMillis, double avoidedUpstreamMillis, long elapsedNanos) {
+
+    public double hitRatio() {
+        return this.requests == 0 ? 0 : (double) this.hits / this.requests;
+    }
+
+    public double throughputPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.requests * 1_000_000_000.0 / this.elapsedNanos;
+    }
+}
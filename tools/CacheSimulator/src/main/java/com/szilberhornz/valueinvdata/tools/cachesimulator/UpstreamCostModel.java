@@ -0,0 +1,63 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Models what a cache miss costs the service upstream. The first miss of a ticker ever goes all the way: one database
+ * query that comes back empty, then the three FMP api calls, after which the VRSagaDataBroker persists the data. Every later
+ * miss of the same ticker is served by a single database query, because the data is in the database by then.
+ * <p>
+ * A hit avoids the database query a miss would have cost at that point. It never avoids FMP api calls: a ticker can only be
+ * cached after its first miss, which already paid for the full load and persisted the data. The latencies are only used
+ * to turn the counts into an estimated wall clock cost, the defaults are in line with what the service logs for the
+ * in-memory db and the FMP api.
+ */
+public final class UpstreamCostModel {
+
+    public static final int FMP_CALLS_PER_FULL_LOAD = 3;
+
+    private final double dbQueryMillis;
+    private final double fmpCallMillis;
+    private final Set<String> persisted = new HashSet<>();
+
+    private long dbQueries;
+    private long fmpCalls;
+    private long dbQueriesAvoided;
+
+    public UpstreamCostModel(final double dbQueryMillis, final double fmpCallMillis) {
+        this.dbQueryMillis = dbQueryMillis;
+        this.fmpCallMillis = fmpCallMillis;
+    }
+
+    public void recordHit() {
+        this.dbQueriesAvoided++;
+    }
+
+    public void recordMiss(final String ticker) {
+        this.dbQueries++;
+        if (this.persisted.add(ticker)) {
+            this.fmpCalls += FMP_CALLS_PER_FULL_LOAD;
+        }
+    }
+
+    public long getDbQueries() {
+        return this.dbQueries;
+    }
+
+    public long getFmpCalls() {
+        return this.fmpCalls;
+    }
+
+    public long getDbQueriesAvoided() {
+        return this.dbQueriesAvoided;
+    }
+
+    public double getUpstreamMillis() {
+        return this.dbQueries * this.dbQueryMillis + this.fmpCalls * this.fmpCallMillis;
+    }
+
+    public double getAvoidedUpstreamMillis() {
+        return this.dbQueriesAvoided * this.dbQueryMillis;
+    }
+}
@@ -0,0 +1,84 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Adaptive Replacement Cache. It keeps two LRU lists, T1 for tickers seen once recently and T2 for tickers seen at
+ * least twice, plus two ghost lists (B1, B2) of recently evicted keys. Ghost hits move the target size of T1 up or down,
+ * so the policy adapts between recency and frequency on its own.
+ * <p>
+ * Source: <a href="https://www.usenix.org/legacy/events/fast03/tech/full_papers/megiddo/megiddo.pdf">ARC</a>
+ */
+public final class ArcPolicy implements SimulatedCachePolicy {
+
+    private final int capacity;
+    private final LinkedHashSet<String> t1 = new LinkedHashSet<>();
+    private final LinkedHashSet<String> t2 = new LinkedHashSet<>();
+    private final LinkedHashSet<String> b1 = new LinkedHashSet<>();
+    private final LinkedHashSet<String> b2 = new LinkedHashSet<>();
+    //the adaptive target size of T1
+    private int p = 0;
+
+    public ArcPolicy(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public String getName() {
+        return "ARC";
+    }
+
+    @Override
+    public boolean recordAccess(final String ticker) {
+        if (this.t1.remove(ticker) || this.t2.remove(ticker)) {
+            this.t2.add(ticker);
+            return true;
+        }
+        if (this.b1.contains(ticker)) {
+            this.p = Math.min(this.capacity, this.p + Math.max(this.b2.size() / this.b1.size(), 1));
+            this.replace(false);
+            this.b1.remove(ticker);
+            this.t2.add(ticker);
+        } else if (this.b2.contains(ticker)) {
+            this.p = Math.max(0, this.p - Math.max(this.b1.size() / this.b2.size(), 1));
+            this.replace(true);
+            this.b2.remove(ticker);
+            this.t2.add(ticker);
+        } else {
+            this.admitNew();
+            this.t1.add(ticker);
+        }
+        return false;
+    }
+
+    private void admitNew() {
+        final int l1 = this.t1.size() + this.b1.size();
+        final int total = l1 + this.t2.size() + this.b2.size();
+        if (l1 == this.capacity) {
+            if (this.t1.size() < this.capacity) {
+                this.b1.removeFirst();
+                this.replace(false);
+            } else {
+                this.t1.removeFirst();
+            }
+        } else if (total >= this.capacity) {
+            if (total == 2 * this.capacity) {
+                this.b2.removeFirst();
+            }
+            this.replace(false);
+        }
+    }
+
+    private void replace(final boolean hitInB2) {
+        if (this.t1.size() + this.t2.size() < this.capacity) {
+            return;
+        }
+        if (!this.t1.isEmpty() && (this.t1.size() > this.p || (hitInB2 && this.t1.size() == this.p))) {
+            this.b1.add(this.t1.removeFirst());
+        } else if (!this.t2.isEmpty()) {
+            this.b2.add(this.t2.removeFirst());
+        } else {
+            this.b1.add(this.t1.removeFirst());
+        }
+    }
+}
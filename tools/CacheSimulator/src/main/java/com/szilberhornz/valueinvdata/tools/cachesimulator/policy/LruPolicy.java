@@ -0,0 +1,36 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plain Least Recently Used policy, the baseline every other policy should beat on our skewed traffic.
+ */
+public final class LruPolicy implements SimulatedCachePolicy {
+
+    private final Map<String, Boolean> entries;
+
+    public LruPolicy(final int capacity) {
+        //access ordered LinkedHashMap is an LRU cache out of the box
+        this.entries = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "LRU";
+    }
+
+    @Override
+    public boolean recordAccess(final String ticker) {
+        if (this.entries.get(ticker) != null) {
+            return true;
+        }
+        this.entries.put(ticker, Boolean.TRUE);
+        return false;
+    }
+}
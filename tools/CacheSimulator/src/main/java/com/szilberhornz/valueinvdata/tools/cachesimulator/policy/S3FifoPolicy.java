@@ -0,0 +1,97 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * S3-FIFO: a small FIFO queue (10% of the capacity) filters out the one-hit wonders, the main FIFO queue holds
+ * the rest, and a ghost queue remembers the keys recently dropped from the small queue, so they can go straight
+ * to the main queue when they come back. Hits only bump a 2-bit counter, there is no list reordering at all.
+ * <p>
+ * Source: <a href="https://dl.acm.org/doi/10.1145/3600006.3613147">FIFO queues are all you need for cache eviction</a>
+ */
+public final class S3FifoPolicy implements SimulatedCachePolicy {
+
+    private static final int MAX_FREQUENCY = 3;
+
+    private final int smallCapacity;
+    private final int mainCapacity;
+    private final Deque<String> small = new ArrayDeque<>();
+    private final Deque<String> main = new ArrayDeque<>();
+    private final LinkedHashSet<String> ghost = new LinkedHashSet<>();
+    private final Map<String, Integer> frequencies = new HashMap<>();
+
+    public S3FifoPolicy(final int capacity) {
+        this.smallCapacity = Math.max(1, capacity / 10);
+        this.mainCapacity = Math.max(1, capacity - this.smallCapacity);
+    }
+
+    @Override
+    public String getName() {
+        return "S3-FIFO";
+    }
+
+    @Override
+    public boolean recordAccess(final String ticker) {
+        final Integer frequency = this.frequencies.get(ticker);
+        if (frequency != null) {
+            this.frequencies.put(ticker, Math.min(frequency + 1, MAX_FREQUENCY));
+            return true;
+        }
+        if (this.ghost.remove(ticker)) {
+            this.insertToMain(ticker);
+        } else {
+            this.insertToSmall(ticker);
+        }
+        return false;
+    }
+
+    private void insertToSmall(final String ticker) {
+        while (this.small.size() >= this.smallCapacity) {
+            this.evictFromSmall();
+        }
+        this.small.addLast(ticker);
+        this.frequencies.put(ticker, 0);
+    }
+
+    private void insertToMain(final String ticker) {
+        while (this.main.size() >= this.mainCapacity) {
+            this.evictFromMain();
+        }
+        this.main.addLast(ticker);
+        this.frequencies.put(ticker, 0);
+    }
+
+    private void evictFromSmall() {
+        final String tail = this.small.pollFirst();
+        if (this.frequencies.get(tail) > 0) {
+            //requested again while in the small queue, promote it
+            this.frequencies.remove(tail);
+            this.insertToMain(tail);
+        } else {
+            this.frequencies.remove(tail);
+            this.ghost.add(tail);
+            if (this.ghost.size() > this.mainCapacity) {
+                this.ghost.removeFirst();
+            }
+        }
+    }
+
+    private void evictFromMain() {
+        while (!this.main.isEmpty()) {
+            final String tail = this.main.pollFirst();
+            final int frequency = this.frequencies.get(tail);
+            if (frequency > 0) {
+                //second chance with a decremented counter
+                this.frequencies.put(tail, frequency - 1);
+                this.main.addLast(tail);
+            } else {
+                this.frequencies.remove(tail);
+                return;
+            }
+        }
+    }
+}
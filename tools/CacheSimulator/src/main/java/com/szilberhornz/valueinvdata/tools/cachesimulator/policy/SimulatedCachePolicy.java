@@ -0,0 +1,16 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+/**
+ * The only behavior the simulator needs from a cache policy: record an access and tell whether it was a hit.
+ * On a miss the policy is expected to admit the ticker the same way the service would after it loaded the
+ * data from the database or the FMP api, evicting whatever its rules say.
+ */
+public interface SimulatedCachePolicy {
+
+    String getName();
+
+    /**
+     * @return true if the ticker was in the cache, false if it was a miss (and got admitted, if the policy wants it)
+     */
+    boolean recordAccess(String ticker);
+}
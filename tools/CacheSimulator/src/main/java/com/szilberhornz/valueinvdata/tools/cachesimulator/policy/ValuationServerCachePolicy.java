@@ -0,0 +1,56 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.DiscountedCashFlowDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetConsensusDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.model.record.PriceTargetSummaryDTO;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.FillSource;
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerCache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Adapter to replay traces through the actual ValuationServerCache implementations of the service. A miss is followed
+ * by putting all three DTOs, exactly like the VRSagaDataBroker does after a successful FMP api round trip, so a ticker
+ * is only a hit if its whole record can be served from the cache.
+ * <p>
+ * The fill cost is recorded the same way the upstream cost model charges it: the first miss of a ticker is filled with
+ * three FMP api calls, every later miss with a single database query.
+ * <p>
+ * The maintenance of the cache runs synchronously on the replaying thread whenever the cache asks for it, instead of on
+ * the common ForkJoinPool, so the evictions happen at the same point of the trace in every run and the results are
+ * reproducible.
+ */
+public final class ValuationServerCachePolicy implements SimulatedCachePolicy {
+
+    private final String name;
+    private final ValuationServerCache cache;
+    private final Set<String> persistedTickers = new HashSet<>();
+
+    public ValuationServerCachePolicy(final String name, final ValuationServerCache cache) {
+        this.name = name;
+        this.cache = cache;
+        this.cache.setMaintenanceRequester(cache::cleanUp);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public boolean recordAccess(final String ticker) {
+        if (this.cache.get(ticker) != null) {
+            return true;
+        }
+        this.cache.put(ticker, new DiscountedCashFlowDTO(ticker, "2024-09-24", 100, 100));
+        this.cache.put(ticker, new PriceTargetConsensusDTO(ticker, 120, 80, 100, 100));
+        this.cache.put(ticker, new PriceTargetSummaryDTO(ticker, 1, 100, 3, 100));
+        if (this.persistedTickers.add(ticker)) {
+            this.cache.recordFillCost(ticker, FillSource.FMP_API, 3);
+        } else {
+            this.cache.recordFillCost(ticker, FillSource.DATABASE, 1);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * A straightforward, single threaded reference implementation of W-TinyLFU: a 1% LRU admission window in front of a
+ * segmented LRU main region, and a frequency sketch deciding whether a window victim may replace the main region's victim.
+ * <p>
+ * It is written independently of the service's ValuationServerTinyLFUCache on purpose: if the two diverge noticeably
+ * in hit ratio on the same trace, one of them has a bug.
+ */
+public final class WTinyLfuPolicy implements SimulatedCachePolicy {
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    private final int maxWindow;
+    private final int maxMain;
+    private final int maxProtected;
+    private final Map<String, Region> regions = new HashMap<>();
+    private final LinkedHashSet<String> window = new LinkedHashSet<>();
+    private final LinkedHashSet<String> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<String> protectedSegment = new LinkedHashSet<>();
+    private final Sketch sketch;
+
+    public WTinyLfuPolicy(final int capacity) {
+        this.maxWindow = Math.max(1, capacity / 100);
+        this.maxMain = Math.max(1, capacity - this.maxWindow);
+        this.maxProtected = (int) (this.maxMain * 0.8);
+        this.sketch = new Sketch(capacity);
+    }
+
+    @Override
+    public String getName() {
+        return "W-TinyLFU (reference)";
+    }
+
+    @Override
+    public boolean recordAccess(final String ticker) {
+        this.sketch.increment(ticker);
+        final Region region = this.regions.get(ticker);
+        if (region == null) {
+            this.window.add(ticker);
+            this.regions.put(ticker, Region.WINDOW);
+            this.evict();
+            return false;
+        }
+        switch (region) {
+            case WINDOW -> {
+                this.window.remove(ticker);
+                this.window.add(ticker);
+            }
+            case PROBATION -> {
+                this.probation.remove(ticker);
+                this.protectedSegment.add(ticker);
+                this.regions.put(ticker, Region.PROTECTED);
+                while (this.protectedSegment.size() > this.maxProtected) {
+                    final String demoted = this.protectedSegment.removeFirst();
+                    this.probation.add(demoted);
+                    this.regions.put(demoted, Region.PROBATION);
+                }
+            }
+            case PROTECTED -> {
+                this.protectedSegment.remove(ticker);
+                this.protectedSegment.add(ticker);
+            }
+        }
+        return true;
+    }
+
+    private void evict() {
+        while (this.window.size() > this.maxWindow) {
+            final String candidate = this.window.removeFirst();
+            if (this.probation.size() + this.protectedSegment.size() < this.maxMain) {
+                this.probation.add(candidate);
+                this.regions.put(candidate, Region.PROBATION);
+                continue;
+            }
+            final LinkedHashSet<String> victimSegment = this.probation.isEmpty() ? this.protectedSegment : this.probation;
+            final String victim = victimSegment.getFirst();
+            if (this.sketch.frequency(candidate) > this.sketch.frequency(victim)) {
+                victimSegment.removeFirst();
+                this.regions.remove(victim);
+                this.probation.add(candidate);
+                this.regions.put(candidate, Region.PROBATION);
+            } else {
+                this.regions.remove(candidate);
+            }
+        }
+    }
+
+    //four rows of saturating byte counters, halved every 10 * capacity increments
+    private static final class Sketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] rows;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private Sketch(final int capacity) {
+            final int width = Integer.highestOneBit(Math.max(16, capacity * 4) - 1) << 1;
+            this.rows = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(1, capacity);
+        }
+
+        private void increment(final String ticker) {
+            final int hash = ticker.hashCode();
+            for (int row = 0; row < DEPTH; row++) {
+                final int index = this.index(hash, row);
+                if (this.rows[row][index] < MAX_COUNT) {
+                    this.rows[row][index]++;
+                }
+            }
+            if (++this.additions >= this.sampleSize) {
+                for (final byte[] counters : this.rows) {
+                    for (int i = 0; i < counters.length; i++) {
+                        counters[i] = (byte) (counters[i] >> 1);
+                    }
+                }
+                this.additions /= 2;
+            }
+        }
+
+        private int frequency(final String ticker) {
+            final int hash = ticker.hashCode();
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, this.rows[row][this.index(hash, row)]);
+            }
+            return min;
+        }
+
+        private int index(final int hash, final int row) {
+            int h = hash * (0x9E3779B9 + 2 * row + 1);
+            h ^= h >>> 16;
+            return h & this.mask;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.trace;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the same tickers.txt universe the StockValuationService validates requests against, so the synthetic traces
+ * only contain real, valid tickers, just like the traffic that can actually reach the cache.
+ */
+public final class TickerUniverse {
+
+    private static final String DEFAULT_RESOURCE = "tickers.txt";
+
+    private TickerUniverse() {
+        //static helper class, no need to instantiate
+    }
+
+    public static List<String> load() throws IOException {
+        return load(DEFAULT_RESOURCE);
+    }
+
+    public static List<String> load(final String resourceFileName) throws IOException {
+        try (final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourceFileName)) {
+            if (in == null) {
+                throw new IOException("The ticker universe resource " + resourceFileName + " is not on the classpath!");
+            }
+            return parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    //the file is a single line of comma separated, quoted tickers
+    static List<String> parse(final String content) {
+        final List<String> tickers = new ArrayList<>();
+        int start = content.indexOf('"');
+        while (start >= 0) {
+            final int end = content.indexOf('"', start + 1);
+            if (end < 0) {
+                break;
+            }
+            if (end > start + 1) {
+                tickers.add(content.substring(start + 1, end));
+            }
+            start = content.indexOf('"', end + 1);
+        }
+        return tickers;
+    }
+}
@@ -0,0 +1,64 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.trace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads recorded ticker access traces. Two formats are supported:
+ * <ul>
+ *     <li>{@link Format#PLAIN}: one access per line, either just the ticker or comma separated columns with the ticker
+ *     in the last column (e.g. timestamp,ticker). Empty lines and lines starting with # are skipped</li>
+ *     <li>{@link Format#SERVICE_LOG}: the log output of the StockValuationService itself. Every request for a valid
+ *     ticker produces exactly one "Valuation report for ticker X generated ..." or "No report was generated for ticker X" line,
+ *     so the logs already are a faithful access trace, no extra recording is needed in the service</li>
+ * </ul>
+ * Tickers are upper-cased the same way the VRSagaOrchestrator does before looking at the cache.
+ */
+public final class TraceReader {
+
+    public enum Format { PLAIN, SERVICE_LOG }
+
+    private static final Pattern SERVICE_LOG_PATTERN =
+            Pattern.compile("(?:Valuation report|No report was generated) for ticker ([^\\s!]+)");
+
+    private TraceReader() {
+        //static helper class, no need to instantiate
+    }
+
+    public static List<String> read(final Path path, final Format format) throws IOException {
+        final List<String> trace = new ArrayList<>();
+        try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String ticker = format == Format.PLAIN ? parsePlainLine(line) : parseServiceLogLine(line);
+                if (ticker != null) {
+                    trace.add(ticker.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return trace;
+    }
+
+    static String parsePlainLine(final String line) {
+        final String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        final int lastComma = trimmed.lastIndexOf(',');
+        final String ticker = lastComma < 0 ? trimmed : trimmed.substring(lastComma + 1).trim();
+        return ticker.isEmpty() ? null : ticker;
+    }
+
+    static String parseServiceLogLine(final String line) {
+        final Matcher matcher = SERVICE_LOG_PATTERN.matcher(line);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
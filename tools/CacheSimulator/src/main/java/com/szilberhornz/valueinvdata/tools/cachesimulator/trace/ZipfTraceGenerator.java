@@ -0,0 +1,68 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic request traces where the popularity of the tickers follows a Zipf distribution, which is
+ * the assumption the whole LFU design of the service is based on: a few tickers (think AAPL, MSFT, NVDA) get most of the requests
+ * and there is a very long tail of tickers requested once in a blue moon.
+ * <p>
+ * The popularity ranks are assigned to a seeded random permutation of the universe, so the same seed always
+ * produces the same trace, while different seeds exercise different hot sets.
+ */
+public final class ZipfTraceGenerator {
+
+    private final List<String> rankedTickers;
+    private final double[] cumulativeProbabilities;
+    private final Random random;
+
+    /**
+     * @param universe the tickers to draw from, usually the whole tickers.txt
+     * @param skew the exponent of the Zipf distribution. Around 1.0 is typical for web-like traffic, higher is more skewed
+     * @param seed seed for both the rank assignment and the sampling
+     */
+    public ZipfTraceGenerator(final List<String> universe, final double skew, final long seed) {
+        if (universe.isEmpty()) {
+            throw new IllegalArgumentException("Cannot generate a trace from an empty ticker universe!");
+        }
+        this.random = new Random(seed);
+        final List<String> shuffled = new ArrayList<>(universe);
+        Collections.shuffle(shuffled, this.random);
+        this.rankedTickers = List.copyOf(shuffled);
+        this.cumulativeProbabilities = new double[shuffled.size()];
+        double sum = 0;
+        for (int rank = 0; rank < shuffled.size(); rank++) {
+            sum += 1.0 / Math.pow(rank + 1.0, skew);
+            this.cumulativeProbabilities[rank] = sum;
+        }
+        for (int rank = 0; rank < shuffled.size(); rank++) {
+            this.cumulativeProbabilities[rank] /= sum;
+        }
+    }
+
+    public String next() {
+        final double sample = this.random.nextDouble();
+        int index = Arrays.binarySearch(this.cumulativeProbabilities, sample);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return this.rankedTickers.get(Math.min(index, this.rankedTickers.size() - 1));
+    }
+
+    public List<String> generate(final int requestCount) {
+        final List<String> trace = new ArrayList<>(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            trace.add(this.next());
+        }
+        return trace;
+    }
+
+    //visible for testing
+    String tickerOfRank(final int rank) {
+        return this.rankedTickers.get(rank);
+    }
+}
@@ -0,0 +1,46 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator;
+
+import com.szilberhornz.valueinvdata.tools.cachesimulator.policy.LruPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationTest {
+
+    @Test
+    void costModelShouldChargeFmpCallsOnlyOnFirstMiss() {
+        final Simulation sut = new Simulation(List.of("AAPL", "MSFT", "AAPL", "NVDA", "MSFT"), 10, 100);
+        //capacity of 1 means every access is a miss in this trace
+        final SimulationResult result = sut.run(new LruPolicy(1), 1);
+        assertEquals(0, result.hits());
+        assertEquals(5, result.dbQueries());
+        assertEquals(9, result.fmpCalls());
+        assertEquals(5 * 10 + 9 * 100, result.upstreamMillis());
+    }
+
+    @Test
+    void hitsShouldBeCountedAsAvoidedDbQueries() {
+        final Simulation sut = new Simulation(List.of("AAPL", "AAPL", "AAPL"), 10, 100);
+        final SimulationResult result = sut.run(new LruPolicy(10), 10);
+        assertEquals(2, result.hits());
+        assertEquals(2, result.dbQueriesAvoided());
+        assertEquals(2 * 10, result.avoidedUpstreamMillis());
+        assertEquals(2.0 / 3, result.hitRatio(), 0.0001);
+    }
+
+    @Test
+    void sweepShouldRunEveryPolicyWithEveryCapacity() {
+        final Simulation sut = new Simulation(List.of("AAPL", "AAPL", "MSFT"), 10, 100);
+        final List<SimulationResult> results = sut.sweep(CacheSimulator.defaultPolicies(), CacheSimulator.parseCapacities("2, 4"));
+        assertEquals(CacheSimulator.defaultPolicies().size() * 2, results.size());
+        results.forEach(result -> assertEquals(1, result.hits(), result.policyName()));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheSimulator.printReport(results, new PrintStream(out, true, StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("ValuationServerTinyLFUCache"));
+    }
+}
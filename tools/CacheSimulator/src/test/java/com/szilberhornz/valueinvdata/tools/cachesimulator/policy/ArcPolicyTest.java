@@ -0,0 +1,31 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArcPolicyTest {
+
+    @Test
+    void frequentTickerShouldSurviveScan() {
+        final ArcPolicy sut = new ArcPolicy(4);
+        sut.recordAccess("AAPL");
+        sut.recordAccess("AAPL");
+        for (int i = 0; i < 20; i++) {
+            sut.recordAccess("SCAN" + i);
+        }
+        assertTrue(sut.recordAccess("AAPL"));
+    }
+
+    @Test
+    void ghostHitShouldStillBeAMiss() {
+        final ArcPolicy sut = new ArcPolicy(2);
+        sut.recordAccess("AAPL");
+        sut.recordAccess("MSFT");
+        sut.recordAccess("NVDA");
+        //AAPL is only a ghost by now
+        assertFalse(sut.recordAccess("AAPL"));
+        assertTrue(sut.recordAccess("AAPL"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LruPolicyTest {
+
+    @Test
+    void leastRecentlyUsedTickerShouldBeEvicted() {
+        final LruPolicy sut = new LruPolicy(2);
+        assertFalse(sut.recordAccess("AAPL"));
+        assertFalse(sut.recordAccess("MSFT"));
+        assertTrue(sut.recordAccess("AAPL"));
+        //MSFT is the least recently used now
+        assertFalse(sut.recordAccess("NVDA"));
+        assertTrue(sut.recordAccess("AAPL"));
+        assertFalse(sut.recordAccess("MSFT"));
+    }
+}
@@ -0,0 +1,29 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3FifoPolicyTest {
+
+    @Test
+    void tickerRequestedTwiceShouldBePromotedAndSurviveScan() {
+        final S3FifoPolicy sut = new S3FifoPolicy(20);
+        assertFalse(sut.recordAccess("AAPL"));
+        assertTrue(sut.recordAccess("AAPL"));
+        for (int i = 0; i < 15; i++) {
+            sut.recordAccess("SCAN" + i);
+        }
+        assertTrue(sut.recordAccess("AAPL"));
+    }
+
+    @Test
+    void oneHitWonderShouldBeDroppedFromSmallQueue() {
+        final S3FifoPolicy sut = new S3FifoPolicy(20);
+        sut.recordAccess("ONCE");
+        sut.recordAccess("OTHER1");
+        sut.recordAccess("OTHER2");
+        assertFalse(sut.recordAccess("ONCE"));
+    }
+}
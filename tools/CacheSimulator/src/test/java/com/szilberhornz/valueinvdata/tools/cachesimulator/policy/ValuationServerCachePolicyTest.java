@@ -0,0 +1,37 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import com.szilberhornz.valueinvdata.services.stockvaluation.utility.cache.ValuationServerLFUCache;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.Simulation;
+import com.szilberhornz.valueinvdata.tools.cachesimulator.trace.ZipfTraceGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValuationServerCachePolicyTest {
+
+    @Test
+    void replayingTheSameTraceShouldGiveTheSameHits() {
+        final List<String> universe = IntStream.range(0, 5000).mapToObj(i -> "T" + i).toList();
+        final Simulation simulation = new Simulation(new ZipfTraceGenerator(universe, 0.9, 42).generate(100_000), 10, 100);
+        final long hits = simulation.run(new ValuationServerCachePolicy("LFU", new ValuationServerLFUCache(200, 500)), 500).hits();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(hits, simulation.run(new ValuationServerCachePolicy("LFU", new ValuationServerLFUCache(200, 500)), 500).hits());
+        }
+    }
+
+    @Test
+    void cacheShouldBeKeptWithinItsCapacityDuringTheReplay() {
+        final ValuationServerLFUCache cache = new ValuationServerLFUCache(10, 5);
+        final ValuationServerCachePolicy sut = new ValuationServerCachePolicy("LFU", cache);
+        for (int i = 0; i < 100; i++) {
+            sut.recordAccess("T" + (i % 20));
+            sut.recordAccess("T" + (i % 20));
+        }
+        //evicted down to the capacity by the last maintenance, at most one rebalance threshold of new entries since then
+        assertTrue(cache.size() <= 5 + 10, "size was " + cache.size());
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+}
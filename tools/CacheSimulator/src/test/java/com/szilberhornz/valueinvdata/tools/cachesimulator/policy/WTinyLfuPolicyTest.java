@@ -0,0 +1,24 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.policy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WTinyLfuPolicyTest {
+
+    @Test
+    void popularTickersShouldNotBeReplacedByOneHitWonders() {
+        final WTinyLfuPolicy sut = new WTinyLfuPolicy(10);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                sut.recordAccess("HOT" + i);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            sut.recordAccess("COLD" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(sut.recordAccess("HOT" + i));
+        }
+    }
+}
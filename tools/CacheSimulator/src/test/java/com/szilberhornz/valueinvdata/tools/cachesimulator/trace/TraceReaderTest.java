@@ -0,0 +1,26 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.trace;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TraceReaderTest {
+
+    @Test
+    void plainLineShouldUseLastColumn() {
+        assertEquals("AAPL", TraceReader.parsePlainLine("2024-09-24T10:00:00Z,AAPL"));
+        assertEquals("MSFT", TraceReader.parsePlainLine("  MSFT "));
+        assertNull(TraceReader.parsePlainLine("# comment"));
+        assertNull(TraceReader.parsePlainLine(""));
+    }
+
+    @Test
+    void serviceLogLinesShouldBeParsed() {
+        assertEquals("AAPL", TraceReader.parseServiceLogLine(
+                "[INFO] 2024-09-24 10:00:00,000 [pool-1-thread-1]  VRSagaOrchestrator generateValueReport - Valuation report for ticker AAPL generated from in-memory cache"));
+        assertEquals("BRK-B", TraceReader.parseServiceLogLine(
+                "[WARN] 2024-09-24 10:00:00,000 [pool-1-thread-1]  VRSagaOrchestrator completeReportFromFmpApi - No report was generated for ticker BRK-B! No data found"));
+        assertNull(TraceReader.parseServiceLogLine("[INFO] Writing AAPL ticker data to the database!"));
+    }
+}
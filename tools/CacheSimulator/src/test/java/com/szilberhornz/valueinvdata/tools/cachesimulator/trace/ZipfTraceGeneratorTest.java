@@ -0,0 +1,42 @@
+package com.szilberhornz.valueinvdata.tools.cachesimulator.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipfTraceGeneratorTest {
+
+    @Test
+    void sameSeedShouldGenerateSameTrace() {
+        final List<String> universe = List.of("AAPL", "MSFT", "NVDA", "AMZN", "META");
+        final List<String> first = new ZipfTraceGenerator(universe, 1.0, 7).generate(100);
+        final List<String> second = new ZipfTraceGenerator(universe, 1.0, 7).generate(100);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void topRankedTickerShouldBeTheMostFrequent() {
+        final List<String> universe = List.of("AAPL", "MSFT", "NVDA", "AMZN", "META");
+        final ZipfTraceGenerator sut = new ZipfTraceGenerator(universe, 1.2, 7);
+        final List<String> trace = sut.generate(10_000);
+        final long top = trace.stream().filter(sut.tickerOfRank(0)::equals).count();
+        final long last = trace.stream().filter(sut.tickerOfRank(4)::equals).count();
+        assertTrue(top > 3 * last);
+    }
+
+    @Test
+    void emptyUniverseShouldThrow() {
+        final List<String> universe = List.of();
+        assertThrows(IllegalArgumentException.class, () -> new ZipfTraceGenerator(universe, 1.0, 7));
+    }
+
+    @Test
+    void realUniverseShouldBeLoadedFromTheServiceResources() throws IOException {
+        final List<String> universe = TickerUniverse.load();
+        assertTrue(universe.size() > 60_000);
+        assertTrue(universe.contains("AAPL"));
+    }
+}